@@ -0,0 +1,95 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * ベンチマーク用のCSVを生成するクラスです。
+ * <p>カラムは、text、integer、textの順で繰り返します。</p>
+ */
+class BenchmarkCsv {
+
+    private static final String[] WORDS = {
+            "alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "東京", "大阪", "名古屋", "札幌" };
+
+    private final List<Column> columns = new ArrayList<>();
+
+    private final byte[] bytes;
+
+    private final Charset charset;
+
+    /**
+     * @param width カラム数
+     * @param recordCount レコード数
+     * @param quoteRatio クォートが必要な値(区切り文字、クォート、改行を含む値)にするtextの割合
+     * @param charset エンコーディング
+     */
+    BenchmarkCsv(int width, int recordCount, double quoteRatio, Charset charset) {
+
+        this.charset = charset;
+
+        for (int i = 0; i < width; i++) {
+            columns.add(Column.of("column" + i, i % 3 == 1 ? ColumnType.INTEGER : ColumnType.TEXT));
+        }
+
+        // 実行毎に同じ内容となるよう、乱数の種は固定
+        Random random = new Random(0);
+
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < width; i++) {
+            csv.append(i == 0 ? "" : ",").append("column").append(i);
+        }
+        csv.append("\r\n");
+
+        for (int r = 0; r < recordCount; r++) {
+            for (int i = 0; i < width; i++) {
+                if (i != 0) {
+                    csv.append(',');
+                }
+
+                if (columns.get(i).getType() == ColumnType.INTEGER) {
+                    csv.append(random.nextInt(1_000_000));
+                } else if (random.nextDouble() < quoteRatio) {
+                    csv.append('"').append(word(random)).append(", \"\"").append(word(random)).append("\"\"\n")
+                            .append(word(random)).append('"');
+                } else {
+                    csv.append(word(random)).append(' ').append(word(random));
+                }
+            }
+            csv.append("\r\n");
+        }
+
+        this.bytes = csv.toString().getBytes(charset);
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    List<Column> getColumns() {
+        return columns;
+    }
+
+    Table table(String name) {
+
+        return Table.builder()
+                .name(name)
+                .columns(columns)
+                .build();
+    }
+
+    /**
+     * ヘッダを含むCSVのバイト列です。
+     *
+     * @return バイト列
+     */
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    Charset getCharset() {
+        return charset;
+    }
+}
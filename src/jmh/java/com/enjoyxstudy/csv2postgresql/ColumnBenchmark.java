@@ -0,0 +1,37 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * ヘッダ名からのカラム生成のベンチマークです。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColumnBenchmark {
+
+    private final String[] headerNames = {
+            "id", "Customer Name", "order-date", "金額", "ZIP_CODE", "e-mail address (primary)" };
+
+    @Benchmark
+    public void of(Blackhole blackhole) {
+
+        for (String headerName : headerNames) {
+            blackhole.consume(Column.of(headerName));
+        }
+    }
+}
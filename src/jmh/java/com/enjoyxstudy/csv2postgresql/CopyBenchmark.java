@@ -0,0 +1,96 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.postgresql.core.Encoding;
+
+/**
+ * COPYで送信するまでの、クライアント側の処理のベンチマークです。
+ * <p>送信先は書き込まれたデータを破棄するCopyInのため、DBは不要です。</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CopyBenchmark {
+
+    /**
+     * バイト列をそのまま送信します。
+     */
+    @Benchmark
+    public long passThrough(CsvState state) throws IOException, SQLException {
+
+        NullCopyIn copyIn = new NullCopyIn();
+        Table.copy(copyIn, state.newStream(), true, metrics());
+
+        return copyIn.getWrittenBytes();
+    }
+
+    /**
+     * デコードした文字列を、UTF-8にエンコードして送信します。
+     */
+    @Benchmark
+    public long transcode(CsvState state) throws IOException, SQLException {
+
+        NullCopyIn copyIn = new NullCopyIn();
+        Table.copy(copyIn, state.newReader(), true, Encoding.getJVMEncoding("UTF-8"), metrics());
+
+        return copyIn.getWrittenBytes();
+    }
+
+    /**
+     * 解析したレコードを、カラムの型に応じたバイナリ形式に変換して送信します。
+     */
+    @Benchmark
+    public long binary(CsvState state) throws IOException, SQLException {
+
+        NullCopyIn copyIn = new NullCopyIn();
+        LoadMetrics metrics = metrics();
+        try (CSVParser csvParser = state.newParser()) {
+            state.csv.table("benchmark_table").copyBinary(new MeteredCopyIn(copyIn, metrics), csvParser, metrics);
+        }
+
+        return copyIn.getWrittenBytes();
+    }
+
+    /**
+     * 解析したレコードをバッファに詰め、CSVに整形し直して送信します。(INSERTのcopy方式)
+     */
+    @Benchmark
+    public long copyInsert(CsvState state) throws IOException, SQLException {
+
+        NullCopyIn copyIn = new NullCopyIn();
+        RecordBatch batch = new RecordBatch(1000, state.width);
+        try (CSVParser csvParser = state.newParser();
+                BatchInserter inserter = new CopyBatchInserter(copyIn, state.csv.getColumns(), metrics())) {
+
+            for (CSVRecord record : csvParser) {
+                batch.add(record);
+                if (batch.isFull()) {
+                    inserter.insert(batch);
+                    batch.clear();
+                }
+            }
+            inserter.insert(batch);
+            inserter.finish();
+        }
+
+        return copyIn.getWrittenBytes();
+    }
+
+    private static LoadMetrics metrics() {
+        return new LoadMetrics("benchmark_table", null);
+    }
+}
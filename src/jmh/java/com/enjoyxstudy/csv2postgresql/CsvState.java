@@ -0,0 +1,56 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * ベンチマークで使うCSVです。カラム数、クォートの割合、エンコーディングを変えて計測します。
+ */
+@State(Scope.Benchmark)
+public class CsvState {
+
+    @Param({ "5", "20", "100" })
+    public int width;
+
+    @Param({ "0", "0.2" })
+    public double quoteRatio;
+
+    @Param({ "UTF-8", "Shift_JIS" })
+    public String encoding;
+
+    @Param("10000")
+    public int recordCount;
+
+    BenchmarkCsv csv;
+
+    /** CSVのバイト列です。(計測対象外で取得しておくためのもの) */
+    byte[] bytes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        csv = new BenchmarkCsv(width, recordCount, quoteRatio, Charset.forName(encoding));
+        bytes = csv.getBytes();
+    }
+
+    ByteArrayInputStream newStream() {
+        return new ByteArrayInputStream(bytes);
+    }
+
+    InputStreamReader newReader() {
+        return new InputStreamReader(newStream(), csv.getCharset());
+    }
+
+    CSVParser newParser() throws IOException {
+        return CSVFormat.EXCEL.withHeader().parse(newReader());
+    }
+}
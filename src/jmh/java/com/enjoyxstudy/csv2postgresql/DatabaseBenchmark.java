@@ -0,0 +1,156 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.dbutils.QueryRunner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DBへのINSERT、COPYのベンチマークです。
+ * <p>接続先はシステムプロパティ({@code benchmark.database.url}、{@code benchmark.database.user}、
+ * {@code benchmark.database.password})で指定します。</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DatabaseBenchmark {
+
+    private static final String TABLE_NAME = "benchmark_table";
+
+    @Param({ "5", "20" })
+    public int width;
+
+    @Param({ "BATCH", "REWRITE_BATCHED", "MULTI_VALUES", "UNNEST", "COPY" })
+    public InsertStrategy insertStrategy;
+
+    @Param("1000")
+    public int batchSize;
+
+    private BenchmarkCsv csv;
+
+    private Table table;
+
+    private List<String[]> records;
+
+    private Connection connection;
+
+    @Setup(Level.Trial)
+    public void setup() throws SQLException, IOException {
+
+        csv = new BenchmarkCsv(width, 10_000, 0.2, StandardCharsets.UTF_8);
+        table = csv.table(TABLE_NAME);
+
+        records = new ArrayList<>();
+        try (CSVParser csvParser = CSVFormat.EXCEL.withHeader().parse(
+                new InputStreamReader(new ByteArrayInputStream(csv.getBytes()), StandardCharsets.UTF_8))) {
+            for (CSVRecord record : csvParser) {
+                records.add(Loader.toValues(record));
+            }
+        }
+
+        Config config = Config.builder()
+                .databaseUrl(System.getProperty("benchmark.database.url"))
+                .databaseUser(System.getProperty("benchmark.database.user"))
+                .databasePassword(System.getProperty("benchmark.database.password"))
+                .insertStrategy(insertStrategy)
+                .build();
+
+        // reWriteBatchedInsertsは接続時に指定する必要があるため、設定からコネクションを生成
+        connection = ConnectionFactory.of(config).getConnection();
+
+        new QueryRunner().update(connection, "DROP TABLE IF EXISTS " + TABLE_NAME);
+        table.create(connection);
+        connection.setAutoCommit(false);
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncate() throws SQLException {
+
+        new QueryRunner().update(connection, "TRUNCATE " + TABLE_NAME);
+        connection.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public long insert() throws SQLException {
+
+        RecordBatch batch = new RecordBatch(batchSize, width);
+        try (BatchInserter inserter = table.newInserter(connection, insertStrategy, batchSize)) {
+            for (String[] record : records) {
+                batch.add(record);
+                if (batch.isFull()) {
+                    inserter.insert(batch);
+                    batch.clear();
+                }
+            }
+            inserter.insert(batch);
+            inserter.finish();
+        }
+
+        connection.commit();
+        return records.size();
+    }
+
+    /**
+     * COPYは登録方法に依存しないため、{@code -p insertStrategy=BATCH}などで絞り込んで実行してください。
+     */
+    @Benchmark
+    public long copyPassThrough() throws SQLException, IOException {
+
+        long count = table.load(connection, new ByteArrayInputStream(csv.getBytes()), true);
+        connection.commit();
+        return count;
+    }
+
+    @Benchmark
+    public long copyTranscode() throws SQLException, IOException {
+
+        long count = table.load(
+                connection,
+                new InputStreamReader(new ByteArrayInputStream(csv.getBytes()), StandardCharsets.UTF_8),
+                true);
+        connection.commit();
+        return count;
+    }
+
+    @Benchmark
+    public long copyBinary() throws SQLException, IOException {
+
+        try (CSVParser csvParser = CSVFormat.EXCEL.withHeader().parse(
+                new InputStreamReader(new ByteArrayInputStream(csv.getBytes()), StandardCharsets.UTF_8))) {
+            long count = table.loadBinary(connection, csvParser);
+            connection.commit();
+            return count;
+        }
+    }
+}
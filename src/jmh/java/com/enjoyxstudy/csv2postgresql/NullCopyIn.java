@@ -0,0 +1,62 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import org.postgresql.copy.CopyIn;
+
+/**
+ * 書き込まれたデータを破棄するCopyInです。DBへの送信を除いた処理を計測するために使います。
+ */
+class NullCopyIn implements CopyIn {
+
+    private long writtenBytes;
+
+    private boolean active = true;
+
+    long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    @Override
+    public void writeToCopy(byte[] buf, int off, int siz) {
+        writtenBytes += siz;
+    }
+
+    @Override
+    public void flushCopy() {
+    }
+
+    @Override
+    public long endCopy() {
+        active = false;
+        return 0;
+    }
+
+    @Override
+    public int getFieldCount() {
+        return 0;
+    }
+
+    @Override
+    public int getFormat() {
+        return 0;
+    }
+
+    @Override
+    public int getFieldFormat(int field) {
+        return 0;
+    }
+
+    @Override
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public void cancelCopy() {
+        active = false;
+    }
+
+    @Override
+    public long getHandledRowCount() {
+        return 0;
+    }
+}
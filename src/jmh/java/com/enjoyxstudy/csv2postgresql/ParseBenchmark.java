@@ -0,0 +1,99 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.IOException;
+import java.sql.SQLDataException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * CSVの解析と、レコードの変換のベンチマークです。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    /**
+     * ヘッダの読み込みからカラムの生成までです。
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object readColumns(CsvState state) throws IOException {
+
+        try (CSVParser csvParser = CSVFormat.EXCEL.withHeader().parse(state.newReader())) {
+            return Loader.readColumns(csvParser);
+        }
+    }
+
+    /**
+     * 解析のみです。(他のベンチマークとの比較の基準)
+     */
+    @Benchmark
+    public void parse(CsvState state, Blackhole blackhole) throws IOException {
+
+        try (CSVParser csvParser = state.newParser()) {
+            for (CSVRecord record : csvParser) {
+                blackhole.consume(record);
+            }
+        }
+    }
+
+    /**
+     * デコードせずに、フィールドの位置のみを求めます。({@link #parse}との比較用)
+     */
+    @Benchmark
+    public void tokenize(CsvState state, Blackhole blackhole) {
+
+        byte[] bytes = state.bytes;
+        CsvTokenizer tokenizer = new CsvTokenizer();
+
+        int position = 0;
+        while ((position = tokenizer.tokenize(bytes, position, bytes.length, true)) != -1) {
+            blackhole.consume(tokenizer.getFieldEnd(tokenizer.getFieldCount() - 1));
+        }
+    }
+
+    /**
+     * 解析したレコードを、サンプリングで使う配列に変換します。
+     */
+    @Benchmark
+    public void toValues(CsvState state, Blackhole blackhole) throws IOException {
+
+        try (CSVParser csvParser = state.newParser()) {
+            for (CSVRecord record : csvParser) {
+                blackhole.consume(Loader.toValues(record));
+            }
+        }
+    }
+
+    /**
+     * 解析したレコードを、INSERTで使うバッファに詰めます。
+     */
+    @Benchmark
+    public void recordBatch(CsvState state, Blackhole blackhole) throws IOException, SQLDataException {
+
+        RecordBatch batch = new RecordBatch(1000, state.width);
+        try (CSVParser csvParser = state.newParser()) {
+            for (CSVRecord record : csvParser) {
+                batch.add(record);
+                if (batch.isFull()) {
+                    blackhole.consume(batch.get(0));
+                    batch.clear();
+                }
+            }
+        }
+    }
+}
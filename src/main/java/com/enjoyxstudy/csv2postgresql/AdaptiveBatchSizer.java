@@ -0,0 +1,86 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 1バッチの登録にかかった時間とバイト数から、次のバッチの件数を決めるクラスです。
+ * <p>直近の1件あたりの時間とバイト数から、目標の処理時間とバイト数に収まる件数を求め、最小、最大の範囲に制限します。
+ * 一時的な遅延で大きく変動しないよう、1回の変更は2倍から1/2までとします。</p>
+ */
+class AdaptiveBatchSizer {
+
+    /**
+     * 1件あたりの時間とバイト数を平滑化する際の、直近の値の重みです。
+     */
+    private static final double SMOOTHING_FACTOR = 0.5;
+
+    private final int minSize;
+
+    private final int maxSize;
+
+    private final long targetNanos;
+
+    private final long maxBytes;
+
+    private int size;
+
+    private double nanosPerRow = Double.NaN;
+
+    private double bytesPerRow = Double.NaN;
+
+    /**
+     * @param initialSize 最初のバッチの件数
+     * @param minSize 最小の件数
+     * @param maxSize 最大の件数
+     * @param targetMillis 1バッチの登録にかける目標の時間(ミリ秒)
+     * @param maxBytes 1バッチのバイト数の上限 (0の場合は制限しない)
+     */
+    AdaptiveBatchSizer(int initialSize, int minSize, int maxSize, long targetMillis, long maxBytes) {
+        this.minSize = Math.max(minSize, 1);
+        this.maxSize = Math.max(maxSize, this.minSize);
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+        this.maxBytes = maxBytes;
+        this.size = clamp(initialSize);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * 登録した結果を反映し、次のバッチの件数を求めます。
+     *
+     * @param rows 登録した件数
+     * @param bytes 登録したバイト数
+     * @param nanos 登録にかかった時間(ナノ秒)
+     * @return 次のバッチの件数
+     */
+    public int record(int rows, long bytes, long nanos) {
+
+        if (rows == 0) {
+            return size;
+        }
+
+        nanosPerRow = smooth(nanosPerRow, (double) nanos / rows);
+        bytesPerRow = smooth(bytesPerRow, (double) bytes / rows);
+
+        double desiredSize = nanosPerRow > 0 ? targetNanos / nanosPerRow : maxSize;
+        if (maxBytes > 0 && bytesPerRow > 0) {
+            desiredSize = Math.min(desiredSize, maxBytes / bytesPerRow);
+        }
+
+        // 端数のバッチで件数が少ない場合もあるため、変更幅は現在の件数を基準に制限
+        desiredSize = Math.max(size / 2.0, Math.min(size * 2.0, desiredSize));
+        size = clamp((int) Math.min(desiredSize, Integer.MAX_VALUE));
+
+        return size;
+    }
+
+    private int clamp(int value) {
+        return Math.max(minSize, Math.min(maxSize, value));
+    }
+
+    private static double smooth(double current, double observed) {
+        return Double.isNaN(current) ? observed : current + (observed - current) * SMOOTHING_FACTOR;
+    }
+}
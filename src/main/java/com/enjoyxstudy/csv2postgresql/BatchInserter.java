@@ -0,0 +1,31 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.sql.SQLException;
+
+/**
+ * レコードを一括で登録するためのインタフェースです。
+ * <p>登録に使う文は生成時に準備し、{@link #close()}まで使い回します。</p>
+ */
+public interface BatchInserter extends AutoCloseable {
+
+    /**
+     * バッファのレコードを登録します。
+     *
+     * @param batch バッファ
+     * @return 登録した件数
+     * @throws SQLException
+     */
+    int insert(RecordBatch batch) throws SQLException;
+
+    /**
+     * 登録を完了します。
+     * <p>コミットの前に呼び出す必要があります。</p>
+     *
+     * @throws SQLException
+     */
+    default void finish() throws SQLException {
+    }
+
+    @Override
+    void close() throws SQLException;
+}
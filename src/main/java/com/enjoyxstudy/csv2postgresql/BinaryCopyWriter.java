@@ -0,0 +1,267 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import org.apache.commons.csv.CSVRecord;
+import org.postgresql.copy.CopyIn;
+
+/**
+ * COPYのバイナリ形式(PGCOPY)でレコードを書き込むクラスです。
+ * <p>各フィールドは、カラムの型に応じたバイナリ表現に変換して送信します。
+ * {@link NullMarkingReader}でNULLの印を付けた値はNULLとし、空文字は、text以外の型ではNULLとして扱います。</p>
+ */
+class BinaryCopyWriter {
+
+    private static final byte[] SIGNATURE = {
+            'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0 };
+
+    /**
+     * PostgreSQLの日付、日時の基準です。
+     */
+    private static final LocalDateTime POSTGRES_EPOCH = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String BAD_COPY_FILE_FORMAT = "22P04";
+
+    private static final String INVALID_TEXT_REPRESENTATION = "22P02";
+
+    private static final int NUMERIC_POSITIVE = 0x0000;
+
+    private static final int NUMERIC_NEGATIVE = 0x4000;
+
+    private final CopyIn copyIn;
+
+    private final ColumnType[] types;
+
+    /** レコード番号がファイル全体での番号かどうかです。 */
+    private final boolean recordNumbered;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private int position;
+
+    BinaryCopyWriter(CopyIn copyIn, List<Column> columns) throws SQLException {
+        this(copyIn, columns, true);
+    }
+
+    /**
+     * @param copyIn COPY
+     * @param columns カラム
+     * @param recordNumbered レコード番号がファイル全体での番号かどうか
+     *        (ファイルを分割したチャンク毎に解析している場合は{@code false}とし、エラーメッセージに含めません)
+     * @throws SQLException
+     */
+    BinaryCopyWriter(CopyIn copyIn, List<Column> columns, boolean recordNumbered) throws SQLException {
+
+        this.copyIn = copyIn;
+        this.recordNumbered = recordNumbered;
+        this.types = columns.stream()
+                .map(Column::getType)
+                .toArray(ColumnType[]::new);
+
+        // ヘッダ(シグネチャ、フラグ、ヘッダ拡張領域の長さ)
+        writeBytes(SIGNATURE);
+        writeInt(0);
+        writeInt(0);
+    }
+
+    public void write(CSVRecord record) throws SQLException {
+
+        if (record.size() != types.length) {
+            throw new SQLDataException(
+                    "The number of fields does not match the number of columns." + recordPosition(record),
+                    BAD_COPY_FILE_FORMAT);
+        }
+
+        writeShort(types.length);
+
+        for (int i = 0; i < types.length; i++) {
+            try {
+                writeField(types[i], record.get(i));
+            } catch (IllegalArgumentException e) {
+                throw new SQLDataException(
+                        String.format(
+                                "Invalid %s value \"%s\".%s",
+                                types[i].getSqlName(),
+                                record.get(i),
+                                recordPosition(record)),
+                        INVALID_TEXT_REPRESENTATION,
+                        e);
+            }
+        }
+    }
+
+    private String recordPosition(CSVRecord record) {
+        return recordNumbered ? String.format(" (Record number: %,d)", record.getRecordNumber()) : "";
+    }
+
+    public long finish() throws SQLException {
+
+        // トレーラ
+        writeShort(-1);
+        flush();
+
+        return copyIn.endCopy();
+    }
+
+    private void writeField(ColumnType type, String value) throws SQLException {
+
+        if (value.equals(NullMarkingReader.NULL_MARKER) || (type != ColumnType.TEXT && value.isEmpty())) {
+            writeInt(-1);
+            return;
+        }
+
+        switch (type) {
+            case INTEGER:
+                writeInt(4);
+                writeInt(ValueParser.parseInteger(value));
+                break;
+            case BIGINT:
+                writeInt(8);
+                writeLong(ValueParser.parseBigint(value));
+                break;
+            case DOUBLE:
+                writeInt(8);
+                writeLong(Double.doubleToLongBits(ValueParser.parseDouble(value)));
+                break;
+            case NUMERIC:
+                writeNumeric(ValueParser.parseNumeric(value));
+                break;
+            case BOOLEAN:
+                writeInt(1);
+                ensureCapacity(1);
+                buffer[position++] = (byte) (ValueParser.parseBoolean(value) ? 1 : 0);
+                break;
+            case DATE:
+                writeInt(4);
+                writeInt((int) ChronoUnit.DAYS.between(
+                        POSTGRES_EPOCH.toLocalDate(), ValueParser.parseDate(value)));
+                break;
+            case TIMESTAMP:
+                writeInt(8);
+                writeLong(ChronoUnit.MICROS.between(POSTGRES_EPOCH, ValueParser.parseTimestamp(value)));
+                break;
+            default:
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeInt(bytes.length);
+                writeBytes(bytes);
+                break;
+        }
+    }
+
+    private void writeNumeric(BigDecimal value) throws SQLException {
+
+        // 10000進数の桁に変換 (整数部は左、小数部は右を0埋めして4桁ずつに区切る)
+        String plain = value.abs().toPlainString();
+        int pointIndex = plain.indexOf('.');
+        String integerPart = pointIndex == -1 ? plain : plain.substring(0, pointIndex);
+        String fractionPart = pointIndex == -1 ? "" : plain.substring(pointIndex + 1);
+
+        if (integerPart.equals("0")) {
+            integerPart = "";
+        }
+        integerPart = leftPad(integerPart, (4 - integerPart.length() % 4) % 4);
+        fractionPart = fractionPart + leftPad("", (4 - fractionPart.length() % 4) % 4);
+
+        String digitsText = integerPart + fractionPart;
+        int[] digits = new int[digitsText.length() / 4];
+        for (int i = 0; i < digits.length; i++) {
+            digits[i] = Integer.parseInt(digitsText.substring(i * 4, i * 4 + 4));
+        }
+
+        int weight = integerPart.length() / 4 - 1;
+
+        // 先頭と末尾の0の桁は不要
+        int start = 0;
+        while (start < digits.length && digits[start] == 0) {
+            start++;
+            weight--;
+        }
+        int end = digits.length;
+        while (end > start && digits[end - 1] == 0) {
+            end--;
+        }
+
+        int digitCount = end - start;
+        if (digitCount == 0) {
+            weight = 0;
+        }
+
+        writeInt(8 + digitCount * 2);
+        writeShort(digitCount);
+        writeShort(weight);
+        writeShort(value.signum() < 0 ? NUMERIC_NEGATIVE : NUMERIC_POSITIVE);
+        writeShort(Math.max(value.scale(), 0));
+        for (int i = start; i < end; i++) {
+            writeShort(digits[i]);
+        }
+    }
+
+    private String leftPad(String text, int zeroCount) {
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < zeroCount; i++) {
+            builder.append('0');
+        }
+        return builder.append(text).toString();
+    }
+
+    private void writeShort(int value) throws SQLException {
+
+        ensureCapacity(2);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeInt(int value) throws SQLException {
+
+        ensureCapacity(4);
+        buffer[position++] = (byte) (value >>> 24);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeLong(long value) throws SQLException {
+
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    private void writeBytes(byte[] bytes) throws SQLException {
+
+        if (bytes.length > buffer.length) {
+            // バッファに収まらない大きさの場合には直接書き込む
+            flush();
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            return;
+        }
+
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void ensureCapacity(int size) throws SQLException {
+
+        if (position + size > buffer.length) {
+            flush();
+        }
+    }
+
+    private void flush() throws SQLException {
+
+        if (position > 0) {
+            copyIn.writeToCopy(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.MapHandler;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 一定のバイト数、件数毎にコミットし、ロード済みの位置をチェックポイントとして記録しながらCOPYするクラスです。
+ * <p>途中で失敗した場合には、同じファイルを再度ロードすると、最後のチェックポイントの位置から再開します。
+ * チェックポイントは、ロード先のテーブルへの登録と同じトランザクションで更新します。</p>
+ */
+@RequiredArgsConstructor
+class CheckpointCopyLoader {
+
+    /**
+     * 件数のみ指定された場合の、1チャンクのサイズです。
+     */
+    static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * フィンガープリントの計算に使う、ファイルの先頭のバイト数です。
+     */
+    private static final int FINGERPRINT_HEAD_SIZE = 1024 * 1024;
+
+    private final ConnectionFactory connectionFactory;
+
+    private final String checkpointTableName;
+
+    /**
+     * コミットする間隔のバイト数です。(0の場合は件数のみで判断)
+     */
+    private final int checkpointBytes;
+
+    /**
+     * コミットする間隔の件数です。(0の場合はバイト数のみで判断)
+     */
+    private final int checkpointRows;
+
+    private final CopyFormat copyFormat;
+
+    private final Charset charset;
+
+    private final boolean passThrough;
+
+    private final LoadMetrics metrics;
+
+    /**
+     * チェックポイントから再開しながらロードします。
+     *
+     * @param table テーブル
+     * @param fingerprint ファイルのフィンガープリント
+     * @param opener 指定位置から読み込むストリームを開く処理
+     * @return ロードした件数 (再開した場合、前回までにロードした件数を含みます)
+     * @throws IOException
+     * @throws SQLException
+     */
+    public long load(Table table, String fingerprint, StreamOpener opener) throws IOException, SQLException {
+
+        try (Connection connection = connectionFactory.getConnection()) {
+
+            createCheckpointTableIfNotExists(connection);
+
+            connection.setAutoCommit(false);
+
+            Map<String, Object> checkpoint = new QueryRunner().query(
+                    connection,
+                    String.format(
+                            "SELECT byte_offset, row_number FROM %s WHERE table_name = ? AND fingerprint = ?",
+                            checkpointTableName),
+                    new MapHandler(),
+                    table.getName(),
+                    fingerprint);
+
+            long offset = checkpoint == null ? 0 : ((Number) checkpoint.get("byte_offset")).longValue();
+            long loadedCount = checkpoint == null ? 0 : ((Number) checkpoint.get("row_number")).longValue();
+
+            int chunkSize = checkpointBytes > 0 ? checkpointBytes : DEFAULT_CHUNK_SIZE;
+            int maxRecords = checkpointRows > 0 ? checkpointRows : Integer.MAX_VALUE;
+
+            try (CsvChunkReader chunkReader = new CsvChunkReader(opener.open(offset), chunkSize)) {
+
+                if (offset == 0) {
+                    // 最初から読み込む場合はヘッダを読み飛ばす
+                    byte[] header = chunkReader.readRecord();
+                    offset += header == null ? 0 : header.length;
+                }
+
+                byte[] chunk;
+                while ((chunk = chunkReader.readChunk(maxRecords)) != null) {
+
+                    loadedCount += copy(connection, table, chunk);
+                    offset += chunk.length;
+
+                    saveCheckpoint(connection, table.getName(), fingerprint, offset, loadedCount);
+                    commit(connection);
+                }
+            }
+
+            // 完了したら、次回は最初からロードされるようにチェックポイントを削除
+            new QueryRunner().update(
+                    connection,
+                    String.format("DELETE FROM %s WHERE table_name = ? AND fingerprint = ?", checkpointTableName),
+                    table.getName(),
+                    fingerprint);
+            commit(connection);
+
+            return loadedCount;
+        }
+    }
+
+    /**
+     * ファイルのフィンガープリントを計算します。
+     * <p>サイズ、更新日時と、先頭部分のハッシュ値から計算します。</p>
+     *
+     * @param path ファイルのパス
+     * @return フィンガープリント
+     * @throws IOException
+     */
+    static String fingerprint(Path path) throws IOException {
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        byte[] buffer = new byte[64 * 1024];
+        long remaining = FINGERPRINT_HEAD_SIZE;
+        try (InputStream in = Files.newInputStream(path)) {
+            int readSize;
+            while (remaining > 0
+                    && (readSize = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                digest.update(buffer, 0, readSize);
+                remaining -= readSize;
+            }
+        }
+
+        StringBuilder fingerprint = new StringBuilder();
+        fingerprint.append(Files.size(path))
+                .append(':')
+                .append(Files.getLastModifiedTime(path).toMillis())
+                .append(':');
+        for (byte b : digest.digest()) {
+            fingerprint.append(String.format("%02x", b));
+        }
+
+        return fingerprint.toString();
+    }
+
+    private long copy(Connection connection, Table table, byte[] chunk) throws IOException, SQLException {
+
+        InputStream chunkStream = new ByteArrayInputStream(chunk);
+
+        if (copyFormat == CopyFormat.BINARY) {
+            return table.loadBinaryChunk(
+                    connection,
+                    new InputStreamReader(chunkStream, charset),
+                    metrics);
+        }
+
+        if (passThrough) {
+            return table.load(connection, chunkStream, false, charset, metrics);
+        }
+
+        return table.load(connection, new InputStreamReader(chunkStream, charset), false, metrics);
+    }
+
+    private void createCheckpointTableIfNotExists(Connection connection) throws SQLException {
+
+        new QueryRunner().update(
+                connection,
+                String.format(
+                        "CREATE TABLE IF NOT EXISTS %s ("
+                                + "table_name text, fingerprint text, byte_offset bigint, row_number bigint,"
+                                + " updated_at timestamp with time zone, PRIMARY KEY (table_name, fingerprint))",
+                        checkpointTableName));
+    }
+
+    private void saveCheckpoint(
+            Connection connection, String tableName, String fingerprint, long offset, long loadedCount)
+            throws SQLException {
+
+        new QueryRunner().update(
+                connection,
+                String.format(
+                        "INSERT INTO %s (table_name, fingerprint, byte_offset, row_number, updated_at)"
+                                + " VALUES (?, ?, ?, ?, now())"
+                                + " ON CONFLICT (table_name, fingerprint) DO UPDATE"
+                                + " SET byte_offset = EXCLUDED.byte_offset, row_number = EXCLUDED.row_number,"
+                                + " updated_at = EXCLUDED.updated_at",
+                        checkpointTableName),
+                tableName,
+                fingerprint,
+                offset,
+                loadedCount);
+    }
+
+    private void commit(Connection connection) throws SQLException {
+
+        long startNanos = System.nanoTime();
+        connection.commit();
+        metrics.addElapsed(LoadStage.COMMIT, startNanos);
+    }
+
+    @FunctionalInterface
+    interface StreamOpener {
+
+        /**
+         * 指定位置から読み込むストリームを開きます。
+         *
+         * @param offset 位置 (BOMを除いた先頭からのバイト数)
+         * @return ストリーム
+         * @throws IOException
+         */
+        InputStream open(long offset) throws IOException;
+    }
+}
@@ -0,0 +1,79 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.BooleanSupplier;
+
+/**
+ * キューに積まれたチャンクを順に読み込むInputStreamです。
+ * <p>空のチャンクを終端として扱います。</p>
+ */
+class ChunkQueueInputStream extends InputStream {
+
+    static final byte[] END_OF_CHUNKS = new byte[0];
+
+    private final BlockingQueue<byte[]> queue;
+
+    private final BooleanSupplier aborted;
+
+    private byte[] current;
+
+    private int position;
+
+    private boolean end;
+
+    ChunkQueueInputStream(BlockingQueue<byte[]> queue, BooleanSupplier aborted) {
+        this.queue = queue;
+        this.aborted = aborted;
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+        if (len == 0) {
+            return 0;
+        }
+
+        while (current == null || position == current.length) {
+            if (end) {
+                return -1;
+            }
+            nextChunk();
+        }
+
+        int readSize = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, readSize);
+        position += readSize;
+
+        return readSize;
+    }
+
+    private void nextChunk() throws IOException {
+
+        try {
+            current = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        position = 0;
+
+        if (aborted.getAsBoolean()) {
+            // 他のスレッドで失敗している場合には、途中までのデータを登録させないようにエラーとする
+            throw new LoadAbortedException();
+        }
+
+        if (current == END_OF_CHUNKS) {
+            end = true;
+        }
+    }
+}
@@ -17,10 +17,29 @@ public class Column {
 
     private final String name;
 
+    private final ColumnType type;
+
     public static Column of(String baseName) {
+        return of(baseName, ColumnType.TEXT);
+    }
+
+    public static Column of(String baseName, ColumnType type) {
+        return new Column(normalizeName(baseName), type);
+    }
+
+    /**
+     * 名前をカラム名やテーブル名として使用できる形式に変換します。
+     *
+     * @param baseName 元となる名前
+     * @return 変換後の名前
+     */
+    public static String normalizeName(String baseName) {
+
+        // 使用しない文字の場合には、アンダースコアに置換
+        return UNUSABLE_CHARACTERS_IN_COLUMN_NAME.matcher(baseName).replaceAll("_").toLowerCase();
+    }
 
-        // 使用しない文字の場合には、アンダースコアに置換してカラム名に
-        return new Column(
-                UNUSABLE_CHARACTERS_IN_COLUMN_NAME.matcher(baseName).replaceAll("_").toLowerCase());
+    public Column withType(ColumnType type) {
+        return new Column(name, type);
     }
 }
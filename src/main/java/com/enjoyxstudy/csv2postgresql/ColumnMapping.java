@@ -0,0 +1,106 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * CSVのフィールドとテーブルのカラムの対応です。
+ * <p>ロード対象とするフィールドの選択、並び替え、カラム名の変更と、固定値のカラムの追加を表します。
+ * フィールドはヘッダ名をカラム名の形式に変換した名前で指定します。</p>
+ */
+@Value
+@Builder
+public class ColumnMapping {
+
+    /**
+     * 対応の指定が無い状態です。
+     */
+    public static final ColumnMapping NONE = ColumnMapping.builder().build();
+
+    /**
+     * フィールド名と、ロード先のカラム名の対応です。(指定の無いフィールドは同じ名前のカラムとなります)
+     */
+    @Builder.Default
+    private final Map<String, String> columnNames = Collections.emptyMap();
+
+    /**
+     * ロード対象とするフィールド名です。記述した順にロードします。(空の場合は全てのフィールド)
+     */
+    @Builder.Default
+    private final List<String> includeColumns = Collections.emptyList();
+
+    /**
+     * ロード対象外とするフィールド名です。
+     */
+    @Builder.Default
+    private final List<String> excludeColumns = Collections.emptyList();
+
+    /**
+     * 全てのレコードに固定値を設定するカラム名と値です。
+     */
+    @Builder.Default
+    private final Map<String, String> constantColumns = Collections.emptyMap();
+
+    public static ColumnMapping of(Config config) {
+
+        return ColumnMapping.builder()
+                .columnNames(config.getCsvColumnMapping())
+                .includeColumns(config.getCsvIncludeColumns())
+                .excludeColumns(config.getCsvExcludeColumns())
+                .constantColumns(config.getCsvConstantColumns())
+                .build();
+    }
+
+    /**
+     * 対応の指定が無いかどうかを判定します。
+     *
+     * @return 指定が無い場合{@code true}
+     */
+    public boolean isEmpty() {
+        return columnNames.isEmpty() && includeColumns.isEmpty() && excludeColumns.isEmpty() && constantColumns.isEmpty();
+    }
+
+    /**
+     * ロード対象とするフィールドのインデックスを、ロードする順に取得します。
+     *
+     * @param fieldNames CSVのフィールド名
+     * @return フィールドのインデックス
+     */
+    public int[] selectIndexes(List<String> fieldNames) {
+
+        List<Integer> indexes = new ArrayList<>();
+        if (includeColumns.isEmpty()) {
+            for (int i = 0; i < fieldNames.size(); i++) {
+                indexes.add(i);
+            }
+        } else {
+            for (String includeColumn : includeColumns) {
+                int index = fieldNames.indexOf(includeColumn);
+                if (index == -1) {
+                    throw new IllegalArgumentException("Included column is not found in CSV header: " + includeColumn);
+                }
+                indexes.add(index);
+            }
+        }
+
+        return indexes.stream()
+                .filter(index -> !excludeColumns.contains(fieldNames.get(index)))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /**
+     * フィールドをロードするカラムの名前を取得します。
+     *
+     * @param fieldName フィールド名
+     * @return カラム名
+     */
+    public String columnNameOf(String fieldName) {
+        return columnNames.getOrDefault(fieldName, fieldName);
+    }
+}
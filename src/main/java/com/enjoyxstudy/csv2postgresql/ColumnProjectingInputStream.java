@@ -0,0 +1,227 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CSVのバイト列から、ロード対象のフィールドのみを抜き出したCSVのバイト列を生成するストリームです。
+ * <p>フィールドはデコードせずにクォートも含めてそのまま出力するため、空文字とNULLの区別など、COPYでの解釈は変わりません。
+ * ヘッダはカラム名に変換して出力し、固定値のカラムは各レコードの末尾に追加します。
+ * 区切り文字、クォート、改行がASCIIと同じバイトで表現されるエンコーディングのみを対象とします。</p>
+ */
+class ColumnProjectingInputStream extends InputStream {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte COMMA = ',';
+
+    private static final byte LF = '\n';
+
+    private final InputStream inputStream;
+
+    private final ColumnMapping mapping;
+
+    private final Charset charset;
+
+    private final CsvTokenizer tokenizer = new CsvTokenizer();
+
+    private byte[] buffer = new byte[BUFFER_SIZE];
+
+    /** 読み込み中のレコードの開始位置です。 */
+    private int position;
+
+    private int limit;
+
+    private boolean eof;
+
+    /** 次のレコードの開始位置です。(分割済みのレコードが無い場合は-1) */
+    private int nextPosition = -1;
+
+    private long recordNumber;
+
+    /** ヘッダのフィールド数です。 */
+    private int headerFieldCount;
+
+    private int[] indexes;
+
+    /** 各レコードの末尾に追加する固定値のバイト列です。(区切り文字と改行を含みます) */
+    private byte[] constantValues;
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream(BUFFER_SIZE);
+
+    private byte[] outputBytes = new byte[0];
+
+    private int outputPosition;
+
+    ColumnProjectingInputStream(InputStream inputStream, ColumnMapping mapping, Charset charset) {
+        this.inputStream = inputStream;
+        this.mapping = mapping;
+        this.charset = charset;
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        byte[] single = new byte[1];
+        int readSize = read(single, 0, 1);
+        return readSize == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+        if (len == 0) {
+            return 0;
+        }
+
+        if (outputPosition == outputBytes.length && !fillOutput()) {
+            return -1;
+        }
+
+        int readSize = Math.min(len, outputBytes.length - outputPosition);
+        System.arraycopy(outputBytes, outputPosition, b, off, readSize);
+        outputPosition += readSize;
+
+        return readSize;
+    }
+
+    private boolean fillOutput() throws IOException {
+
+        output.reset();
+
+        // 小さなレコードでも効率よく読み込めるよう、ある程度まとめて変換
+        while (output.size() < BUFFER_SIZE && readRecord()) {
+            recordNumber++;
+            if (indexes == null) {
+                writeHeader();
+            } else {
+                writeRecord();
+            }
+        }
+
+        outputBytes = output.toByteArray();
+        outputPosition = 0;
+
+        return outputBytes.length > 0;
+    }
+
+    private void writeHeader() throws IOException {
+
+        List<String> fieldNames = new ArrayList<>();
+        for (int i = 0; i < tokenizer.getFieldCount(); i++) {
+            fieldNames.add(Column.normalizeName(tokenizer.decodeField(buffer, i, charset)));
+        }
+
+        headerFieldCount = tokenizer.getFieldCount();
+        indexes = mapping.selectIndexes(fieldNames);
+
+        output.write(String.join(",", columnNamesOf(mapping, fieldNames)).getBytes(charset));
+        output.write(LF);
+
+        StringBuilder constants = new StringBuilder();
+        for (String value : mapping.getConstantColumns().values()) {
+            if (constants.length() > 0 || indexes.length > 0) {
+                constants.append(',');
+            }
+            // 空文字の場合はクォートせず、NULLとする
+            if (!value.isEmpty()) {
+                constants.append('"').append(value.replace("\"", "\"\"")).append('"');
+            }
+        }
+        constants.append('\n');
+        constantValues = constants.toString().getBytes(charset);
+    }
+
+    private void writeRecord() throws IOException {
+
+        if (tokenizer.getFieldCount() != headerFieldCount) {
+            throw new IOException(
+                    String.format(
+                            "The number of fields does not match the number of columns. (Record number: %,d)",
+                            recordNumber));
+        }
+
+        for (int i = 0; i < indexes.length; i++) {
+            if (i != 0) {
+                output.write(COMMA);
+            }
+            int start = tokenizer.getFieldStart(indexes[i]);
+            output.write(buffer, start, tokenizer.getFieldEnd(indexes[i]) - start);
+        }
+        output.write(constantValues);
+    }
+
+    /**
+     * 1レコード分を読み込み、フィールド毎に分割します。
+     * <p>分割したレコードはバッファの読み込み位置から始まり、次に呼び出すまで有効です。</p>
+     *
+     * @return 読み込んだ場合{@code true}、終端に達している場合{@code false}
+     * @throws IOException
+     */
+    private boolean readRecord() throws IOException {
+
+        if (nextPosition != -1) {
+            position = nextPosition;
+        }
+
+        while (true) {
+            nextPosition = tokenizer.tokenize(buffer, position, limit, eof);
+            if (nextPosition != -1) {
+                return true;
+            }
+            if (eof) {
+                return false;
+            }
+
+            fill();
+        }
+    }
+
+    private void fill() throws IOException {
+
+        // 読み込み中のレコードをバッファの先頭に寄せ、1レコードがバッファに収まらない場合には拡張
+        System.arraycopy(buffer, position, buffer, 0, limit - position);
+        limit -= position;
+        position = 0;
+
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        int readSize = inputStream.read(buffer, limit, buffer.length - limit);
+        if (readSize == -1) {
+            eof = true;
+            return;
+        }
+
+        limit += readSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+
+    /**
+     * 固定値のカラムを含め、出力するカラム名を取得します。
+     *
+     * @param mapping フィールドとカラムの対応
+     * @param fieldNames CSVのフィールド名
+     * @return カラム名
+     */
+    private static List<String> columnNamesOf(ColumnMapping mapping, List<String> fieldNames) {
+
+        List<String> columnNames = new ArrayList<>();
+        for (int index : mapping.selectIndexes(fieldNames)) {
+            columnNames.add(mapping.columnNameOf(fieldNames.get(index)));
+        }
+        columnNames.addAll(mapping.getConstantColumns().keySet());
+
+        return columnNames;
+    }
+}
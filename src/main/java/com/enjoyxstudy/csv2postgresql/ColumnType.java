@@ -0,0 +1,59 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * カラムの型です。
+ */
+public enum ColumnType {
+
+    TEXT("text", "text", "varchar", "bpchar", "name"),
+
+    INTEGER("integer", "int4"),
+
+    BIGINT("bigint", "int8"),
+
+    DOUBLE("double precision", "float8"),
+
+    NUMERIC("numeric", "numeric"),
+
+    BOOLEAN("boolean", "bool"),
+
+    DATE("date", "date"),
+
+    TIMESTAMP("timestamp", "timestamp");
+
+    /**
+     * DDLで使用する型名です。
+     */
+    @Getter
+    private final String sqlName;
+
+    /**
+     * pg_typeでの型名です。
+     */
+    private final List<String> typeNames;
+
+    private ColumnType(String sqlName, String... typeNames) {
+        this.sqlName = sqlName;
+        this.typeNames = Collections.unmodifiableList(Arrays.asList(typeNames));
+    }
+
+    /**
+     * pg_typeでの型名から型を取得します。
+     *
+     * @param typeName pg_typeでの型名
+     * @return 型 (対応していない型の場合には{@code null})
+     */
+    public static ColumnType ofTypeName(String typeName) {
+
+        return Arrays.stream(values())
+                .filter(type -> type.typeNames.contains(typeName))
+                .findFirst()
+                .orElse(null);
+    }
+}
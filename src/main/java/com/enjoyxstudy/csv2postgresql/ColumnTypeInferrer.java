@@ -0,0 +1,207 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.commons.csv.CSVRecord;
+
+/**
+ * CSVの値からカラムの型を推測するクラスです。
+ * <p>レコードを受け取るたびに、それまでの値と新しい値の両方を表現できる型に広げていきます。
+ * 空の値はNULLとして扱い、型の推測には使いません。</p>
+ */
+public class ColumnTypeInferrer {
+
+    /**
+     * 整数のパターンです。 (先頭が0埋めされた値はコード値の可能性があるため対象外)
+     */
+    private static final Pattern INTEGER_PATTERN = Pattern.compile("[+-]?(0|[1-9][0-9]*)");
+
+    private static final Pattern DECIMAL_PATTERN = Pattern.compile("[+-]?([0-9]+\\.[0-9]*|\\.[0-9]+)");
+
+    private static final Pattern DOUBLE_PATTERN = Pattern.compile("[+-]?([0-9]+\\.?[0-9]*|\\.[0-9]+)[eE][+-]?[0-9]+");
+
+    private static final Pattern BOOLEAN_PATTERN = Pattern.compile("(?i)true|false");
+
+    private static final Pattern DATE_PATTERN = Pattern.compile("[0-9]{4}[-/][0-9]{1,2}[-/][0-9]{1,2}");
+
+    private static final Pattern TIMESTAMP_PATTERN = Pattern.compile(
+            "[0-9]{4}[-/][0-9]{1,2}[-/][0-9]{1,2}[ T][0-9]{2}:[0-9]{2}(:[0-9]{2}(\\.[0-9]{1,9})?)?");
+
+    private static final BigInteger BIGINT_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+
+    private static final BigInteger BIGINT_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    /**
+     * 推測中の型です。 (値が無く未確定のカラムは{@code null})
+     */
+    private final ColumnType[] types;
+
+    public ColumnTypeInferrer(int columnCount) {
+        this.types = new ColumnType[columnCount];
+    }
+
+    /**
+     * レコードの値を推測に反映します。
+     *
+     * @param record レコード
+     * @return 型を広げたカラムがあった場合{@code true}
+     */
+    public boolean accept(CSVRecord record) {
+
+        boolean widened = false;
+        for (int i = 0; i < Math.min(record.size(), types.length); i++) {
+            widened |= accept(i, record.get(i));
+        }
+        return widened;
+    }
+
+    /**
+     * レコードの値を推測に反映します。
+     *
+     * @param values レコードの値
+     * @return 型を広げたカラムがあった場合{@code true}
+     */
+    public boolean accept(String[] values) {
+
+        boolean widened = false;
+        for (int i = 0; i < Math.min(values.length, types.length); i++) {
+            widened |= accept(i, values[i]);
+        }
+        return widened;
+    }
+
+    /**
+     * 推測した型をカラムに反映します。
+     * <p>値が無く未確定のカラムは、textとして確定させます。</p>
+     *
+     * @param columns カラム
+     * @return 型を反映したカラム
+     */
+    public List<Column> apply(List<Column> columns) {
+
+        List<Column> typedColumns = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            if (i < types.length) {
+                if (types[i] == null) {
+                    types[i] = ColumnType.TEXT;
+                }
+                typedColumns.add(columns.get(i).withType(types[i]));
+            } else {
+                typedColumns.add(columns.get(i).withType(ColumnType.TEXT));
+            }
+        }
+        return typedColumns;
+    }
+
+    private boolean accept(int index, String value) {
+
+        ColumnType current = types[index];
+        if (current == ColumnType.TEXT || value.isEmpty()) {
+            // textより広い型は無いため、判定不要
+            return false;
+        }
+
+        ColumnType widened = widen(current, typeOf(value));
+        if (widened == current) {
+            return false;
+        }
+
+        types[index] = widened;
+
+        // 未確定から確定した場合は、型を広げたことにはならない
+        return current != null;
+    }
+
+    static ColumnType typeOf(String value) {
+
+        if (INTEGER_PATTERN.matcher(value).matches()) {
+            return integerTypeOf(value);
+        }
+
+        if (DECIMAL_PATTERN.matcher(value).matches()) {
+            return ColumnType.NUMERIC;
+        }
+
+        if (DOUBLE_PATTERN.matcher(value).matches()) {
+            return ColumnType.DOUBLE;
+        }
+
+        if (BOOLEAN_PATTERN.matcher(value).matches()) {
+            return ColumnType.BOOLEAN;
+        }
+
+        try {
+            if (DATE_PATTERN.matcher(value).matches()) {
+                ValueParser.parseDate(value);
+                return ColumnType.DATE;
+            }
+
+            if (TIMESTAMP_PATTERN.matcher(value).matches()) {
+                ValueParser.parseTimestamp(value);
+                return ColumnType.TIMESTAMP;
+            }
+        } catch (IllegalArgumentException e) {
+            // 存在しない日付などは文字列として扱う
+        }
+
+        return ColumnType.TEXT;
+    }
+
+    private static ColumnType integerTypeOf(String value) {
+
+        if (value.length() <= 10) {
+            long longValue = Long.parseLong(value);
+            if (longValue >= Integer.MIN_VALUE && longValue <= Integer.MAX_VALUE) {
+                return ColumnType.INTEGER;
+            }
+            return ColumnType.BIGINT;
+        }
+
+        BigInteger bigValue = new BigInteger(value);
+        if (bigValue.compareTo(BIGINT_MIN) >= 0 && bigValue.compareTo(BIGINT_MAX) <= 0) {
+            return ColumnType.BIGINT;
+        }
+        return ColumnType.NUMERIC;
+    }
+
+    /**
+     * 2つの型の両方の値を表現できる型を取得します。
+     *
+     * @param current 現在の型 ({@code null}の場合は未確定)
+     * @param other もう一方の型
+     * @return 両方の値を表現できる型
+     */
+    static ColumnType widen(ColumnType current, ColumnType other) {
+
+        if (current == null || current == other) {
+            return other;
+        }
+
+        if (isNumber(current) && isNumber(other)) {
+            if (current == ColumnType.DOUBLE || other == ColumnType.DOUBLE) {
+                // integer以外とdouble precisionの組み合わせは、精度を落とさないようnumericに
+                ColumnType another = current == ColumnType.DOUBLE ? other : current;
+                return another == ColumnType.INTEGER ? ColumnType.DOUBLE : ColumnType.NUMERIC;
+            }
+            return current.ordinal() > other.ordinal() ? current : other;
+        }
+
+        if (isDateTime(current) && isDateTime(other)) {
+            return ColumnType.TIMESTAMP;
+        }
+
+        return ColumnType.TEXT;
+    }
+
+    private static boolean isNumber(ColumnType type) {
+        return type == ColumnType.INTEGER || type == ColumnType.BIGINT
+                || type == ColumnType.NUMERIC || type == ColumnType.DOUBLE;
+    }
+
+    private static boolean isDateTime(ColumnType type) {
+        return type == ColumnType.DATE || type == ColumnType.TIMESTAMP;
+    }
+}
@@ -0,0 +1,25 @@
+package com.enjoyxstudy.csv2postgresql;
+
+/**
+ * 並列でロードする際のコミット方法です。
+ */
+public enum CommitMode {
+
+    /**
+     * 各ワーカーがそれぞれのロードの完了時にコミットします。
+     */
+    EACH,
+
+    /**
+     * 全ワーカーのロードが完了した時点で、まとめてコミットします。
+     * <p>いずれかのワーカーが失敗した場合には、全ワーカーがロールバックします。</p>
+     * <p>ただし、コミットは各ワーカーの接続毎に行うため、アトミックではありません。
+     * 一部のワーカーのコミットが成功した後に、他のワーカーのコミットが失敗した場合には、
+     * コミット済みの分はロードされたまま残ります。</p>
+     */
+    ALL;
+
+    public static CommitMode of(String name) {
+        return valueOf(name.toUpperCase());
+    }
+}
@@ -0,0 +1,444 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+
+/**
+ * 入力ファイルの圧縮形式です。
+ * <p>形式はファイル名ではなく、先頭のバイト列(マジックナンバー)で判定します。</p>
+ */
+public enum Compression {
+
+    NONE(new byte[0]) {
+
+        @Override
+        InputStream decompress(InputStream in) {
+            return in;
+        }
+    },
+
+    GZIP(new byte[] { 0x1f, (byte) 0x8b, 0x08 }, new GzipMembers()) {
+
+        @Override
+        InputStream decompress(InputStream in) throws IOException {
+            // 複数メンバーが連結されたものも続けて展開する
+            return new GzipCompressorInputStream(in, true);
+        }
+    },
+
+    ZIP(new byte[] { 0x50, 0x4b, 0x03, 0x04 }) {
+
+        @Override
+        InputStream decompress(InputStream in) throws IOException {
+
+            // 最初のファイルのエントリを対象とする
+            ZipInputStream zipStream = new ZipInputStream(in);
+            ZipEntry entry;
+            while ((entry = zipStream.getNextEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    return zipStream;
+                }
+            }
+
+            zipStream.close();
+            throw new ZipException("No file entry in zip.");
+        }
+    },
+
+    BZIP2(new byte[] { 0x42, 0x5a, 0x68 }) {
+
+        @Override
+        InputStream decompress(InputStream in) throws IOException {
+            return new BZip2CompressorInputStream(in, true);
+        }
+    },
+
+    ZSTD(new byte[] { 0x28, (byte) 0xb5, 0x2f, (byte) 0xfd }, new ZstdFrames()) {
+
+        @Override
+        InputStream decompress(InputStream in) throws IOException {
+            return new ZstdCompressorInputStream(in);
+        }
+    };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** 判定に使う先頭のバイト数です。 */
+    private static final int MAGIC_LENGTH = 4;
+
+    private final byte[] magic;
+
+    /** メンバー(フレーム)の形式です。(並列に展開できない形式の場合は{@code null}) */
+    private final MemberFormat memberFormat;
+
+    private Compression(byte[] magic) {
+        this(magic, null);
+    }
+
+    private Compression(byte[] magic, MemberFormat memberFormat) {
+        this.magic = magic;
+        this.memberFormat = memberFormat;
+    }
+
+    /**
+     * ファイルの圧縮形式を判定します。
+     *
+     * @param path ファイルのパス
+     * @return 圧縮形式
+     * @throws IOException
+     */
+    public static Compression detect(Path path) throws IOException {
+
+        try (InputStream in = Files.newInputStream(path)) {
+            return detect(in);
+        }
+    }
+
+    private static Compression detect(InputStream in) throws IOException {
+
+        byte[] head = new byte[MAGIC_LENGTH];
+        int length = 0;
+        int readSize;
+        while (length < head.length && (readSize = in.read(head, length, head.length - length)) != -1) {
+            length += readSize;
+        }
+
+        for (Compression compression : values()) {
+            if (compression != NONE
+                    && length >= compression.magic.length
+                    && compression.startsWith(head, 0)) {
+                return compression;
+            }
+        }
+
+        return NONE;
+    }
+
+    /**
+     * ファイルを開き、圧縮されている場合には展開しながら読み込むストリームを返します。
+     *
+     * @param path ファイルのパス
+     * @param parallelSize 展開に使うスレッド数 (並列に展開できる形式の場合のみ)
+     * @return 展開後のバイト列を読み込むストリーム
+     * @throws IOException
+     */
+    public static InputStream open(Path path, int parallelSize) throws IOException {
+        return open(path, detect(path), parallelSize);
+    }
+
+    /**
+     * 判定済みの圧縮形式で、ファイルを開きます。
+     *
+     * @param path ファイルのパス
+     * @param compression 圧縮形式
+     * @param parallelSize 展開に使うスレッド数 (並列に展開できる形式の場合のみ)
+     * @return 展開後のバイト列を読み込むストリーム
+     * @throws IOException
+     */
+    public static InputStream open(Path path, Compression compression, int parallelSize) throws IOException {
+        return open(path, compression, parallelSize, 0);
+    }
+
+    /**
+     * 判定済みの圧縮形式で、展開中に保持するバイト数の上限を指定してファイルを開きます。
+     *
+     * @param path ファイルのパス
+     * @param compression 圧縮形式
+     * @param parallelSize 展開に使うスレッド数 (並列に展開できる形式の場合のみ)
+     * @param memoryBudget 並列に展開する際に保持するバイト数の上限 (0の場合は制限しない)
+     * @return 展開後のバイト列を読み込むストリーム
+     * @throws IOException
+     */
+    public static InputStream open(Path path, Compression compression, int parallelSize, long memoryBudget)
+            throws IOException {
+
+        if (compression == NONE) {
+            return Files.newInputStream(path);
+        }
+
+        InputStream in = new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE);
+        try {
+            if (parallelSize > 1 && compression.isParallelizable()) {
+                return new ParallelDecompressingInputStream(in, compression, parallelSize, memoryBudget);
+            }
+
+            return compression.decompress(in);
+
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * ストリームの先頭から圧縮形式を判定し、圧縮されている場合には展開しながら読み込むストリームを返します。
+     * <p>標準入力などの、開き直せないストリームを対象とします。</p>
+     *
+     * @param in ストリーム
+     * @param parallelSize 展開に使うスレッド数 (並列に展開できる形式の場合のみ)
+     * @return 展開後のバイト列を読み込むストリーム
+     * @throws IOException
+     */
+    public static InputStream open(InputStream in, int parallelSize) throws IOException {
+        return open(in, parallelSize, 0);
+    }
+
+    /**
+     * ストリームの先頭から圧縮形式を判定し、展開中に保持するバイト数の上限を指定して開きます。
+     *
+     * @param in ストリーム
+     * @param parallelSize 展開に使うスレッド数 (並列に展開できる形式の場合のみ)
+     * @param memoryBudget 並列に展開する際に保持するバイト数の上限 (0の場合は制限しない)
+     * @return 展開後のバイト列を読み込むストリーム
+     * @throws IOException
+     */
+    public static InputStream open(InputStream in, int parallelSize, long memoryBudget) throws IOException {
+
+        // 判定に読み込んだ先頭のバイト列は戻しておく
+        InputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(MAGIC_LENGTH);
+        Compression compression = detect(buffered);
+        buffered.reset();
+
+        if (compression == NONE) {
+            return buffered;
+        }
+
+        if (parallelSize > 1 && compression.isParallelizable()) {
+            return new ParallelDecompressingInputStream(buffered, compression, parallelSize, memoryBudget);
+        }
+
+        return compression.decompress(buffered);
+    }
+
+    abstract InputStream decompress(InputStream in) throws IOException;
+
+    /**
+     * 独立して展開できる単位(gzipのメンバー、zstdのフレーム)に分けて、並列に展開できるかどうかです。
+     *
+     * @return 並列に展開できる場合{@code true}
+     */
+    boolean isParallelizable() {
+        return memberFormat != null;
+    }
+
+    /**
+     * メンバー(フレーム)の形式を取得します。
+     *
+     * @return メンバーの形式 (並列に展開できない形式の場合は{@code null})
+     */
+    MemberFormat getMemberFormat() {
+        return memberFormat;
+    }
+
+    private boolean startsWith(byte[] data, int position) {
+
+        for (int i = 0; i < magic.length; i++) {
+            if (data[position + i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] readFully(InputStream in, int maxSize) throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int readSize;
+        while ((readSize = in.read(buffer)) != -1) {
+            out.write(buffer, 0, readSize);
+            if (out.size() > maxSize) {
+                throw new SegmentTooLargeException();
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * gzipのメンバーです。
+     */
+    private static final class GzipMembers implements MemberFormat {
+
+        private static final int FLAG_HEADER_CRC = 0x02;
+
+        private static final int FLAG_EXTRA = 0x04;
+
+        private static final int FLAG_NAME = 0x08;
+
+        private static final int FLAG_COMMENT = 0x10;
+
+        @Override
+        public int getHeaderLength() {
+            return 4;
+        }
+
+        @Override
+        public boolean isMemberStart(byte[] data, int position) {
+            // 予約済みのフラグが立っているものは、ヘッダではない
+            return GZIP.startsWith(data, position) && (data[position + 3] & 0xe0) == 0;
+        }
+
+        @Override
+        public byte[] decompressMembers(byte[] data, int maxSize) throws IOException {
+
+            // GZIPInputStreamは末尾の不正なデータを無視するため、メンバーの区切りを厳密に確認できるよう個別に解析する
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            Inflater inflater = new Inflater(true);
+            CRC32 crc = new CRC32();
+
+            try {
+                int position = 0;
+                while (position < data.length) {
+
+                    position = skipGzipHeader(data, position);
+
+                    inflater.reset();
+                    inflater.setInput(data, position, data.length - position);
+                    crc.reset();
+
+                    long size = 0;
+                    while (!inflater.finished()) {
+                        int inflatedSize;
+                        try {
+                            inflatedSize = inflater.inflate(buffer);
+                        } catch (DataFormatException e) {
+                            throw new ZipException(e.getMessage());
+                        }
+
+                        if (inflatedSize == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                            throw new EOFException("Unexpected end of GZIP member.");
+                        }
+
+                        crc.update(buffer, 0, inflatedSize);
+                        out.write(buffer, 0, inflatedSize);
+                        size += inflatedSize;
+
+                        if (out.size() > maxSize) {
+                            throw new SegmentTooLargeException();
+                        }
+                    }
+
+                    // トレーラ(CRC32、展開後のサイズ)
+                    position = data.length - inflater.getRemaining();
+                    if (data.length - position < 8) {
+                        throw new EOFException("Unexpected end of GZIP trailer.");
+                    }
+                    if (readIntLE(data, position) != (int) crc.getValue()
+                            || readIntLE(data, position + 4) != (int) size) {
+                        throw new ZipException("Corrupt GZIP trailer.");
+                    }
+                    position += 8;
+                }
+
+            } finally {
+                inflater.end();
+            }
+
+            return out.toByteArray();
+        }
+
+        private int skipGzipHeader(byte[] data, int position) throws IOException {
+
+            if (data.length - position < 10 || !isMemberStart(data, position)) {
+                throw new ZipException("Not in GZIP format.");
+            }
+
+            int flags = data[position + 3] & 0xff;
+            position += 10;
+
+            if ((flags & FLAG_EXTRA) != 0) {
+                checkAvailable(data, position, 2);
+                position += 2 + ((data[position] & 0xff) | (data[position + 1] & 0xff) << 8);
+            }
+            if ((flags & FLAG_NAME) != 0) {
+                position = skipZeroTerminated(data, position);
+            }
+            if ((flags & FLAG_COMMENT) != 0) {
+                position = skipZeroTerminated(data, position);
+            }
+            if ((flags & FLAG_HEADER_CRC) != 0) {
+                position += 2;
+            }
+
+            checkAvailable(data, position, 0);
+            return position;
+        }
+
+        private static int skipZeroTerminated(byte[] data, int position) throws IOException {
+
+            while (true) {
+                checkAvailable(data, position, 1);
+                if (data[position++] == 0) {
+                    return position;
+                }
+            }
+        }
+
+        private static void checkAvailable(byte[] data, int position, int length) throws EOFException {
+
+            if (position + length > data.length) {
+                throw new EOFException("Unexpected end of GZIP header.");
+            }
+        }
+
+        private static int readIntLE(byte[] data, int position) {
+
+            return (data[position] & 0xff)
+                    | (data[position + 1] & 0xff) << 8
+                    | (data[position + 2] & 0xff) << 16
+                    | (data[position + 3] & 0xff) << 24;
+        }
+    }
+
+    /**
+     * zstdのフレームです。
+     */
+    private static final class ZstdFrames implements MemberFormat {
+
+        @Override
+        public int getHeaderLength() {
+            return 4;
+        }
+
+        @Override
+        public boolean isMemberStart(byte[] data, int position) {
+            return ZSTD.startsWith(data, position);
+        }
+
+        @Override
+        public byte[] decompressMembers(byte[] data, int maxSize) throws IOException {
+
+            // フレームが途中で終わっている場合には、例外となる
+            try (InputStream in = new ZstdCompressorInputStream(new ByteArrayInputStream(data))) {
+                return readFully(in, maxSize);
+            }
+        }
+    }
+
+    /**
+     * 展開後のサイズが上限を超えたことを表す例外です。
+     */
+    static class SegmentTooLargeException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+    }
+}
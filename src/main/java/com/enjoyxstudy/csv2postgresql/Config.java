@@ -4,13 +4,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.stream.Collectors;
 
 import lombok.Builder;
 import lombok.Value;
 
 @Value
-@Builder
+@Builder(toBuilder = true)
 public class Config {
 
     private final String databaseUrl;
@@ -19,10 +25,177 @@ public class Config {
 
     private final String databasePassword;
 
+    /**
+     * 使い回すために保持するコネクション数です。(0の場合はロード毎に接続)
+     */
+    private final int databasePoolSize;
+
+    /**
+     * プールで接続するコネクション数の上限です。(0の場合は上限無し)
+     */
+    private final int databasePoolMaxSize;
+
+    /**
+     * プールのコネクション数が上限に達している場合に、返却を待つ時間(ミリ秒)です。
+     */
+    @Builder.Default
+    private final long databasePoolWaitMillis = 30000;
+
+    /**
+     * テーブルの存在有無とカラムの型をキャッシュする期間(ミリ秒)です。(0の場合はキャッシュしない)
+     */
+    private final long databaseMetadataCacheMillis;
+
     private final int batchInsertSize;
 
+    /**
+     * 1バッチの登録にかける目標の時間(ミリ秒)です。(0の場合はバッチの件数を変更しない)
+     */
+    private final long batchTargetMillis;
+
+    @Builder.Default
+    private final int batchMinSize = 10;
+
+    @Builder.Default
+    private final int batchMaxSize = 50000;
+
+    /**
+     * 1バッチのバイト数の上限です。
+     */
+    @Builder.Default
+    private final long batchMaxBytes = 32 * 1024 * 1024;
+
+    @Builder.Default
+    private final InsertStrategy insertStrategy = InsertStrategy.BATCH;
+
+    private final int insertQueueSize;
+
+    @Builder.Default
+    private final int insertWriterSize = 1;
+
     private final String csvEncoding;
 
+    /**
+     * フィールド名と、ロード先のカラム名の対応です。
+     */
+    @Builder.Default
+    private final Map<String, String> csvColumnMapping = Collections.emptyMap();
+
+    /**
+     * ロード対象とするフィールド名です。(空の場合は全てのフィールド)
+     */
+    @Builder.Default
+    private final List<String> csvIncludeColumns = Collections.emptyList();
+
+    @Builder.Default
+    private final List<String> csvExcludeColumns = Collections.emptyList();
+
+    /**
+     * 全てのレコードに固定値を設定するカラム名と値です。
+     */
+    @Builder.Default
+    private final Map<String, String> csvConstantColumns = Collections.emptyMap();
+
+    @Builder.Default
+    private final int decompressionParallelSize = 1;
+
+    /**
+     * UTF-8以外のCSVを、並列にUTF-8に変換するスレッド数です。
+     */
+    @Builder.Default
+    private final int transcodeParallelSize = 1;
+
+    private final int copyParallelSize;
+
+    @Builder.Default
+    private final CommitMode copyCommitMode = CommitMode.ALL;
+
+    @Builder.Default
+    private final CopyFormat copyFormat = CopyFormat.CSV;
+
+    /**
+     * COPYでCSVのバイト列を変換せずに送信し、サーバ側でエンコーディングを変換するかどうかです。
+     */
+    private final boolean copyServerTranscode;
+
+    /**
+     * 別スレッドで先読みするバッファのサイズです。
+     */
+    @Builder.Default
+    private final int copyBufferSize = 1024 * 1024;
+
+    /**
+     * 別スレッドで先読みするバッファ数です。(0の場合は先読みしない)
+     */
+    private final int copyBufferCount;
+
+    @Builder.Default
+    private final TypeInference typeInference = TypeInference.NONE;
+
+    @Builder.Default
+    private final int typeInferenceSampleSize = 1000;
+
+    @Builder.Default
+    private final int loadWorkerSize = 1;
+
+    @Builder.Default
+    private final LoadMode loadMode = LoadMode.APPEND;
+
+    @Builder.Default
+    private final int loadIndexParallelSize = 1;
+
+    /**
+     * {@link LoadMode#UPSERT}の場合に、レコードを特定するキーのカラム名です。
+     */
+    @Builder.Default
+    private final List<String> loadUpsertKeys = Collections.emptyList();
+
+    /**
+     * チェックポイントを記録する間隔のバイト数です。(0の場合はバイト数では区切らない)
+     */
+    private final int loadCheckpointBytes;
+
+    /**
+     * チェックポイントを記録する間隔の件数です。(0の場合は件数では区切らない)
+     */
+    private final int loadCheckpointRows;
+
+    @Builder.Default
+    private final String loadCheckpointTable = "csv2postgresql_checkpoint";
+
+    /**
+     * 不正なレコードを除外してロードする場合に、除外したレコードを出力するファイルのパスです。(除外しない場合は{@code null})
+     */
+    private final String loadRejectFile;
+
+    @Builder.Default
+    private final long loadRejectLimit = Long.MAX_VALUE;
+
+    /**
+     * パーティションテーブルへのCOPYで、レコードをクライアント側で振り分けるかどうかです。
+     */
+    private final boolean loadPartitionRouting;
+
+    /**
+     * 存在しないパーティションを作成する際の範囲の単位です。({@code day}、{@code month}、{@code year}、整数の幅、作成しない場合は{@code null})
+     */
+    private final String loadPartitionInterval;
+
+    /**
+     * ロード中にバッファとして保持するバイト数の上限です。(0の場合は制限しない)
+     */
+    private final long loadMemoryBudget;
+
+    @Builder.Default
+    private final long metricsIntervalMillis = 1000;
+
+    /**
+     * 進捗をJSON Lines形式で出力するファイルのパスです。(出力しない場合は{@code null})
+     */
+    private final String metricsProgressLog;
+
+    private final boolean metricsJmx;
+
     public static Config of(Path configFilePath) throws IOException {
 
         Properties properties = new Properties();
@@ -34,10 +207,126 @@ public class Config {
                     .databaseUrl(properties.getProperty("database.url"))
                     .databaseUser(properties.getProperty("database.user"))
                     .databasePassword(properties.getProperty("database.password"))
+                    // デフォルトはコネクションを使い回さない
+                    .databasePoolSize(Integer.parseInt(properties.getProperty("database.pool-size", "0")))
+                    .databasePoolMaxSize(Integer.parseInt(properties.getProperty("database.pool-max-size", "0")))
+                    .databasePoolWaitMillis(
+                            Long.parseLong(properties.getProperty("database.pool-wait-millis", "30000")))
+                    .databaseMetadataCacheMillis(
+                            Long.parseLong(properties.getProperty("database.metadata-cache-millis", "0")))
                     // デフォルトは1000件ずつ
                     .batchInsertSize(Integer.parseInt(properties.getProperty("database.batch-insert-size", "1000")))
+                    // デフォルトはバッチの件数を固定
+                    .batchTargetMillis(Long.parseLong(properties.getProperty("database.batch-target-millis", "0")))
+                    .batchMinSize(Integer.parseInt(properties.getProperty("database.batch-min-size", "10")))
+                    .batchMaxSize(Integer.parseInt(properties.getProperty("database.batch-max-size", "50000")))
+                    .batchMaxBytes(Long.parseLong(properties.getProperty("database.batch-max-bytes", "33554432")))
+                    .insertStrategy(InsertStrategy.of(properties.getProperty("database.insert-strategy", "batch")))
+                    // デフォルトは解析と登録を並行して行わない
+                    .insertQueueSize(Integer.parseInt(properties.getProperty("database.insert-queue-size", "0")))
+                    .insertWriterSize(Integer.parseInt(properties.getProperty("database.insert-writer-size", "1")))
                     .csvEncoding(properties.getProperty("csv.encoding"))
+                    .csvColumnMapping(toColumnMap(properties.getProperty("csv.column-mapping", ""), ":", true))
+                    .csvIncludeColumns(toColumnNames(properties.getProperty("csv.include-columns", "")))
+                    .csvExcludeColumns(toColumnNames(properties.getProperty("csv.exclude-columns", "")))
+                    .csvConstantColumns(toColumnMap(properties.getProperty("csv.constant-columns", ""), "=", false))
+                    // デフォルトは展開を並列化しない
+                    .decompressionParallelSize(
+                            Integer.parseInt(properties.getProperty("csv.decompress-parallel-size", "1")))
+                    // デフォルトは変換を並列化しない
+                    .transcodeParallelSize(
+                            Integer.parseInt(properties.getProperty("csv.transcode-parallel-size", "1")))
+                    // デフォルトは並列化しない
+                    .copyParallelSize(Integer.parseInt(properties.getProperty("database.copy-parallel-size", "1")))
+                    .copyCommitMode(CommitMode.of(properties.getProperty("database.copy-commit-mode", "all")))
+                    .copyFormat(CopyFormat.of(properties.getProperty("database.copy-format", "csv")))
+                    .copyServerTranscode(
+                            Boolean.parseBoolean(properties.getProperty("database.copy-server-transcode", "false")))
+                    .copyBufferSize(Integer.parseInt(properties.getProperty("database.copy-buffer-size", "1048576")))
+                    // デフォルトは先読みしない
+                    .copyBufferCount(Integer.parseInt(properties.getProperty("database.copy-buffer-count", "0")))
+                    .typeInference(TypeInference.of(properties.getProperty("csv.type-inference", "none")))
+                    .typeInferenceSampleSize(
+                            Integer.parseInt(properties.getProperty("csv.type-inference-sample-size", "1000")))
+                    .loadWorkerSize(Integer.parseInt(properties.getProperty("load.worker-size", "1")))
+                    .loadMode(LoadMode.of(properties.getProperty("load.mode", "append")))
+                    .loadIndexParallelSize(Integer.parseInt(properties.getProperty("load.index-parallel-size", "1")))
+                    .loadUpsertKeys(toColumnNames(properties.getProperty("load.upsert-keys", "")))
+                    // デフォルトはチェックポイントを記録しない
+                    .loadCheckpointBytes(Integer.parseInt(properties.getProperty("load.checkpoint-bytes", "0")))
+                    .loadCheckpointRows(Integer.parseInt(properties.getProperty("load.checkpoint-rows", "0")))
+                    .loadCheckpointTable(
+                            properties.getProperty("load.checkpoint-table", "csv2postgresql_checkpoint"))
+                    .loadRejectFile(properties.getProperty("load.reject-file"))
+                    .loadPartitionRouting(Boolean.parseBoolean(properties.getProperty("load.partition-routing", "false")))
+                    .loadPartitionInterval(properties.getProperty("load.partition-interval"))
+                    // デフォルトは除外する件数を制限しない
+                    .loadRejectLimit(
+                            Long.parseLong(properties.getProperty("load.reject-limit", String.valueOf(Long.MAX_VALUE))))
+                    .loadMemoryBudget(Long.parseLong(properties.getProperty("load.memory-budget", "0")))
+                    .metricsIntervalMillis(Long.parseLong(properties.getProperty("metrics.interval-millis", "1000")))
+                    .metricsProgressLog(properties.getProperty("metrics.progress-log"))
+                    .metricsJmx(Boolean.parseBoolean(properties.getProperty("metrics.jmx", "false")))
                     .build();
         }
     }
+
+    /**
+     * 登録にかかった時間に応じて、バッチの件数を変更するかどうかです。
+     *
+     * @return 変更する場合{@code true}
+     */
+    public boolean isBatchAdaptive() {
+        return batchTargetMillis > 0;
+    }
+
+    /**
+     * バッファとして保持するバイト数を制限するかどうかです。
+     *
+     * @return 制限する場合{@code true}
+     */
+    public boolean isLoadMemoryBudgeted() {
+        return loadMemoryBudget > 0;
+    }
+
+    /**
+     * チェックポイントを記録しながらロードするかどうかです。
+     *
+     * @return 記録する場合{@code true}
+     */
+    public boolean isLoadCheckpointEnabled() {
+        return loadCheckpointBytes > 0 || loadCheckpointRows > 0;
+    }
+
+    private static Map<String, String> toColumnMap(String value, String separator, boolean normalizeValue) {
+
+        Map<String, String> columnMap = new LinkedHashMap<>();
+        for (String entry : value.split(",")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+
+            int separatorIndex = entry.indexOf(separator);
+            if (separatorIndex == -1) {
+                throw new IllegalArgumentException("Invalid column definition: " + entry.trim());
+            }
+
+            String mappedValue = entry.substring(separatorIndex + 1).trim();
+            columnMap.put(
+                    Column.normalizeName(entry.substring(0, separatorIndex).trim()),
+                    normalizeValue ? Column.normalizeName(mappedValue) : mappedValue);
+        }
+
+        return columnMap;
+    }
+
+    private static List<String> toColumnNames(String value) {
+
+        // ヘッダ名と同じように、カラム名として使用できる形式に変換
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .map(Column::normalizeName)
+                .collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,38 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+
+/**
+ * DBのコネクションを生成するためのインタフェースです。
+ */
+@FunctionalInterface
+interface ConnectionFactory {
+
+    Connection getConnection() throws SQLException;
+
+    /**
+     * 設定の接続先情報で、DriverManagerからコネクションを取得するファクトリを生成します。
+     *
+     * @param config 設定
+     * @return ファクトリ
+     */
+    static ConnectionFactory of(Config config) {
+
+        Properties properties = new Properties();
+        if (config.getDatabaseUser() != null) {
+            properties.setProperty("user", config.getDatabaseUser());
+        }
+        if (config.getDatabasePassword() != null) {
+            properties.setProperty("password", config.getDatabasePassword());
+        }
+        if (config.getInsertStrategy() == InsertStrategy.REWRITE_BATCHED) {
+            // バッチを複数行のINSERT文に書き換えるのは、ドライバの接続プロパティで指定
+            properties.setProperty("reWriteBatchedInserts", "true");
+        }
+
+        return () -> DriverManager.getConnection(config.getDatabaseUrl(), properties);
+    }
+}
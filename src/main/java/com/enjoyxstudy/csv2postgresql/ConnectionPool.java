@@ -0,0 +1,241 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * コネクションを使い回すためのプールです。
+ * <p>取得したコネクションをクローズすると、実際には切断せずにプールへ戻します。
+ * 空きが無い場合には新しいコネクションを生成し、プールへ戻す際に保持数を超えた分は切断します。
+ * 接続中のコネクション数(貸し出し中と空きの合計)の上限を指定した場合、上限に達している間は返却を待ちます。</p>
+ */
+class ConnectionPool implements AutoCloseable {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private final ConnectionFactory connectionFactory;
+
+    private final int maxIdleSize;
+
+    /**
+     * 接続中のコネクション数の上限です。(0以下の場合は上限無し)
+     */
+    private final int maxSize;
+
+    /**
+     * 上限に達している場合に、返却を待つ時間(ミリ秒)です。
+     */
+    private final long waitMillis;
+
+    private final Deque<Connection> idleConnections = new ArrayDeque<>();
+
+    /**
+     * 接続中のコネクション数です。(生成中のものも含みます)
+     */
+    private int size;
+
+    private boolean closed;
+
+    ConnectionPool(ConnectionFactory connectionFactory, int maxIdleSize) {
+        this(connectionFactory, maxIdleSize, 0, 0);
+    }
+
+    ConnectionPool(ConnectionFactory connectionFactory, int maxIdleSize, int maxSize, long waitMillis) {
+        this.connectionFactory = connectionFactory;
+        this.maxIdleSize = maxIdleSize;
+        this.maxSize = maxSize;
+        this.waitMillis = waitMillis;
+    }
+
+    public Connection getConnection() throws SQLException {
+
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+
+        Connection physicalConnection;
+        while (true) {
+            physicalConnection = pollOrReserve(deadlineNanos);
+
+            if (physicalConnection == null) {
+                try {
+                    physicalConnection = connectionFactory.getConnection();
+                } catch (SQLException | RuntimeException e) {
+                    releaseSlot();
+                    throw e;
+                }
+                break;
+            }
+
+            // 保持している間にサーバ側で切断された可能性があるため、確認してから使う
+            if (isValid(physicalConnection)) {
+                break;
+            }
+            discard(physicalConnection);
+        }
+
+        return wrap(physicalConnection);
+    }
+
+    /**
+     * 空きのコネクションを取り出します。空きが無く上限に達していなければ、生成する分の枠を確保します。
+     *
+     * @param deadlineNanos 待つ期限
+     * @return 空きのコネクション (生成する場合は{@code null})
+     * @throws SQLException クローズ済みの場合、期限までに返却されなかった場合
+     */
+    private synchronized Connection pollOrReserve(long deadlineNanos) throws SQLException {
+
+        while (true) {
+            if (closed) {
+                throw new SQLException("Connection pool is closed.");
+            }
+
+            Connection idleConnection = idleConnections.pollFirst();
+            if (idleConnection != null) {
+                return idleConnection;
+            }
+
+            if (maxSize <= 0 || size < maxSize) {
+                size++;
+                return null;
+            }
+
+            long remainingNanos = deadlineNanos - System.nanoTime();
+            if (remainingNanos <= 0) {
+                throw new SQLException(
+                        "Timed out waiting for a connection from the pool. (max size: " + maxSize + ")");
+            }
+
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a connection from the pool.", e);
+            }
+        }
+    }
+
+    private synchronized void releaseSlot() {
+        size--;
+        notifyAll();
+    }
+
+    private boolean isValid(Connection connection) {
+
+        try {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void close() {
+
+        synchronized (this) {
+            closed = true;
+            // 返却を待っているスレッドを起こし、クローズ済みとして失敗させる
+            notifyAll();
+        }
+
+        Connection idleConnection;
+        while ((idleConnection = pollIdleConnection()) != null) {
+            discard(idleConnection);
+        }
+    }
+
+    private synchronized Connection pollIdleConnection() {
+        return idleConnections.pollFirst();
+    }
+
+    private Connection wrap(Connection physicalConnection) {
+
+        AtomicBoolean released = new AtomicBoolean();
+
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+
+                    switch (method.getName()) {
+                        case "close":
+                            if (released.compareAndSet(false, true)) {
+                                release(physicalConnection);
+                            }
+                            return null;
+                        case "isClosed":
+                            if (released.get()) {
+                                return true;
+                            }
+                            break;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "Pooled" + physicalConnection;
+                        default:
+                            break;
+                    }
+
+                    if (released.get()) {
+                        throw new SQLException("Connection is closed.");
+                    }
+
+                    try {
+                        return method.invoke(physicalConnection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private void release(Connection physicalConnection) {
+
+        try {
+            if (physicalConnection.isClosed()) {
+                releaseSlot();
+                return;
+            }
+
+            // 次の利用者に影響しないよう、未確定のトランザクションは破棄
+            if (!physicalConnection.getAutoCommit()) {
+                physicalConnection.rollback();
+                physicalConnection.setAutoCommit(true);
+            }
+
+            synchronized (this) {
+                if (!closed && idleConnections.size() < maxIdleSize) {
+                    idleConnections.addFirst(physicalConnection);
+                    notifyAll();
+                    return;
+                }
+            }
+
+            discard(physicalConnection);
+
+        } catch (SQLException e) {
+            // 状態を戻せないコネクションは再利用しない
+            discard(physicalConnection);
+        }
+    }
+
+    /**
+     * コネクションを切断し、接続中のコネクション数から除きます。
+     */
+    private void discard(Connection connection) {
+
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // 切断時のエラーは無視
+        } finally {
+            releaseSlot();
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 呼び出し元のスレッドがキューに積んだデータを、複数のワーカーがそれぞれのコネクションで登録するクラスです。
+ * <p>ワーカー毎のコネクションの取得とクローズ、コミット方法に応じたコミットとロールバック、
+ * 各ワーカーの件数と例外の集約を行います。</p>
+ * <p>{@link CommitMode#ALL}の場合も、コミットは各ワーカーのコネクション毎に行うため、アトミックではありません。
+ * 一部のコミットが成功した後に他のコミットが失敗した場合には、コミット済みの分は残ります。</p>
+ *
+ * @param <T> キューに積むデータ
+ */
+class ConnectionWorkers<T> implements AutoCloseable {
+
+    /**
+     * キューの空きやデータを待つ間に、中断されていないか確認する間隔(ミリ秒)です。
+     */
+    static final long POLL_MILLIS = 100;
+
+    private final ConnectionFactory connectionFactory;
+
+    private final int workerSize;
+
+    private final CommitMode commitMode;
+
+    private final LoadMetrics metrics;
+
+    private final BlockingQueue<T> queue;
+
+    /**
+     * 終端を表すデータです。ワーカーの数だけ積みます。
+     */
+    private final T end;
+
+    private final AtomicBoolean aborted = new AtomicBoolean();
+
+    private final CountDownLatch finished;
+
+    private final ExecutorService executor;
+
+    private final List<Future<Long>> futures = new ArrayList<>();
+
+    /**
+     * @param connectionFactory コネクションの取得先
+     * @param workerSize ワーカー数
+     * @param queueSize キューのサイズ
+     * @param end 終端を表すデータ
+     * @param commitMode コミット方法
+     * @param metrics 集計先
+     * @param threadName ワーカーのスレッド名
+     */
+    ConnectionWorkers(
+            ConnectionFactory connectionFactory,
+            int workerSize,
+            int queueSize,
+            T end,
+            CommitMode commitMode,
+            LoadMetrics metrics,
+            String threadName) {
+
+        this.connectionFactory = connectionFactory;
+        this.workerSize = workerSize;
+        this.commitMode = commitMode;
+        this.metrics = metrics;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.end = end;
+        this.finished = new CountDownLatch(workerSize);
+        this.executor = Executors.newFixedThreadPool(workerSize, runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * ワーカーを開始します。
+     *
+     * @param worker 1ワーカー分の処理 (キューから終端までのデータを登録し、件数を返すこと)
+     */
+    void start(Worker worker) {
+
+        for (int i = 0; i < workerSize; i++) {
+            futures.add(executor.submit(() -> run(worker)));
+        }
+    }
+
+    BlockingQueue<T> getQueue() {
+        return queue;
+    }
+
+    T getEnd() {
+        return end;
+    }
+
+    /**
+     * いずれかのワーカー、または呼び出し元で失敗したかどうかです。
+     */
+    boolean isAborted() {
+        return aborted.get();
+    }
+
+    /**
+     * データをキューに積みます。
+     *
+     * @param data データ
+     * @return 積めた場合{@code true} (中断された場合、全ワーカーが終了している場合は{@code false})
+     * @throws InterruptedIOException
+     */
+    boolean put(T data) throws InterruptedIOException {
+        return put(queue, data);
+    }
+
+    /**
+     * 中断されるまで、データをキューに積むのを待ちます。
+     *
+     * @param target キュー
+     * @param data データ
+     * @return 積めた場合{@code true} (中断された場合、全ワーカーが終了している場合は{@code false})
+     * @throws InterruptedIOException
+     */
+    <E> boolean put(BlockingQueue<E> target, E data) throws InterruptedIOException {
+        return offer(target, data) && !aborted.get();
+    }
+
+    /**
+     * 中断されるまで、キューからデータを取り出すのを待ちます。
+     *
+     * @param source キュー
+     * @return データ (中断された場合、全ワーカーが終了している場合は{@code null})
+     * @throws InterruptedIOException
+     */
+    <E> E take(BlockingQueue<E> source) throws InterruptedIOException {
+
+        try {
+            E data;
+            while ((data = source.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                if (aborted.get() || isAllDone()) {
+                    return null;
+                }
+            }
+            return aborted.get() ? null : data;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * 終端を積み、各ワーカーの件数を合計します。
+     *
+     * @param producerException 呼び出し元で発生した例外 (無い場合は{@code null})
+     * @return 登録した件数
+     * @throws IOException
+     * @throws SQLException
+     */
+    long finish(Exception producerException) throws IOException, SQLException {
+
+        if (producerException != null) {
+            aborted.set(true);
+        }
+
+        // 中断した場合も、キューを待っているワーカーが終了できるよう終端は積む
+        for (int i = 0; i < workerSize; i++) {
+            offer(queue, end);
+        }
+
+        return sum(producerException);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private <E> boolean offer(BlockingQueue<E> target, E data) throws InterruptedIOException {
+
+        try {
+            // ワーカーが全て終了している場合に待ち続けないよう、一定時間毎に状態を確認
+            while (!target.offer(data, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (isAllDone()) {
+                    return false;
+                }
+                if (aborted.get() && data != end) {
+                    return false;
+                }
+            }
+            return true;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private boolean isAllDone() {
+        return futures.stream().allMatch(Future::isDone);
+    }
+
+    private long run(Worker worker) throws IOException, SQLException, InterruptedException {
+
+        Connection connection;
+        try {
+            connection = connectionFactory.getConnection();
+        } catch (SQLException | RuntimeException e) {
+            aborted.set(true);
+            finished.countDown();
+            throw e;
+        }
+
+        try {
+            long count;
+            boolean succeeded = false;
+            try {
+                connection.setAutoCommit(false);
+
+                count = worker.work(connection);
+
+                if (commitMode == CommitMode.EACH) {
+                    commit(connection);
+                }
+                succeeded = true;
+
+            } finally {
+                if (!succeeded) {
+                    aborted.set(true);
+                }
+                finished.countDown();
+            }
+
+            if (commitMode == CommitMode.ALL) {
+                // 全ワーカーの完了を待ち、いずれかが失敗していた場合にはロールバック
+                finished.await();
+                if (aborted.get()) {
+                    connection.rollback();
+                    throw new LoadAbortedException();
+                }
+                commit(connection);
+            }
+
+            return count;
+
+        } finally {
+            connection.close();
+        }
+    }
+
+    private void commit(Connection connection) throws SQLException {
+
+        long startNanos = System.nanoTime();
+        connection.commit();
+        metrics.addElapsed(LoadStage.COMMIT, startNanos);
+    }
+
+    private long sum(Exception producerException) throws IOException, SQLException {
+
+        long count = 0;
+        Throwable cause = producerException;
+
+        for (Future<Long> future : futures) {
+            try {
+                count += future.get();
+            } catch (ExecutionException e) {
+                // 他のワーカーの失敗による中断よりも、失敗の原因となった例外を優先
+                if (cause == null || cause instanceof LoadAbortedException) {
+                    cause = e.getCause();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        }
+        if (cause instanceof SQLException) {
+            throw (SQLException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        if (cause != null) {
+            throw new IllegalStateException(cause);
+        }
+
+        return count;
+    }
+
+    /**
+     * 1ワーカー分の処理です。
+     */
+    @FunctionalInterface
+    interface Worker {
+
+        /**
+         * ワーカーのコネクションで登録します。コミットは呼び出し元で行います。
+         *
+         * @param connection コネクション (自動コミットは無効)
+         * @return 登録した件数
+         */
+        long work(Connection connection) throws IOException, SQLException, InterruptedException;
+    }
+}
@@ -0,0 +1,142 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.postgresql.copy.CopyIn;
+
+/**
+ * バッファのレコードをCSVに整形し、開いたままのCOPYに書き込むクラスです。
+ * <p>COPYはロード全体で1回となるため、{@link #finish()}で終了するまでデータは確定しません。
+ * バッチ全体を1つのバイト列にはせず、一定サイズ毎に書き込みます。</p>
+ */
+class CopyBatchInserter implements BatchInserter {
+
+    /**
+     * 整形したCSVを書き込むサイズ(文字数)です。
+     */
+    private static final int WRITE_SIZE = 64 * 1024;
+
+    private final CopyIn copyIn;
+
+    /**
+     * カラム毎にtext型かどうかです。
+     */
+    private final boolean[] textColumns;
+
+    private StringBuilder line = new StringBuilder();
+
+    private final LoadMetrics metrics;
+
+    CopyBatchInserter(CopyIn copyIn, List<Column> columns, LoadMetrics metrics) {
+        this.copyIn = copyIn;
+        this.metrics = metrics;
+        this.textColumns = new boolean[columns.size()];
+        for (int i = 0; i < textColumns.length; i++) {
+            textColumns[i] = columns.get(i).getType() == ColumnType.TEXT;
+        }
+    }
+
+    @Override
+    public int insert(RecordBatch batch) throws SQLException {
+
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < batch.size(); i++) {
+            append(batch.get(i));
+            if (line.length() >= WRITE_SIZE) {
+                metrics.addElapsed(LoadStage.ENCODE, startNanos);
+                write();
+                startNanos = System.nanoTime();
+            }
+        }
+        metrics.addElapsed(LoadStage.ENCODE, startNanos);
+
+        write();
+
+        metrics.addRows(batch.size());
+        return batch.size();
+    }
+
+    private void write() throws SQLException {
+
+        if (line.length() == 0) {
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+        metrics.addElapsed(LoadStage.ENCODE, startNanos);
+
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+
+        if (line.capacity() > WRITE_SIZE * 4) {
+            // 大きな値で拡張されたバッファは保持し続けない
+            line = new StringBuilder();
+        } else {
+            line.setLength(0);
+        }
+    }
+
+    private void append(String[] values) {
+
+        for (int i = 0; i < values.length; i++) {
+            if (i != 0) {
+                line.append(',');
+            }
+
+            String value = values[i];
+            if (value.isEmpty()) {
+                // INSERTと合わせ、空文字はtext型では空文字、それ以外の型ではNULLとする
+                // (CSV形式のCOPYでは、クォートされていない空文字がNULLとなる)
+                if (textColumns[i]) {
+                    line.append("\"\"");
+                }
+            } else if (needsQuote(value)) {
+                line.append('"');
+                for (int j = 0; j < value.length(); j++) {
+                    char c = value.charAt(j);
+                    if (c == '"') {
+                        line.append('"');
+                    }
+                    line.append(c);
+                }
+                line.append('"');
+            } else {
+                line.append(value);
+            }
+        }
+
+        line.append('\n');
+    }
+
+    private static boolean needsQuote(String value) {
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            // バックスラッシュはデータの終端(\.)と誤認されないようにクォートする
+            if (c == '"' || c == ',' || c == '\r' || c == '\n' || c == '\\') {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public void finish() throws SQLException {
+        copyIn.endCopy();
+    }
+
+    @Override
+    public void close() throws SQLException {
+
+        if (copyIn.isActive()) {
+            copyIn.cancelCopy();
+        }
+    }
+}
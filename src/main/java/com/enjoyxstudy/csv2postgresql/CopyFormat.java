@@ -0,0 +1,21 @@
+package com.enjoyxstudy.csv2postgresql;
+
+/**
+ * COPYで送信するデータの形式です。
+ */
+public enum CopyFormat {
+
+    /**
+     * CSVをそのまま送信し、サーバ側で解析します。
+     */
+    CSV,
+
+    /**
+     * クライアント側でCSVを解析し、カラムの型に応じたバイナリ形式で送信します。
+     */
+    BINARY;
+
+    public static CopyFormat of(String name) {
+        return valueOf(name.toUpperCase());
+    }
+}
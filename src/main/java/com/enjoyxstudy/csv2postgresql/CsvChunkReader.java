@@ -0,0 +1,210 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * CSVのバイト列を、レコードの区切り位置で分割して読み込むクラスです。
+ * <p>クォートされたフィールド内の改行はレコードの区切りとみなしません。
+ * 区切り文字、クォート、改行がASCIIと同じバイトで表現されるエンコーディングのみを対象とします。</p>
+ */
+public class CsvChunkReader implements Closeable {
+
+    /**
+     * マルチバイト文字の一部として、区切り文字等と同じバイトが現れるエンコーディングのパターンです。
+     */
+    private static final Pattern UNSUPPORTED_CHARSET_NAME = Pattern.compile("(?i).*(UTF-16|UTF-32|UTF-7|2022).*");
+
+    private static final byte QUOTE = '"';
+
+    private static final byte LF = '\n';
+
+    private final InputStream inputStream;
+
+    private final int chunkSize;
+
+    private byte[] buffer;
+
+    /** バッファ内の有効なバイト数です。 */
+    private int length;
+
+    /** 走査済みの位置です。 */
+    private int scannedPosition;
+
+    /** 走査済みの位置がクォート内かどうかです。 */
+    private boolean inQuotes;
+
+    /** 走査済みの範囲で見つかったレコードの区切り位置(レコードの終端の次の位置)です。 */
+    private int lastBoundary;
+
+    private int boundaryCount;
+
+    private boolean eof;
+
+    public CsvChunkReader(InputStream inputStream, int chunkSize) {
+        this.inputStream = inputStream;
+        this.chunkSize = chunkSize;
+        this.buffer = new byte[chunkSize];
+    }
+
+    /**
+     * バイト単位でレコードの区切り位置を判定できるエンコーディングかどうかを判定します。
+     *
+     * @param charset エンコーディング
+     * @return 判定できる場合{@code true}
+     */
+    public static boolean supports(Charset charset) {
+
+        if (UNSUPPORTED_CHARSET_NAME.matcher(charset.name()).matches()) {
+            return false;
+        }
+
+        String controlCharacters = "\",\r\n";
+        return Arrays.equals(
+                controlCharacters.getBytes(charset),
+                controlCharacters.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * レコードの区切り位置で揃えたチャンクを読み込みます。
+     * <p>チャンクは基本的にチャンクサイズ以下となりますが、1レコードがチャンクサイズを超える場合にはそのレコード全体となります。</p>
+     *
+     * @return チャンク (終端に達している場合には{@code null})
+     * @throws IOException
+     */
+    public byte[] readChunk() throws IOException {
+        return read(Integer.MAX_VALUE);
+    }
+
+    /**
+     * レコードの区切り位置で揃えたチャンクを、指定件数以下で読み込みます。
+     *
+     * @param maxRecords チャンクに含める最大件数
+     * @return チャンク (終端に達している場合には{@code null})
+     * @throws IOException
+     */
+    public byte[] readChunk(int maxRecords) throws IOException {
+        return read(maxRecords);
+    }
+
+    /**
+     * 1レコード分のバイト列を読み込みます。(改行を含みます)
+     *
+     * @return レコード (終端に達している場合には{@code null})
+     * @throws IOException
+     */
+    public byte[] readRecord() throws IOException {
+        return read(1);
+    }
+
+    private byte[] read(int maxRecords) throws IOException {
+
+        while (true) {
+            scan(maxRecords);
+
+            if (boundaryCount >= maxRecords || (lastBoundary > 0 && length == buffer.length)) {
+                return take(lastBoundary);
+            }
+
+            if (eof) {
+                // 終端の改行が無いレコードも1レコードとして扱う
+                return length == 0 ? null : take(length);
+            }
+
+            if (length == buffer.length) {
+                // 1レコードがバッファに収まらない場合には拡張
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+
+            fill();
+        }
+    }
+
+    private void scan(int maxRecords) {
+
+        int position = scannedPosition;
+        while (position < length && boundaryCount < maxRecords) {
+
+            if (inQuotes) {
+                int quote = CsvTokenizer.nextQuote(buffer, position, length);
+                if (quote == -1) {
+                    position = length;
+                    break;
+                }
+                // エスケープされたクォート("")は2回反転するため、状態としては変わらない
+                inQuotes = false;
+                position = quote + 1;
+                continue;
+            }
+
+            int special = CsvTokenizer.nextQuoteOrNewline(buffer, position, length);
+            if (special == -1) {
+                position = length;
+                break;
+            }
+
+            byte b = buffer[special];
+            if (b == QUOTE) {
+                inQuotes = true;
+            } else if (b == LF) {
+                lastBoundary = special + 1;
+                boundaryCount++;
+            } else {
+                if (special + 1 == length && !eof) {
+                    // CRLFかどうか判断できないため、続きを読み込んでから判断
+                    position = special;
+                    break;
+                }
+                if (special + 1 == length || buffer[special + 1] != LF) {
+                    lastBoundary = special + 1;
+                    boundaryCount++;
+                }
+            }
+            position = special + 1;
+        }
+
+        scannedPosition = position;
+    }
+
+    private byte[] take(int size) {
+
+        byte[] chunk = Arrays.copyOf(buffer, size);
+
+        System.arraycopy(buffer, size, buffer, 0, length - size);
+        length -= size;
+
+        // 切り出した位置はレコードの区切りなので、クォート外の状態から走査し直す
+        scannedPosition = 0;
+        inQuotes = false;
+        lastBoundary = 0;
+        boundaryCount = 0;
+
+        return chunk;
+    }
+
+    private void fill() throws IOException {
+
+        while (length < buffer.length) {
+            int readSize = inputStream.read(buffer, length, buffer.length - length);
+            if (readSize == -1) {
+                eof = true;
+                return;
+            }
+            length += readSize;
+
+            if (length >= chunkSize) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+}
@@ -0,0 +1,186 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import lombok.Value;
+
+/**
+ * CSVの先頭部分(ヘッダと、型の推測に使う先頭のレコード)です。
+ * <p>ファイルを開き直さずにロードできるよう、ロード対象と同じストリームから先頭部分だけを読み込みます。
+ * 型の推測に使ったレコードもロード対象となるため、ヘッダより後ろを読み込むストリームに含めます。</p>
+ *
+ * @param <T> ストリームの型
+ */
+@Value
+class CsvHead<T extends Closeable> implements Closeable {
+
+    private static final int QUOTE = '"';
+
+    private static final int LF = '\n';
+
+    private static final int CR = '\r';
+
+    private final List<Column> columns;
+
+    private final List<String[]> sampleRecords;
+
+    /**
+     * ヘッダより後ろを読み込むストリームです。
+     */
+    private final T remaining;
+
+    /**
+     * 文字単位で先頭部分を読み込みます。
+     *
+     * @param reader CSVのReader
+     * @param sampleSize 型の推測に使うレコード数
+     * @return 先頭部分
+     * @throws IOException
+     */
+    static CsvHead<Reader> read(Reader reader, int sampleSize) throws IOException {
+
+        // 改行がCRLFかどうかの判断で読み過ぎた1文字を戻せるように
+        PushbackReader pushbackReader = new PushbackReader(reader, 1);
+
+        StringBuilder header = new StringBuilder();
+        readRecord(pushbackReader::read, pushbackReader::unread, unit -> header.append((char) unit));
+
+        StringBuilder samples = new StringBuilder();
+        for (int i = 0; i < sampleSize; i++) {
+            if (!readRecord(pushbackReader::read, pushbackReader::unread, unit -> samples.append((char) unit))) {
+                break;
+            }
+        }
+
+        PushbackReader remaining = new PushbackReader(pushbackReader, Math.max(samples.length(), 1));
+        remaining.unread(samples.toString().toCharArray());
+
+        return new CsvHead<>(
+                parseColumns(header.toString()),
+                parseRecords(samples.toString()),
+                remaining);
+    }
+
+    /**
+     * バイト単位で先頭部分を読み込みます。
+     * <p>区切り文字、クォート、改行がASCIIと同じバイトで表現されるエンコーディングのみを対象とします。</p>
+     *
+     * @param inputStream CSVのストリーム
+     * @param charset エンコーディング
+     * @param sampleSize 型の推測に使うレコード数
+     * @return 先頭部分
+     * @throws IOException
+     */
+    static CsvHead<InputStream> read(InputStream inputStream, Charset charset, int sampleSize)
+            throws IOException {
+
+        PushbackInputStream pushbackStream = new PushbackInputStream(inputStream, 1);
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        readRecord(pushbackStream::read, pushbackStream::unread, header::write);
+
+        ByteArrayOutputStream samples = new ByteArrayOutputStream();
+        for (int i = 0; i < sampleSize; i++) {
+            if (!readRecord(pushbackStream::read, pushbackStream::unread, samples::write)) {
+                break;
+            }
+        }
+
+        return new CsvHead<>(
+                parseColumns(new String(header.toByteArray(), charset)),
+                parseRecords(new String(samples.toByteArray(), charset)),
+                new SequenceInputStream(new ByteArrayInputStream(samples.toByteArray()), pushbackStream));
+    }
+
+    /**
+     * 1レコード分を読み込みます。(改行を含みます)
+     * <p>クォートされたフィールド内の改行はレコードの区切りとみなしません。</p>
+     *
+     * @return 読み込んだ場合{@code true}、終端に達していた場合{@code false}
+     */
+    private static boolean readRecord(UnitInput input, UnitPushback pushback, IntConsumer output)
+            throws IOException {
+
+        boolean inQuotes = false;
+        boolean read = false;
+
+        int unit;
+        while ((unit = input.read()) != -1) {
+
+            read = true;
+            output.accept(unit);
+
+            if (unit == QUOTE) {
+                // エスケープされたクォート("")は2回反転するため、状態としては変わらない
+                inQuotes = !inQuotes;
+            } else if (!inQuotes) {
+                if (unit == LF) {
+                    return true;
+                }
+                if (unit == CR) {
+                    int next = input.read();
+                    if (next == LF) {
+                        output.accept(next);
+                    } else if (next != -1) {
+                        pushback.unread(next);
+                    }
+                    return true;
+                }
+            }
+        }
+
+        return read;
+    }
+
+    private static List<Column> parseColumns(String header) throws IOException {
+
+        try (CSVParser csvParser = CSVFormat.EXCEL.withHeader().parse(new StringReader(header))) {
+            return Loader.readColumns(csvParser);
+        }
+    }
+
+    private static List<String[]> parseRecords(String records) throws IOException {
+
+        List<String[]> values = new ArrayList<>();
+        try (CSVParser csvParser = CSVFormat.EXCEL.parse(new StringReader(records))) {
+            for (CSVRecord record : csvParser) {
+                values.add(Loader.toValues(record));
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void close() throws IOException {
+        remaining.close();
+    }
+
+    @FunctionalInterface
+    private interface UnitInput {
+
+        int read() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface UnitPushback {
+
+        void unread(int unit) throws IOException;
+    }
+}
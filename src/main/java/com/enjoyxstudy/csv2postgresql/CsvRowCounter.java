@@ -0,0 +1,97 @@
+package com.enjoyxstudy.csv2postgresql;
+
+/**
+ * COPYで送信するCSVのバイト列から、クォート外の改行を数えてレコード数を求めるクラスです。
+ * <p>バイト列は複数回に分けて渡すことができ、クォートの中かどうかは呼び出しをまたいで引き継ぎます。
+ * 終端の改行が無い最後のレコードは数えられないため、COPYの完了時にサーバの件数で補正します。</p>
+ */
+class CsvRowCounter {
+
+    private static final byte QUOTE = '"';
+
+    private static final byte LF = '\n';
+
+    private static final byte CR = '\r';
+
+    /** ヘッダ行をまだ読み飛ばしていないかどうかです。 */
+    private boolean headerPending;
+
+    private boolean inQuotes;
+
+    /** 直前のバイト列がCRで終わっていたかどうかです。(CRLFを1つの改行として数えるため) */
+    private boolean afterCr;
+
+    private long count;
+
+    /**
+     * @param header 先頭行がヘッダかどうか (ヘッダの場合、先頭行は数えません)
+     */
+    CsvRowCounter(boolean header) {
+        this.headerPending = header;
+    }
+
+    /**
+     * バイト列に含まれる、レコードの終端の数を数えます。
+     *
+     * @param bytes バイト列
+     * @param off 開始位置
+     * @param len 長さ
+     * @return 今回数えたレコード数
+     */
+    long count(byte[] bytes, int off, int len) {
+
+        int position = off;
+        int to = off + len;
+        long rows = 0;
+
+        while (position < to) {
+            if (afterCr) {
+                afterCr = false;
+                if (bytes[position] == LF) {
+                    position++;
+                    continue;
+                }
+            }
+
+            if (inQuotes) {
+                int quote = CsvTokenizer.nextQuote(bytes, position, to);
+                if (quote == -1) {
+                    break;
+                }
+                inQuotes = false;
+                position = quote + 1;
+                continue;
+            }
+
+            int special = CsvTokenizer.nextQuoteOrNewline(bytes, position, to);
+            if (special == -1) {
+                break;
+            }
+            position = special + 1;
+
+            if (bytes[special] == QUOTE) {
+                // エスケープされたクォート("")は2回反転するため、状態としては変わらない
+                inQuotes = true;
+                continue;
+            }
+
+            afterCr = bytes[special] == CR;
+            rows++;
+        }
+
+        if (headerPending && rows > 0) {
+            headerPending = false;
+            rows--;
+        }
+
+        count += rows;
+        return rows;
+    }
+
+    /**
+     * これまでに数えたレコード数です。
+     */
+    long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,87 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * ロード元のCSVです。
+ * <p>通常のファイルは何度でも開けますが、標準入力や名前付きパイプなどのストリームは1度しか読み込めません。</p>
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+class CsvSource {
+
+    @Getter
+    private final String name;
+
+    /**
+     * ファイルのパスです。(ストリームの場合は{@code null})
+     */
+    @Getter
+    private final Path path;
+
+    private final InputStream stream;
+
+    /**
+     * 開き直して、再度先頭から読み込めるかどうかです。
+     */
+    @Getter
+    private final boolean reopenable;
+
+    private final AtomicBoolean opened = new AtomicBoolean();
+
+    /** 圧縮形式です。(判定するまでは{@code null}) */
+    private volatile Compression compression;
+
+    public static CsvSource of(Path path) {
+
+        // 名前付きパイプなど、通常のファイル以外は読み込むと内容が無くなるため開き直せない
+        return new CsvSource(path.toString(), path, null, !Files.exists(path) || Files.isRegularFile(path));
+    }
+
+    public static CsvSource of(InputStream stream, String name) {
+        return new CsvSource(name, null, stream, false);
+    }
+
+    /**
+     * 読み込むためのストリームを開きます。
+     *
+     * @return ストリーム
+     * @throws IOException
+     * @throws IllegalStateException 開き直せないものを2度開こうとした場合
+     */
+    public InputStream open() throws IOException {
+
+        if (!reopenable && !opened.compareAndSet(false, true)) {
+            throw new IllegalStateException(name + " can not be reopened.");
+        }
+
+        return stream != null ? stream : Files.newInputStream(path);
+    }
+
+    /**
+     * ファイルの圧縮形式を取得します。
+     * <p>ロード中はストリームを何度も開くため、判定はファイル毎に1度だけ行います。</p>
+     *
+     * @return 圧縮形式
+     * @throws IOException
+     * @throws IllegalStateException 開き直せないものの場合 (ストリームの先頭で判定すること)
+     */
+    public Compression getCompression() throws IOException {
+
+        if (!reopenable) {
+            throw new IllegalStateException(name + " can not be reopened.");
+        }
+
+        if (compression == null) {
+            compression = Compression.detect(path);
+        }
+        return compression;
+    }
+}
@@ -0,0 +1,233 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * CSVのバイト列を、デコードせずにレコードとフィールドに分割するクラスです。
+ * <p>フィールドは文字列を生成せず、クォートも含めたバイト列上の位置として返します。
+ * 区切り文字、クォート、改行の検索は8バイト単位でまとめて行います。
+ * 区切り文字、クォート、改行がASCIIと同じバイトで表現されるエンコーディングのみを対象とします。</p>
+ */
+final class CsvTokenizer {
+
+    private static final byte QUOTE = '"';
+
+    private static final byte COMMA = ',';
+
+    private static final byte LF = '\n';
+
+    private static final byte CR = '\r';
+
+    private static final long ONES = 0x0101010101010101L;
+
+    private static final long HIGHS = 0x8080808080808080L;
+
+    private static final long QUOTES = ONES * QUOTE;
+
+    private static final long COMMAS = ONES * COMMA;
+
+    private static final long LFS = ONES * LF;
+
+    private static final long CRS = ONES * CR;
+
+    /** フィールド毎の開始位置です。 */
+    private int[] fieldStarts = new int[16];
+
+    /** フィールド毎の終端の位置(終端の次の位置)です。 */
+    private int[] fieldEnds = new int[16];
+
+    private int fieldCount;
+
+    /**
+     * 指定位置から1レコード分を、フィールドに分割します。
+     * <p>範囲内でレコードが完結していない場合には、続きを読み込んでから再度呼び出します。
+     * 範囲の末尾がCRの場合も、CRLFかどうか判断できないため完結していないものとします。</p>
+     *
+     * @param bytes バイト列
+     * @param from レコードの開始位置
+     * @param to 範囲の終端の位置
+     * @param eof 範囲の終端がCSVの終端かどうか (終端の場合、改行が無いレコードも1レコードとして扱います)
+     * @return 次のレコードの開始位置 (レコードが完結していない場合や、レコードが無い場合は-1)
+     */
+    int tokenize(byte[] bytes, int from, int to, boolean eof) {
+
+        fieldCount = 0;
+
+        int fieldStart = from;
+        int position = from;
+        boolean inQuotes = false;
+
+        while (true) {
+            int special = inQuotes ? nextQuote(bytes, position, to) : nextSpecial(bytes, position, to);
+            if (special == -1) {
+                if (!eof || from == to) {
+                    return -1;
+                }
+                // 終端の改行が無いレコード
+                addField(fieldStart, to);
+                return to;
+            }
+
+            byte b = bytes[special];
+            position = special + 1;
+
+            if (b == QUOTE) {
+                // エスケープされたクォート("")は2回反転するため、状態としては変わらない
+                inQuotes = !inQuotes;
+                continue;
+            }
+
+            if (b == COMMA) {
+                addField(fieldStart, special);
+                fieldStart = position;
+                continue;
+            }
+
+            if (b == CR) {
+                if (position == to) {
+                    if (!eof) {
+                        return -1;
+                    }
+                } else if (bytes[position] == LF) {
+                    position++;
+                }
+            }
+
+            addField(fieldStart, special);
+            return position;
+        }
+    }
+
+    /**
+     * 直前に分割したレコードのフィールド数です。
+     */
+    int getFieldCount() {
+        return fieldCount;
+    }
+
+    int getFieldStart(int index) {
+        return fieldStarts[index];
+    }
+
+    int getFieldEnd(int index) {
+        return fieldEnds[index];
+    }
+
+    /**
+     * 直前に分割したレコードの、改行を除いた終端の位置です。
+     */
+    int getRecordEnd() {
+        return fieldEnds[fieldCount - 1];
+    }
+
+    /**
+     * フィールドの値を、クォートを外してデコードします。
+     *
+     * @param bytes 分割したバイト列
+     * @param index フィールドの位置
+     * @param charset エンコーディング
+     * @return 値
+     */
+    String decodeField(byte[] bytes, int index, Charset charset) {
+
+        int start = fieldStarts[index];
+        int end = fieldEnds[index];
+
+        if (end - start >= 2 && bytes[start] == QUOTE && bytes[end - 1] == QUOTE) {
+            return new String(bytes, start + 1, end - start - 2, charset).replace("\"\"", "\"");
+        }
+
+        return new String(bytes, start, end - start, charset);
+    }
+
+    private void addField(int start, int end) {
+
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldStarts.length * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldEnds.length * 2);
+        }
+
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldCount++;
+    }
+
+    /**
+     * 区切り文字、クォート、改行(CR、LF)のいずれかの位置を検索します。
+     *
+     * @return 位置 (見つからない場合は-1)
+     */
+    static int nextSpecial(byte[] bytes, int from, int to) {
+        return indexOf(bytes, from, to, QUOTES, COMMAS, LFS, CRS);
+    }
+
+    /**
+     * クォート、改行(CR、LF)のいずれかの位置を検索します。
+     *
+     * @return 位置 (見つからない場合は-1)
+     */
+    static int nextQuoteOrNewline(byte[] bytes, int from, int to) {
+        return indexOf(bytes, from, to, QUOTES, QUOTES, LFS, CRS);
+    }
+
+    /**
+     * クォートの位置を検索します。
+     *
+     * @return 位置 (見つからない場合は-1)
+     */
+    static int nextQuote(byte[] bytes, int from, int to) {
+        return indexOf(bytes, from, to, QUOTES, QUOTES, QUOTES, QUOTES);
+    }
+
+    private static int indexOf(byte[] bytes, int from, int to, long pattern1, long pattern2, long pattern3,
+            long pattern4) {
+
+        int position = from;
+
+        for (; position + Long.BYTES <= to; position += Long.BYTES) {
+            long word = readLong(bytes, position);
+            long found = matches(word, pattern1) | matches(word, pattern2)
+                    | matches(word, pattern3) | matches(word, pattern4);
+            if (found != 0) {
+                // リトルエンディアンのため、下位のバイトほど前の位置
+                return position + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+
+        for (; position < to; position++) {
+            byte b = bytes[position];
+            if (b == (byte) pattern1 || b == (byte) pattern2 || b == (byte) pattern3 || b == (byte) pattern4) {
+                return position;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * 8バイトを、リトルエンディアンのlongとして読み込みます。
+     * <p>呼び出し毎にByteBufferを生成しないよう、バイト列から直接組み立てます。</p>
+     */
+    private static long readLong(byte[] bytes, int position) {
+
+        return (bytes[position] & 0xffL)
+                | (bytes[position + 1] & 0xffL) << 8
+                | (bytes[position + 2] & 0xffL) << 16
+                | (bytes[position + 3] & 0xffL) << 24
+                | (bytes[position + 4] & 0xffL) << 32
+                | (bytes[position + 5] & 0xffL) << 40
+                | (bytes[position + 6] & 0xffL) << 48
+                | (bytes[position + 7] & 0xffL) << 56;
+    }
+
+    /**
+     * 8バイトのうち、パターンと一致するバイトの最上位ビットを立てた値を返します。
+     * <p>一致したバイトより上位のバイトは誤って立つ場合がありますが、最下位の一致は常に正しく判定されます。</p>
+     */
+    private static long matches(long word, long pattern) {
+
+        long x = word ^ pattern;
+        return (x - ONES) & ~x & HIGHS;
+    }
+}
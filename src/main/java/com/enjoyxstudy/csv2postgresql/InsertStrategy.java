@@ -0,0 +1,36 @@
+package com.enjoyxstudy.csv2postgresql;
+
+/**
+ * INSERTでロードする際の登録方法です。
+ */
+public enum InsertStrategy {
+
+    /**
+     * 1レコードずつのINSERT文をバッチで実行します。
+     */
+    BATCH,
+
+    /**
+     * pgjdbcの{@code reWriteBatchedInserts}を有効にし、バッチを複数行のINSERT文に書き換えて実行します。
+     */
+    REWRITE_BATCHED,
+
+    /**
+     * 複数行の{@code VALUES}を持つINSERT文で登録します。
+     */
+    MULTI_VALUES,
+
+    /**
+     * カラム毎の配列をバインドし、{@code unnest}で展開して登録します。
+     */
+    UNNEST,
+
+    /**
+     * レコードをCSVに整形し、ロード全体で開いたままのCOPYに書き込みます。
+     */
+    COPY;
+
+    public static InsertStrategy of(String name) {
+        return valueOf(name.toUpperCase().replace('-', '_'));
+    }
+}
@@ -0,0 +1,150 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * ロードの集計値を、テーブル毎のMXBeanとしてJMXで公開するリスナーです。
+ * <p>ロードが終わった後も、最後の集計値は同じテーブルへの次のロードが始まるまで参照できます。</p>
+ */
+public class JmxLoadListener implements LoadListener {
+
+    private static final String DOMAIN = "com.enjoyxstudy.csv2postgresql";
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    private final Map<String, Bean> beans = new ConcurrentHashMap<>();
+
+    @Override
+    public void onStarted(LoadMetricsSnapshot snapshot) {
+
+        Bean bean = new Bean();
+        bean.update(snapshot, "running");
+
+        try {
+            ObjectName name = objectName(snapshot.getTableName());
+            synchronized (server) {
+                if (server.isRegistered(name)) {
+                    // 前回のロードの集計値は置き換える
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(bean, name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+
+        beans.put(snapshot.getTableName(), bean);
+    }
+
+    @Override
+    public void onProgress(LoadMetricsSnapshot snapshot) {
+        update(snapshot, "running");
+    }
+
+    @Override
+    public void onCompleted(LoadMetricsSnapshot snapshot) {
+        update(snapshot, "completed");
+    }
+
+    @Override
+    public void onFailed(LoadMetricsSnapshot snapshot, Exception error) {
+        update(snapshot, "failed");
+    }
+
+    private void update(LoadMetricsSnapshot snapshot, String state) {
+
+        Bean bean = beans.get(snapshot.getTableName());
+        if (bean != null) {
+            bean.update(snapshot, state);
+        }
+    }
+
+    static ObjectName objectName(String tableName) throws JMException {
+        return new ObjectName(DOMAIN + ":type=LoadMetrics,table=" + ObjectName.quote(tableName));
+    }
+
+    private static class Bean implements LoadMetricsMXBean {
+
+        private volatile LoadMetricsSnapshot snapshot;
+
+        private volatile String state;
+
+        void update(LoadMetricsSnapshot snapshot, String state) {
+            this.snapshot = snapshot;
+            this.state = state;
+        }
+
+        @Override
+        public String getTableName() {
+            return snapshot.getTableName();
+        }
+
+        @Override
+        public String getSource() {
+            return snapshot.getSource();
+        }
+
+        @Override
+        public String getState() {
+            return state;
+        }
+
+        @Override
+        public long getElapsedMillis() {
+            return snapshot.getElapsedMillis();
+        }
+
+        @Override
+        public long getRowCount() {
+            return snapshot.getRowCount();
+        }
+
+        @Override
+        public long getByteCount() {
+            return snapshot.getByteCount();
+        }
+
+        @Override
+        public double getRowsPerSecond() {
+            return snapshot.getRowsPerSecond();
+        }
+
+        @Override
+        public double getBytesPerSecond() {
+            return snapshot.getBytesPerSecond();
+        }
+
+        @Override
+        public Map<String, Long> getStageMillis() {
+
+            Map<String, Long> stageMillis = new LinkedHashMap<>();
+            for (Entry<LoadStage, Long> stage : snapshot.getStageMillis().entrySet()) {
+                stageMillis.put(stage.getKey().name().toLowerCase(), stage.getValue());
+            }
+            return stageMillis;
+        }
+
+        @Override
+        public long[] getBatchLatencyBoundsMillis() {
+            return LoadMetrics.getBatchLatencyBoundsMillis();
+        }
+
+        @Override
+        public long[] getBatchLatencyCounts() {
+            return snapshot.getBatchLatencyCounts().clone();
+        }
+
+        @Override
+        public long getPeakHeapBytes() {
+            return snapshot.getPeakHeapBytes();
+        }
+    }
+}
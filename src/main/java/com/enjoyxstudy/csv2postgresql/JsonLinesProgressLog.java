@@ -0,0 +1,140 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+import java.util.Map.Entry;
+
+/**
+ * ロードの進捗を、1行1つのJSON(JSON Lines形式)でファイルに追記するリスナーです。
+ */
+public class JsonLinesProgressLog implements LoadListener {
+
+    /**
+     * 複数のロードから同じファイルに追記しても、行が混ざらないようにするためのロックです。
+     */
+    private static final Object LOCK = new Object();
+
+    private final Path logFilePath;
+
+    public JsonLinesProgressLog(Path logFilePath) {
+        this.logFilePath = logFilePath;
+    }
+
+    @Override
+    public void onStarted(LoadMetricsSnapshot snapshot) {
+        write("started", snapshot, null);
+    }
+
+    @Override
+    public void onProgress(LoadMetricsSnapshot snapshot) {
+        write("progress", snapshot, null);
+    }
+
+    @Override
+    public void onCompleted(LoadMetricsSnapshot snapshot) {
+        write("completed", snapshot, null);
+    }
+
+    @Override
+    public void onFailed(LoadMetricsSnapshot snapshot, Exception error) {
+        write("failed", snapshot, error);
+    }
+
+    private void write(String event, LoadMetricsSnapshot snapshot, Exception error) {
+
+        byte[] line = (toJson(event, snapshot, error) + "\n").getBytes(StandardCharsets.UTF_8);
+
+        synchronized (LOCK) {
+            try {
+                Files.write(logFilePath, line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    static String toJson(String event, LoadMetricsSnapshot snapshot, Exception error) {
+
+        StringBuilder json = new StringBuilder("{");
+        appendString(json, "time", OffsetDateTime.now().toString()).append(',');
+        appendString(json, "event", event).append(',');
+        appendString(json, "table", snapshot.getTableName()).append(',');
+        appendString(json, "source", snapshot.getSource()).append(',');
+        json.append("\"elapsedMillis\":").append(snapshot.getElapsedMillis()).append(',');
+        json.append("\"rows\":").append(snapshot.getRowCount()).append(',');
+        json.append("\"bytes\":").append(snapshot.getByteCount()).append(',');
+        json.append("\"rowsPerSecond\":").append(Math.round(snapshot.getRowsPerSecond())).append(',');
+        json.append("\"bytesPerSecond\":").append(Math.round(snapshot.getBytesPerSecond())).append(',');
+
+        json.append("\"stageMillis\":{");
+        String separator = "";
+        for (Entry<LoadStage, Long> stage : snapshot.getStageMillis().entrySet()) {
+            json.append(separator).append('"').append(stage.getKey().name().toLowerCase()).append("\":")
+                    .append(stage.getValue());
+            separator = ",";
+        }
+        json.append("},");
+
+        // ヒストグラムは、バケットの上限(ミリ秒)をキーとする
+        json.append("\"batchLatencyHistogram\":{");
+        long[] bounds = LoadMetrics.getBatchLatencyBoundsMillis();
+        long[] counts = snapshot.getBatchLatencyCounts();
+        for (int i = 0; i < counts.length; i++) {
+            json.append(i == 0 ? "" : ",")
+                    .append('"').append(i < bounds.length ? String.valueOf(bounds[i]) : "+Inf").append("\":")
+                    .append(counts[i]);
+        }
+        json.append("},");
+
+        json.append("\"peakHeapBytes\":").append(snapshot.getPeakHeapBytes());
+
+        if (error != null) {
+            json.append(',');
+            appendString(json, "error", error.toString());
+        }
+
+        return json.append('}').toString();
+    }
+
+    private static StringBuilder appendString(StringBuilder json, String name, String value) {
+
+        json.append('"').append(name).append("\":");
+        if (value == null) {
+            return json.append("null");
+        }
+
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        return json.append('"');
+    }
+}
@@ -0,0 +1,15 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.IOException;
+
+/**
+ * 他のスレッドでの失敗により、ロードを中断したことを表す例外です。
+ */
+class LoadAbortedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    LoadAbortedException() {
+        super("Loading was aborted.");
+    }
+}
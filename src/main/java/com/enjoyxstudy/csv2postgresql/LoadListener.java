@@ -0,0 +1,20 @@
+package com.enjoyxstudy.csv2postgresql;
+
+/**
+ * ロードの進捗を受け取るリスナーです。
+ * <p>{@link #onProgress(LoadMetricsSnapshot)}は、ロードとは別のスレッドから一定間隔で呼び出されます。</p>
+ */
+public interface LoadListener {
+
+    default void onStarted(LoadMetricsSnapshot snapshot) {
+    }
+
+    default void onProgress(LoadMetricsSnapshot snapshot) {
+    }
+
+    default void onCompleted(LoadMetricsSnapshot snapshot) {
+    }
+
+    default void onFailed(LoadMetricsSnapshot snapshot, Exception error) {
+    }
+}
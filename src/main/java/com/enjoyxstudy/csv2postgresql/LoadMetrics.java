@@ -0,0 +1,177 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * ロード中の件数、バイト数、段階毎の処理時間などを集計するクラスです。
+ * <p>複数のスレッドから同時に更新できます。</p>
+ */
+public class LoadMetrics {
+
+    /**
+     * バッチの処理時間のヒストグラムの区切り(ミリ秒)です。最後の区切りを超えたものは、最後のバケットに集計します。
+     */
+    private static final long[] BATCH_LATENCY_BOUNDS_MILLIS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+
+    private static final MemoryMXBean MEMORY_MX_BEAN = ManagementFactory.getMemoryMXBean();
+
+    @Getter
+    private final String tableName;
+
+    /**
+     * ロード元です。(CSVファイルのパスなど)
+     */
+    @Getter
+    private final String source;
+
+    private final long startNanos = System.nanoTime();
+
+    private final LongAdder rowCount = new LongAdder();
+
+    private final LongAdder byteCount = new LongAdder();
+
+    private final LongAdder[] stageNanos = new LongAdder[LoadStage.values().length];
+
+    private final AtomicLongArray batchLatencyCounts = new AtomicLongArray(BATCH_LATENCY_BOUNDS_MILLIS.length + 1);
+
+    private final LongAccumulator peakHeapBytes = new LongAccumulator(Math::max, 0);
+
+    public LoadMetrics(String tableName, String source) {
+        this.tableName = tableName;
+        this.source = source;
+        for (int i = 0; i < stageNanos.length; i++) {
+            stageNanos[i] = new LongAdder();
+        }
+        sampleHeap();
+    }
+
+    public static long[] getBatchLatencyBoundsMillis() {
+        return BATCH_LATENCY_BOUNDS_MILLIS.clone();
+    }
+
+    public void addRows(long count) {
+        rowCount.add(count);
+    }
+
+    public void addBytes(long count) {
+        byteCount.add(count);
+    }
+
+    public void addStageNanos(LoadStage stage, long nanos) {
+        stageNanos[stage.ordinal()].add(nanos);
+    }
+
+    /**
+     * 開始時刻からの経過時間を、段階の処理時間として加算します。
+     *
+     * @param stage 段階
+     * @param startNanos {@link System#nanoTime()}で取得した開始時刻
+     */
+    public void addElapsed(LoadStage stage, long startNanos) {
+        addStageNanos(stage, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 1バッチの処理時間を記録します。
+     *
+     * @param nanos 処理時間(ナノ秒)
+     */
+    public void recordBatchLatency(long nanos) {
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+
+        int bucket = 0;
+        while (bucket < BATCH_LATENCY_BOUNDS_MILLIS.length && millis > BATCH_LATENCY_BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+        batchLatencyCounts.incrementAndGet(bucket);
+    }
+
+    /**
+     * ヒープの使用量を取得し、ピークを更新します。
+     */
+    public void sampleHeap() {
+        peakHeapBytes.accumulate(MEMORY_MX_BEAN.getHeapMemoryUsage().getUsed());
+    }
+
+    /**
+     * 現時点の件数、バイト数、段階毎の処理時間を記録します。
+     * <p>失敗したロードをやり直す際に、{@link #rollback(Mark)}で失敗した分を取り消すために使います。</p>
+     *
+     * @return 記録した値
+     */
+    Mark mark() {
+
+        long[] nanos = new long[stageNanos.length];
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = stageNanos[i].sum();
+        }
+
+        return new Mark(rowCount.sum(), byteCount.sum(), nanos);
+    }
+
+    /**
+     * 記録した時点以降に加算された件数、バイト数、段階毎の処理時間を取り消します。
+     *
+     * @param mark {@link #mark()}で記録した値
+     */
+    void rollback(Mark mark) {
+
+        rowCount.add(mark.rowCount - rowCount.sum());
+        byteCount.add(mark.byteCount - byteCount.sum());
+        for (int i = 0; i < stageNanos.length; i++) {
+            stageNanos[i].add(mark.stageNanos[i] - stageNanos[i].sum());
+        }
+    }
+
+    public LoadMetricsSnapshot snapshot() {
+
+        sampleHeap();
+
+        Map<LoadStage, Long> stageMillis = new EnumMap<>(LoadStage.class);
+        for (LoadStage stage : LoadStage.values()) {
+            stageMillis.put(stage, TimeUnit.NANOSECONDS.toMillis(stageNanos[stage.ordinal()].sum()));
+        }
+
+        long[] latencyCounts = new long[batchLatencyCounts.length()];
+        for (int i = 0; i < latencyCounts.length; i++) {
+            latencyCounts[i] = batchLatencyCounts.get(i);
+        }
+
+        return LoadMetricsSnapshot.builder()
+                .tableName(tableName)
+                .source(source)
+                .elapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos))
+                .rowCount(rowCount.sum())
+                .byteCount(byteCount.sum())
+                .stageMillis(stageMillis)
+                .batchLatencyCounts(latencyCounts)
+                .peakHeapBytes(peakHeapBytes.get())
+                .build();
+    }
+
+    /**
+     * ある時点の件数、バイト数、段階毎の処理時間です。
+     */
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    static final class Mark {
+
+        private final long rowCount;
+
+        private final long byteCount;
+
+        private final long[] stageNanos;
+    }
+}
@@ -0,0 +1,43 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.util.Map;
+
+/**
+ * JMXで公開するロードの集計値です。
+ */
+public interface LoadMetricsMXBean {
+
+    String getTableName();
+
+    String getSource();
+
+    /**
+     * 状態です。({@code running}、{@code completed}、{@code failed})
+     *
+     * @return 状態
+     */
+    String getState();
+
+    long getElapsedMillis();
+
+    long getRowCount();
+
+    long getByteCount();
+
+    double getRowsPerSecond();
+
+    double getBytesPerSecond();
+
+    /**
+     * 段階毎の処理時間(ミリ秒)です。キーは段階名の小文字です。
+     *
+     * @return 段階毎の処理時間
+     */
+    Map<String, Long> getStageMillis();
+
+    long[] getBatchLatencyBoundsMillis();
+
+    long[] getBatchLatencyCounts();
+
+    long getPeakHeapBytes();
+}
@@ -0,0 +1,48 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.util.Map;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * ある時点でのロードの集計値です。
+ */
+@Value
+@Builder
+public class LoadMetricsSnapshot {
+
+    private final String tableName;
+
+    private final String source;
+
+    private final long elapsedMillis;
+
+    private final long rowCount;
+
+    private final long byteCount;
+
+    /**
+     * 段階毎の処理時間(ミリ秒)です。複数スレッドで処理した場合は、各スレッドの合計となります。
+     */
+    private final Map<LoadStage, Long> stageMillis;
+
+    /**
+     * バッチの処理時間のヒストグラムです。区切りは{@link LoadMetrics#getBatchLatencyBoundsMillis()}です。
+     */
+    private final long[] batchLatencyCounts;
+
+    private final long peakHeapBytes;
+
+    public double getRowsPerSecond() {
+        return perSecond(rowCount);
+    }
+
+    public double getBytesPerSecond() {
+        return perSecond(byteCount);
+    }
+
+    private double perSecond(long amount) {
+        return elapsedMillis == 0 ? 0 : amount * 1000.0 / elapsedMillis;
+    }
+}
@@ -0,0 +1,27 @@
+package com.enjoyxstudy.csv2postgresql;
+
+/**
+ * 既存のテーブルに対するロード方法です。
+ */
+public enum LoadMode {
+
+    /**
+     * 既存のテーブルに追加します。
+     */
+    APPEND,
+
+    /**
+     * UNLOGGEDのステージングテーブルにロードし、インデックスを作成してから既存のテーブルと入れ替えます。
+     * <p>既存のテーブルの内容は、ロードした内容で置き換わります。</p>
+     */
+    REPLACE,
+
+    /**
+     * 一時テーブルにCOPYしてから、キーが一致するレコードは更新、一致しないレコードは登録します。
+     */
+    UPSERT;
+
+    public static LoadMode of(String name) {
+        return valueOf(name.toUpperCase());
+    }
+}
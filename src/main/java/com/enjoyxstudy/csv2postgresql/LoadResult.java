@@ -0,0 +1,45 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.nio.file.Path;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * 1ファイル分のロード結果です。
+ */
+@Value
+@Builder
+public class LoadResult {
+
+    private final Path csvFilePath;
+
+    private final String tableName;
+
+    private final long loadedCount;
+
+    private final long fileSize;
+
+    private final long elapsedMillis;
+
+    /**
+     * ロードに失敗した場合の例外です。 (成功した場合は{@code null})
+     */
+    private final Exception error;
+
+    public boolean isSucceeded() {
+        return error == null;
+    }
+
+    public double getRecordsPerSecond() {
+        return perSecond(loadedCount);
+    }
+
+    public double getBytesPerSecond() {
+        return perSecond(fileSize);
+    }
+
+    private double perSecond(long amount) {
+        return elapsedMillis == 0 ? 0 : amount * 1000.0 / elapsedMillis;
+    }
+}
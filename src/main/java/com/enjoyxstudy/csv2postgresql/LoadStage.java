@@ -0,0 +1,27 @@
+package com.enjoyxstudy.csv2postgresql;
+
+/**
+ * ロード処理の段階です。
+ */
+public enum LoadStage {
+
+    /**
+     * CSVの読み込み、解析です。
+     */
+    PARSE,
+
+    /**
+     * 送信する形式への変換です。(バインド、CSVへの整形、バイナリ形式への変換など)
+     */
+    ENCODE,
+
+    /**
+     * DBへの送信です。(INSERTの場合はDB側での処理も含みます)
+     */
+    WRITE,
+
+    /**
+     * コミットです。
+     */
+    COMMIT;
+}
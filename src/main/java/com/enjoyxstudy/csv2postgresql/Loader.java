@@ -1,102 +1,736 @@
 package com.enjoyxstudy.csv2postgresql;
 
 import java.io.BufferedInputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
+import javax.sql.DataSource;
+
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.ScalarHandler;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.BOMInputStream;
 
-import lombok.RequiredArgsConstructor;
+public class Loader implements AutoCloseable {
+
+    private static final byte[] UTF8_BOM = { (byte) 0xef, (byte) 0xbb, (byte) 0xbf };
 
-@RequiredArgsConstructor
-public class Loader {
+    /**
+     * メモリの上限から求めるチャンクのサイズの下限です。(小さすぎるとCOPYの回数が増えるため)
+     */
+    private static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * 標準入力からロードする場合に、CSVファイルのパスの代わりに指定する名前です。
+     */
+    public static final String STREAM_NAME = "-";
 
     private final Config config;
 
+    private final ConnectionFactory connectionFactory;
+
+    /**
+     * このLoaderで生成したコネクションプールです。(使い回さない場合は{@code null})
+     */
+    private final ConnectionPool connectionPool;
+
+    private final TableMetadataCache tableMetadataCache;
+
+    private final ColumnMapping columnMapping;
+
+    private final List<LoadListener> listeners = new CopyOnWriteArrayList<>();
+
+    public Loader(Config config) {
+        this(
+                config,
+                config.getDatabasePoolSize() > 0
+                        ? new ConnectionPool(
+                                ConnectionFactory.of(config),
+                                config.getDatabasePoolSize(),
+                                config.getDatabasePoolMaxSize(),
+                                config.getDatabasePoolWaitMillis())
+                        : null);
+    }
+
+    /**
+     * 指定したDataSourceからコネクションを取得するLoaderを生成します。
+     * <p>接続先の設定は使用しないため、接続先やドライバの接続プロパティはDataSource側で指定してください。</p>
+     *
+     * @param config 設定
+     * @param dataSource DataSource
+     */
+    public Loader(Config config, DataSource dataSource) {
+        this(config, dataSource::getConnection, null);
+    }
+
+    Loader(Config config, ConnectionFactory connectionFactory) {
+        this(config, connectionFactory, null);
+    }
+
+    private Loader(Config config, ConnectionPool connectionPool) {
+        this(
+                config,
+                connectionPool != null ? connectionPool::getConnection : ConnectionFactory.of(config),
+                connectionPool);
+    }
+
+    private Loader(Config config, ConnectionFactory connectionFactory, ConnectionPool connectionPool) {
+        this.config = config;
+        this.connectionFactory = connectionFactory;
+        this.connectionPool = connectionPool;
+        this.tableMetadataCache = new TableMetadataCache(config.getDatabaseMetadataCacheMillis());
+        this.columnMapping = ColumnMapping.of(config);
+
+        if (config.getMetricsProgressLog() != null) {
+            listeners.add(new JsonLinesProgressLog(Paths.get(config.getMetricsProgressLog())));
+        }
+        if (config.isMetricsJmx()) {
+            listeners.add(new JmxLoadListener());
+        }
+    }
+
+    /**
+     * ロードの進捗を受け取るリスナーを追加します。
+     *
+     * @param listener リスナー
+     */
+    public void addListener(LoadListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * キャッシュしているテーブルの情報を破棄します。
+     * <p>ロード以外でテーブルを変更した場合に呼び出してください。</p>
+     *
+     * @param tableName テーブル名
+     */
+    public void invalidateTableMetadata(String tableName) {
+        tableMetadataCache.invalidate(tableName);
+    }
+
+    /**
+     * キャッシュしている全てのテーブルの情報を破棄します。
+     */
+    public void invalidateTableMetadata() {
+        tableMetadataCache.invalidateAll();
+    }
+
+    /**
+     * COPYでの1回のロードで、同時に使うコネクション数の最大を求めます。
+     *
+     * @return コネクション数
+     */
+    int maxCopyConnections() {
+
+        int connections = 1;
+        if (isParallelCopy()) {
+            // パーティションの作成は、各ワーカーとは別のコネクションで行う
+            connections = Math.max(config.getCopyParallelSize(), 1) + (config.isLoadPartitionRouting() ? 1 : 0);
+        }
+        if (config.getLoadMode() == LoadMode.REPLACE) {
+            connections = Math.max(connections, config.getLoadIndexParallelSize());
+        }
+
+        return connections;
+    }
+
+    /**
+     * 保持しているコネクションを切断します。
+     */
+    @Override
+    public void close() {
+
+        if (connectionPool != null) {
+            connectionPool.close();
+        }
+    }
+
     public static void main(String[] args) throws IOException, SQLException {
 
         if (args.length != 3) {
-            System.err.println("usage: java -jar csv2postgresql-all.jar <config file> <table name> <csv file>");
+            System.err.println(
+                    "usage: java -jar csv2postgresql-all.jar <config file> <table name> <csv file | directory | glob | ->");
             System.exit(1);
         }
 
         Config config = Config.of(Paths.get(args[0]));
         String tableName = args[1];
-        Path csvFilePath = Paths.get(args[2]);
+        boolean stdin = args[2].equals(STREAM_NAME);
+
+        if (stdin && tableName.contains(MultiFileLoader.FILE_NAME_PLACEHOLDER)) {
+            System.err.println(MultiFileLoader.FILE_NAME_PLACEHOLDER + " can not be used with standard input.");
+            System.exit(1);
+        }
+
+        List<Path> csvFilePaths = stdin
+                ? Collections.emptyList()
+                : MultiFileLoader.resolveCsvFiles(args[2]);
 
         long startTime = System.currentTimeMillis();
 
         System.out.println("\nLoading...");
 
-        long loadedCount = new Loader(config).loadByCopy(
-                csvFilePath,
-                tableName);
+        if (stdin || (csvFilePaths.size() == 1 && !tableName.contains(MultiFileLoader.FILE_NAME_PLACEHOLDER))) {
+
+            long loadedCount;
+            try (Loader loader = new Loader(config)) {
+                // 標準入力の場合は、パイプラインの上流から流れてくるデータをそのままロード
+                loadedCount = stdin
+                        ? loader.loadByCopy(System.in, tableName)
+                        : loader.loadByCopy(csvFilePaths.get(0), tableName);
+            }
+
+            System.out.println(
+                    String.format(
+                            "Loading is completed. (Number of records: %,d / Elapsed millsecods: %,d)",
+                            loadedCount,
+                            System.currentTimeMillis() - startTime));
+            return;
+        }
+
+        List<LoadResult> results = new MultiFileLoader(config).load(csvFilePaths, tableName, Loader::printResult);
+
+        long elapsedMillis = System.currentTimeMillis() - startTime;
+        long loadedCount = results.stream().mapToLong(LoadResult::getLoadedCount).sum();
+        long fileSize = results.stream().mapToLong(LoadResult::getFileSize).sum();
+        long failedCount = results.stream().filter(result -> !result.isSucceeded()).count();
 
         System.out.println(
                 String.format(
-                        "Loading is completed. (Number of records: %,d / Elapsed millsecods: %,d)",
+                        "Loading is completed. (Number of files: %,d / Failed files: %,d / Number of records: %,d"
+                                + " / Elapsed millsecods: %,d / Records per second: %,.0f / MB per second: %,.1f)",
+                        results.size(),
+                        failedCount,
                         loadedCount,
-                        System.currentTimeMillis() - startTime));
+                        elapsedMillis,
+                        elapsedMillis == 0 ? 0 : loadedCount * 1000.0 / elapsedMillis,
+                        elapsedMillis == 0 ? 0 : fileSize * 1000.0 / elapsedMillis / 1024 / 1024));
+
+        if (failedCount > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void printResult(LoadResult result) {
+
+        if (!result.isSucceeded()) {
+            System.out.println(
+                    String.format(
+                            "%s -> %s : Failed. (%s)",
+                            result.getCsvFilePath(),
+                            result.getTableName(),
+                            result.getError()));
+            return;
+        }
+
+        System.out.println(
+                String.format(
+                        "%s -> %s : Number of records: %,d / Elapsed millsecods: %,d"
+                                + " / Records per second: %,.0f / MB per second: %,.1f",
+                        result.getCsvFilePath(),
+                        result.getTableName(),
+                        result.getLoadedCount(),
+                        result.getElapsedMillis(),
+                        result.getRecordsPerSecond(),
+                        result.getBytesPerSecond() / 1024 / 1024));
     }
 
     public long loadByCopy(Path csvFilePath, String tableName)
             throws IOException, SQLException {
+        return loadByCopy(CsvSource.of(csvFilePath), tableName);
+    }
+
+    /**
+     * 標準入力などのストリームから、COPYでロードします。
+     * <p>ストリームは先頭から1度だけ読み込みます。
+     * そのため型の推測は、{@code reservoir}が指定されている場合も先頭のレコードから行います。</p>
+     *
+     * @param csvStream CSVのストリーム (圧縮されている場合は展開しながら読み込みます)
+     * @param tableName テーブル名
+     * @return ロードした件数
+     * @throws IOException
+     * @throws SQLException
+     */
+    public long loadByCopy(InputStream csvStream, String tableName)
+            throws IOException, SQLException {
+        return loadByCopy(CsvSource.of(csvStream, STREAM_NAME), tableName);
+    }
+
+    private long loadByCopy(CsvSource source, String tableName)
+            throws IOException, SQLException {
+        return measure(
+                source,
+                tableName,
+                metrics -> loadWithMode(tableName, targetTableName -> loadByCopy(source, targetTableName, metrics)));
+    }
+
+    private long loadByCopy(CsvSource source, String tableName, LoadMetrics metrics)
+            throws IOException, SQLException {
+
+        if (config.isLoadCheckpointEnabled()) {
+            if (config.getLoadRejectFile() != null) {
+                throw new IllegalArgumentException("Checkpoint cannot be combined with reject file.");
+            }
+            return loadByCheckpointCopy(source, tableName, metrics);
+        }
+
+        if (isParallelCopy()) {
+            return loadByParallelCopy(source, tableName, metrics);
+        }
+
+        try (Connection connection = getConnection()) {
+
+            connection.setAutoCommit(false);
+
+            if (config.getLoadRejectFile() != null) {
+                return loadByRejectingCopy(connection, source, tableName, metrics);
+            }
+
+            LoadMetrics.Mark mark = metrics.mark();
+
+            // ヘッダはロード対象と同じストリームから読み込み、残りをHEADER無しでCOPY
+            if (config.getCopyFormat() == CopyFormat.BINARY) {
+                // バイナリ形式の場合、クライアント側で解析してカラムの型に応じた値に変換
+                try (CsvHead<Reader> head = CsvHead.read(newCsvReader(source, metrics), headSampleSize(source))) {
+                    return copy(connection, source, tableName, head, metrics, mark,
+                            (table, csvReader) -> tableMetadataCache.withColumnTypes(connection, table)
+                                    .loadBinary(connection, csvReader, false, metrics));
+                }
+            }
+
+            if (canPassThrough(connection)) {
+                // デコード、エンコードを行わず、ファイルのバイト列をそのまま送信
+                InputStream csvStream = new MeteredInputStream(readAhead(newCsvByteStream(source)), metrics);
+                try (CsvHead<InputStream> head = CsvHead.read(csvStream, csvCharset(), headSampleSize(source))) {
+                    return copy(connection, source, tableName, head, metrics, mark,
+                            (table, remainingStream) -> table.load(
+                                    connection, remainingStream, false, csvCharset(), metrics));
+                }
+            }
+
+            try (CsvHead<Reader> head = CsvHead.read(newCsvReader(source, metrics), headSampleSize(source))) {
+                return copy(connection, source, tableName, head, metrics, mark,
+                        (table, csvReader) -> table.load(connection, csvReader, false, metrics));
+            }
+        }
+    }
+
+    /**
+     * 不正なレコードを除外しながら、COPYでロードします。
+     * <p>除外したレコードは、エラーメッセージと共にリジェクトファイルに出力します。</p>
+     *
+     * @param connection コネクション
+     * @param source ロード元
+     * @param tableName テーブル名
+     * @param metrics 集計先
+     * @return ロードした件数
+     * @throws IOException
+     * @throws SQLException
+     */
+    private long loadByRejectingCopy(Connection connection, CsvSource source, String tableName, LoadMetrics metrics)
+            throws IOException, SQLException {
+
+        if (!CsvChunkReader.supports(csvCharset())) {
+            throw new IllegalArgumentException("Reject file does not support encoding: " + csvCharset().name());
+        }
 
-        List<Column> columns;
-        try (CSVParser csvParser = CSVFormat.EXCEL.withHeader().parse(newCsvReader(csvFilePath))) {
+        // レコード単位で分割してCOPYし直すため、バイナリ形式の指定に関わらずCSV形式で送信
+        // 送信中のチャンク、読み込み中のバッファ、二分して送信し直す分を見込む
+        RejectingCopier copier = new RejectingCopier(
+                connection,
+                chunkSize(RejectingCopier.CHUNK_SIZE, 3),
+                csvCharset(),
+                canPassThrough(connection),
+                Paths.get(config.getLoadRejectFile()),
+                source.getName(),
+                config.getLoadRejectLimit(),
+                metrics);
 
-            columns = readColumns(csvParser);
+        LoadMetrics.Mark mark = metrics.mark();
+        InputStream csvStream = new MeteredInputStream(readAhead(newCsvByteStream(source)), metrics);
+        try (CsvHead<InputStream> head = CsvHead.read(csvStream, csvCharset(), headSampleSize(source))) {
+            return copy(connection, source, tableName, head, metrics, mark, copier::copy);
         }
+    }
+
+    private <T extends Closeable> long copy(
+            Connection connection,
+            CsvSource source,
+            String tableName,
+            CsvHead<T> head,
+            LoadMetrics metrics,
+            LoadMetrics.Mark mark,
+            Copier<T> copier)
+            throws IOException, SQLException {
 
         Table table = Table.builder()
                 .name(tableName)
-                .columns(columns)
+                .columns(head.getColumns())
                 .build();
 
-        try (Connection connection = DriverManager.getConnection(
-                config.getDatabaseUrl(),
-                config.getDatabaseUser(),
-                config.getDatabasePassword())) {
+        boolean created = false;
+        if (!tableMetadataCache.exists(connection, table)) {
+            // テーブルが存在しなかった場合にはテーブル作成から
+            table = inferColumnTypes(table, sampleRecords(head, source));
+            table.create(connection);
+            created = true;
+        }
 
-            connection.setAutoCommit(false);
+        long insertedCount;
+        try {
+            if (config.getLoadMode() == LoadMode.UPSERT && !created) {
+                insertedCount = upsert(connection, table, head.getRemaining(), copier);
+            } else {
+                insertedCount = copier.copy(table, head.getRemaining());
+            }
+        } catch (SQLException e) {
+            if (!created || !canReinfer(e, source)) {
+                throw e;
+            }
+
+            // 推測した型に合わない値があった場合には、ファイル全体から型を推測し直して作成からやり直す
+            // (ファイルを読み直すため、この場合に限りファイルを再度開く)
+            connection.rollback();
+            // 読み直す分が重複して集計されないよう、読み込みを止めてから失敗した分の集計を取り消す
+            head.close();
+            metrics.rollback(mark);
+            tableMetadataCache.invalidate(table.getName());
+            table = inferColumnTypes(table, source);
+            table.create(connection);
+            insertedCount = copy(connection, source, table, metrics);
+        }
+
+        commit(connection, metrics);
+
+        return insertedCount;
+    }
+
+    /**
+     * 一時テーブルにCOPYしてから、既存のテーブルにまとめて登録、更新します。
+     *
+     * @param connection コネクション
+     * @param table 既存のテーブル
+     * @param remaining ヘッダより後ろを読み込むストリーム
+     * @param copier COPYの処理
+     * @return 登録、更新した件数
+     * @throws IOException
+     * @throws SQLException
+     */
+    private <T> long upsert(Connection connection, Table table, T remaining, Copier<T> copier)
+            throws IOException, SQLException {
+
+        // ファイル全体をCOPYしてから失敗しないよう、キーはヘッダのカラムで先に確認
+        table.checkKeyColumns(config.getLoadUpsertKeys());
+
+        Table temporaryTable = table.createTemporaryTable(connection);
+        copier.copy(temporaryTable, remaining);
+
+        return table.upsert(connection, temporaryTable, config.getLoadUpsertKeys());
+    }
+
+    @FunctionalInterface
+    private interface Copier<T> {
+
+        long copy(Table table, T remaining) throws IOException, SQLException;
+    }
+
+    private long copy(Connection connection, CsvSource source, Table table, LoadMetrics metrics)
+            throws IOException, SQLException {
+
+        if (config.getCopyFormat() == CopyFormat.BINARY) {
+            try (Reader csvReader = newCsvReader(source, metrics)) {
+                return tableMetadataCache.withColumnTypes(connection, table)
+                        .loadBinary(connection, csvReader, true, metrics);
+            }
+        }
+
+        if (canPassThrough(connection)) {
+            try (InputStream csvStream = new MeteredInputStream(readAhead(newCsvByteStream(source)), metrics)) {
+                return table.load(connection, csvStream, true, csvCharset(), metrics);
+            }
+        }
+
+        try (Reader csvReader = newCsvReader(source, metrics)) {
+            return table.load(connection, csvReader, true, metrics);
+        }
+    }
+
+    private long loadByParallelCopy(CsvSource source, String tableName, LoadMetrics metrics)
+            throws IOException, SQLException {
+
+        LoadMetrics.Mark mark = metrics.mark();
+
+        Table table;
+        InputStream csvStream = new MeteredInputStream(readAhead(newCsvByteStream(source)), metrics);
+        try (CsvHead<InputStream> head = CsvHead.read(csvStream, csvCharset(), headSampleSize(source))) {
+
+            table = Table.builder()
+                    .name(tableName)
+                    .columns(head.getColumns())
+                    .build();
+
+            boolean created = false;
+
+            // 各ワーカーから参照できるよう、テーブル作成は先にコミットしておく
+            try (Connection connection = getConnection()) {
+                if (!tableMetadataCache.exists(connection, table)) {
+                    table = inferColumnTypes(table, sampleRecords(head, source));
+                    table.create(connection);
+                    created = true;
+                }
+            }
+
+            try {
+                return loadByParallelCopy(table, head.getRemaining(), metrics);
+            } catch (IOException | SQLException | RuntimeException e) {
+                if (!created) {
+                    throw e;
+                }
+
+                // 推測した型のまま空のテーブルが残らないよう、作成したテーブルは削除する
+                // (ワーカー毎にコミットしているため、ロールバックでは戻せない)
+                dropCreatedTable(table, e);
+
+                if (!canReinfer(e, source)) {
+                    throw e;
+                }
+            }
+        }
+
+        // 推測した型に合わない値があった場合には、単一のCOPYと同様にファイル全体から型を推測し直して作成からやり直す
+        // (作成したテーブルは削除済みのため、ロード済みの分と重複しない)
+        metrics.rollback(mark);
+        table = inferColumnTypes(table, source);
+        try (Connection connection = getConnection()) {
+            table.create(connection);
+        }
+
+        csvStream = new MeteredInputStream(readAhead(newCsvByteStream(source)), metrics);
+        try (CsvHead<InputStream> head = CsvHead.read(csvStream, csvCharset(), 0)) {
+            return loadByParallelCopy(table, head.getRemaining(), metrics);
+        } catch (IOException | SQLException | RuntimeException e) {
+            dropCreatedTable(table, e);
+            throw e;
+        }
+    }
+
+    private boolean isParallelCopy() {
+
+        // 一時テーブルはセッション内でのみ参照できるため、upsertの場合は並列化しない
+        // (不正なレコードの除外はセーブポイントで行うため、同様に並列化しない)
+        return (config.getCopyParallelSize() > 1 || config.isLoadPartitionRouting())
+                && CsvChunkReader.supports(csvCharset())
+                && config.getLoadMode() != LoadMode.UPSERT
+                && config.getLoadRejectFile() == null
+                && !config.isLoadCheckpointEnabled();
+    }
+
+    private long loadByParallelCopy(Table table, InputStream remaining, LoadMetrics metrics)
+            throws IOException, SQLException {
+
+        boolean passThrough;
+        PartitionRouter partitionRouter = null;
+
+        try (Connection connection = getConnection()) {
 
-            if (!table.exists(connection)) {
-                // テーブルが存在しなかった場合にはテーブル作成から
-                table.create(connection);
+            if (config.getCopyFormat() == CopyFormat.BINARY) {
+                table = tableMetadataCache.withColumnTypes(connection, table);
             }
 
-            long insertedCount;
-            try (Reader csvReader = newCsvReader(csvFilePath)) {
-                insertedCount = table.load(connection, csvReader);
+            passThrough = canPassThrough(connection);
+
+            if (config.isLoadPartitionRouting()) {
+                partitionRouter = PartitionRouter.read(
+                        connection,
+                        table,
+                        config.getLoadPartitionInterval() != null
+                                ? PartitionRouter.PartitionInterval.of(config.getLoadPartitionInterval())
+                                : null);
             }
+        }
+
+        if (partitionRouter != null) {
+            // パーティション毎に振り分け、各パーティションへ直接COPY
+            int parallelSize = Math.max(config.getCopyParallelSize(), 1);
+
+            // キュー内、COPY中、読み込み中のチャンクに加え、パーティション毎のバッファの分(最大2チャンク)を見込む
+            PartitionCopyLoader partitionCopyLoader = new PartitionCopyLoader(
+                    this::getConnection,
+                    parallelSize,
+                    chunkSize(PartitionCopyLoader.CHUNK_SIZE, parallelSize * 3 + 4),
+                    config.getCopyCommitMode(),
+                    config.getCopyFormat(),
+                    csvCharset(),
+                    passThrough,
+                    metrics);
+
+            return partitionCopyLoader.load(table, partitionRouter, remaining);
+        }
+
+        int parallelSize = Math.max(config.getCopyParallelSize(), 1);
+
+        // キュー内(並列数の2倍)、COPY中、読み込み中(バッファと切り出したチャンク)のチャンクを見込む
+        ParallelCopyLoader parallelCopyLoader = new ParallelCopyLoader(
+                this::getConnection,
+                parallelSize,
+                chunkSize(ParallelCopyLoader.CHUNK_SIZE, parallelSize * 3 + 2),
+                config.getCopyCommitMode(),
+                config.getCopyFormat(),
+                csvCharset(),
+                passThrough,
+                metrics);
+
+        return parallelCopyLoader.load(table, remaining);
+    }
+
+    private void dropCreatedTable(Table table, Exception cause) {
+
+        try (Connection connection = getConnection()) {
+            table.drop(connection);
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        } finally {
+            tableMetadataCache.invalidate(table.getName());
+        }
+    }
+
+    /**
+     * チェックポイントを記録しながら、COPYでロードします。
+     *
+     * @param source ロード元
+     * @param tableName テーブル名
+     * @param metrics 集計先
+     * @return ロードした件数
+     * @throws IOException
+     * @throws SQLException
+     */
+    private long loadByCheckpointCopy(CsvSource source, String tableName, LoadMetrics metrics)
+            throws IOException, SQLException {
+
+        if (!source.isReopenable()) {
+            throw new IllegalArgumentException("Checkpoint requires a regular file: " + source.getName());
+        }
+        if (!CsvChunkReader.supports(csvCharset())) {
+            throw new IllegalArgumentException("Checkpoint does not support encoding: " + csvCharset().name());
+        }
+        if (config.getLoadMode() != LoadMode.APPEND) {
+            // ステージングテーブルや一時テーブルは、途中までの状態が残らないため再開できない
+            throw new IllegalArgumentException("Checkpoint requires load mode append: " + config.getLoadMode());
+        }
+
+        Table table;
+        try (CsvHead<InputStream> head = CsvHead.read(newCsvByteStream(source), csvCharset(), headSampleSize(source))) {
+            table = Table.builder()
+                    .name(tableName)
+                    .columns(head.getColumns())
+                    .build();
 
-            connection.commit();
+            try (Connection connection = getConnection()) {
+                if (!tableMetadataCache.exists(connection, table)) {
+                    table = inferColumnTypes(table, sampleRecords(head, source));
+                    table.create(connection);
+                }
+            }
+        }
 
-            return insertedCount;
+        boolean passThrough;
+        try (Connection connection = getConnection()) {
+            if (config.getCopyFormat() == CopyFormat.BINARY) {
+                table = tableMetadataCache.withColumnTypes(connection, table);
+            }
+            passThrough = canPassThrough(connection);
         }
+
+        CheckpointCopyLoader checkpointCopyLoader = new CheckpointCopyLoader(
+                this::getConnection,
+                config.getLoadCheckpointTable(),
+                // 読み込み中のバッファと切り出したチャンクを見込む
+                chunkSize(
+                        config.getLoadCheckpointBytes() > 0
+                                ? config.getLoadCheckpointBytes()
+                                : CheckpointCopyLoader.DEFAULT_CHUNK_SIZE,
+                        2),
+                config.getLoadCheckpointRows(),
+                config.getCopyFormat(),
+                csvCharset(),
+                passThrough,
+                metrics);
+
+        return checkpointCopyLoader.load(
+                table,
+                CheckpointCopyLoader.fingerprint(source.getPath()),
+                offset -> new MeteredInputStream(readAhead(newCsvByteStream(source, offset)), metrics));
     }
 
     public long load(Path csvFilePath, String tableName, LongConsumer loadingNotifier)
             throws IOException, SQLException {
+        return load(CsvSource.of(csvFilePath), tableName, loadingNotifier);
+    }
+
+    /**
+     * 標準入力などのストリームから、INSERTでロードします。
+     * <p>ストリームは先頭から1度だけ読み込みます。
+     * そのため型の推測は、{@code reservoir}が指定されている場合も先頭のレコードから行います。</p>
+     *
+     * @param csvStream CSVのストリーム (圧縮されている場合は展開しながら読み込みます)
+     * @param tableName テーブル名
+     * @param loadingNotifier 登録した件数の通知先
+     * @return ロードした件数
+     * @throws IOException
+     * @throws SQLException
+     */
+    public long load(InputStream csvStream, String tableName, LongConsumer loadingNotifier)
+            throws IOException, SQLException {
+        return load(CsvSource.of(csvStream, STREAM_NAME), tableName, loadingNotifier);
+    }
+
+    private long load(CsvSource source, String tableName, LongConsumer loadingNotifier)
+            throws IOException, SQLException {
+
+        if (config.isLoadCheckpointEnabled()) {
+            // チェックポイントはCOPYしたバイト位置で記録するため、INSERTでは使えない
+            throw new IllegalArgumentException("Checkpoint is supported only by COPY.");
+        }
+
+        return measure(
+                source,
+                tableName,
+                metrics -> loadWithMode(
+                        tableName,
+                        targetTableName -> load(source, targetTableName, loadingNotifier, metrics)));
+    }
+
+    private long load(CsvSource source, String tableName, LongConsumer loadingNotifier, LoadMetrics metrics)
+            throws IOException, SQLException {
 
-        try (CSVParser csvParser = CSVFormat.EXCEL.withHeader().parse(newCsvReader(csvFilePath))) {
+        try (CSVParser csvParser = CSVFormat.EXCEL.withHeader().parse(newCsvReader(source, metrics))) {
 
             List<Column> columns = readColumns(csvParser);
 
@@ -105,40 +739,131 @@ public class Loader {
                     .columns(columns)
                     .build();
 
-            try (Connection connection = DriverManager.getConnection(
-                    config.getDatabaseUrl(),
-                    config.getDatabaseUser(),
-                    config.getDatabasePassword())) {
+            try (Connection connection = getConnection()) {
 
                 connection.setAutoCommit(false);
 
-                if (!table.exists(connection)) {
+                List<String[]> headSampleRecords = Collections.emptyList();
+                ColumnTypeInferrer typeInferrer = null;
+
+                boolean created = false;
+                if (!tableMetadataCache.exists(connection, table)) {
                     // テーブルが存在しなかった場合にはテーブル作成から
+                    if (config.getTypeInference() != TypeInference.NONE) {
+
+                        List<String[]> sampleRecords;
+                        if (config.getTypeInference() == TypeInference.HEAD || !source.isReopenable()) {
+                            // 先頭のレコードから推測した場合、推測に使ったレコードはそのまま登録対象に
+                            sampleRecords = headRecords(csvParser);
+                            headSampleRecords = sampleRecords;
+                        } else {
+                            try (CSVParser sampleParser = CSVFormat.EXCEL.withHeader().parse(newCsvReader(source))) {
+                                sampleRecords = sampleRecords(sampleParser);
+                            }
+                        }
+
+                        typeInferrer = new ColumnTypeInferrer(columns.size());
+                        sampleRecords.forEach(typeInferrer::accept);
+
+                        table = Table.builder()
+                                .name(tableName)
+                                .columns(typeInferrer.apply(columns))
+                                .build();
+                    }
+
                     table.create(connection);
+                    created = true;
+                }
+
+                // 既存のテーブルへのupsertは、COPYの場合と同様に一時テーブルに登録してからまとめて登録、更新する
+                Table upsertTable = null;
+                if (config.getLoadMode() == LoadMode.UPSERT && !created) {
+                    table.checkKeyColumns(config.getLoadUpsertKeys());
+                    upsertTable = table;
+                    table = table.createTemporaryTable(connection);
+                }
+
+                // 一時テーブルは他のコネクションから見えないため、upsertの場合は並行して登録しない
+                if (config.getInsertQueueSize() > 0 && typeInferrer == null && upsertTable == null) {
+                    // 解析と登録を並行して行うため、書き込みスレッドのコネクションから見えるようにコミット
+                    // (型をその場で広げる場合には、テーブルの変更と登録が競合するため対象外)
+                    connection.commit();
+
+                    return new PipelinedInserter(
+                            this::getConnection,
+                            config.getInsertWriterSize(),
+                            config.getInsertQueueSize(),
+                            config.getBatchInsertSize(),
+                            // キュー内、書き込み中、解析中のバッファを見込む
+                            batchMaxBytes(config.getInsertQueueSize() + config.getInsertWriterSize() + 1),
+                            config.getInsertStrategy(),
+                            config.getCopyCommitMode(),
+                            metrics)
+                                    .load(table, csvParser, loadingNotifier);
                 }
 
                 long insertedCount = 0;
 
-                // 一定件数毎にINSERT
-                List<String[]> insertTargetRecords = new ArrayList<>();
-                for (CSVRecord record : csvParser) {
-                    insertTargetRecords.add(toValues(record));
+                // 件数を変更する場合、最初のバッチは指定された件数で登録し、以降は登録にかかった時間から決める
+                AdaptiveBatchSizer batchSizer = config.isBatchAdaptive()
+                        ? new AdaptiveBatchSizer(
+                                config.getBatchInsertSize(),
+                                config.getBatchMinSize(),
+                                config.getBatchMaxSize(),
+                                config.getBatchTargetMillis(),
+                                config.getBatchMaxBytes())
+                        : null;
+
+                // バッファと準備済みのINSERT文は使い回し、一定件数毎にINSERT
+                RecordBatch batch = new RecordBatch(
+                        batchSizer != null ? batchSizer.getSize() : config.getBatchInsertSize(),
+                        columns.size(),
+                        batchMaxBytes(1));
+                BatchInserter inserter = newInserter(table, connection, metrics);
+                try {
+                    // 推測に使ったレコードは先頭から取り出したものなので、順番がそのままレコード番号
+                    long headRecordNumber = 0;
+                    for (String[] record : headSampleRecords) {
+                        batch.add(record, ++headRecordNumber);
+                        if (batch.isFull()) {
+                            insertedCount += flush(inserter, batch, batchSizer, insertedCount, loadingNotifier, metrics);
+                        }
+                    }
+
+                    // 1バッチ分のレコードを揃えるまでの時間を、解析の時間として集計
+                    long parseStartNanos = System.nanoTime();
+                    for (CSVRecord record : csvParser) {
+
+                        if (typeInferrer != null && typeInferrer.accept(record)) {
+                            // 推測した型に合わない値があった場合には、その場で型を広げる
+                            // (COPYで登録している場合もあるため、登録を完了してから変更)
+                            inserter.finish();
+                            inserter.close();
+                            table = table.alterColumnTypes(connection, typeInferrer.apply(table.getColumns()));
+                            inserter = newInserter(table, connection, metrics);
+                        }
 
-                    if (insertTargetRecords.size() == config.getBatchInsertSize()) {
-                        table.insert(connection, insertTargetRecords);
-                        insertedCount += insertTargetRecords.size();
-                        loadingNotifier.accept(insertedCount);
-                        insertTargetRecords.clear();
+                        batch.add(record);
+
+                        if (batch.isFull()) {
+                            metrics.addElapsed(LoadStage.PARSE, parseStartNanos);
+                            insertedCount += flush(inserter, batch, batchSizer, insertedCount, loadingNotifier, metrics);
+                            parseStartNanos = System.nanoTime();
+                        }
                     }
+                    metrics.addElapsed(LoadStage.PARSE, parseStartNanos);
+
+                    insertedCount += flush(inserter, batch, batchSizer, insertedCount, loadingNotifier, metrics);
+                    inserter.finish();
+                } finally {
+                    inserter.close();
                 }
 
-                if (!insertTargetRecords.isEmpty()) {
-                    table.insert(connection, insertTargetRecords);
-                    insertedCount += insertTargetRecords.size();
-                    loadingNotifier.accept(insertedCount);
+                if (upsertTable != null) {
+                    insertedCount = upsertTable.upsert(connection, table, config.getLoadUpsertKeys());
                 }
 
-                connection.commit();
+                commit(connection, metrics);
 
                 return insertedCount;
             }
@@ -151,16 +876,416 @@ public class Loader {
         });
     }
 
-    private InputStreamReader newCsvReader(Path csvFilePath) throws IOException {
+    private BatchInserter newInserter(Table table, Connection connection, LoadMetrics metrics)
+            throws SQLException {
+        return table.newInserter(connection, config.getInsertStrategy(), config.getBatchInsertSize(), metrics);
+    }
+
+    /**
+     * メモリの上限から、1バッチのバイト数の上限を求めます。
+     * <p>登録時にSQLや送信データに変換する分も見込み、同時に保持するバッチ数の2倍で割ります。</p>
+     *
+     * @param batchCount 同時に保持するバッチ数
+     * @return バイト数の上限 (制限しない場合は0)
+     */
+    private long batchMaxBytes(int batchCount) {
+
+        if (!config.isLoadMemoryBudgeted()) {
+            return 0;
+        }
+
+        return Math.max(stageMemoryBudget() / (batchCount * 2L), 1);
+    }
+
+    /**
+     * メモリの上限から、1チャンクのサイズを求めます。
+     *
+     * @param defaultSize 制限しない場合のサイズ
+     * @param chunkCount 同時に保持するチャンク数
+     * @return チャンクのサイズ
+     * @throws IllegalArgumentException メモリの上限内で、下限のサイズのチャンクを保持できない場合
+     */
+    private int chunkSize(int defaultSize, int chunkCount) {
+
+        if (!config.isLoadMemoryBudgeted()) {
+            return defaultSize;
+        }
+
+        long budgetedSize = stageMemoryBudget() / chunkCount;
+
+        // 下限に切り上げると上限を守れなくなるため、ロードを始める前に失敗させる
+        int minSize = Math.min(defaultSize, MIN_CHUNK_SIZE);
+        if (budgetedSize < minSize) {
+            throw new IllegalArgumentException(String.format(
+                    "load.memory-budget is too small: %,d bytes are required for %d chunks of %,d bytes.",
+                    (long) minSize * chunkCount,
+                    chunkCount,
+                    minSize));
+        }
+
+        return (int) Math.min(defaultSize, budgetedSize);
+    }
+
+    /**
+     * メモリの上限を、バッファとして保持する段階で等分した、1段階あたりのバイト数を求めます。
+     * <p>段階は、並列の展開、並列の変換、先読み、ロード(バッチやCOPYのチャンク)のうち、設定で有効なものです。
+     * 並列の展開は、ファイルが圧縮されているかどうかに関わらず見込みます。</p>
+     *
+     * @return 1段階あたりのバイト数 (制限しない場合は0)
+     */
+    private long stageMemoryBudget() {
+
+        if (!config.isLoadMemoryBudgeted()) {
+            return 0;
+        }
+
+        int stageCount = 1;
+        if (config.getDecompressionParallelSize() > 1) {
+            stageCount++;
+        }
+        if (isTranscoding()) {
+            stageCount++;
+        }
+        if (config.getCopyBufferCount() > 0) {
+            stageCount++;
+        }
+
+        return config.getLoadMemoryBudget() / stageCount;
+    }
+
+    private int flush(
+            BatchInserter inserter,
+            RecordBatch batch,
+            AdaptiveBatchSizer batchSizer,
+            long insertedCount,
+            LongConsumer loadingNotifier,
+            LoadMetrics metrics)
+            throws SQLException {
+
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        long batchBytes = batchSizer != null ? batch.estimateBytes() : 0;
+
+        long startNanos = System.nanoTime();
+        int count = inserter.insert(batch);
+        long elapsedNanos = System.nanoTime() - startNanos;
+        metrics.recordBatchLatency(elapsedNanos);
+
+        loadingNotifier.accept(insertedCount + count);
+        batch.clear();
+
+        if (batchSizer != null) {
+            batch.resize(batchSizer.record(count, batchBytes, elapsedNanos));
+        }
+
+        return count;
+    }
+
+    private static void commit(Connection connection, LoadMetrics metrics) throws SQLException {
+
+        long startNanos = System.nanoTime();
+        connection.commit();
+        metrics.addElapsed(LoadStage.COMMIT, startNanos);
+    }
+
+    /**
+     * ロードの集計値を取りながらロードします。
+     *
+     * @param source ロード元
+     * @param tableName テーブル名
+     * @param load ロード処理
+     * @return ロードした件数
+     * @throws IOException
+     * @throws SQLException
+     */
+    private long measure(CsvSource source, String tableName, MeasuredLoad load) throws IOException, SQLException {
+
+        LoadMetrics metrics = new LoadMetrics(tableName, source.getName());
+
+        try (MetricsReporter reporter = new MetricsReporter(metrics, listeners, config.getMetricsIntervalMillis())) {
+
+            long loadedCount;
+            try {
+                loadedCount = load.load(metrics);
+            } catch (IOException | SQLException | RuntimeException e) {
+                // テーブルが変更されたことによる失敗の可能性もあるため、キャッシュは破棄
+                tableMetadataCache.invalidate(tableName);
+                reporter.failed(e);
+                throw e;
+            }
+
+            reporter.completed();
+            return loadedCount;
+        }
+    }
+
+    /**
+     * ロード方法に応じて、既存のテーブルかステージングテーブルにロードします。
+     *
+     * @param tableName テーブル名
+     * @param load ロード処理
+     * @return ロードした件数
+     * @throws IOException
+     * @throws SQLException
+     */
+    private long loadWithMode(String tableName, StagingTableLoader.TableLoad load) throws IOException, SQLException {
+
+        if (config.getLoadMode() == LoadMode.REPLACE) {
+
+            boolean exists;
+            try (Connection connection = getConnection()) {
+                Table table = Table.builder().name(tableName).build();
+                exists = tableMetadataCache.exists(connection, table);
+
+                // 入れ替えでは親テーブルの削除で全パーティションも削除されるため、パーティションテーブルは対象外
+                if (exists && table.isPartitioned(connection)) {
+                    throw new SQLFeatureNotSupportedException(
+                            "Replace mode does not support partitioned table: " + tableName);
+                }
+            }
+
+            if (exists) {
+                try {
+                    return new StagingTableLoader(this::getConnection, config.getLoadIndexParallelSize())
+                            .load(tableName, load);
+                } finally {
+                    // 入れ替えでテーブルが作り直されるため、キャッシュは破棄
+                    tableMetadataCache.invalidate(tableName);
+                    tableMetadataCache.invalidate(StagingTableLoader.stagingName(tableName));
+                }
+            }
+        }
+
+        // テーブルが無い場合は、インデックスも無いため直接作成してロード
+        return load.load(tableName);
+    }
+
+    @FunctionalInterface
+    private interface MeasuredLoad {
+
+        long load(LoadMetrics metrics) throws IOException, SQLException;
+    }
+
+    private Connection getConnection() throws SQLException {
+        return connectionFactory.getConnection();
+    }
+
+    private InputStreamReader newCsvReader(CsvSource source) throws IOException {
+
+        return new InputStreamReader(newCsvStream(openCsvFile(source)), csvCharset());
+    }
+
+    /**
+     * 読み込んだバイト数を集計するReaderを生成します。
+     *
+     * @param source ロード元
+     * @param metrics 集計先
+     * @return Reader
+     * @throws IOException
+     */
+    private InputStreamReader newCsvReader(CsvSource source, LoadMetrics metrics) throws IOException {
 
         return new InputStreamReader(
+                readAhead(newCsvStream(new MeteredInputStream(openCsvFile(source), metrics))),
+                csvCharset());
+    }
+
+    /**
+     * 先読みが指定されている場合、ロードで読み込むストリームを別スレッドで先読みします。
+     * <p>送信でブロックしている間も、ファイルの読み込みや展開、変換を進めます。</p>
+     *
+     * @param csvStream ストリーム
+     * @return 先読みするストリーム
+     */
+    private InputStream readAhead(InputStream csvStream) {
+
+        if (config.getCopyBufferCount() <= 0) {
+            return csvStream;
+        }
+
+        return new ReadAheadInputStream(
+                csvStream,
+                chunkSize(config.getCopyBufferSize(), config.getCopyBufferCount() + 1),
+                config.getCopyBufferCount());
+    }
+
+    /**
+     * ロード元を開きます。圧縮されている場合には展開しながら読み込みます。
+     *
+     * @param source ロード元
+     * @return 展開後のバイト列を読み込むストリーム
+     * @throws IOException
+     */
+    private InputStream openCsvFile(CsvSource source) throws IOException {
+
+        if (!source.isReopenable()) {
+            // 判定のために開き直すことはできないため、ストリームの先頭で判定
+            return transcode(Compression.open(
+                    source.open(),
+                    config.getDecompressionParallelSize(),
+                    stageMemoryBudget()));
+        }
+
+        return transcode(Compression.open(
+                source.getPath(),
+                source.getCompression(),
+                config.getDecompressionParallelSize(),
+                stageMemoryBudget()));
+    }
+
+    /**
+     * 並列での変換が指定されている場合、展開後のバイト列をUTF-8に変換します。
+     *
+     * @param fileStream 展開後のバイト列
+     * @return 変換後のバイト列
+     */
+    private InputStream transcode(InputStream fileStream) {
+
+        if (!isTranscoding()) {
+            return fileStream;
+        }
+
+        // 変換を待つセグメント毎の変換前と変換後(最大3倍)、変換中の文字列(2倍)、切り出し中のバッファを見込む
+        int parallelSize = config.getTranscodeParallelSize();
+        return new ParallelTranscodingInputStream(
+                fileStream,
+                sourceCharset(),
+                parallelSize,
+                chunkSize(ParallelTranscodingInputStream.SEGMENT_SIZE, parallelSize * 2 * 4 + parallelSize * 2 + 1));
+    }
+
+    /**
+     * ファイルのバイト列を、読み込み時に並列にUTF-8に変換するかどうかです。
+     * <p>サーバ側で変換する場合や、改行の位置で分割できないエンコーディングの場合は変換しません。</p>
+     *
+     * @return 変換する場合{@code true}
+     */
+    private boolean isTranscoding() {
+
+        return config.getTranscodeParallelSize() > 1
+                && !config.isCopyServerTranscode()
+                && !sourceCharset().equals(StandardCharsets.UTF_8)
+                && CsvChunkReader.supports(sourceCharset());
+    }
+
+    private InputStream newCsvStream(InputStream fileStream) {
+
+        return project(
                 new BufferedInputStream(
                         // UTF-8のBOMを考慮
-                        new BOMInputStream(Files.newInputStream(csvFilePath))),
-                Charset.forName(config.getCsvEncoding()));
+                        new BOMInputStream(fileStream)));
+    }
+
+    /**
+     * フィールドとカラムの対応が指定されている場合、ロード対象のフィールドのみを抜き出します。
+     * <p>対象外のフィールドはサーバに送信しないよう、クライアント側で取り除きます。</p>
+     *
+     * @param csvStream BOMを除いたCSVのバイト列
+     * @return 抜き出したCSVのバイト列
+     */
+    private InputStream project(InputStream csvStream) {
+
+        if (columnMapping.isEmpty()) {
+            return csvStream;
+        }
+
+        if (!CsvChunkReader.supports(csvCharset())) {
+            throw new IllegalArgumentException("Column mapping does not support encoding: " + csvCharset().name());
+        }
+
+        return new ColumnProjectingInputStream(csvStream, columnMapping, csvCharset());
+    }
+
+    private InputStream newCsvByteStream(CsvSource source) throws IOException {
+        return newCsvByteStream(source, 0);
+    }
+
+    /**
+     * BOMを除いたバイト列を、指定位置から読み込むストリームを生成します。
+     *
+     * @param source ロード元
+     * @param offset 読み込みを開始する位置 (BOMを除いた先頭からのバイト数)
+     * @return ストリーム
+     * @throws IOException
+     */
+    private InputStream newCsvByteStream(CsvSource source, long offset) throws IOException {
+
+        if (!source.isReopenable()
+                || source.getCompression() != Compression.NONE
+                || !columnMapping.isEmpty()
+                || isTranscoding()) {
+            // 展開、変換後のバイト列からBOMを読み飛ばす
+            InputStream csvStream = project(new BOMInputStream(openCsvFile(source)));
+            try {
+                // 展開、変換、抜き出した後の位置には移動できないため、読み飛ばす
+                IOUtils.skipFully(csvStream, offset);
+            } catch (IOException e) {
+                csvStream.close();
+                throw e;
+            }
+            return csvStream;
+        }
+
+        FileChannel channel = FileChannel.open(source.getPath(), StandardOpenOption.READ);
+        try {
+            // UTF-8のBOMをバイト単位で読み飛ばす
+            ByteBuffer head = ByteBuffer.allocate(UTF8_BOM.length);
+            while (head.hasRemaining() && channel.read(head) != -1) {
+                // 先頭のバイトが揃うまで読み込み
+            }
+            long bomLength = Arrays.equals(head.array(), UTF8_BOM) ? UTF8_BOM.length : 0;
+            channel.position(bomLength + offset);
+
+            // バッファはCOPYへの書き込み側で持つため、ここではバッファリングしない
+            return Channels.newInputStream(channel);
+
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private boolean canPassThrough(Connection connection) throws SQLException {
+
+        if (config.isCopyServerTranscode()) {
+            // COPYのENCODINGオプションでバイト列のエンコーディングを指定し、サーバ側で変換
+            if (ServerEncoding.nameOf(csvCharset()) == null) {
+                throw new IllegalArgumentException(
+                        "Server transcoding does not support encoding: " + csvCharset().name());
+            }
+            return true;
+        }
+
+        if (!csvCharset().equals(StandardCharsets.UTF_8)) {
+            return false;
+        }
+
+        // COPYで送信したバイト列は、クライアントエンコーディングとして解釈される
+        String clientEncoding = new QueryRunner().query(
+                connection,
+                "SHOW client_encoding",
+                new ScalarHandler<String>());
+
+        return "UTF8".equalsIgnoreCase(clientEncoding);
+    }
+
+    /**
+     * ロード時に扱うCSVのバイト列のエンコーディングです。(並列に変換する場合はUTF-8)
+     */
+    private Charset csvCharset() {
+        return isTranscoding() ? StandardCharsets.UTF_8 : sourceCharset();
+    }
+
+    /**
+     * ファイルのエンコーディングです。
+     */
+    private Charset sourceCharset() {
+        return Charset.forName(config.getCsvEncoding());
     }
 
-    private List<Column> readColumns(CSVParser csvParser) {
+    static List<Column> readColumns(CSVParser csvParser) {
 
         // ヘッダ名からカラムの情報を生成
         return csvParser.getHeaderMap().entrySet().stream()
@@ -170,11 +1295,143 @@ public class Loader {
                 .collect(Collectors.toList());
     }
 
-    private String[] toValues(CSVRecord record) {
+    private List<String[]> headRecords(CSVParser csvParser) {
+
+        int sampleSize = config.getTypeInferenceSampleSize();
+        List<String[]> sampleRecords = new ArrayList<>();
+
+        if (sampleSize <= 0) {
+            return sampleRecords;
+        }
+
+        for (CSVRecord record : csvParser) {
+            sampleRecords.add(toValues(record));
+            if (sampleRecords.size() >= sampleSize) {
+                break;
+            }
+        }
+
+        return sampleRecords;
+    }
+
+    private List<String[]> sampleRecords(CSVParser csvParser) {
+
+        int sampleSize = config.getTypeInferenceSampleSize();
+        List<String[]> sampleRecords = new ArrayList<>();
+
+        if (sampleSize <= 0) {
+            return sampleRecords;
+        }
+
+        switch (config.getTypeInference()) {
+            case HEAD:
+                return headRecords(csvParser);
+
+            case RESERVOIR:
+                // ファイル全体から均等な確率で抽出 (リザーバサンプリング)
+                Random random = new Random();
+                long recordCount = 0;
+                for (CSVRecord record : csvParser) {
+                    recordCount++;
+                    if (sampleRecords.size() < sampleSize) {
+                        sampleRecords.add(toValues(record));
+                    } else {
+                        long index = (long) (random.nextDouble() * recordCount);
+                        if (index < sampleSize) {
+                            sampleRecords.set((int) index, toValues(record));
+                        }
+                    }
+                }
+                break;
+
+            default:
+                break;
+        }
+
+        return sampleRecords;
+    }
+
+    /**
+     * 先頭部分として読み込む、型の推測に使うレコード数です。
+     *
+     * @return レコード数
+     */
+    private int headSampleSize(CsvSource source) {
+
+        // 開き直せない場合は、reservoirでも先頭のレコードから推測
+        boolean head = config.getTypeInference() == TypeInference.HEAD
+                || (config.getTypeInference() != TypeInference.NONE && !source.isReopenable());
+
+        return head ? Math.max(config.getTypeInferenceSampleSize(), 0) : 0;
+    }
+
+    private List<String[]> sampleRecords(CsvHead<?> head, CsvSource source) throws IOException {
+
+        if (config.getTypeInference() != TypeInference.RESERVOIR || !source.isReopenable()) {
+            return head.getSampleRecords();
+        }
+
+        // ファイル全体から抽出するため、ロードとは別に読み込む
+        try (CSVParser csvParser = CSVFormat.EXCEL.withHeader().parse(newCsvReader(source))) {
+            return sampleRecords(csvParser);
+        }
+    }
+
+    private Table inferColumnTypes(Table table, List<String[]> sampleRecords) {
+
+        if (config.getTypeInference() == TypeInference.NONE) {
+            return table;
+        }
+
+        ColumnTypeInferrer typeInferrer = new ColumnTypeInferrer(table.getColumns().size());
+        sampleRecords.forEach(typeInferrer::accept);
+
+        return Table.builder()
+                .name(table.getName())
+                .columns(typeInferrer.apply(table.getColumns()))
+                .build();
+    }
+
+    private Table inferColumnTypes(Table table, CsvSource source) throws IOException {
+
+        try (CSVParser csvParser = CSVFormat.EXCEL.withHeader().parse(newCsvReader(source))) {
+
+            ColumnTypeInferrer typeInferrer = new ColumnTypeInferrer(table.getColumns().size());
+            for (CSVRecord record : csvParser) {
+                typeInferrer.accept(record);
+            }
+
+            return Table.builder()
+                    .name(table.getName())
+                    .columns(typeInferrer.apply(table.getColumns()))
+                    .build();
+        }
+    }
+
+    /**
+     * 推測した型に合わない値による失敗で、ファイル全体から型を推測し直してやり直せるかどうかを判定します。
+     */
+    private boolean canReinfer(Exception e, CsvSource source) {
+
+        return config.getTypeInference() != TypeInference.NONE
+                && e instanceof SQLException
+                && isDataException((SQLException) e)
+                && source.isReopenable();
+    }
+
+    private boolean isDataException(SQLException e) {
+
+        // SQLSTATEのクラス22はデータ例外
+        return e.getSQLState() != null && e.getSQLState().startsWith("22");
+    }
+
+    static String[] toValues(CSVRecord record) {
 
-        List<String> values = new ArrayList<>();
-        record.forEach(values::add);
+        String[] values = new String[record.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = record.get(i);
+        }
 
-        return values.toArray(new String[values.size()]);
+        return values;
     }
 }
@@ -0,0 +1,38 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.IOException;
+
+/**
+ * 独立して展開できる単位(gzipのメンバー、zstdのフレーム)の形式です。
+ * <p>並列に展開できる圧縮形式のみが持ちます。({@link Compression#getMemberFormat()})</p>
+ */
+interface MemberFormat {
+
+    /**
+     * 判定に必要なバイト数です。
+     *
+     * @return バイト数
+     */
+    int getHeaderLength();
+
+    /**
+     * 指定位置が、メンバー(フレーム)の先頭の候補かどうかを判定します。
+     * <p>圧縮されたデータ中に偶然同じバイト列が現れることもあるため、あくまで候補です。</p>
+     *
+     * @param data データ
+     * @param position 位置 ({@link #getHeaderLength()}分のバイトがあること)
+     * @return 候補の場合{@code true}
+     */
+    boolean isMemberStart(byte[] data, int position);
+
+    /**
+     * 1つ以上の完全なメンバー(フレーム)からなるデータを展開します。
+     * <p>データがメンバーの途中で終わっている、または途中から始まっている場合には例外となります。</p>
+     *
+     * @param data データ
+     * @param maxSize 展開後の最大サイズ
+     * @return 展開後のデータ
+     * @throws IOException 展開できなかった場合、展開後のサイズが最大サイズを超えた場合
+     */
+    byte[] decompressMembers(byte[] data, int maxSize) throws IOException;
+}
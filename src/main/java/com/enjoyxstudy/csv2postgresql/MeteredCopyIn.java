@@ -0,0 +1,90 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.sql.SQLException;
+
+import org.postgresql.copy.CopyIn;
+
+/**
+ * COPYへの書き込みにかかった時間を、送信の処理時間として集計するCopyInです。
+ */
+class MeteredCopyIn implements CopyIn {
+
+    private final CopyIn copyIn;
+
+    private final LoadMetrics metrics;
+
+    /**
+     * このCopyInでの書き込みにかかった時間です。
+     */
+    private long writeNanos;
+
+    MeteredCopyIn(CopyIn copyIn, LoadMetrics metrics) {
+        this.copyIn = copyIn;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void writeToCopy(byte[] buf, int off, int siz) throws SQLException {
+
+        long startNanos = System.nanoTime();
+        copyIn.writeToCopy(buf, off, siz);
+        addWriteNanos(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public void flushCopy() throws SQLException {
+
+        long startNanos = System.nanoTime();
+        copyIn.flushCopy();
+        addWriteNanos(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public long endCopy() throws SQLException {
+
+        long startNanos = System.nanoTime();
+        long count = copyIn.endCopy();
+        addWriteNanos(System.nanoTime() - startNanos);
+
+        return count;
+    }
+
+    private void addWriteNanos(long nanos) {
+        writeNanos += nanos;
+        metrics.addStageNanos(LoadStage.WRITE, nanos);
+    }
+
+    long getWriteNanos() {
+        return writeNanos;
+    }
+
+    @Override
+    public int getFieldCount() {
+        return copyIn.getFieldCount();
+    }
+
+    @Override
+    public int getFormat() {
+        return copyIn.getFormat();
+    }
+
+    @Override
+    public int getFieldFormat(int field) {
+        return copyIn.getFieldFormat(field);
+    }
+
+    @Override
+    public boolean isActive() {
+        return copyIn.isActive();
+    }
+
+    @Override
+    public void cancelCopy() throws SQLException {
+        copyIn.cancelCopy();
+    }
+
+    @Override
+    public long getHandledRowCount() {
+        return copyIn.getHandledRowCount();
+    }
+}
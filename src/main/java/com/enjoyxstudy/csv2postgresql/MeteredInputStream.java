@@ -0,0 +1,46 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 読み込んだバイト数を集計するInputStreamです。
+ */
+class MeteredInputStream extends FilterInputStream {
+
+    private final LoadMetrics metrics;
+
+    MeteredInputStream(InputStream in, LoadMetrics metrics) {
+        super(in);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        int b = super.read();
+        if (b != -1) {
+            metrics.addBytes(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+        int readSize = super.read(b, off, len);
+        if (readSize > 0) {
+            metrics.addBytes(readSize);
+        }
+        return readSize;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+
+        long skipped = super.skip(n);
+        metrics.addBytes(skipped);
+        return skipped;
+    }
+}
@@ -0,0 +1,97 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * ロードの集計値を、一定間隔でリスナーに通知するクラスです。
+ */
+class MetricsReporter implements AutoCloseable {
+
+    private final LoadMetrics metrics;
+
+    private final List<LoadListener> listeners;
+
+    private final ScheduledExecutorService executor;
+
+    MetricsReporter(LoadMetrics metrics, List<LoadListener> listeners, long intervalMillis) {
+
+        this.metrics = metrics;
+        this.listeners = listeners;
+
+        if (listeners.isEmpty()) {
+            // 通知先が無い場合にはスレッドも起動しない
+            this.executor = null;
+            return;
+        }
+
+        LoadMetricsSnapshot started = metrics.snapshot();
+        notify(listener -> listener.onStarted(started));
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "csv2postgresql-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(
+                () -> {
+                    LoadMetricsSnapshot snapshot = metrics.snapshot();
+                    notify(listener -> listener.onProgress(snapshot));
+                },
+                intervalMillis,
+                intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public void completed() {
+
+        stop();
+
+        LoadMetricsSnapshot snapshot = metrics.snapshot();
+        notify(listener -> listener.onCompleted(snapshot));
+    }
+
+    public void failed(Exception error) {
+
+        stop();
+
+        LoadMetricsSnapshot snapshot = metrics.snapshot();
+        notify(listener -> listener.onFailed(snapshot, error));
+    }
+
+    private void notify(Consumer<LoadListener> notification) {
+
+        for (LoadListener listener : listeners) {
+            try {
+                notification.accept(listener);
+            } catch (RuntimeException e) {
+                // 通知の失敗でロードや他のリスナーへの通知を止めない
+            }
+        }
+    }
+
+    private void stop() {
+
+        close();
+
+        if (executor != null) {
+            try {
+                // 完了の通知が、途中経過の通知より後になるように待つ
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
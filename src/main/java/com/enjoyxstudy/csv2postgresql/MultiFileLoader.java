@@ -0,0 +1,197 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 複数のCSVファイルを、ワーカーのスレッドで並列にロードするクラスです。
+ * <p>コネクションはプールしてファイル間で使い回します。</p>
+ */
+@RequiredArgsConstructor
+public class MultiFileLoader {
+
+    /**
+     * テーブル名の中で、ファイル名に置き換える箇所です。
+     */
+    public static final String FILE_NAME_PLACEHOLDER = "{file}";
+
+    private static final Pattern GLOB_CHARACTERS = Pattern.compile("[*?]");
+
+    private static final Pattern CSV_FILE_NAME = Pattern.compile("(?i).+\\.(csv(\\.(gz|zst|bz2))?|zip)");
+
+    /**
+     * テーブル名に置き換える際に除く、ファイル名の末尾の拡張子です。(圧縮形式の拡張子と重なっている場合も除きます)
+     */
+    private static final Pattern EXTENSIONS = Pattern.compile("(?i)(\\.(csv|gz|zst|bz2|zip))+$");
+
+    private final Config config;
+
+    /**
+     * ロード対象のファイルを取得します。
+     * <p>ディレクトリが指定された場合にはディレクトリ直下のCSVファイル(圧縮されたものを含む)、
+     * ワイルドカード({@code *}, {@code ?})を含む場合にはファイル名がパターンに一致するファイルを対象とします。</p>
+     *
+     * @param location ファイル、ディレクトリ、またはワイルドカードを含むパス
+     * @return ファイル (ファイル名順)
+     * @throws IOException
+     */
+    public static List<Path> resolveCsvFiles(String location) throws IOException {
+
+        if (GLOB_CHARACTERS.matcher(location).find()) {
+
+            // ワイルドカードはファイル名の部分のみ対象
+            int separatorIndex = Math.max(location.lastIndexOf('/'), location.lastIndexOf('\\'));
+            Path directory = Paths.get(separatorIndex == -1 ? "." : location.substring(0, separatorIndex + 1));
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher(
+                    "glob:" + location.substring(separatorIndex + 1));
+
+            return listFiles(directory, path -> matcher.matches(path.getFileName()));
+        }
+
+        Path path = Paths.get(location);
+        if (Files.isDirectory(path)) {
+            return listFiles(path, file -> CSV_FILE_NAME.matcher(file.getFileName().toString()).matches());
+        }
+
+        return Collections.singletonList(path);
+    }
+
+    private static List<Path> listFiles(Path directory, DirectoryStream.Filter<Path> filter) throws IOException {
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory, filter)) {
+            for (Path file : directoryStream) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * ロード先のテーブル名を取得します。
+     * <p>テーブル名に{@value #FILE_NAME_PLACEHOLDER}が含まれる場合、拡張子(.csv, .gz, .zst, .bz2, .zip)を除いたファイル名に置き換えます。</p>
+     *
+     * @param tableName テーブル名
+     * @param csvFilePath CSVファイル
+     * @return ロード先のテーブル名
+     */
+    public static String tableNameOf(String tableName, Path csvFilePath) {
+
+        if (!tableName.contains(FILE_NAME_PLACEHOLDER)) {
+            return tableName;
+        }
+
+        String fileName = csvFilePath.getFileName().toString();
+        String baseName = EXTENSIONS.matcher(fileName).replaceFirst("");
+        if (baseName.isEmpty()) {
+            // ".csv"のように拡張子のみの場合
+            baseName = fileName;
+        }
+
+        return tableName.replace(FILE_NAME_PLACEHOLDER, Column.normalizeName(baseName));
+    }
+
+    public List<LoadResult> load(List<Path> csvFilePaths, String tableName, Consumer<LoadResult> resultNotifier) {
+
+        int workerSize = Math.max(config.getLoadWorkerSize(), 1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(workerSize);
+        try (ConnectionPool connectionPool = new ConnectionPool(
+                ConnectionFactory.of(config),
+                workerSize,
+                config.getDatabasePoolMaxSize(),
+                config.getDatabasePoolWaitMillis())) {
+
+            Loader loader = new Loader(config, connectionPool::getConnection);
+
+            // 上限が足りないと、ワーカー同士で返却を待ち合って進まなくなるため、開始する前に失敗させる
+            int requiredSize = workerSize * loader.maxCopyConnections();
+            if (config.getDatabasePoolMaxSize() > 0 && config.getDatabasePoolMaxSize() < requiredSize) {
+                throw new IllegalArgumentException(String.format(
+                        "database.pool-max-size is too small: %d connections are required for %d workers.",
+                        requiredSize,
+                        workerSize));
+            }
+
+            // 同じテーブルへのロードは、テーブル作成が重複しないよう最初のファイルが終わってから開始
+            Map<String, List<Path>> csvFilePathsByTable = csvFilePaths.stream()
+                    .collect(Collectors.groupingBy(
+                            csvFilePath -> tableNameOf(tableName, csvFilePath),
+                            LinkedHashMap::new,
+                            Collectors.toList()));
+
+            Map<Path, CompletableFuture<LoadResult>> futures = new LinkedHashMap<>();
+            csvFilePathsByTable.forEach((targetTableName, targetCsvFilePaths) -> {
+
+                CompletableFuture<LoadResult> first = CompletableFuture.supplyAsync(
+                        () -> load(loader, targetCsvFilePaths.get(0), targetTableName, resultNotifier),
+                        executor);
+                futures.put(targetCsvFilePaths.get(0), first);
+
+                targetCsvFilePaths.stream().skip(1).forEach(csvFilePath -> futures.put(
+                        csvFilePath,
+                        first.thenApplyAsync(
+                                x -> load(loader, csvFilePath, targetTableName, resultNotifier),
+                                executor)));
+            });
+
+            return csvFilePaths.stream()
+                    .map(futures::get)
+                    .map(CompletableFuture::join)
+                    .collect(Collectors.toList());
+
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private LoadResult load(Loader loader, Path csvFilePath, String tableName, Consumer<LoadResult> resultNotifier) {
+
+        LoadResult.LoadResultBuilder result = LoadResult.builder()
+                .csvFilePath(csvFilePath)
+                .tableName(tableName);
+
+        long startTime = System.currentTimeMillis();
+        try {
+            result
+                    .fileSize(Files.size(csvFilePath))
+                    .loadedCount(loader.loadByCopy(csvFilePath, tableName));
+
+        } catch (Exception e) {
+            // 失敗したファイルがあっても、他のファイルのロードは続ける
+            result.error(e);
+        }
+
+        LoadResult loadResult = result
+                .elapsedMillis(System.currentTimeMillis() - startTime)
+                .build();
+
+        synchronized (this) {
+            resultNotifier.accept(loadResult);
+        }
+
+        return loadResult;
+    }
+}
@@ -0,0 +1,111 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * 複数行の{@code VALUES}を持つINSERT文で登録するクラスです。
+ * <p>バッチの件数が変更された場合には、変更後の件数でINSERT文を準備し直します。</p>
+ */
+class MultiValuesInserter implements BatchInserter {
+
+    /**
+     * 1つの文でバインドできるパラメータ数の上限です。
+     */
+    static final int MAX_BIND_PARAMETERS = 32767;
+
+    private final Connection connection;
+
+    private final Table table;
+
+    private int rowsPerStatement;
+
+    private PreparedStatement statement;
+
+    private final LoadMetrics metrics;
+
+    MultiValuesInserter(Connection connection, Table table, int batchSize, LoadMetrics metrics)
+            throws SQLException {
+        this.connection = connection;
+        this.table = table;
+        this.metrics = metrics;
+
+        this.rowsPerStatement = rowsPerStatement(batchSize);
+        this.statement = connection.prepareStatement(table.multiValuesInsertSql(rowsPerStatement));
+    }
+
+    private int rowsPerStatement(int batchSize) {
+
+        // パラメータ数の上限を超えない範囲で、1つの文にまとめる行数を決める
+        return Math.max(
+                1,
+                Math.min(batchSize, MAX_BIND_PARAMETERS / table.getColumns().size()));
+    }
+
+    int getRowsPerStatement() {
+        return rowsPerStatement;
+    }
+
+    @Override
+    public int insert(RecordBatch batch) throws SQLException {
+
+        // 件数を調整している場合、小さくなったバッチが毎回端数の文で登録されないよう準備し直す
+        int batchRowsPerStatement = rowsPerStatement(batch.capacity());
+        if (batchRowsPerStatement != rowsPerStatement) {
+            statement.close();
+            rowsPerStatement = batchRowsPerStatement;
+            statement = connection.prepareStatement(table.multiValuesInsertSql(rowsPerStatement));
+        }
+
+        int offset = 0;
+        if (batch.size() >= rowsPerStatement) {
+            long startNanos = System.nanoTime();
+            while (batch.size() - offset >= rowsPerStatement) {
+                bind(statement, batch, offset, rowsPerStatement);
+                statement.addBatch();
+                offset += rowsPerStatement;
+            }
+            metrics.addElapsed(LoadStage.ENCODE, startNanos);
+
+            startNanos = System.nanoTime();
+            statement.executeBatch();
+            statement.clearBatch();
+            metrics.addElapsed(LoadStage.WRITE, startNanos);
+        }
+
+        int remaining = batch.size() - offset;
+        if (remaining > 0) {
+            // 端数の行は、その行数用の文で登録
+            try (PreparedStatement remainingStatement = connection.prepareStatement(
+                    table.multiValuesInsertSql(remaining))) {
+                long startNanos = System.nanoTime();
+                bind(remainingStatement, batch, offset, remaining);
+                metrics.addElapsed(LoadStage.ENCODE, startNanos);
+
+                startNanos = System.nanoTime();
+                remainingStatement.executeUpdate();
+                metrics.addElapsed(LoadStage.WRITE, startNanos);
+            }
+        }
+
+        metrics.addRows(batch.size());
+        return batch.size();
+    }
+
+    private static void bind(PreparedStatement statement, RecordBatch batch, int offset, int rowCount)
+            throws SQLException {
+
+        int parameterIndex = 1;
+        for (int i = offset; i < offset + rowCount; i++) {
+            for (String value : batch.get(i)) {
+                statement.setString(parameterIndex++, value);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        statement.close();
+    }
+}
@@ -0,0 +1,161 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * クォートされていない空のフィールドに、NULLを表す文字({@link #NULL_MARKER})を埋め込むReaderです。
+ * <p>CSV形式のCOPYでは、クォートされていない空のフィールドはNULL、クォートされた空文字({@code ""})は空文字になります。
+ * Commons CSVで解析すると両者を区別できないため、解析前に印を付けておきます。
+ * PostgreSQLの文字列にはNUL文字を含められないため、印が実際の値と重複することはありません。</p>
+ */
+class NullMarkingReader extends Reader {
+
+    /**
+     * NULLを表す値です。
+     */
+    static final String NULL_MARKER = "\u0000";
+
+    private static final char QUOTE = '"';
+
+    private static final char COMMA = ',';
+
+    private static final char CR = '\r';
+
+    private static final char LF = '\n';
+
+    private static final int READ_SIZE = 8192;
+
+    private final Reader source;
+
+    private final char[] readBuffer = new char[READ_SIZE];
+
+    /** 印を埋め込んだ後の文字です。(1文字につき最大2文字) */
+    private final char[] markedBuffer = new char[READ_SIZE * 2];
+
+    private int markedLength;
+
+    private int markedPosition;
+
+    /** フィールドの先頭かどうかです。 */
+    private boolean fieldStart = true;
+
+    /** 直前が区切り文字かどうかです。(終端の空のフィールドの判定に使います) */
+    private boolean afterComma;
+
+    /** 現在のフィールドがクォートで始まったかどうかです。 */
+    private boolean quotedField;
+
+    private boolean inQuotes;
+
+    private boolean afterCr;
+
+    private boolean eof;
+
+    NullMarkingReader(Reader source) {
+        this.source = source;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+
+        if (len == 0) {
+            return 0;
+        }
+
+        if (markedPosition == markedLength && !fill()) {
+            return -1;
+        }
+
+        int readSize = Math.min(len, markedLength - markedPosition);
+        System.arraycopy(markedBuffer, markedPosition, cbuf, off, readSize);
+        markedPosition += readSize;
+
+        return readSize;
+    }
+
+    private boolean fill() throws IOException {
+
+        markedPosition = 0;
+        markedLength = 0;
+
+        while (markedLength == 0) {
+            if (eof) {
+                return false;
+            }
+
+            int readSize = source.read(readBuffer);
+            if (readSize == -1) {
+                eof = true;
+                if (afterComma) {
+                    // 区切り文字で終わっている場合、最後のフィールドは空
+                    markedBuffer[markedLength++] = NULL_MARKER.charAt(0);
+                }
+                continue;
+            }
+
+            for (int i = 0; i < readSize; i++) {
+                char c = readBuffer[i];
+                if (fieldStart && (c == COMMA || c == CR || (c == LF && !afterCr))) {
+                    markedBuffer[markedLength++] = NULL_MARKER.charAt(0);
+                }
+                markedBuffer[markedLength++] = c;
+                accept(c);
+            }
+        }
+
+        return true;
+    }
+
+    private void accept(char c) {
+
+        boolean cr = afterCr;
+        afterCr = false;
+
+        if (inQuotes) {
+            if (c == QUOTE) {
+                inQuotes = false;
+            }
+            return;
+        }
+
+        switch (c) {
+            case QUOTE:
+                if (fieldStart || quotedField) {
+                    // エスケープされたクォート("")は、閉じてすぐ開き直したものとして扱う
+                    quotedField = true;
+                    inQuotes = true;
+                }
+                fieldStart = false;
+                afterComma = false;
+                break;
+            case COMMA:
+                fieldStart = true;
+                afterComma = true;
+                quotedField = false;
+                break;
+            case CR:
+                fieldStart = true;
+                afterComma = false;
+                quotedField = false;
+                afterCr = true;
+                break;
+            case LF:
+                if (!cr) {
+                    fieldStart = true;
+                    afterComma = false;
+                    quotedField = false;
+                }
+                break;
+            default:
+                fieldStart = false;
+                afterComma = false;
+                break;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+}
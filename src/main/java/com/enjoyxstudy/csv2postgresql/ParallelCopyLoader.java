@@ -0,0 +1,100 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * CSVをレコード単位のチャンクに分割し、複数のコネクションで並列にCOPYするクラスです。
+ */
+@RequiredArgsConstructor
+class ParallelCopyLoader {
+
+    /**
+     * 1チャンクのデフォルトのサイズです。
+     */
+    static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private final ConnectionFactory connectionFactory;
+
+    private final int parallelSize;
+
+    private final int chunkSize;
+
+    private final CommitMode commitMode;
+
+    private final CopyFormat copyFormat;
+
+    private final Charset charset;
+
+    /**
+     * チャンクのバイト列をデコードせずにそのまま送信するかどうかです。
+     */
+    private final boolean passThrough;
+
+    private final LoadMetrics metrics;
+
+    /**
+     * CSVを並列にCOPYします。
+     *
+     * @param table テーブル
+     * @param csvStream ヘッダより後ろのデータ部分のストリーム
+     * @return ロードした件数
+     * @throws IOException
+     * @throws SQLException
+     */
+    public long load(Table table, InputStream csvStream) throws IOException, SQLException {
+
+        try (ConnectionWorkers<byte[]> workers = new ConnectionWorkers<>(
+                connectionFactory,
+                parallelSize,
+                parallelSize * 2,
+                ChunkQueueInputStream.END_OF_CHUNKS,
+                commitMode,
+                metrics,
+                "csv2postgresql-copy")) {
+
+            workers.start(connection -> copy(connection, table, workers));
+
+            Exception readException = null;
+            try (CsvChunkReader chunkReader = new CsvChunkReader(csvStream, chunkSize)) {
+
+                byte[] chunk;
+                while ((chunk = chunkReader.readChunk()) != null) {
+                    if (!workers.put(chunk)) {
+                        break;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                readException = e;
+            }
+
+            return workers.finish(readException);
+        }
+    }
+
+    private long copy(Connection connection, Table table, ConnectionWorkers<byte[]> workers)
+            throws IOException, SQLException {
+
+        InputStream chunkStream = new ChunkQueueInputStream(workers.getQueue(), workers::isAborted);
+
+        if (copyFormat == CopyFormat.BINARY) {
+            // チャンクの解析、変換も各ワーカーで並列に行う
+            return table.loadBinaryChunk(
+                    connection,
+                    new InputStreamReader(chunkStream, charset),
+                    metrics);
+        }
+
+        if (passThrough) {
+            return table.load(connection, chunkStream, false, charset, metrics);
+        }
+
+        return table.load(connection, new InputStreamReader(chunkStream, charset), false, metrics);
+    }
+}
@@ -0,0 +1,309 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 圧縮されたデータを、メンバー(フレーム)の区切りで分割して並列に展開するストリームです。
+ * <p>区切りの候補はマジックナンバーで探すため、圧縮データ中に同じバイト列があると誤った位置で分割されます。
+ * その場合は該当のセグメントの展開が失敗するので、そのセグメントの先頭から逐次の展開に切り替えます。
+ * メンバーが1つしかない場合も、セグメントの最大サイズに達した時点、または区切りの候補が見つからないまま終端に達した時点で、
+ * 逐次の展開に切り替えます。並列に展開するのは、2つ目のメンバーの候補が見つかった場合のみです。</p>
+ */
+class ParallelDecompressingInputStream extends InputStream {
+
+    /** 分割の目安となるセグメントのサイズです。 */
+    static final int SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    /** 区切りの候補が見つからない場合に、逐次の展開に切り替えるセグメントのサイズです。 */
+    static final int MAX_SEGMENT_SIZE = SEGMENT_SIZE * 4;
+
+    /** 1セグメントあたりの展開後の最大サイズです。 */
+    static final int MAX_DECOMPRESSED_SIZE = 64 * 1024 * 1024;
+
+    private static final int READ_SIZE = 64 * 1024;
+
+    private final InputStream source;
+
+    private final Compression compression;
+
+    private final MemberFormat memberFormat;
+
+    private final int segmentSize;
+
+    private final int maxSegmentSize;
+
+    private final int maxDecompressedSize;
+
+    private final int windowSize;
+
+    private final ExecutorService executor;
+
+    private final Deque<Segment> pendingSegments = new ArrayDeque<>();
+
+    /** 読み込み済みで、まだセグメントとして切り出していないデータです。 */
+    private byte[] buffer = new byte[READ_SIZE];
+
+    private int length;
+
+    private boolean sourceEof;
+
+    private byte[] current;
+
+    private int position;
+
+    private InputStream fallback;
+
+    /** 区切りの候補で分割したことがあるかどうか(複数のメンバーからなるかどうか)です。 */
+    private boolean multipleMembers;
+
+    public ParallelDecompressingInputStream(InputStream source, Compression compression, int parallelSize) {
+        this(source, compression, parallelSize, 0);
+    }
+
+    /**
+     * 展開中に保持するバイト数の上限を指定して生成します。
+     * <p>上限を、展開を待つセグメントと切り出し中のバッファで等分し、それぞれ圧縮データに1/4、展開後のデータに1/2を割り当てます。
+     * 残りは展開中の作業領域として見込みます。展開後のデータが割り当てに収まらないセグメントは、逐次の展開に切り替えます。</p>
+     *
+     * @param source 圧縮されたデータ
+     * @param compression 圧縮形式
+     * @param parallelSize 展開に使うスレッド数
+     * @param memoryBudget 保持するバイト数の上限 (0の場合は制限しない)
+     */
+    public ParallelDecompressingInputStream(
+            InputStream source, Compression compression, int parallelSize, long memoryBudget) {
+        this(
+                source, compression, parallelSize,
+                budgetedSize(SEGMENT_SIZE, memoryBudget, parallelSize, 16),
+                budgetedSize(MAX_SEGMENT_SIZE, memoryBudget, parallelSize, 4),
+                budgetedSize(MAX_DECOMPRESSED_SIZE, memoryBudget, parallelSize, 2));
+    }
+
+    ParallelDecompressingInputStream(
+            InputStream source, Compression compression, int parallelSize,
+            int segmentSize, int maxSegmentSize, int maxDecompressedSize) {
+
+        if (!compression.isParallelizable()) {
+            throw new IllegalArgumentException(compression + " can not be decompressed in parallel.");
+        }
+
+        this.source = source;
+        this.compression = compression;
+        this.memberFormat = compression.getMemberFormat();
+        this.segmentSize = segmentSize;
+        this.maxSegmentSize = maxSegmentSize;
+        this.maxDecompressedSize = maxDecompressedSize;
+        this.windowSize = parallelSize * 2;
+        this.executor = Executors.newFixedThreadPool(parallelSize, runnable -> {
+            Thread thread = new Thread(runnable, "csv2postgresql-decompress");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static int budgetedSize(int defaultSize, long memoryBudget, int parallelSize, int divisor) {
+
+        if (memoryBudget <= 0) {
+            return defaultSize;
+        }
+
+        long segmentBudget = memoryBudget / (parallelSize * 2 + 1);
+
+        // 0の場合は先頭のメンバーで区切ってしまうため、最小でも1とする
+        return (int) Math.max(Math.min(defaultSize, segmentBudget / divisor), 1);
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        byte[] single = new byte[1];
+        int readSize = read(single, 0, 1);
+        return readSize == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+        if (len == 0) {
+            return 0;
+        }
+
+        while (true) {
+            if (fallback != null) {
+                return fallback.read(b, off, len);
+            }
+
+            if (current != null && position < current.length) {
+                int readSize = Math.min(len, current.length - position);
+                System.arraycopy(current, position, b, off, readSize);
+                position += readSize;
+                return readSize;
+            }
+
+            if (!nextDecompressed()) {
+                return -1;
+            }
+        }
+    }
+
+    private boolean nextDecompressed() throws IOException {
+
+        submitSegments();
+
+        Segment segment = pendingSegments.poll();
+        if (segment == null) {
+            return false;
+        }
+
+        if (segment.decompressed == null) {
+            // 区切りの候補が見つからなかったセグメント
+            startFallback(segment);
+            return true;
+        }
+
+        // 待っている間も次のセグメントの展開を進める
+        submitSegments();
+
+        try {
+            current = segment.decompressed.get();
+            position = 0;
+        } catch (ExecutionException e) {
+            if (!(e.getCause() instanceof IOException)) {
+                throw new IllegalStateException(e.getCause());
+            }
+            startFallback(segment);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+
+        return true;
+    }
+
+    private void submitSegments() throws IOException {
+
+        while (pendingSegments.size() < windowSize
+                && (pendingSegments.isEmpty() || pendingSegments.peekLast().decompressed != null)) {
+
+            Segment segment = cutSegment();
+            if (segment == null) {
+                return;
+            }
+            pendingSegments.add(segment);
+        }
+    }
+
+    private Segment cutSegment() throws IOException {
+
+        int headerLength = memberFormat.getHeaderLength();
+        int scannedPosition = segmentSize;
+
+        while (true) {
+            for (; scannedPosition + headerLength <= length; scannedPosition++) {
+                if (memberFormat.isMemberStart(buffer, scannedPosition)) {
+                    multipleMembers = true;
+                    return newSegment(take(scannedPosition));
+                }
+            }
+
+            if (sourceEof) {
+                if (length == 0) {
+                    return null;
+                }
+                // メンバーが1つのみの場合は、並列に展開しても速くならないため逐次の展開に任せる
+                return multipleMembers ? newSegment(take(length)) : new Segment(take(length), null);
+            }
+
+            if (length >= maxSegmentSize) {
+                // これ以上はメモリに溜めず、逐次の展開に任せる
+                return new Segment(take(length), null);
+            }
+
+            fill();
+        }
+    }
+
+    private Segment newSegment(byte[] data) {
+        return new Segment(data, executor.submit(() -> memberFormat.decompressMembers(data, maxDecompressedSize)));
+    }
+
+    private byte[] take(int size) {
+
+        byte[] data = Arrays.copyOf(buffer, size);
+        System.arraycopy(buffer, size, buffer, 0, length - size);
+        length -= size;
+
+        return data;
+    }
+
+    private void fill() throws IOException {
+
+        if (buffer.length - length < READ_SIZE) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + READ_SIZE));
+        }
+
+        int readSize = source.read(buffer, length, READ_SIZE);
+        if (readSize == -1) {
+            sourceEof = true;
+        } else {
+            length += readSize;
+        }
+    }
+
+    private void startFallback(Segment failedSegment) throws IOException {
+
+        // 切り出し済みのデータは、失敗したセグメントから順に繋げて逐次に展開する
+        ByteArrayOutputStream remaining = new ByteArrayOutputStream();
+        remaining.write(failedSegment.data);
+        for (Segment segment : pendingSegments) {
+            if (segment.decompressed != null) {
+                segment.decompressed.cancel(true);
+            }
+            remaining.write(segment.data);
+        }
+        pendingSegments.clear();
+        remaining.write(buffer, 0, length);
+
+        buffer = null;
+        current = null;
+        executor.shutdownNow();
+
+        fallback = compression.decompress(
+                new SequenceInputStream(new ByteArrayInputStream(remaining.toByteArray()), source));
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        executor.shutdownNow();
+
+        if (fallback != null) {
+            fallback.close();
+        } else {
+            source.close();
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Segment {
+
+        private final byte[] data;
+
+        /** 展開結果です。(区切りの候補が見つからず、並列に展開しないセグメントの場合は{@code null}) */
+        private final Future<byte[]> decompressed;
+    }
+}
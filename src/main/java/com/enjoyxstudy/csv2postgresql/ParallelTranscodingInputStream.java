@@ -0,0 +1,220 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * バイト列を改行(LF、CR)の位置で分割し、複数のスレッドで並列にUTF-8に変換するストリームです。
+ * <p>変換結果は元の順序で読み込めます。
+ * 改行がマルチバイト文字の一部として現れないエンコーディング({@link CsvChunkReader#supports(Charset)})のみを対象とします。
+ * 変換できないバイト列は、{@link java.io.InputStreamReader}と同様に置換文字に置き換えます。</p>
+ */
+class ParallelTranscodingInputStream extends InputStream {
+
+    /** 分割の目安となるセグメントのサイズです。 */
+    static final int SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    private static final int READ_SIZE = 64 * 1024;
+
+    private static final byte LF = '\n';
+
+    private static final byte CR = '\r';
+
+    private final InputStream source;
+
+    private final Charset charset;
+
+    private final int segmentSize;
+
+    private final int windowSize;
+
+    private final ExecutorService executor;
+
+    private final Deque<Future<byte[]>> pendingSegments = new ArrayDeque<>();
+
+    /** 読み込み済みで、まだセグメントとして切り出していないデータです。 */
+    private byte[] buffer = new byte[READ_SIZE];
+
+    private int length;
+
+    private boolean sourceEof;
+
+    private byte[] current;
+
+    private int position;
+
+    public ParallelTranscodingInputStream(InputStream source, Charset charset, int parallelSize) {
+        this(source, charset, parallelSize, SEGMENT_SIZE);
+    }
+
+    ParallelTranscodingInputStream(InputStream source, Charset charset, int parallelSize, int segmentSize) {
+
+        if (!CsvChunkReader.supports(charset)) {
+            throw new IllegalArgumentException(charset.name() + " can not be transcoded in parallel.");
+        }
+
+        this.source = source;
+        this.charset = charset;
+        this.segmentSize = segmentSize;
+        this.windowSize = parallelSize * 2;
+        this.executor = Executors.newFixedThreadPool(parallelSize, runnable -> {
+            Thread thread = new Thread(runnable, "csv2postgresql-transcode");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        byte[] single = new byte[1];
+        int readSize = read(single, 0, 1);
+        return readSize == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+        if (len == 0) {
+            return 0;
+        }
+
+        while (current == null || position == current.length) {
+            if (!nextTranscoded()) {
+                return -1;
+            }
+        }
+
+        int readSize = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, readSize);
+        position += readSize;
+        return readSize;
+    }
+
+    private boolean nextTranscoded() throws IOException {
+
+        submitSegments();
+
+        Future<byte[]> segment = pendingSegments.poll();
+        if (segment == null) {
+            return false;
+        }
+
+        // 待っている間も次のセグメントの変換を進める
+        submitSegments();
+
+        try {
+            current = segment.get();
+            position = 0;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+
+        return true;
+    }
+
+    private void submitSegments() throws IOException {
+
+        while (pendingSegments.size() < windowSize) {
+
+            byte[] data = cutSegment();
+            if (data == null) {
+                return;
+            }
+            pendingSegments.add(executor.submit(() -> transcode(data)));
+        }
+    }
+
+    private byte[] cutSegment() throws IOException {
+
+        while (length < segmentSize && !sourceEof) {
+            fill();
+        }
+
+        if (sourceEof) {
+            return length == 0 ? null : take(length);
+        }
+
+        // 文字の途中で分割しないよう、最後の改行の直後で区切る
+        // (CRのみを改行とするファイルも分割できるよう、CRの直後でも区切る。CRLFの間で区切っても変換結果は変わらない)
+        int scannedLength = 0;
+        while (true) {
+            for (int i = length - 1; i >= scannedLength; i--) {
+                if (buffer[i] == LF || buffer[i] == CR) {
+                    return take(i + 1);
+                }
+            }
+
+            scannedLength = length;
+            fill();
+
+            if (sourceEof) {
+                return length == 0 ? null : take(length);
+            }
+        }
+    }
+
+    private byte[] take(int size) {
+
+        byte[] data = Arrays.copyOf(buffer, size);
+        System.arraycopy(buffer, size, buffer, 0, length - size);
+        length -= size;
+
+        return data;
+    }
+
+    private void fill() throws IOException {
+
+        if (buffer.length - length < READ_SIZE) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + READ_SIZE));
+        }
+
+        int readSize = source.read(buffer, length, READ_SIZE);
+        if (readSize == -1) {
+            sourceEof = true;
+        } else {
+            length += readSize;
+        }
+    }
+
+    private byte[] transcode(byte[] data) throws CharacterCodingException {
+
+        // デコーダはスレッドセーフではないため、セグメント毎に生成
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        CharBuffer chars = decoder.decode(ByteBuffer.wrap(data));
+        ByteBuffer bytes = StandardCharsets.UTF_8.newEncoder().encode(chars);
+
+        return Arrays.copyOfRange(bytes.array(), bytes.arrayOffset(), bytes.arrayOffset() + bytes.limit());
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        executor.shutdownNow();
+        source.close();
+    }
+}
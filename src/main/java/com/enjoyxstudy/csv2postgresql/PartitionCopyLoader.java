@@ -0,0 +1,276 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+
+/**
+ * レコードをパーティションキーでパーティション毎に振り分け、各パーティションに直接COPYするクラスです。
+ * <p>親テーブルへのCOPYで行われるサーバ側での振り分けを省き、複数のコネクションで並列にCOPYします。
+ * 振り分けはレコードのバイト列のまま行い、キーのフィールドのみを解釈します。</p>
+ */
+@RequiredArgsConstructor
+class PartitionCopyLoader {
+
+    /**
+     * 読み込む1チャンクのデフォルトのサイズです。
+     */
+    static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * パーティション毎のバッファを、COPYに渡すサイズです。
+     */
+    private static final int FLUSH_SIZE = 1024 * 1024;
+
+    private static final PartitionChunk END_OF_CHUNKS = new PartitionChunk(null, null);
+
+    private final ConnectionFactory connectionFactory;
+
+    private final int parallelSize;
+
+    private final int chunkSize;
+
+    private final CommitMode commitMode;
+
+    private final CopyFormat copyFormat;
+
+    private final Charset charset;
+
+    /**
+     * チャンクのバイト列をデコードせずにそのまま送信するかどうかです。
+     */
+    private final boolean passThrough;
+
+    private final LoadMetrics metrics;
+
+    /**
+     * CSVをパーティション毎に振り分けてCOPYします。
+     *
+     * @param table 親テーブル
+     * @param router パーティションの定義
+     * @param csvStream ヘッダより後ろのデータ部分のストリーム
+     * @return ロードした件数
+     * @throws IOException
+     * @throws SQLException
+     */
+    public long load(Table table, PartitionRouter router, InputStream csvStream) throws IOException, SQLException {
+
+        int keyIndex = indexOf(table, router.getKeyColumnName());
+
+        try (ConnectionWorkers<PartitionChunk> workers = new ConnectionWorkers<>(
+                connectionFactory,
+                parallelSize,
+                parallelSize * 2,
+                END_OF_CHUNKS,
+                commitMode,
+                metrics,
+                "csv2postgresql-partition-copy")) {
+
+            workers.start(connection -> copy(connection, workers));
+
+            Exception readException = null;
+            try (CsvChunkReader chunkReader = new CsvChunkReader(csvStream, chunkSize)) {
+
+                Map<String, PartitionBuffer> buffers = new HashMap<>();
+
+                byte[] chunk;
+                boolean running = true;
+                while (running && (chunk = chunkReader.readChunk()) != null) {
+                    running = route(chunk, keyIndex, router, buffers, workers);
+
+                    // パーティションが多い場合にバッファが積み上がらないよう、合計が1チャンク分を超えたら送信
+                    if (running && sizeOf(buffers) >= chunkSize) {
+                        running = flush(buffers, workers);
+                    }
+                }
+
+                if (running) {
+                    flush(buffers, workers);
+                }
+
+            } catch (IOException | SQLException | RuntimeException e) {
+                readException = e;
+            }
+
+            return workers.finish(readException);
+        }
+    }
+
+    /**
+     * チャンク内のレコードを、キーの値に応じたパーティションのバッファに振り分けます。
+     *
+     * @return 続行する場合{@code true}
+     */
+    private boolean route(
+            byte[] chunk,
+            int keyIndex,
+            PartitionRouter router,
+            Map<String, PartitionBuffer> buffers,
+            ConnectionWorkers<PartitionChunk> workers)
+            throws SQLException, InterruptedIOException {
+
+        CsvTokenizer tokenizer = new CsvTokenizer();
+
+        int recordStart = 0;
+        int nextRecordStart;
+        while ((nextRecordStart = tokenizer.tokenize(chunk, recordStart, chunk.length, true)) != -1) {
+
+            Table partition = keyIndex < tokenizer.getFieldCount()
+                    ? route(router, decodeField(tokenizer, chunk, keyIndex))
+                    : router.route(null);
+
+            PartitionBuffer buffer = buffers.computeIfAbsent(partition.getName(), x -> new PartitionBuffer(partition));
+            buffer.write(chunk, recordStart, nextRecordStart - recordStart);
+            if (tokenizer.getRecordEnd() == nextRecordStart) {
+                // 終端の改行が無いレコード
+                buffer.getBytes().write('\n');
+            }
+
+            if (buffer.getBytes().size() >= FLUSH_SIZE && !flush(buffer, workers)) {
+                return false;
+            }
+
+            recordStart = nextRecordStart;
+        }
+
+        return true;
+    }
+
+    private Table route(PartitionRouter router, String keyValue) throws SQLException {
+
+        Table partition = router.route(keyValue);
+        if (partition != null) {
+            return partition;
+        }
+
+        // 存在しないパーティションは、各ワーカーから見えるよう別のコネクションで作成してコミット
+        try (Connection connection = connectionFactory.getConnection()) {
+            return router.createPartition(connection, keyValue);
+        }
+    }
+
+    /**
+     * フィールドの値を取得します。
+     *
+     * @return 値 (クォートされていない空文字の場合はNULLとして{@code null})
+     */
+    private String decodeField(CsvTokenizer tokenizer, byte[] chunk, int index) {
+
+        if (tokenizer.getFieldStart(index) == tokenizer.getFieldEnd(index)) {
+            return null;
+        }
+
+        return tokenizer.decodeField(chunk, index, charset);
+    }
+
+    private boolean flush(Map<String, PartitionBuffer> buffers, ConnectionWorkers<PartitionChunk> workers)
+            throws InterruptedIOException {
+
+        for (PartitionBuffer buffer : buffers.values()) {
+            if (!flush(buffer, workers)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static long sizeOf(Map<String, PartitionBuffer> buffers) {
+
+        long size = 0;
+        for (PartitionBuffer buffer : buffers.values()) {
+            size += buffer.getBytes().size();
+        }
+
+        return size;
+    }
+
+    private boolean flush(PartitionBuffer buffer, ConnectionWorkers<PartitionChunk> workers)
+            throws InterruptedIOException {
+
+        if (buffer.getBytes().size() == 0) {
+            return true;
+        }
+
+        PartitionChunk chunk = new PartitionChunk(buffer.getTable(), buffer.getBytes().toByteArray());
+        buffer.getBytes().reset();
+
+        return workers.put(chunk);
+    }
+
+    private long copy(Connection connection, ConnectionWorkers<PartitionChunk> workers)
+            throws IOException, SQLException, InterruptedException {
+
+        long loadedCount = 0;
+
+        PartitionChunk chunk;
+        while ((chunk = workers.getQueue().take()) != END_OF_CHUNKS) {
+            if (workers.isAborted()) {
+                throw new LoadAbortedException();
+            }
+            loadedCount += copy(connection, chunk);
+        }
+
+        return loadedCount;
+    }
+
+    private long copy(Connection connection, PartitionChunk chunk) throws IOException, SQLException {
+
+        InputStream chunkStream = new ByteArrayInputStream(chunk.getBytes());
+
+        if (copyFormat == CopyFormat.BINARY) {
+            return chunk.getTable().loadBinaryChunk(
+                    connection,
+                    new InputStreamReader(chunkStream, charset),
+                    metrics);
+        }
+
+        if (passThrough) {
+            return chunk.getTable().load(connection, chunkStream, false, charset, metrics);
+        }
+
+        return chunk.getTable().load(connection, new InputStreamReader(chunkStream, charset), false, metrics);
+    }
+
+    private static int indexOf(Table table, String columnName) {
+
+        for (int i = 0; i < table.getColumns().size(); i++) {
+            if (table.getColumns().get(i).getName().equals(columnName)) {
+                return i;
+            }
+        }
+
+        throw new IllegalArgumentException("Partition key column is not found in CSV header: " + columnName);
+    }
+
+    @Value
+    private static class PartitionChunk {
+
+        private final Table table;
+
+        private final byte[] bytes;
+    }
+
+    @Value
+    private static class PartitionBuffer {
+
+        private final Table table;
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        void write(byte[] source, int offset, int length) {
+            bytes.write(source, offset, length);
+        }
+    }
+}
@@ -0,0 +1,474 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.MapListHandler;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * パーティションテーブルの各パーティションの範囲をカタログから読み込み、レコードのロード先のパーティションを決めるクラスです。
+ * <p>パーティションキーが1カラムのレンジパーティション、リストパーティションを対象とします。
+ * キーの値をクライアント側で解釈できない場合には、サーバ側で振り分けるよう親テーブルをロード先とします。</p>
+ */
+class PartitionRouter {
+
+    private static final Pattern RANGE_BOUND = Pattern.compile("FOR VALUES FROM \\((.*)\\) TO \\((.*)\\)");
+
+    private static final Pattern LIST_BOUND = Pattern.compile("FOR VALUES IN \\((.*)\\)");
+
+    /**
+     * 境界値の式に含まれるリテラルのパターンです。(クォートされた文字列か、数値やキーワード)
+     */
+    private static final Pattern LITERAL = Pattern.compile("'((?:[^']|'')*)'|([^\\s,']+)");
+
+    private final Table parent;
+
+    private final boolean range;
+
+    private final String keyColumnName;
+
+    private final String keyTypeName;
+
+    private final PartitionInterval interval;
+
+    private final List<Partition> partitions;
+
+    private final Partition defaultPartition;
+
+    private PartitionRouter(
+            Table parent,
+            boolean range,
+            String keyColumnName,
+            String keyTypeName,
+            PartitionInterval interval,
+            List<Partition> partitions) {
+
+        this.parent = parent;
+        this.range = range;
+        this.keyColumnName = keyColumnName;
+        this.keyTypeName = keyTypeName;
+        this.interval = interval;
+        this.partitions = new ArrayList<>();
+        Partition defaultPartition = null;
+        for (Partition partition : partitions) {
+            if (partition.isDefaultPartition()) {
+                defaultPartition = partition;
+            } else {
+                this.partitions.add(partition);
+            }
+        }
+        this.defaultPartition = defaultPartition;
+    }
+
+    /**
+     * テーブルのパーティションの定義を読み込みます。
+     *
+     * @param connection コネクション
+     * @param parent 親テーブル
+     * @param interval 存在しないパーティションを作成する際の範囲の単位 (作成しない場合は{@code null})
+     * @return パーティションの定義 (パーティションテーブルでは無い場合{@code null})
+     * @throws SQLException
+     */
+    public static PartitionRouter read(Connection connection, Table parent, PartitionInterval interval)
+            throws SQLException {
+
+        List<Map<String, Object>> keys = new QueryRunner().query(
+                connection,
+                "SELECT p.partstrat, a.attname, t.typname FROM pg_partitioned_table p"
+                        + " LEFT JOIN pg_attribute a ON a.attrelid = p.partrelid AND a.attnum = ANY (p.partattrs)"
+                        + " LEFT JOIN pg_type t ON a.atttypid = t.oid"
+                        + " WHERE p.partrelid = ?::regclass",
+                new MapListHandler(),
+                parent.getName());
+
+        if (keys.isEmpty()) {
+            return null;
+        }
+
+        String strategy = String.valueOf(keys.get(0).get("partstrat"));
+        if (keys.size() != 1 || keys.get(0).get("attname") == null) {
+            throw new SQLFeatureNotSupportedException(
+                    "Partition routing supports a single column partition key: " + parent.getName());
+        }
+        if (!strategy.equals("r") && !strategy.equals("l")) {
+            throw new SQLFeatureNotSupportedException(
+                    "Partition routing supports range and list partitioning: " + parent.getName());
+        }
+
+        String keyTypeName = (String) keys.get(0).get("typname");
+        boolean range = strategy.equals("r");
+        if (!isSupportedKeyType(keyTypeName, range)) {
+            throw new SQLFeatureNotSupportedException(
+                    String.format("Partition key type %s of %s is not supported.", keyTypeName, parent.getName()));
+        }
+        if (interval != null && !(range && interval.supports(keyTypeName))) {
+            throw new IllegalArgumentException(
+                    String.format("Partition interval %s can not be used for %s.", interval, parent.getName()));
+        }
+
+        List<Map<String, Object>> children = new QueryRunner().query(
+                connection,
+                "SELECT c.oid::regclass::text AS name, pg_get_expr(c.relpartbound, c.oid) AS bound"
+                        + " FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid"
+                        + " WHERE i.inhparent = ?::regclass",
+                new MapListHandler(),
+                parent.getName());
+
+        List<Partition> partitions = new ArrayList<>();
+        for (Map<String, Object> child : children) {
+            partitions.add(
+                    parseBound(
+                            withName(parent, (String) child.get("name")),
+                            (String) child.get("bound"),
+                            keyTypeName));
+        }
+
+        return new PartitionRouter(
+                parent, range, (String) keys.get(0).get("attname"), keyTypeName, interval, partitions);
+    }
+
+    public String getKeyColumnName() {
+        return keyColumnName;
+    }
+
+    /**
+     * キーの値から、ロード先のパーティションを決めます。
+     *
+     * @param keyValue キーの値 (NULLの場合は{@code null})
+     * @return ロード先のテーブル (該当するパーティションが無い場合は{@code null})
+     */
+    public Table route(String keyValue) {
+
+        Comparable<Object> key = null;
+        if (keyValue != null) {
+            key = parseKey(keyValue, keyTypeName);
+            if (key == null) {
+                // クライアント側で解釈できない値は、サーバ側での振り分けに任せる
+                return parent;
+            }
+        }
+
+        for (Partition partition : partitions) {
+            if (partition.contains(key)) {
+                return partition.getTable();
+            }
+        }
+
+        if (interval != null && key != null) {
+            // 作成してから振り分ける
+            return null;
+        }
+
+        return defaultPartition != null ? defaultPartition.getTable() : parent;
+    }
+
+    /**
+     * キーの値を含む範囲のパーティションを作成します。
+     *
+     * @param connection コネクション
+     * @param keyValue キーの値
+     * @return 作成したパーティション
+     * @throws SQLException
+     */
+    public Table createPartition(Connection connection, String keyValue) throws SQLException {
+
+        Comparable<Object> key = parseKey(keyValue, keyTypeName);
+        Object lower = interval.lowerOf(key);
+        Object upper = interval.upperOf(lower);
+
+        Table table = withName(parent, parent.getName() + "_p" + interval.suffixOf(lower));
+
+        new QueryRunner().update(
+                connection,
+                String.format(
+                        "CREATE TABLE %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                        table.getName(),
+                        parent.getName(),
+                        lower,
+                        upper));
+
+        partitions.add(
+                Partition.builder()
+                        .table(table)
+                        .lower(parseKey(lower.toString(), keyTypeName))
+                        .upper(parseKey(upper.toString(), keyTypeName))
+                        .build());
+
+        return table;
+    }
+
+    static Partition parseBound(Table table, String bound, String keyTypeName) throws SQLException {
+
+        if (bound.equals("DEFAULT")) {
+            return Partition.builder().table(table).defaultPartition(true).build();
+        }
+
+        Matcher rangeMatcher = RANGE_BOUND.matcher(bound);
+        if (rangeMatcher.matches()) {
+            return Partition.builder()
+                    .table(table)
+                    .lower(parseBoundValue(rangeMatcher.group(1), keyTypeName, bound))
+                    .upper(parseBoundValue(rangeMatcher.group(2), keyTypeName, bound))
+                    .build();
+        }
+
+        Matcher listMatcher = LIST_BOUND.matcher(bound);
+        if (listMatcher.matches()) {
+            Set<Object> values = new HashSet<>();
+            boolean containsNull = false;
+
+            Matcher literalMatcher = LITERAL.matcher(listMatcher.group(1));
+            while (literalMatcher.find()) {
+                if ("NULL".equals(literalMatcher.group(2))) {
+                    containsNull = true;
+                } else {
+                    values.add(parseLiteral(literalMatcher, keyTypeName, bound));
+                }
+            }
+
+            return Partition.builder()
+                    .table(table)
+                    .values(values)
+                    .containsNull(containsNull)
+                    .build();
+        }
+
+        throw new SQLFeatureNotSupportedException("Partition bound is not supported: " + bound);
+    }
+
+    private static Comparable<Object> parseBoundValue(String expression, String keyTypeName, String bound)
+            throws SQLException {
+
+        Matcher literalMatcher = LITERAL.matcher(expression);
+        if (!literalMatcher.find()) {
+            throw new SQLFeatureNotSupportedException("Partition bound is not supported: " + bound);
+        }
+
+        String keyword = literalMatcher.group(2);
+        if ("MINVALUE".equals(keyword) || "MAXVALUE".equals(keyword)) {
+            // 上限、下限なし
+            return null;
+        }
+
+        return parseLiteral(literalMatcher, keyTypeName, bound);
+    }
+
+    private static Comparable<Object> parseLiteral(Matcher literalMatcher, String keyTypeName, String bound)
+            throws SQLException {
+
+        String literal = literalMatcher.group(1) != null
+                ? literalMatcher.group(1).replace("''", "'")
+                : literalMatcher.group(2);
+
+        Comparable<Object> value = parseKey(literal, keyTypeName);
+        if (value == null) {
+            throw new SQLFeatureNotSupportedException("Partition bound is not supported: " + bound);
+        }
+
+        return value;
+    }
+
+    private static boolean isSupportedKeyType(String typeName, boolean range) {
+
+        switch (typeName) {
+            case "int2":
+            case "int4":
+            case "int8":
+            case "numeric":
+            case "date":
+            case "timestamp":
+                return true;
+            case "text":
+            case "varchar":
+                // 文字列の大小は照合順序に依存するため、リストパーティションのみ
+                return !range;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * キーの値を、型に応じた比較可能な値に変換します。
+     *
+     * @param value 値
+     * @param typeName 型名
+     * @return 変換した値 (変換できない場合は{@code null})
+     */
+    @SuppressWarnings("unchecked")
+    static Comparable<Object> parseKey(String value, String typeName) {
+
+        try {
+            switch (typeName) {
+                case "int2":
+                case "int4":
+                case "int8":
+                    return (Comparable<Object>) (Comparable<?>) ValueParser.parseBigint(value);
+                case "numeric":
+                    return (Comparable<Object>) (Comparable<?>) ValueParser.parseNumeric(value);
+                case "date":
+                    return (Comparable<Object>) (Comparable<?>) ValueParser.parseDate(value);
+                case "timestamp":
+                    return (Comparable<Object>) (Comparable<?>) ValueParser.parseTimestamp(value);
+                default:
+                    return (Comparable<Object>) (Comparable<?>) value;
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Table withName(Table table, String name) {
+
+        return Table.builder()
+                .name(name)
+                .columns(table.getColumns())
+                .build();
+    }
+
+    /**
+     * パーティションの範囲です。
+     */
+    @Value
+    @Builder
+    static class Partition {
+
+        private final Table table;
+
+        /** 範囲の下限です。(含みます。{@code null}の場合は下限なし) */
+        private final Comparable<Object> lower;
+
+        /** 範囲の上限です。(含みません。{@code null}の場合は上限なし) */
+        private final Comparable<Object> upper;
+
+        /** リストパーティションの値です。 */
+        private final Set<Object> values;
+
+        private final boolean containsNull;
+
+        private final boolean defaultPartition;
+
+        public boolean contains(Comparable<Object> key) {
+
+            if (values != null) {
+                return key == null ? containsNull : values.contains(key);
+            }
+
+            // レンジパーティションにNULLは含まれない
+            return key != null
+                    && (lower == null || lower.compareTo(key) <= 0)
+                    && (upper == null || upper.compareTo(key) > 0);
+        }
+    }
+
+    /**
+     * 存在しないパーティションを作成する際の、範囲の単位です。
+     */
+    @Value
+    static class PartitionInterval {
+
+        private static final Pattern NUMBER = Pattern.compile("[0-9]+");
+
+        private final ChronoUnit unit;
+
+        /** 整数のキーの場合の範囲の幅です。 */
+        private final long width;
+
+        public static PartitionInterval of(String value) {
+
+            if (NUMBER.matcher(value).matches()) {
+                return new PartitionInterval(null, Long.parseLong(value));
+            }
+
+            switch (value.toLowerCase()) {
+                case "day":
+                    return new PartitionInterval(ChronoUnit.DAYS, 0);
+                case "month":
+                    return new PartitionInterval(ChronoUnit.MONTHS, 0);
+                case "year":
+                    return new PartitionInterval(ChronoUnit.YEARS, 0);
+                default:
+                    throw new IllegalArgumentException("Invalid partition interval: " + value);
+            }
+        }
+
+        boolean supports(String keyTypeName) {
+
+            switch (keyTypeName) {
+                case "int2":
+                case "int4":
+                case "int8":
+                    return unit == null;
+                case "date":
+                case "timestamp":
+                    return unit != null;
+                default:
+                    return false;
+            }
+        }
+
+        Object lowerOf(Object key) {
+
+            if (unit == null) {
+                long value = (Long) key;
+                return Math.floorDiv(value, width) * width;
+            }
+
+            LocalDate date = key instanceof LocalDateTime ? ((LocalDateTime) key).toLocalDate() : (LocalDate) key;
+            switch (unit) {
+                case YEARS:
+                    return date.withDayOfYear(1);
+                case MONTHS:
+                    return date.withDayOfMonth(1);
+                default:
+                    return date;
+            }
+        }
+
+        Object upperOf(Object lower) {
+
+            if (unit == null) {
+                return (Long) lower + width;
+            }
+
+            return ((LocalDate) lower).plus(1, unit);
+        }
+
+        String suffixOf(Object lower) {
+
+            if (unit == null) {
+                long value = (Long) lower;
+                return value < 0 ? "m" + -value : String.valueOf(value);
+            }
+
+            switch (unit) {
+                case YEARS:
+                    return ((LocalDate) lower).format(DateTimeFormatter.ofPattern("uuuu"));
+                case MONTHS:
+                    return ((LocalDate) lower).format(DateTimeFormatter.ofPattern("uuuuMM"));
+                default:
+                    return ((LocalDate) lower).format(DateTimeFormatter.BASIC_ISO_DATE);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return unit == null ? String.valueOf(width) : unit.toString();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+import org.apache.commons.csv.CSVRecord;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * CSVの解析とDBへの登録を別スレッドで並行して行うクラスです。
+ * <p>呼び出し元のスレッドで解析したレコードを、上限のあるキューを介して書き込みスレッドに渡します。
+ * キューが一杯の場合、解析は書き込みが追いつくまで待ちます。</p>
+ */
+@RequiredArgsConstructor
+class PipelinedInserter {
+
+    /**
+     * レコードの終端を表すバッファです。
+     */
+    private static final RecordBatch END_OF_BATCHES = new RecordBatch(0, 0);
+
+    private final ConnectionFactory connectionFactory;
+
+    private final int writerSize;
+
+    private final int queueSize;
+
+    private final int batchSize;
+
+    /**
+     * 1バッチのバイト数の上限です。(0の場合は件数のみで判定)
+     */
+    private final long batchMaxBytes;
+
+    private final InsertStrategy insertStrategy;
+
+    private final CommitMode commitMode;
+
+    private final LoadMetrics metrics;
+
+    public long load(Table table, Iterable<CSVRecord> records, LongConsumer loadingNotifier)
+            throws IOException, SQLException {
+
+        // キュー内、書き込み中、解析中の分のバッファを使い回す
+        int batchCount = queueSize + writerSize + 1;
+        BlockingQueue<RecordBatch> freeBatches = new ArrayBlockingQueue<>(batchCount);
+        for (int i = 0; i < batchCount; i++) {
+            freeBatches.add(new RecordBatch(batchSize, table.getColumns().size(), batchMaxBytes));
+        }
+
+        Progress progress = new Progress(loadingNotifier);
+
+        try (ConnectionWorkers<RecordBatch> workers = new ConnectionWorkers<>(
+                connectionFactory,
+                writerSize,
+                queueSize,
+                END_OF_BATCHES,
+                commitMode,
+                metrics,
+                "csv2postgresql-insert")) {
+
+            workers.start(connection -> write(connection, table, workers, freeBatches, progress));
+
+            Exception parseException = null;
+            try {
+                RecordBatch batch = workers.take(freeBatches);
+
+                // キューの空きを待つ時間は除き、1バッチ分のレコードを揃えるまでの時間を解析の時間として集計
+                long parseStartNanos = System.nanoTime();
+                for (CSVRecord record : records) {
+                    if (batch == null) {
+                        break;
+                    }
+
+                    batch.add(record);
+
+                    if (batch.isFull()) {
+                        metrics.addElapsed(LoadStage.PARSE, parseStartNanos);
+                        batch = workers.put(batch) ? workers.take(freeBatches) : null;
+                        parseStartNanos = System.nanoTime();
+                    }
+                }
+                metrics.addElapsed(LoadStage.PARSE, parseStartNanos);
+
+                if (batch != null && !batch.isEmpty()) {
+                    workers.put(batch);
+                }
+            } catch (IOException | SQLException | RuntimeException e) {
+                parseException = e;
+            }
+
+            return workers.finish(parseException);
+        }
+    }
+
+    private long write(
+            Connection connection,
+            Table table,
+            ConnectionWorkers<RecordBatch> workers,
+            BlockingQueue<RecordBatch> freeBatches,
+            Progress progress)
+            throws IOException, SQLException, InterruptedException {
+
+        long insertedCount = 0;
+        try (BatchInserter inserter = table.newInserter(connection, insertStrategy, batchSize, metrics)) {
+
+            while (true) {
+                RecordBatch batch = workers.getQueue().poll(ConnectionWorkers.POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (workers.isAborted()) {
+                    throw new LoadAbortedException();
+                }
+                if (batch == null) {
+                    continue;
+                }
+                if (batch == END_OF_BATCHES) {
+                    break;
+                }
+
+                try {
+                    long startNanos = System.nanoTime();
+                    int count = inserter.insert(batch);
+                    metrics.recordBatchLatency(System.nanoTime() - startNanos);
+
+                    insertedCount += count;
+                    progress.add(count);
+                } finally {
+                    batch.clear();
+                    freeBatches.add(batch);
+                }
+            }
+
+            inserter.finish();
+        }
+
+        return insertedCount;
+    }
+
+    /**
+     * 複数の書き込みスレッドの登録件数をまとめて通知するクラスです。
+     */
+    @RequiredArgsConstructor
+    private static class Progress {
+
+        private final LongConsumer loadingNotifier;
+
+        private long insertedCount;
+
+        synchronized void add(long count) {
+            insertedCount += count;
+            loadingNotifier.accept(insertedCount);
+        }
+    }
+}
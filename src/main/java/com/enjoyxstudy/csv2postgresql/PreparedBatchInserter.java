@@ -0,0 +1,52 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * 1レコードずつのINSERT文をバッチで実行するクラスです。
+ */
+class PreparedBatchInserter implements BatchInserter {
+
+    private final PreparedStatement statement;
+
+    private final LoadMetrics metrics;
+
+    PreparedBatchInserter(PreparedStatement statement, LoadMetrics metrics) {
+        this.statement = statement;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public int insert(RecordBatch batch) throws SQLException {
+
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < batch.size(); i++) {
+
+            // 中間のコレクションを経由せず、バッファから直接バインド
+            String[] values = batch.get(i);
+            for (int j = 0; j < values.length; j++) {
+                statement.setString(j + 1, values[j]);
+            }
+            statement.addBatch();
+        }
+        metrics.addElapsed(LoadStage.ENCODE, startNanos);
+
+        startNanos = System.nanoTime();
+        statement.executeBatch();
+        statement.clearBatch();
+        metrics.addElapsed(LoadStage.WRITE, startNanos);
+
+        metrics.addRows(batch.size());
+        return batch.size();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        statement.close();
+    }
+}
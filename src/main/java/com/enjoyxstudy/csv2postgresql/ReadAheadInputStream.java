@@ -0,0 +1,190 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 別スレッドで先読みするInputStreamです。
+ * <p>固定数のバッファを使い回し、読み込みスレッドが空いたバッファを埋めている間に、
+ * 呼び出し元のスレッドは読み込み済みのバッファを読み込みます。
+ * COPYの送信で呼び出し元がブロックしている間も、ファイルの読み込みや展開を進めるために使います。</p>
+ */
+class ReadAheadInputStream extends InputStream {
+
+    /**
+     * 終了時に、読み込みスレッドの停止を待つ時間(ミリ秒)です。
+     */
+    private static final long CLOSE_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * 終端を表すバッファです。
+     */
+    private static final Buffer END_OF_BUFFERS = new Buffer(new byte[0]);
+
+    private final InputStream source;
+
+    private final BlockingQueue<Buffer> freeBuffers;
+
+    private final BlockingQueue<Buffer> filledBuffers;
+
+    private final ExecutorService executor;
+
+    /** 読み込みスレッドで発生した例外です。 */
+    private volatile Exception readException;
+
+    private Buffer current;
+
+    private int position;
+
+    private boolean end;
+
+    /**
+     * @param source 読み込み元
+     * @param bufferSize 1バッファのサイズ
+     * @param bufferCount 先読みするバッファ数
+     */
+    ReadAheadInputStream(InputStream source, int bufferSize, int bufferCount) {
+
+        this.source = source;
+
+        // 呼び出し元で読み込み中の分も含めて確保
+        this.freeBuffers = new ArrayBlockingQueue<>(bufferCount + 1);
+        for (int i = 0; i < bufferCount + 1; i++) {
+            freeBuffers.add(new Buffer(new byte[bufferSize]));
+        }
+        this.filledBuffers = new ArrayBlockingQueue<>(bufferCount + 2);
+
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "csv2postgresql-read-ahead");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.execute(this::readAhead);
+    }
+
+    private void readAhead() {
+
+        try {
+            while (true) {
+                Buffer buffer = freeBuffers.take();
+                buffer.length = readFully(buffer.bytes);
+                if (buffer.length == 0) {
+                    break;
+                }
+                filledBuffers.put(buffer);
+            }
+        } catch (IOException | RuntimeException e) {
+            readException = e;
+        } catch (InterruptedException e) {
+            // 終了が呼び出された
+            return;
+        }
+
+        // キューの容量はバッファ数より多いため、終端は待たずに積める
+        filledBuffers.add(END_OF_BUFFERS);
+    }
+
+    private int readFully(byte[] bytes) throws IOException {
+
+        // COPYのメッセージをなるべく大きくするため、バッファが埋まるまで読み込む
+        int length = 0;
+        while (length < bytes.length) {
+            int readSize = source.read(bytes, length, bytes.length - length);
+            if (readSize == -1) {
+                break;
+            }
+            length += readSize;
+        }
+
+        return length;
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+        if (len == 0) {
+            return 0;
+        }
+
+        while (current == null || position == current.length) {
+            if (end) {
+                return -1;
+            }
+            nextBuffer();
+        }
+
+        int readSize = Math.min(len, current.length - position);
+        System.arraycopy(current.bytes, position, b, off, readSize);
+        position += readSize;
+
+        return readSize;
+    }
+
+    private void nextBuffer() throws IOException {
+
+        if (current != null) {
+            freeBuffers.add(current);
+            current = null;
+        }
+
+        Buffer buffer;
+        try {
+            buffer = filledBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+
+        if (buffer == END_OF_BUFFERS) {
+            end = true;
+            if (readException instanceof IOException) {
+                throw (IOException) readException;
+            }
+            if (readException != null) {
+                throw (RuntimeException) readException;
+            }
+            return;
+        }
+
+        current = buffer;
+        position = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        executor.shutdownNow();
+        try {
+            // 読み込み中に閉じないよう、読み込みスレッドの停止を待つ
+            executor.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            source.close();
+        }
+    }
+
+    private static class Buffer {
+
+        private final byte[] bytes;
+
+        private int length;
+
+        Buffer(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.sql.SQLDataException;
+import java.util.Arrays;
+
+import org.apache.commons.csv.CSVRecord;
+
+/**
+ * 一括で登録するレコードを保持するバッファです。
+ * <p>レコードを格納する配列はあらかじめ確保しておき、{@link #clear()}後も使い回します。
+ * 値の文字列と、CSVの解析で生成される{@link CSVRecord}は、レコード毎に生成されたものを参照します。</p>
+ */
+public class RecordBatch {
+
+    /**
+     * 値1つあたりの、文字列のオブジェクトと配列のヘッダのおおよそのバイト数です。
+     */
+    private static final int VALUE_OVERHEAD_BYTES = 40;
+
+    private String[][] records;
+
+    private final int columnCount;
+
+    private int size;
+
+    /**
+     * 格納するレコードのバイト数の上限です。(0の場合は件数のみで判定)
+     */
+    private final long maxBytes;
+
+    private long bytes;
+
+    public RecordBatch(int capacity, int columnCount) {
+        this(capacity, columnCount, 0);
+    }
+
+    /**
+     * @param capacity 件数
+     * @param columnCount カラム数
+     * @param maxBytes バイト数の上限 (件数に満たなくても、上限に達した時点で一杯とします)
+     */
+    public RecordBatch(int capacity, int columnCount, long maxBytes) {
+        this.records = new String[capacity][columnCount];
+        this.columnCount = columnCount;
+        this.maxBytes = maxBytes;
+    }
+
+    public void add(CSVRecord record) throws SQLDataException {
+
+        String[] values = nextRecord(record.size(), record.getRecordNumber());
+        for (int i = 0; i < values.length; i++) {
+            values[i] = record.get(i);
+            bytes += estimateBytes(values[i]);
+        }
+    }
+
+    /**
+     * レコードを追加します。
+     *
+     * @param record レコードの値
+     * @param recordNumber レコード番号 (エラーメッセージに使います)
+     * @throws SQLDataException フィールド数がカラム数と一致しない場合
+     */
+    public void add(String[] record, long recordNumber) throws SQLDataException {
+
+        String[] values = nextRecord(record.length, recordNumber);
+        System.arraycopy(record, 0, values, 0, values.length);
+        for (String value : values) {
+            bytes += estimateBytes(value);
+        }
+    }
+
+    private String[] nextRecord(int fieldCount, long recordNumber) throws SQLDataException {
+
+        if (isFull()) {
+            throw new IllegalStateException("Batch is full.");
+        }
+
+        String[] values = records[size];
+        if (fieldCount != values.length) {
+            throw new SQLDataException(
+                    String.format(
+                            "The number of fields does not match the number of columns. (Record number: %,d)",
+                            recordNumber),
+                    "22P04");
+        }
+
+        size++;
+        return values;
+    }
+
+    /**
+     * レコードを取得します。
+     * <p>返却する配列はバッファそのものであり、{@link #clear()}後に再利用されます。</p>
+     *
+     * @param index インデックス
+     * @return レコードの値
+     */
+    public String[] get(int index) {
+        return records[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return records.length;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size == records.length || (maxBytes > 0 && bytes >= maxBytes);
+    }
+
+    /**
+     * 格納できる件数を変更します。
+     * <p>件数の変更は、空の状態でのみ行えます。既存の配列は使い回し、増えた分のみ確保します。</p>
+     *
+     * @param capacity 件数
+     */
+    public void resize(int capacity) {
+
+        if (!isEmpty()) {
+            throw new IllegalStateException("Batch is not empty.");
+        }
+
+        if (capacity == records.length) {
+            return;
+        }
+
+        int currentCapacity = records.length;
+        records = Arrays.copyOf(records, capacity);
+        for (int i = currentCapacity; i < capacity; i++) {
+            records[i] = new String[columnCount];
+        }
+    }
+
+    /**
+     * 格納しているレコードが使う、おおよそのメモリのバイト数を求めます。
+     * <p>1文字を2バイトとし、値毎に文字列のオブジェクトの分を加えて数えます。</p>
+     *
+     * @return バイト数
+     */
+    public long estimateBytes() {
+        return bytes;
+    }
+
+    private static long estimateBytes(String value) {
+        return value == null ? 0 : 2L * value.length() + VALUE_OVERHEAD_BYTES;
+    }
+
+    public void clear() {
+
+        // 配列は使い回すが、値の参照は残さない
+        for (int i = 0; i < size; i++) {
+            Arrays.fill(records[i], null);
+        }
+        size = 0;
+        bytes = 0;
+    }
+}
@@ -0,0 +1,200 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.csv.CSVFormat;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 不正なレコードを除外しながらCOPYするクラスです。
+ * <p>チャンク毎にセーブポイントを設定してCOPYし、失敗した場合にはチャンクを二分しながらCOPYし直して、
+ * 失敗するレコードを特定します。特定したレコードはエラーメッセージと共にリジェクトファイルに出力します。</p>
+ */
+@RequiredArgsConstructor
+class RejectingCopier {
+
+    /**
+     * 1回のCOPYで送信するチャンクの既定のサイズです。
+     */
+    static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private final Connection connection;
+
+    /**
+     * 1回のCOPYで送信するチャンクのサイズです。
+     */
+    private final int chunkSize;
+
+    private final Charset charset;
+
+    private final boolean passThrough;
+
+    private final Path rejectFilePath;
+
+    private final String sourceName;
+
+    /**
+     * 除外を許容するレコード数です。超えた場合にはロードを中断します。
+     */
+    private final long rejectLimit;
+
+    private final LoadMetrics metrics;
+
+    /** 処理済みのレコード数です。(リジェクトしたレコードを含みます) */
+    private long rowNumber;
+
+    private long rejectedCount;
+
+    /**
+     * 不正なレコードを除外しながらCOPYします。
+     *
+     * @param table テーブル
+     * @param csvStream CSVのバイト列 (ヘッダを含まないこと)
+     * @return ロードした件数
+     * @throws IOException
+     * @throws SQLException
+     */
+    public long copy(Table table, InputStream csvStream) throws IOException, SQLException {
+
+        long loadedCount = 0;
+        try (CsvChunkReader chunkReader = new CsvChunkReader(csvStream, chunkSize)) {
+
+            byte[] chunk;
+            while ((chunk = chunkReader.readChunk()) != null) {
+                loadedCount += copyChunk(table, chunk, null);
+            }
+        }
+
+        return loadedCount;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    private long copyChunk(Table table, byte[] chunk, List<byte[]> records) throws IOException, SQLException {
+
+        Savepoint savepoint = connection.setSavepoint();
+        try {
+            long count = copy(table, chunk);
+            connection.releaseSavepoint(savepoint);
+            rowNumber += count;
+            return count;
+
+        } catch (SQLException e) {
+            if (!isRejectable(e)) {
+                throw e;
+            }
+
+            // 失敗したチャンクのみ取り消し、それまでにロードしたチャンクは残す
+            // (ロールバックしてもセーブポイントは残るため、二分して送信し直す間に溜まらないよう解放する)
+            connection.rollback(savepoint);
+            connection.releaseSavepoint(savepoint);
+
+            if (records == null) {
+                records = splitRecords(chunk);
+            }
+
+            if (records.size() == 1) {
+                reject(records.get(0), e);
+                return 0;
+            }
+
+            int middle = records.size() / 2;
+            return copyRecords(table, records.subList(0, middle))
+                    + copyRecords(table, records.subList(middle, records.size()));
+        }
+    }
+
+    private long copyRecords(Table table, List<byte[]> records) throws IOException, SQLException {
+
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        for (byte[] record : records) {
+            chunk.write(record);
+        }
+
+        return copyChunk(table, chunk.toByteArray(), records);
+    }
+
+    private long copy(Table table, byte[] chunk) throws IOException, SQLException {
+
+        InputStream chunkStream = new ByteArrayInputStream(chunk);
+
+        if (passThrough) {
+            return table.load(connection, chunkStream, false, charset, metrics);
+        }
+
+        return table.load(connection, new InputStreamReader(chunkStream, charset), false, metrics);
+    }
+
+    private void reject(byte[] record, SQLException e) throws IOException, SQLException {
+
+        rowNumber++;
+        rejectedCount++;
+
+        if (rejectedCount > rejectLimit) {
+            throw new SQLException(
+                    String.format("Reject limit exceeded: %d (row %d of %s)", rejectLimit, rowNumber, sourceName),
+
+                    e);
+        }
+
+        String line = CSVFormat.EXCEL.format(
+                sourceName,
+                rowNumber,
+                e.getSQLState(),
+                e.getMessage(),
+                stripLineSeparator(new String(record, charset))) + "\r\n";
+
+        // 複数ファイルを並行してロードする場合も行単位で追記されるよう、1レコード毎にまとめて書き込む
+        Files.write(
+                rejectFilePath,
+                line.getBytes(charset),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+    }
+
+    private static List<byte[]> splitRecords(byte[] chunk) throws IOException {
+
+        List<byte[]> records = new ArrayList<>();
+        try (CsvChunkReader recordReader = new CsvChunkReader(new ByteArrayInputStream(chunk), chunk.length)) {
+            byte[] record;
+            while ((record = recordReader.readRecord()) != null) {
+                records.add(record);
+            }
+        }
+
+        return records;
+    }
+
+    private static String stripLineSeparator(String record) {
+
+        int end = record.length();
+        while (end > 0 && (record.charAt(end - 1) == '\n' || record.charAt(end - 1) == '\r')) {
+            end--;
+        }
+
+        return record.substring(0, end);
+    }
+
+    private static boolean isRejectable(SQLException e) {
+
+        // SQLSTATEのクラス22はデータ例外、23は整合性制約違反
+        return e.getSQLState() != null
+                && (e.getSQLState().startsWith("22") || e.getSQLState().startsWith("23"));
+    }
+}
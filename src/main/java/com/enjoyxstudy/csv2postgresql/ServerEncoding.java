@@ -0,0 +1,60 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JavaのエンコーディングとPostgreSQLのエンコーディング名の対応です。
+ * <p>COPYの{@code ENCODING}オプションで、サーバ側に変換させる際に使います。</p>
+ */
+final class ServerEncoding {
+
+    private static final Map<String, String> NAMES = new HashMap<>();
+
+    static {
+        NAMES.put("UTF-8", "UTF8");
+        // PostgreSQLのSJISは、Microsoftの拡張(Windows-31J)を含む
+        NAMES.put("Shift_JIS", "SJIS");
+        NAMES.put("windows-31j", "SJIS");
+        NAMES.put("x-SJIS_0213", "SHIFT_JIS_2004");
+        NAMES.put("EUC-JP", "EUC_JP");
+        NAMES.put("x-euc-jp-linux", "EUC_JP");
+        NAMES.put("EUC-KR", "EUC_KR");
+        NAMES.put("x-windows-949", "UHC");
+        NAMES.put("GBK", "GBK");
+        NAMES.put("GB18030", "GB18030");
+        NAMES.put("Big5", "BIG5");
+        NAMES.put("ISO-8859-1", "LATIN1");
+        NAMES.put("ISO-8859-2", "LATIN2");
+        NAMES.put("ISO-8859-3", "LATIN3");
+        NAMES.put("ISO-8859-4", "LATIN4");
+        NAMES.put("ISO-8859-5", "ISO_8859_5");
+        NAMES.put("ISO-8859-6", "ISO_8859_6");
+        NAMES.put("ISO-8859-7", "ISO_8859_7");
+        NAMES.put("ISO-8859-8", "ISO_8859_8");
+        NAMES.put("ISO-8859-9", "LATIN5");
+        NAMES.put("ISO-8859-13", "LATIN7");
+        NAMES.put("ISO-8859-15", "LATIN9");
+        NAMES.put("KOI8-R", "KOI8R");
+        NAMES.put("KOI8-U", "KOI8U");
+        NAMES.put("IBM866", "WIN866");
+        NAMES.put("x-windows-874", "WIN874");
+        for (int i = 1250; i <= 1258; i++) {
+            NAMES.put("windows-" + i, "WIN" + i);
+        }
+    }
+
+    private ServerEncoding() {
+    }
+
+    /**
+     * エンコーディングに対応する、PostgreSQLのエンコーディング名を取得します。
+     *
+     * @param charset エンコーディング
+     * @return PostgreSQLのエンコーディング名 (対応するものが無い場合は{@code null})
+     */
+    static String nameOf(Charset charset) {
+        return NAMES.get(charset.name());
+    }
+}
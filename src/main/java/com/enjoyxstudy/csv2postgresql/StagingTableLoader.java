@@ -0,0 +1,478 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.MapHandler;
+import org.apache.commons.dbutils.handlers.MapListHandler;
+import org.apache.commons.dbutils.handlers.ScalarHandler;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * UNLOGGEDのステージングテーブルにロードしてから、既存のテーブルと入れ替えるクラスです。
+ * <p>インデックスはロード後に複数のコネクションで並列に作成するため、インデックスを更新しながら登録するより高速です。
+ * 入れ替えは1トランザクション内で行うため、他のセッションからは入れ替え前後のどちらかの内容が見えます。
+ * 所有者とテーブルへの権限は引き継ぎます。トリガー、行セキュリティ、カラム単位の権限は引き継げないため、
+ * それらがあるテーブルは入れ替えません。</p>
+ */
+@RequiredArgsConstructor
+class StagingTableLoader {
+
+    /**
+     * ステージングテーブル、作成中のインデックスの名前に付ける接尾辞です。
+     */
+    static final String STAGING_SUFFIX = "_csv2pg_staging";
+
+    /** 識別子の最大のバイト数(NAMEDATALEN - 1)です。超えた分は切り捨てられます。 */
+    private static final int MAX_IDENTIFIER_LENGTH = 63;
+
+    /** 識別子(ダブルクォートで囲まれたものは空白なども含む)です。スキーマ名付きの場合も含みます。 */
+    private static final String IDENTIFIER = "((?:\"(?:[^\"]|\"\")*\"|[^\\s.\"]+)(?:\\.(?:\"(?:[^\"]|\"\")*\"|[^\\s.\"]+))*)";
+
+    private static final Pattern CREATE_INDEX = Pattern.compile(
+            "^(CREATE (?:UNIQUE )?INDEX )" + IDENTIFIER + "( ON (?:ONLY )?)" + IDENTIFIER + "( .*)$", Pattern.DOTALL);
+
+    private final ConnectionFactory connectionFactory;
+
+    private final int indexParallelSize;
+
+    /**
+     * ステージングテーブルを経由してロードします。
+     *
+     * @param tableName 既存のテーブル名
+     * @param load ステージングテーブルへのロード処理
+     * @return ロードした件数
+     * @throws IOException
+     * @throws SQLException
+     */
+    public long load(String tableName, TableLoad load) throws IOException, SQLException {
+
+        String stagingTableName = stagingName(tableName);
+
+        List<Index> indexes;
+        List<String> foreignKeys;
+        List<String> grants;
+        try (Connection connection = connectionFactory.getConnection()) {
+
+            checkNotReferenced(connection, tableName);
+            checkNoUncopiedDefinitions(connection, tableName);
+
+            indexes = findIndexes(connection, tableName);
+            foreignKeys = findForeignKeys(connection, tableName);
+            grants = findGrants(connection, tableName, stagingTableName);
+
+            // 前回の失敗で残っている可能性があるので、いったん削除
+            execute(connection, "DROP TABLE IF EXISTS %s", stagingTableName);
+
+            // インデックスはロード後に作成する
+            execute(
+                    connection,
+                    "CREATE UNLOGGED TABLE %s (LIKE %s INCLUDING ALL EXCLUDING INDEXES)",
+                    stagingTableName,
+                    tableName);
+        }
+
+        boolean replaced = false;
+        try {
+            long loadedCount = load.load(stagingTableName);
+
+            createIndexes(stagingTableName, indexes);
+
+            try (Connection connection = connectionFactory.getConnection()) {
+
+                addConstraints(connection, stagingTableName, indexes, foreignKeys);
+
+                execute(connection, "ALTER TABLE %s SET LOGGED", stagingTableName);
+                execute(connection, "ANALYZE %s", stagingTableName);
+
+                replace(connection, tableName, stagingTableName, indexes, grants);
+            }
+
+            replaced = true;
+            return loadedCount;
+
+        } finally {
+            if (!replaced) {
+                dropQuietly(stagingTableName);
+            }
+        }
+    }
+
+    /**
+     * インデックスの定義を、ステージングテーブルに作成中の名前で作成するSQLに変換します。
+     *
+     * @param definition {@code pg_get_indexdef}で取得したインデックスの定義
+     * @param stagingIndexName 作成中のインデックス名
+     * @param stagingTableName ステージングテーブル名
+     * @return SQL
+     */
+    static String toStagingIndexSql(String definition, String stagingIndexName, String stagingTableName) {
+
+        Matcher matcher = CREATE_INDEX.matcher(definition);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Unsupported index definition: " + definition);
+        }
+
+        return matcher.group(1) + quoteIdentifier(stagingIndexName)
+                + matcher.group(3) + stagingTableName
+                + matcher.group(5);
+    }
+
+    /**
+     * ステージングテーブル、作成中のインデックスの名前を生成します。
+     * <p>接尾辞を付けると識別子の最大長を超える場合は、切り捨てで他の名前と重複しないよう、
+     * 元の名前を短くしてハッシュ値を付けます。</p>
+     *
+     * @param name 元の名前
+     * @return ステージングテーブル、作成中のインデックスの名前
+     */
+    static String stagingName(String name) {
+
+        String stagingName = name + STAGING_SUFFIX;
+        if (byteLength(stagingName) <= MAX_IDENTIFIER_LENGTH) {
+            return stagingName;
+        }
+
+        String suffix = String.format("_%08x%s", name.hashCode(), STAGING_SUFFIX);
+
+        // マルチバイト文字の途中で切らないよう、文字単位で短くする
+        int end = name.length();
+        while (byteLength(name.substring(0, end)) + suffix.length() > MAX_IDENTIFIER_LENGTH) {
+            end = name.offsetByCodePoints(end, -1);
+        }
+
+        return name.substring(0, end) + suffix;
+    }
+
+    private static int byteLength(String name) {
+        return name.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    static String quoteIdentifier(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    private void checkNotReferenced(Connection connection, String tableName) throws SQLException {
+
+        // 外部キーはテーブルのOIDを参照しているため、入れ替えると参照先が無くなる
+        long referencedCount = new QueryRunner().query(
+                connection,
+                "SELECT count(*) FROM pg_constraint c JOIN pg_class t ON t.oid = c.confrelid"
+                        + " WHERE c.contype = 'f' AND t.relkind = 'r' AND t.relname = ?",
+                new ScalarHandler<Long>(),
+                tableName);
+
+        if (referencedCount > 0) {
+            throw new SQLException(
+                    String.format("Table %s is referenced by foreign keys and can not be replaced.", tableName));
+        }
+    }
+
+    private void checkNoUncopiedDefinitions(Connection connection, String tableName) throws SQLException {
+
+        // トリガー、ポリシーはLIKEでは複製されず、定義を移すとテーブル名の置き換えが必要になるため対象外とする
+        Map<String, Object> definitions = new QueryRunner().query(
+                connection,
+                "SELECT EXISTS(SELECT 1 FROM pg_trigger g WHERE g.tgrelid = t.oid AND NOT g.tgisinternal) AS triggers,"
+                        + " t.relrowsecurity OR t.relforcerowsecurity"
+                        + " OR EXISTS(SELECT 1 FROM pg_policy p WHERE p.polrelid = t.oid) AS row_security,"
+                        + " EXISTS(SELECT 1 FROM pg_attribute a WHERE a.attrelid = t.oid AND a.attacl IS NOT NULL)"
+                        + " AS column_privileges"
+                        + " FROM pg_class t WHERE t.relkind = 'r' AND t.relname = ?",
+                new MapHandler(),
+                tableName);
+
+        if (definitions == null) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(definitions.get("triggers"))) {
+            throw new SQLException(
+                    String.format("Table %s has triggers and can not be replaced.", tableName));
+        }
+        if (Boolean.TRUE.equals(definitions.get("row_security"))) {
+            throw new SQLException(
+                    String.format("Table %s has row level security and can not be replaced.", tableName));
+        }
+        if (Boolean.TRUE.equals(definitions.get("column_privileges"))) {
+            throw new SQLException(
+                    String.format("Table %s has column privileges and can not be replaced.", tableName));
+        }
+    }
+
+    private List<Index> findIndexes(Connection connection, String tableName) throws SQLException {
+
+        List<Map<String, Object>> rows = new QueryRunner().query(
+                connection,
+                "SELECT i.relname AS index_name, pg_get_indexdef(x.indexrelid) AS index_definition,"
+                        + " c.conname AS constraint_name, c.contype AS constraint_type,"
+                        + " pg_get_constraintdef(c.oid) AS constraint_definition"
+                        + " FROM pg_index x"
+                        + " JOIN pg_class t ON t.oid = x.indrelid"
+                        + " JOIN pg_class i ON i.oid = x.indexrelid"
+                        + " LEFT JOIN pg_constraint c ON c.conindid = x.indexrelid AND c.conrelid = x.indrelid"
+                        + " AND c.contype IN ('p', 'u', 'x')"
+                        + " WHERE t.relkind = 'r' AND t.relname = ?"
+                        + " ORDER BY i.relname",
+                new MapListHandler(),
+                tableName);
+
+        List<Index> indexes = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            indexes.add(new Index(
+                    (String) row.get("index_name"),
+                    (String) row.get("index_definition"),
+                    (String) row.get("constraint_name"),
+                    row.get("constraint_type") == null ? null : row.get("constraint_type").toString(),
+                    (String) row.get("constraint_definition")));
+        }
+        return indexes;
+    }
+
+    private List<String> findForeignKeys(Connection connection, String tableName) throws SQLException {
+
+        List<Map<String, Object>> rows = new QueryRunner().query(
+                connection,
+                "SELECT c.conname, pg_get_constraintdef(c.oid) AS definition"
+                        + " FROM pg_constraint c JOIN pg_class t ON t.oid = c.conrelid"
+                        + " WHERE c.contype = 'f' AND t.relkind = 'r' AND t.relname = ?"
+                        + " ORDER BY c.conname",
+                new MapListHandler(),
+                tableName);
+
+        List<String> foreignKeys = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            // 外部キーの制約名はテーブル毎なので、元の名前のまま追加できる
+            foreignKeys.add(String.format(
+                    "ADD CONSTRAINT %s %s",
+                    quoteIdentifier((String) row.get("conname")),
+                    row.get("definition")));
+        }
+        return foreignKeys;
+    }
+
+    private List<String> findGrants(Connection connection, String tableName, String stagingTableName)
+            throws SQLException {
+
+        // 所有者自身の権限は、所有者を移せば引き継がれる
+        List<Map<String, Object>> rows = new QueryRunner().query(
+                connection,
+                "SELECT a.privilege_type,"
+                        + " CASE WHEN a.grantee = 0 THEN 'PUBLIC' ELSE quote_ident(pg_get_userbyid(a.grantee)) END"
+                        + " AS grantee,"
+                        + " a.is_grantable"
+                        + " FROM pg_class t CROSS JOIN LATERAL aclexplode(t.relacl) a"
+                        + " WHERE t.relkind = 'r' AND t.relname = ? AND a.grantee <> t.relowner"
+                        + " ORDER BY 2, 1",
+                new MapListHandler(),
+                tableName);
+
+        List<String> grants = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            grants.add(String.format(
+                    "GRANT %s ON %s TO %s%s",
+                    row.get("privilege_type"),
+                    stagingTableName,
+                    row.get("grantee"),
+                    Boolean.TRUE.equals(row.get("is_grantable")) ? " WITH GRANT OPTION" : ""));
+        }
+        return grants;
+    }
+
+    private void createIndexes(String stagingTableName, List<Index> indexes) throws SQLException {
+
+        List<String> sqls = new ArrayList<>();
+        for (Index index : indexes) {
+            // 排他制約は、制約の追加時にインデックスが作成される
+            if (!index.isExclusionConstraint()) {
+                sqls.add(toStagingIndexSql(index.definition, index.stagingName(), stagingTableName));
+            }
+        }
+
+        if (sqls.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(Math.min(indexParallelSize, sqls.size()), 1));
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (String sql : sqls) {
+                futures.add(executor.submit(() -> {
+                    // インデックス毎に別のコネクションで作成
+                    try (Connection connection = connectionFactory.getConnection()) {
+                        new QueryRunner().update(connection, sql);
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof SQLException) {
+                        throw (SQLException) e.getCause();
+                    }
+                    throw new IllegalStateException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void addConstraints(
+            Connection connection, String stagingTableName, List<Index> indexes, List<String> foreignKeys)
+            throws SQLException {
+
+        List<String> alterations = new ArrayList<>();
+        for (Index index : indexes) {
+            if (index.isExclusionConstraint()) {
+                alterations.add(String.format(
+                        "ADD CONSTRAINT %s %s",
+                        quoteIdentifier(index.stagingName()),
+                        index.constraintDefinition));
+            } else if (index.constraintType != null) {
+                // 作成済みのインデックスを使って、主キー、一意制約とする
+                alterations.add(String.format(
+                        "ADD CONSTRAINT %1$s %2$s USING INDEX %1$s",
+                        quoteIdentifier(index.stagingName()),
+                        index.constraintType.equals("p") ? "PRIMARY KEY" : "UNIQUE"));
+            }
+        }
+        alterations.addAll(foreignKeys);
+
+        if (!alterations.isEmpty()) {
+            execute(connection, "ALTER TABLE %s %s", stagingTableName, String.join(", ", alterations));
+        }
+    }
+
+    private void replace(
+            Connection connection, String tableName, String stagingTableName, List<Index> indexes, List<String> grants)
+            throws SQLException {
+
+        connection.setAutoCommit(false);
+        try {
+            execute(connection, "LOCK TABLE %s IN ACCESS EXCLUSIVE MODE", tableName);
+
+            // シーケンスの所有を移すには、テーブルとシーケンスの所有者が同じである必要があるため先に移す
+            String owner = new QueryRunner().query(
+                    connection,
+                    "SELECT quote_ident(pg_get_userbyid(relowner)) FROM pg_class WHERE relkind = 'r' AND relname = ?",
+                    new ScalarHandler<String>(),
+                    tableName);
+            execute(connection, "ALTER TABLE %s OWNER TO %s", stagingTableName, owner);
+
+            for (String grant : grants) {
+                new QueryRunner().update(connection, grant);
+            }
+
+            // 既存のテーブルが所有するシーケンス(serial)は、削除されないように所有を移す
+            List<Map<String, Object>> ownedSequences = new QueryRunner().query(
+                    connection,
+                    "SELECT s.relname AS sequence_name, a.attname AS column_name"
+                            + " FROM pg_depend d"
+                            + " JOIN pg_class s ON s.oid = d.objid AND s.relkind = 'S'"
+                            + " JOIN pg_class t ON t.oid = d.refobjid"
+                            + " JOIN pg_attribute a ON a.attrelid = d.refobjid AND a.attnum = d.refobjsubid"
+                            + " WHERE d.deptype = 'a' AND t.relkind = 'r' AND t.relname = ?",
+                    new MapListHandler(),
+                    tableName);
+            for (Map<String, Object> ownedSequence : ownedSequences) {
+                execute(
+                        connection,
+                        "ALTER SEQUENCE %s OWNED BY %s.%s",
+                        quoteIdentifier((String) ownedSequence.get("sequence_name")),
+                        stagingTableName,
+                        quoteIdentifier((String) ownedSequence.get("column_name")));
+            }
+
+            execute(connection, "DROP TABLE %s", tableName);
+            execute(connection, "ALTER TABLE %s RENAME TO %s", stagingTableName, tableName);
+
+            // 既存のテーブルと同じ名前に戻す (制約の名前を変えると、インデックスの名前も変わる)
+            for (Index index : indexes) {
+                if (index.constraintType != null) {
+                    execute(
+                            connection,
+                            "ALTER TABLE %s RENAME CONSTRAINT %s TO %s",
+                            tableName,
+                            quoteIdentifier(index.stagingName()),
+                            quoteIdentifier(index.constraintName));
+                } else {
+                    execute(
+                            connection,
+                            "ALTER INDEX %s RENAME TO %s",
+                            quoteIdentifier(index.stagingName()),
+                            quoteIdentifier(index.name));
+                }
+            }
+
+            connection.commit();
+
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        }
+    }
+
+    private void dropQuietly(String stagingTableName) {
+
+        try (Connection connection = connectionFactory.getConnection()) {
+            execute(connection, "DROP TABLE IF EXISTS %s", stagingTableName);
+        } catch (SQLException e) {
+            // 元の例外を優先するため、削除の失敗は無視
+        }
+    }
+
+    private static void execute(Connection connection, String format, Object... args) throws SQLException {
+        new QueryRunner().update(connection, String.format(format, args));
+    }
+
+    @FunctionalInterface
+    interface TableLoad {
+
+        long load(String tableName) throws IOException, SQLException;
+    }
+
+    @RequiredArgsConstructor
+    private static class Index {
+
+        private final String name;
+
+        private final String definition;
+
+        private final String constraintName;
+
+        /** 制約の種類です。({@code p}:主キー、{@code u}:一意制約、{@code x}:排他制約、制約でない場合は{@code null}) */
+        private final String constraintType;
+
+        private final String constraintDefinition;
+
+        private boolean isExclusionConstraint() {
+            return "x".equals(constraintType);
+        }
+
+        private String stagingName() {
+            return StagingTableLoader.stagingName(name);
+        }
+    }
+}
@@ -1,16 +1,28 @@
 package com.enjoyxstudy.csv2postgresql;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.KeyedHandler;
 import org.apache.commons.dbutils.handlers.ScalarHandler;
+import org.postgresql.copy.CopyIn;
 import org.postgresql.copy.CopyManager;
 import org.postgresql.core.BaseConnection;
+import org.postgresql.core.Encoding;
 
 import lombok.Builder;
 import lombok.Singular;
@@ -19,6 +31,19 @@ import lombok.Value;
 @Value
 public class Table {
 
+    /**
+     * COPYでバイト列を送信する際のバッファサイズです。
+     */
+    private static final int COPY_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * 一時テーブルの名前に付ける接尾辞です。
+     */
+    private static final String TEMPORARY_TABLE_SUFFIX = "_csv2pg_upsert";
+
+    /** 一時テーブルで、登録した順序を表すカラムです。 */
+    private static final String ROW_ORDER_COLUMN_NAME = "csv2pg_row_order";
+
     private final String name;
 
     private final List<Column> columns;
@@ -32,29 +57,167 @@ public class Table {
 
         // INSERTのSQLは繰り返し使うため、あらかじめ生成しておく
         this.insertSql = String.format(
-                "INSERT INTO %s (%s) VALUES (%s)",
+                "INSERT INTO %s (%s) VALUES %s",
+                name,
+                columnNames(columns),
+                valuesRow(columns));
+    }
+
+    private static String columnNames(List<Column> columns) {
+
+        return columns.stream()
+                .map(Column::getName)
+                .collect(Collectors.joining(", "));
+    }
+
+    private static String valuesRow(List<Column> columns) {
+
+        return columns.stream()
+                .map(column -> toValueExpression("?", column.getType()))
+                .collect(Collectors.joining(", ", "(", ")"));
+    }
+
+    private static String toValueExpression(String value, ColumnType type) {
+
+        if (type == ColumnType.TEXT) {
+            return value;
+        }
+
+        // 文字列としてバインドするため、text以外の型はキャストが必要 (空文字はNULLとして扱う)
+        return String.format("CAST(NULLIF(%s, '') AS %s)", value, type.getSqlName());
+    }
+
+    /**
+     * 指定行数の{@code VALUES}を持つINSERT文を生成します。
+     *
+     * @param rowCount 行数
+     * @return INSERT文
+     */
+    String multiValuesInsertSql(int rowCount) {
+
+        String valuesRow = valuesRow(columns);
+
+        StringBuilder sql = new StringBuilder(insertSql.length() + (valuesRow.length() + 1) * rowCount);
+        sql.append(insertSql);
+        for (int i = 1; i < rowCount; i++) {
+            sql.append(',').append(valuesRow);
+        }
+
+        return sql.toString();
+    }
+
+    /**
+     * カラム毎のtext配列を{@code unnest}で展開して登録するINSERT文を生成します。
+     *
+     * @return INSERT文
+     */
+    String unnestInsertSql() {
+
+        return String.format(
+                "INSERT INTO %s (%s) SELECT %s FROM unnest(%s) AS u(%s)",
                 name,
+                columnNames(columns),
                 columns.stream()
-                        .map(Column::getName)
+                        .map(column -> toValueExpression(column.getName(), column.getType()))
                         .collect(Collectors.joining(", ")),
                 columns.stream()
-                        .map(x -> "?")
-                        .collect(Collectors.joining(", ")));
+                        .map(column -> "?::text[]")
+                        .collect(Collectors.joining(", ")),
+                columnNames(columns));
     }
 
     public boolean exists(Connection connection) throws SQLException {
 
+        // パーティションテーブルの親(p)も対象
         return new QueryRunner().query(
                 connection,
-                "SELECT EXISTS(SELECT 1 FROM pg_class WHERE relkind = 'r' AND relname = ?)",
+                "SELECT EXISTS(SELECT 1 FROM pg_class WHERE relkind IN ('r', 'p') AND relname = ?)",
                 new ScalarHandler<>(),
                 name);
     }
 
+    /**
+     * パーティションテーブルの親かどうかを判定します。
+     *
+     * @param connection コネクション
+     * @return パーティションテーブルの親の場合{@code true}
+     * @throws SQLException
+     */
+    public boolean isPartitioned(Connection connection) throws SQLException {
+
+        return new QueryRunner().query(
+                connection,
+                "SELECT EXISTS(SELECT 1 FROM pg_class WHERE relkind = 'p' AND relname = ?)",
+                new ScalarHandler<>(),
+                name);
+    }
+
+    /**
+     * DBに定義されているカラムの型を反映したテーブルを取得します。
+     *
+     * @param connection コネクション
+     * @return カラムの型を反映したテーブル
+     * @throws SQLException
+     */
+    public Table withColumnTypes(Connection connection) throws SQLException {
+        return withColumnTypes(readColumnTypeNames(connection));
+    }
+
+    /**
+     * DBに定義されているカラムの型名を取得します。
+     *
+     * @param connection コネクション
+     * @return カラム名と型名のMap
+     * @throws SQLException
+     */
+    public Map<String, String> readColumnTypeNames(Connection connection) throws SQLException {
+
+        Map<String, Map<String, Object>> definedColumns = new QueryRunner().query(
+                connection,
+                "SELECT a.attname, t.typname FROM pg_attribute a JOIN pg_type t ON a.atttypid = t.oid"
+                        + " WHERE a.attrelid = ?::regclass AND a.attnum > 0 AND NOT a.attisdropped",
+                new KeyedHandler<String>("attname"),
+                name);
+
+        return definedColumns.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> (String) entry.getValue().get("typname")));
+    }
+
+    /**
+     * 取得済みのカラムの型名を反映したテーブルを取得します。
+     *
+     * @param columnTypeNames カラム名と型名のMap
+     * @return カラムの型を反映したテーブル
+     * @throws SQLException
+     */
+    public Table withColumnTypes(Map<String, String> columnTypeNames) throws SQLException {
+
+        List<Column> typedColumns = new ArrayList<>();
+        for (Column column : columns) {
+
+            String typeName = columnTypeNames.get(column.getName());
+            if (typeName == null) {
+                // 存在しないカラムはCOPY時にエラーとなるため、型はそのまま
+                typedColumns.add(column);
+                continue;
+            }
+
+            ColumnType type = ColumnType.ofTypeName(typeName);
+            if (type == null) {
+                throw new SQLFeatureNotSupportedException(
+                        String.format("Column type %s of %s is not supported.", typeName, column.getName()));
+            }
+
+            typedColumns.add(column.withType(type));
+        }
+
+        return new Table(name, typedColumns);
+    }
+
     public void create(Connection connection) throws SQLException {
 
         String columnDefinition = columns.stream()
-                .map(column -> String.format("%s text", column.getName()))
+                .map(column -> String.format("%s %s", column.getName(), column.getType().getSqlName()))
                 .collect(Collectors.joining(",\n"));
 
         String createTableSql = String.format(
@@ -67,6 +230,237 @@ public class Table {
                 createTableSql);
     }
 
+    /**
+     * テーブルを削除します。
+     *
+     * @param connection コネクション
+     * @throws SQLException
+     */
+    public void drop(Connection connection) throws SQLException {
+
+        new QueryRunner().update(
+                connection,
+                String.format("DROP TABLE IF EXISTS %s", name));
+    }
+
+    /**
+     * このテーブルと同じ定義の一時テーブルを作成します。
+     * <p>一時テーブルはセッション内でのみ参照でき、トランザクションの終了時に削除されます。
+     * 同じキーのレコードを登録順に並べられるよう、連番のカラムを加えます。</p>
+     *
+     * @param connection コネクション
+     * @return 一時テーブル
+     * @throws SQLException
+     */
+    public Table createTemporaryTable(Connection connection) throws SQLException {
+
+        Table temporaryTable = new Table(name + TEMPORARY_TABLE_SUFFIX, columns);
+
+        new QueryRunner().update(
+                connection,
+                String.format(
+                        "CREATE TEMPORARY TABLE %s (LIKE %s INCLUDING DEFAULTS, %s bigserial) ON COMMIT DROP",
+                        temporaryTable.getName(),
+                        name,
+                        ROW_ORDER_COLUMN_NAME));
+
+        return temporaryTable;
+    }
+
+    /**
+     * 別のテーブルのレコードを、キーが一致するものは更新、一致しないものは登録します。
+     * <p>PostgreSQL 15以降では{@code MERGE}、それより前では{@code INSERT ... ON CONFLICT}を使います。
+     * {@code ON CONFLICT}の場合、キーのカラムに一意制約が必要です。</p>
+     *
+     * @param connection コネクション
+     * @param sourceTable 登録するレコードを持つテーブル
+     * @param keyColumnNames キーのカラム名
+     * @return 登録、更新した件数
+     * @throws SQLException
+     */
+    public int upsert(Connection connection, Table sourceTable, List<String> keyColumnNames) throws SQLException {
+
+        boolean merge = connection.getMetaData().getDatabaseMajorVersion() >= 15;
+
+        return new QueryRunner().update(
+                connection,
+                merge
+                        ? mergeSql(sourceTable.getName(), keyColumnNames)
+                        : upsertSql(sourceTable.getName(), keyColumnNames));
+    }
+
+    /**
+     * {@code INSERT ... ON CONFLICT}で登録、更新するSQLを生成します。
+     *
+     * @param sourceTableName 登録するレコードを持つテーブル名
+     * @param keyColumnNames キーのカラム名
+     * @return SQL
+     */
+    String upsertSql(String sourceTableName, List<String> keyColumnNames) {
+
+        List<String> updateColumnNames = updateColumnNames(keyColumnNames);
+
+        return String.format(
+                "INSERT INTO %s (%s) %s ON CONFLICT (%s) %s",
+                name,
+                columnNames(columns),
+                distinctSourceSql(sourceTableName, keyColumnNames),
+                String.join(", ", keyColumnNames),
+                updateColumnNames.isEmpty()
+                        ? "DO NOTHING"
+                        : updateColumnNames.stream()
+                                .map(columnName -> String.format("%1$s = EXCLUDED.%1$s", columnName))
+                                .collect(Collectors.joining(", ", "DO UPDATE SET ", "")));
+    }
+
+    /**
+     * {@code MERGE}で登録、更新するSQLを生成します。
+     *
+     * @param sourceTableName 登録するレコードを持つテーブル名
+     * @param keyColumnNames キーのカラム名
+     * @return SQL
+     */
+    String mergeSql(String sourceTableName, List<String> keyColumnNames) {
+
+        List<String> updateColumnNames = updateColumnNames(keyColumnNames);
+
+        StringBuilder sql = new StringBuilder();
+        sql.append(String.format(
+                "MERGE INTO %s AS t USING (%s) AS s ON %s",
+                name,
+                distinctSourceSql(sourceTableName, keyColumnNames),
+                keyColumnNames.stream()
+                        .map(columnName -> String.format("t.%1$s = s.%1$s", columnName))
+                        .collect(Collectors.joining(" AND "))));
+
+        if (!updateColumnNames.isEmpty()) {
+            sql.append(updateColumnNames.stream()
+                    .map(columnName -> String.format("%1$s = s.%1$s", columnName))
+                    .collect(Collectors.joining(", ", " WHEN MATCHED THEN UPDATE SET ", "")));
+        }
+
+        sql.append(String.format(
+                " WHEN NOT MATCHED THEN INSERT (%s) VALUES (%s)",
+                columnNames(columns),
+                columns.stream()
+                        .map(column -> "s." + column.getName())
+                        .collect(Collectors.joining(", "))));
+
+        return sql.toString();
+    }
+
+    private String distinctSourceSql(String sourceTableName, List<String> keyColumnNames) {
+
+        // 同じキーが複数ある場合は、後に登録したもの(ファイルの後ろにあるもの)を優先
+        return String.format(
+                "SELECT DISTINCT ON (%1$s) %2$s FROM %3$s ORDER BY %1$s, %4$s DESC",
+                String.join(", ", keyColumnNames),
+                columnNames(columns),
+                sourceTableName,
+                ROW_ORDER_COLUMN_NAME);
+    }
+
+    private List<String> updateColumnNames(List<String> keyColumnNames) {
+
+        checkKeyColumns(keyColumnNames);
+
+        return columns.stream()
+                .map(Column::getName)
+                .filter(columnName -> !keyColumnNames.contains(columnName))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * upsertのキーのカラムが、このテーブルのカラムに含まれているかを確認します。
+     *
+     * @param keyColumnNames キーのカラム名
+     * @throws IllegalArgumentException キーが指定されていない場合、カラムに含まれていない場合
+     */
+    public void checkKeyColumns(List<String> keyColumnNames) {
+
+        if (keyColumnNames.isEmpty()) {
+            throw new IllegalArgumentException("Key columns are required for upsert.");
+        }
+
+        List<String> columnNames = columns.stream()
+                .map(Column::getName)
+                .collect(Collectors.toList());
+
+        for (String keyColumnName : keyColumnNames) {
+            if (!columnNames.contains(keyColumnName)) {
+                throw new IllegalArgumentException(
+                        String.format("Key column %s is not found in table %s.", keyColumnName, name));
+            }
+        }
+    }
+
+    /**
+     * カラムの型を変更します。
+     *
+     * @param connection コネクション
+     * @param typedColumns 変更後の型を持つカラム
+     * @return 型を変更したテーブル
+     * @throws SQLException
+     */
+    public Table alterColumnTypes(Connection connection, List<Column> typedColumns) throws SQLException {
+
+        List<String> alterations = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+
+            Column typedColumn = typedColumns.get(i);
+            if (typedColumn.getType() != columns.get(i).getType()) {
+                alterations.add(String.format(
+                        "ALTER COLUMN %1$s TYPE %2$s USING %1$s::%2$s",
+                        typedColumn.getName(),
+                        typedColumn.getType().getSqlName()));
+            }
+        }
+
+        if (!alterations.isEmpty()) {
+            // テーブルの書き換えが1回で済むように、まとめて変更
+            new QueryRunner().update(
+                    connection,
+                    String.format("ALTER TABLE %s %s", name, String.join(", ", alterations)));
+        }
+
+        return new Table(name, typedColumns);
+    }
+
+    /**
+     * 準備済みの文を使い回して登録するためのクラスを生成します。
+     * <p>{@link InsertStrategy#REWRITE_BATCHED}の場合、コネクションで{@code reWriteBatchedInserts}が有効になっている必要があります。</p>
+     *
+     * @param connection コネクション
+     * @param strategy 登録方法
+     * @param batchSize 一括で登録する件数
+     * @return 一括登録用のクラス
+     * @throws SQLException
+     */
+    public BatchInserter newInserter(Connection connection, InsertStrategy strategy, int batchSize)
+            throws SQLException {
+        return newInserter(connection, strategy, batchSize, new LoadMetrics(name, null));
+    }
+
+    public BatchInserter newInserter(
+            Connection connection, InsertStrategy strategy, int batchSize, LoadMetrics metrics)
+            throws SQLException {
+
+        switch (strategy) {
+            case MULTI_VALUES:
+                return new MultiValuesInserter(connection, this, batchSize, metrics);
+            case UNNEST:
+                return new UnnestInserter(connection, this, batchSize, metrics);
+            case COPY:
+                return new CopyBatchInserter(
+                        newCopyIn(connection.unwrap(BaseConnection.class), "FORMAT csv", metrics),
+                        columns,
+                        metrics);
+            default:
+                // バッチの書き換えはドライバ側で行われる
+                return new PreparedBatchInserter(connection.prepareStatement(insertSql), metrics);
+        }
+    }
+
     public void insert(Connection connection, List<String[]> records) throws SQLException {
 
         new QueryRunner().batch(
@@ -75,15 +469,332 @@ public class Table {
                 records.toArray(new Object[records.size()][]));
     }
 
+    public void insert(Connection connection, List<String[]> records, InsertStrategy strategy)
+            throws SQLException {
+
+        RecordBatch batch = new RecordBatch(records.size(), columns.size());
+        for (int i = 0; i < records.size(); i++) {
+            batch.add(records.get(i), i + 1);
+        }
+
+        try (BatchInserter inserter = newInserter(connection, strategy, records.size())) {
+            inserter.insert(batch);
+            inserter.finish();
+        }
+    }
+
     public long load(Connection connection, Reader csvReader) throws SQLException, IOException {
+        return load(connection, csvReader, true);
+    }
+
+    public long load(Connection connection, Reader csvReader, boolean header) throws SQLException, IOException {
+        return load(connection, csvReader, header, new LoadMetrics(name, null));
+    }
+
+    public long load(Connection connection, Reader csvReader, boolean header, LoadMetrics metrics)
+            throws SQLException, IOException {
+
+        BaseConnection baseConnection = connection.unwrap(BaseConnection.class);
+
+        return copy(
+                newCopyIn(baseConnection, header ? "FORMAT csv, HEADER" : "FORMAT csv", metrics),
+                csvReader,
+                header,
+                baseConnection.getEncoding(),
+                metrics);
+    }
+
+    /**
+     * 開始済みのCOPYに、CSVの文字列をエンコードして送信します。
+     *
+     * @param copyIn COPY
+     * @param csvReader CSV
+     * @param header 先頭行がヘッダかどうか
+     * @param encoding 送信時のエンコーディング
+     * @param metrics 集計先
+     * @return ロードした件数
+     * @throws SQLException
+     * @throws IOException
+     */
+    static long copy(CopyIn copyIn, Reader csvReader, boolean header, Encoding encoding, LoadMetrics metrics)
+            throws SQLException, IOException {
+
+        CsvRowCounter rowCounter = new CsvRowCounter(header);
+        boolean completed = false;
+        try {
+            // 読み込み、エンコード、送信の時間をそれぞれ集計できるよう、CopyManagerと同じ処理を個別に行う
+            char[] buffer = new char[COPY_BUFFER_SIZE];
+            while (true) {
+                long startNanos = System.nanoTime();
+                int readSize = csvReader.read(buffer);
+                metrics.addElapsed(LoadStage.PARSE, startNanos);
+
+                if (readSize == -1) {
+                    break;
+                }
+
+                startNanos = System.nanoTime();
+                byte[] bytes = encoding.encode(new String(buffer, 0, readSize));
+                metrics.addElapsed(LoadStage.ENCODE, startNanos);
+
+                copyIn.writeToCopy(bytes, 0, bytes.length);
+                metrics.addRows(rowCounter.count(bytes, 0, bytes.length));
+            }
+
+            long count = endCopy(copyIn, rowCounter, metrics);
+            completed = true;
+            return count;
+
+        } finally {
+            if (!completed) {
+                // 失敗したCOPYの分は取り消されるため、送信中に数えた件数を戻す
+                metrics.addRows(-rowCounter.getCount());
+            }
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    /**
+     * CSVのバイト列を、デコードせずにそのままCOPYで送信します。
+     * <p>バイト列のエンコーディングは、コネクションのクライアントエンコーディングと一致している必要があります。</p>
+     *
+     * @param connection コネクション
+     * @param csvStream CSVのバイト列
+     * @param header ヘッダ行を含む場合{@code true}
+     * @return ロードした件数
+     * @throws SQLException
+     * @throws IOException
+     */
+    public long load(Connection connection, InputStream csvStream, boolean header) throws SQLException, IOException {
+        return load(connection, csvStream, header, new LoadMetrics(name, null));
+    }
+
+    public long load(Connection connection, InputStream csvStream, boolean header, LoadMetrics metrics)
+            throws SQLException, IOException {
+
+        return load(connection, csvStream, header, StandardCharsets.UTF_8, metrics);
+    }
+
+    /**
+     * CSVのバイト列を、デコードせずにそのままCOPYで送信します。
+     * <p>UTF-8以外の場合は{@code ENCODING}オプションを指定し、サーバ側で変換させます。</p>
+     *
+     * @param connection コネクション
+     * @param csvStream CSVのバイト列
+     * @param header ヘッダ行を含む場合{@code true}
+     * @param charset バイト列のエンコーディング
+     * @param metrics 集計先
+     * @return ロードした件数
+     * @throws SQLException
+     * @throws IOException
+     */
+    public long load(Connection connection, InputStream csvStream, boolean header, Charset charset, LoadMetrics metrics)
+            throws SQLException, IOException {
 
-        String copySql = String.format(
-                "COPY %s (%s) FROM STDIN (FORMAT csv, HEADER)",
+        String options = header ? "FORMAT csv, HEADER" : "FORMAT csv";
+        if (!charset.equals(StandardCharsets.UTF_8)) {
+            String encoding = ServerEncoding.nameOf(charset);
+            if (encoding == null) {
+                throw new IllegalArgumentException("COPY does not support encoding: " + charset.name());
+            }
+            options += ", ENCODING '" + encoding + "'";
+        }
+
+        return copy(
+                newCopyIn(connection.unwrap(BaseConnection.class), options, metrics),
+                csvStream,
+                header,
+                metrics);
+    }
+
+    /**
+     * 開始済みのCOPYに、CSVのバイト列をそのまま送信します。
+     *
+     * @param copyIn COPY
+     * @param csvStream CSVのバイト列
+     * @param header 先頭行がヘッダかどうか
+     * @param metrics 集計先
+     * @return ロードした件数
+     * @throws SQLException
+     * @throws IOException
+     */
+    static long copy(CopyIn copyIn, InputStream csvStream, boolean header, LoadMetrics metrics)
+            throws SQLException, IOException {
+
+        CsvRowCounter rowCounter = new CsvRowCounter(header);
+        boolean completed = false;
+        try {
+            // 読み込んだバッファを、そのままCOPYのメッセージとして書き込む
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            while (true) {
+                long startNanos = System.nanoTime();
+                int readSize = csvStream.read(buffer);
+                metrics.addElapsed(LoadStage.PARSE, startNanos);
+
+                if (readSize == -1) {
+                    break;
+                }
+
+                copyIn.writeToCopy(buffer, 0, readSize);
+                metrics.addRows(rowCounter.count(buffer, 0, readSize));
+            }
+
+            long count = endCopy(copyIn, rowCounter, metrics);
+            completed = true;
+            return count;
+
+        } finally {
+            if (!completed) {
+                // 失敗したCOPYの分は取り消されるため、送信中に数えた件数を戻す
+                metrics.addRows(-rowCounter.getCount());
+            }
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    public long loadBinary(Connection connection, Iterable<CSVRecord> records) throws SQLException {
+        return loadBinary(connection, records, new LoadMetrics(name, null));
+    }
+
+    public long loadBinary(Connection connection, Iterable<CSVRecord> records, LoadMetrics metrics)
+            throws SQLException {
+
+        return copyBinary(
+                newCopyIn(connection.unwrap(BaseConnection.class), "FORMAT binary", metrics),
+                records,
+                true,
+                metrics);
+    }
+
+    /**
+     * CSVを解析し、カラムの型に応じて変換してバイナリ形式のCOPYでロードします。
+     * <p>クォートされていない空のフィールドは、CSV形式のCOPYと同様にNULLとします。</p>
+     *
+     * @param connection コネクション
+     * @param csvReader CSV
+     * @param header 先頭行がヘッダかどうか
+     * @param metrics 集計先
+     * @return ロードした件数
+     * @throws SQLException
+     * @throws IOException
+     */
+    public long loadBinary(Connection connection, Reader csvReader, boolean header, LoadMetrics metrics)
+            throws SQLException, IOException {
+        return loadBinary(connection, csvReader, header, true, metrics);
+    }
+
+    /**
+     * ファイルを分割したチャンクを、バイナリ形式のCOPYでロードします。
+     * <p>レコード番号はチャンク内での番号となるため、エラーメッセージには含めません。</p>
+     *
+     * @param connection コネクション
+     * @param chunkReader チャンク (ヘッダを含まないこと)
+     * @param metrics 集計先
+     * @return ロードした件数
+     * @throws SQLException
+     * @throws IOException
+     */
+    public long loadBinaryChunk(Connection connection, Reader chunkReader, LoadMetrics metrics)
+            throws SQLException, IOException {
+        return loadBinary(connection, chunkReader, false, false, metrics);
+    }
+
+    private long loadBinary(
+            Connection connection, Reader csvReader, boolean header, boolean recordNumbered, LoadMetrics metrics)
+            throws SQLException, IOException {
+
+        CSVFormat format = header ? CSVFormat.EXCEL.withFirstRecordAsHeader() : CSVFormat.EXCEL;
+
+        return copyBinary(
+                newCopyIn(connection.unwrap(BaseConnection.class), "FORMAT binary", metrics),
+                format.parse(new NullMarkingReader(csvReader)),
+                recordNumbered,
+                metrics);
+    }
+
+    /**
+     * 開始済みのバイナリ形式のCOPYに、レコードをカラムの型に応じて変換して送信します。
+     *
+     * @param copyIn COPY
+     * @param records レコード
+     * @param recordNumbered レコード番号がファイル全体での番号かどうか
+     * @param metrics 集計先
+     * @return ロードした件数
+     * @throws SQLException
+     */
+    long copyBinary(MeteredCopyIn copyIn, Iterable<CSVRecord> records, boolean recordNumbered, LoadMetrics metrics)
+            throws SQLException {
+
+        long sentRows = 0;
+        boolean completed = false;
+        try {
+            BinaryCopyWriter writer = new BinaryCopyWriter(copyIn, columns, recordNumbered);
+
+            long parseNanos = 0;
+            long encodeNanos = 0;
+
+            Iterator<CSVRecord> iterator = records.iterator();
+            long startNanos = System.nanoTime();
+            while (iterator.hasNext()) {
+                CSVRecord record = iterator.next();
+                long parsedNanos = System.nanoTime();
+                parseNanos += parsedNanos - startNanos;
+
+                writer.write(record);
+                metrics.addRows(1);
+                sentRows++;
+                startNanos = System.nanoTime();
+                encodeNanos += startNanos - parsedNanos;
+            }
+            parseNanos += System.nanoTime() - startNanos;
+
+            // 変換中に行われた送信の時間は、変換の時間から除く
+            metrics.addStageNanos(LoadStage.PARSE, parseNanos);
+            metrics.addStageNanos(LoadStage.ENCODE, encodeNanos - copyIn.getWriteNanos());
+
+            // 件数はレコード毎に集計済み
+            long count = writer.finish();
+            completed = true;
+            return count;
+
+        } finally {
+            if (!completed) {
+                // 失敗したCOPYの分は取り消されるため、送信中に数えた件数を戻す
+                metrics.addRows(-sentRows);
+            }
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private MeteredCopyIn newCopyIn(BaseConnection connection, String options, LoadMetrics metrics)
+            throws SQLException {
+
+        return new MeteredCopyIn(new CopyManager(connection).copyIn(copySql(options)), metrics);
+    }
+
+    private static long endCopy(CopyIn copyIn, CsvRowCounter rowCounter, LoadMetrics metrics) throws SQLException {
+
+        long count = copyIn.endCopy();
+        // 送信中に数えた件数を、サーバで処理された件数に合わせる (終端の改行が無い最後のレコードなど)
+        metrics.addRows(count - rowCounter.getCount());
+
+        return count;
+    }
+
+    private String copySql(String options) {
+
+        return String.format(
+                "COPY %s (%s) FROM STDIN (%s)",
                 name,
                 columns.stream()
                         .map(Column::getName)
-                        .collect(Collectors.joining(", ")));
-        
-        return new CopyManager((BaseConnection)connection).copyIn(copySql, csvReader);
+                        .collect(Collectors.joining(", ")),
+                options);
     }
 }
@@ -0,0 +1,92 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.Value;
+
+/**
+ * テーブルの存在有無とカラムの型を、一定時間キャッシュするクラスです。
+ * <p>同じテーブルへのロードを繰り返す場合に、カタログの参照を省略するために使用します。
+ * 存在しないテーブルはロード時に作成されるため、存在することのみをキャッシュします。</p>
+ */
+class TableMetadataCache {
+
+    private final long ttlMillis;
+
+    private final Map<String, Entry<Boolean>> existences = new ConcurrentHashMap<>();
+
+    private final Map<String, Entry<Map<String, String>>> columnTypeNames = new ConcurrentHashMap<>();
+
+    /**
+     * @param ttlMillis キャッシュの有効期間(ミリ秒) (0の場合はキャッシュしない)
+     */
+    TableMetadataCache(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public boolean exists(Connection connection, Table table) throws SQLException {
+
+        if (isValid(existences.get(table.getName()))) {
+            return true;
+        }
+
+        boolean exists = table.exists(connection);
+        if (exists && ttlMillis > 0) {
+            existences.put(table.getName(), new Entry<>(true, expiresAt()));
+        }
+
+        return exists;
+    }
+
+    public Table withColumnTypes(Connection connection, Table table) throws SQLException {
+
+        Entry<Map<String, String>> entry = columnTypeNames.get(table.getName());
+        if (isValid(entry)) {
+            return table.withColumnTypes(entry.getValue());
+        }
+
+        Map<String, String> typeNames = table.readColumnTypeNames(connection);
+        if (ttlMillis > 0) {
+            columnTypeNames.put(table.getName(), new Entry<>(typeNames, expiresAt()));
+        }
+
+        return table.withColumnTypes(typeNames);
+    }
+
+    /**
+     * 指定したテーブルのキャッシュを破棄します。
+     *
+     * @param tableName テーブル名
+     */
+    public void invalidate(String tableName) {
+        existences.remove(tableName);
+        columnTypeNames.remove(tableName);
+    }
+
+    /**
+     * 全てのキャッシュを破棄します。
+     */
+    public void invalidateAll() {
+        existences.clear();
+        columnTypeNames.clear();
+    }
+
+    private boolean isValid(Entry<?> entry) {
+        return entry != null && entry.getExpiresAt() > System.currentTimeMillis();
+    }
+
+    private long expiresAt() {
+        return System.currentTimeMillis() + ttlMillis;
+    }
+
+    @Value
+    private static class Entry<T> {
+
+        private final T value;
+
+        private final long expiresAt;
+    }
+}
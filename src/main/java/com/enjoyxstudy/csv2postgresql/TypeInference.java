@@ -0,0 +1,26 @@
+package com.enjoyxstudy.csv2postgresql;
+
+/**
+ * テーブル作成時に、カラムの型を推測する方法です。
+ */
+public enum TypeInference {
+
+    /**
+     * 推測せず、全てのカラムをtextとします。
+     */
+    NONE,
+
+    /**
+     * 先頭から指定件数のレコードを元に推測します。
+     */
+    HEAD,
+
+    /**
+     * ファイル全体から無作為に抽出した指定件数のレコードを元に推測します。
+     */
+    RESERVOIR;
+
+    public static TypeInference of(String name) {
+        return valueOf(name.toUpperCase());
+    }
+}
@@ -0,0 +1,71 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * カラム毎の配列をバインドし、{@code unnest}で展開して登録するクラスです。
+ * <p>パラメータ数がカラム数で固定となるため、バインドパラメータ数の上限を気にせずにまとめて登録できます。</p>
+ */
+class UnnestInserter implements BatchInserter {
+
+    private final Connection connection;
+
+    private final PreparedStatement statement;
+
+    private final String[][] columnValues;
+
+    private final LoadMetrics metrics;
+
+    UnnestInserter(Connection connection, Table table, int batchSize, LoadMetrics metrics) throws SQLException {
+        this.connection = connection;
+        this.metrics = metrics;
+        this.statement = connection.prepareStatement(table.unnestInsertSql());
+        this.columnValues = new String[table.getColumns().size()][batchSize];
+    }
+
+    @Override
+    public int insert(RecordBatch batch) throws SQLException {
+
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        long startNanos = System.nanoTime();
+        int size = batch.size();
+        for (int j = 0; j < columnValues.length; j++) {
+
+            if (columnValues[j].length < size) {
+                columnValues[j] = new String[size];
+            }
+
+            for (int i = 0; i < size; i++) {
+                columnValues[j][i] = batch.get(i)[j];
+            }
+
+            String[] values = columnValues[j].length == size ? columnValues[j] : Arrays.copyOf(columnValues[j], size);
+            Array array = connection.createArrayOf("text", values);
+            statement.setArray(j + 1, array);
+        }
+        metrics.addElapsed(LoadStage.ENCODE, startNanos);
+
+        startNanos = System.nanoTime();
+        statement.executeUpdate();
+        metrics.addElapsed(LoadStage.WRITE, startNanos);
+
+        for (String[] values : columnValues) {
+            Arrays.fill(values, 0, size, null);
+        }
+
+        metrics.addRows(size);
+        return size;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        statement.close();
+    }
+}
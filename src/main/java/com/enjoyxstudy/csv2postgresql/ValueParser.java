@@ -0,0 +1,95 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoField;
+
+/**
+ * CSVの値を、カラムの型に応じた値に変換するクラスです。
+ * <p>変換できない値の場合には{@link IllegalArgumentException}をスローします。</p>
+ */
+final class ValueParser {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("uuuu-M-d")
+            .withResolverStyle(ResolverStyle.STRICT);
+
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = new DateTimeFormatterBuilder()
+            .append(DATE_FORMATTER)
+            .optionalStart()
+            .appendLiteral(' ')
+            .append(DateTimeFormatter.ISO_LOCAL_TIME)
+            .optionalEnd()
+            .parseDefaulting(ChronoField.HOUR_OF_DAY, 0)
+            .toFormatter()
+            .withResolverStyle(ResolverStyle.STRICT);
+
+    private ValueParser() {
+    }
+
+    public static int parseInteger(String value) {
+        return Integer.parseInt(value.trim());
+    }
+
+    public static long parseBigint(String value) {
+        return Long.parseLong(value.trim());
+    }
+
+    public static double parseDouble(String value) {
+        return Double.parseDouble(value.trim());
+    }
+
+    public static BigDecimal parseNumeric(String value) {
+        return new BigDecimal(value.trim());
+    }
+
+    public static boolean parseBoolean(String value) {
+
+        switch (value.trim().toLowerCase()) {
+            case "t":
+            case "true":
+            case "y":
+            case "yes":
+            case "on":
+            case "1":
+                return true;
+            case "f":
+            case "false":
+            case "n":
+            case "no":
+            case "off":
+            case "0":
+                return false;
+            default:
+                throw new IllegalArgumentException("Invalid boolean value: " + value);
+        }
+    }
+
+    public static LocalDate parseDate(String value) {
+
+        try {
+            return LocalDate.parse(normalizeDateTime(value), DATE_FORMATTER);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date value: " + value, e);
+        }
+    }
+
+    public static LocalDateTime parseTimestamp(String value) {
+
+        try {
+            return LocalDateTime.parse(normalizeDateTime(value), TIMESTAMP_FORMATTER);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid timestamp value: " + value, e);
+        }
+    }
+
+    private static String normalizeDateTime(String value) {
+
+        // 2019/01/02 や 2019-01-02T03:04:05 といった表記も受け付ける
+        return value.trim().replace('/', '-').replace('T', ' ');
+    }
+}
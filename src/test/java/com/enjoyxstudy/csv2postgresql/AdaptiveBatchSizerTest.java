@@ -0,0 +1,59 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AdaptiveBatchSizerTest {
+
+    @Test
+    public void record_目標の時間に近づける() {
+
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(1000, 10, 100000, 100, Long.MAX_VALUE);
+
+        // 1件あたり10マイクロ秒の場合、100ミリ秒では10000件となるが、1回の変更は2倍まで
+        assertThat(sizer.record(1000, 0, TimeUnit.MILLISECONDS.toNanos(10))).isEqualTo(2000);
+        assertThat(sizer.record(2000, 0, TimeUnit.MILLISECONDS.toNanos(20))).isEqualTo(4000);
+        assertThat(sizer.record(4000, 0, TimeUnit.MILLISECONDS.toNanos(40))).isEqualTo(8000);
+        assertThat(sizer.record(8000, 0, TimeUnit.MILLISECONDS.toNanos(80))).isEqualTo(10000);
+        assertThat(sizer.record(10000, 0, TimeUnit.MILLISECONDS.toNanos(100))).isEqualTo(10000);
+    }
+
+    @Test
+    public void record_遅くなった場合は減らす() {
+
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(1000, 10, 100000, 100, Long.MAX_VALUE);
+
+        // 1回の変更は1/2まで
+        assertThat(sizer.record(1000, 0, TimeUnit.MILLISECONDS.toNanos(1000))).isEqualTo(500);
+    }
+
+    @Test
+    public void record_バイト数の上限() {
+
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(1000, 10, 100000, 100, 1024 * 1024);
+
+        // 1件あたり1KBの場合、時間には余裕があってもバイト数で1024件まで
+        assertThat(sizer.record(1000, 1000 * 1024, TimeUnit.MILLISECONDS.toNanos(1))).isEqualTo(1024);
+    }
+
+    @Test
+    public void record_バイト数の上限無し() {
+
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(1000, 10, 100000, 100, 0);
+
+        // 0の場合は制限しないため、時間に合わせて増やす
+        assertThat(sizer.record(1000, 1000 * 1024, TimeUnit.MILLISECONDS.toNanos(1))).isEqualTo(2000);
+    }
+
+    @Test
+    public void record_最小と最大の範囲() {
+
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 80, 150, 100, Long.MAX_VALUE);
+
+        assertThat(sizer.record(100, 0, TimeUnit.MILLISECONDS.toNanos(1))).isEqualTo(150);
+        assertThat(sizer.record(150, 0, TimeUnit.SECONDS.toNanos(10))).isEqualTo(80);
+    }
+}
@@ -0,0 +1,173 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Test;
+
+public class BinaryCopyWriterTest {
+
+    @Test
+    public void write_ヘッダとトレーラ() throws SQLException, IOException {
+
+        ByteBuffer buffer = write("", Column.of("col1"));
+
+        byte[] signature = new byte[11];
+        buffer.get(signature);
+        assertThat(signature).containsExactly('P', 'G', 'C', 'O', 'P', 'Y', '\n', 0xff, '\r', '\n', 0);
+        assertThat(buffer.getInt()).isEqualTo(0);
+        assertThat(buffer.getInt()).isEqualTo(0);
+        assertThat(buffer.getShort()).isEqualTo((short) -1);
+        assertThat(buffer.hasRemaining()).isFalse();
+    }
+
+    @Test
+    public void write_数値() throws SQLException, IOException {
+
+        ByteBuffer buffer = write(
+                "123,-9876543210,1.5,",
+                Column.of("col1", ColumnType.INTEGER),
+                Column.of("col2", ColumnType.BIGINT),
+                Column.of("col3", ColumnType.DOUBLE),
+                Column.of("col4", ColumnType.INTEGER));
+
+        skipHeader(buffer);
+        assertThat(buffer.getShort()).isEqualTo((short) 4);
+
+        assertThat(buffer.getInt()).isEqualTo(4);
+        assertThat(buffer.getInt()).isEqualTo(123);
+
+        assertThat(buffer.getInt()).isEqualTo(8);
+        assertThat(buffer.getLong()).isEqualTo(-9876543210L);
+
+        assertThat(buffer.getInt()).isEqualTo(8);
+        assertThat(buffer.getDouble()).isEqualTo(1.5);
+
+        // 空文字はNULL
+        assertThat(buffer.getInt()).isEqualTo(-1);
+    }
+
+    @Test
+    public void write_numeric() throws SQLException, IOException {
+
+        ByteBuffer buffer = write(
+                "-12345.0067,0.00",
+                Column.of("col1", ColumnType.NUMERIC),
+                Column.of("col2", ColumnType.NUMERIC));
+
+        skipHeader(buffer);
+        assertThat(buffer.getShort()).isEqualTo((short) 2);
+
+        // 1|2345.0067 → 桁:[1, 2345, 67] 重み:1
+        assertThat(buffer.getInt()).isEqualTo(8 + 3 * 2);
+        assertThat(buffer.getShort()).isEqualTo((short) 3);
+        assertThat(buffer.getShort()).isEqualTo((short) 1);
+        assertThat(buffer.getShort()).isEqualTo((short) 0x4000);
+        assertThat(buffer.getShort()).isEqualTo((short) 4);
+        assertThat(buffer.getShort()).isEqualTo((short) 1);
+        assertThat(buffer.getShort()).isEqualTo((short) 2345);
+        assertThat(buffer.getShort()).isEqualTo((short) 67);
+
+        // 0は桁無し
+        assertThat(buffer.getInt()).isEqualTo(8);
+        assertThat(buffer.getShort()).isEqualTo((short) 0);
+        assertThat(buffer.getShort()).isEqualTo((short) 0);
+        assertThat(buffer.getShort()).isEqualTo((short) 0);
+        assertThat(buffer.getShort()).isEqualTo((short) 2);
+    }
+
+    @Test
+    public void write_日付_真偽値_文字列() throws SQLException, IOException {
+
+        ByteBuffer buffer = write(
+                "2000-01-02,2000/01/01 00:00:01.5,yes,あ",
+                Column.of("col1", ColumnType.DATE),
+                Column.of("col2", ColumnType.TIMESTAMP),
+                Column.of("col3", ColumnType.BOOLEAN),
+                Column.of("col4", ColumnType.TEXT));
+
+        skipHeader(buffer);
+        assertThat(buffer.getShort()).isEqualTo((short) 4);
+
+        assertThat(buffer.getInt()).isEqualTo(4);
+        assertThat(buffer.getInt()).isEqualTo(1);
+
+        assertThat(buffer.getInt()).isEqualTo(8);
+        assertThat(buffer.getLong()).isEqualTo(1500000L);
+
+        assertThat(buffer.getInt()).isEqualTo(1);
+        assertThat(buffer.get()).isEqualTo((byte) 1);
+
+        assertThat(buffer.getInt()).isEqualTo(3);
+        byte[] text = new byte[3];
+        buffer.get(text);
+        assertThat(text).isEqualTo("あ".getBytes("UTF-8"));
+    }
+
+    @Test
+    public void write_変換できない値() {
+
+        assertThatThrownBy(() -> write("abc", Column.of("col1", ColumnType.INTEGER)))
+                .isInstanceOf(SQLDataException.class);
+    }
+
+    @Test
+    public void write_クォートされていない空のフィールド() throws SQLException, IOException {
+
+        ByteBuffer buffer = write(
+                ",\"\"",
+                Column.of("col1", ColumnType.TEXT),
+                Column.of("col2", ColumnType.TEXT));
+
+        skipHeader(buffer);
+        assertThat(buffer.getShort()).isEqualTo((short) 2);
+
+        // クォートされていない空のフィールドはNULL、クォートされた空文字は空文字
+        assertThat(buffer.getInt()).isEqualTo(-1);
+        assertThat(buffer.getInt()).isEqualTo(0);
+    }
+
+    @Test
+    public void write_チャンクのレコード番号() throws SQLException {
+
+        BinaryCopyWriter writer = new BinaryCopyWriter(
+                new ByteArrayCopyIn(), Arrays.asList(Column.of("col1", ColumnType.INTEGER)), false);
+
+        // チャンク内での番号は、ファイル全体での番号と異なるためメッセージに含めない
+        assertThatThrownBy(() -> {
+            for (CSVRecord record : CSVFormat.EXCEL.parse(new StringReader("1\nabc"))) {
+                writer.write(record);
+            }
+        })
+                .isInstanceOf(SQLDataException.class)
+                .hasMessage("Invalid integer value \"abc\".");
+    }
+
+    private ByteBuffer write(String csv, Column... columns) throws SQLException, IOException {
+
+        ByteArrayCopyIn copyIn = new ByteArrayCopyIn();
+        BinaryCopyWriter writer = new BinaryCopyWriter(copyIn, Arrays.asList(columns));
+
+        List<CSVRecord> records = CSVFormat.EXCEL.parse(new NullMarkingReader(new StringReader(csv))).getRecords();
+        for (CSVRecord record : records) {
+            writer.write(record);
+        }
+        writer.finish();
+
+        return ByteBuffer.wrap(copyIn.toByteArray());
+    }
+
+    private void skipHeader(ByteBuffer buffer) {
+        buffer.position(11 + 4 + 4);
+    }
+}
@@ -0,0 +1,80 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.SQLException;
+
+import org.postgresql.copy.CopyIn;
+
+/**
+ * 書き込まれたデータをメモリ上に保持するCopyInです。
+ */
+public class ByteArrayCopyIn implements CopyIn {
+
+    private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    private boolean active = true;
+
+    /** COPYの完了時に発生させる例外です。 */
+    private SQLException endCopyException;
+
+    public byte[] toByteArray() {
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * COPYの完了時に、サーバでエラーになった場合と同様に例外を発生させます。
+     *
+     * @param endCopyException 例外
+     */
+    public void failEndCopy(SQLException endCopyException) {
+        this.endCopyException = endCopyException;
+    }
+
+    @Override
+    public void writeToCopy(byte[] buf, int off, int siz) {
+        outputStream.write(buf, off, siz);
+    }
+
+    @Override
+    public void flushCopy() {
+    }
+
+    @Override
+    public long endCopy() throws SQLException {
+        active = false;
+        if (endCopyException != null) {
+            throw endCopyException;
+        }
+        return 0;
+    }
+
+    @Override
+    public int getFieldCount() {
+        return 0;
+    }
+
+    @Override
+    public int getFormat() {
+        return 0;
+    }
+
+    @Override
+    public int getFieldFormat(int field) {
+        return 0;
+    }
+
+    @Override
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public void cancelCopy() {
+        active = false;
+    }
+
+    @Override
+    public long getHandledRowCount() {
+        return 0;
+    }
+}
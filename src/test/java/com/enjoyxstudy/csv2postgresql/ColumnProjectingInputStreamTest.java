@@ -0,0 +1,102 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class ColumnProjectingInputStreamTest {
+
+    @Test
+    public void read_対象のフィールドのみ抜き出し() throws IOException {
+
+        String csv = "ID,User Name,Note,Age\r\n1,\"a,b\",\"x\r\ny\",20\r\n2,,\"\",\r\n";
+
+        ColumnMapping mapping = ColumnMapping.builder()
+                .includeColumns(Arrays.asList("age", "user_name", "id"))
+                .build();
+
+        // 記述した順に並び替え、クォートや空文字はそのまま
+        assertThat(project(csv, mapping))
+                .isEqualTo("age,user_name,id\n20,\"a,b\",1\n,,2\n");
+    }
+
+    @Test
+    public void read_除外とカラム名の変更() throws IOException {
+
+        String csv = "id,name,note\n1,a,x\n2,b,y";
+
+        ColumnMapping mapping = ColumnMapping.builder()
+                .excludeColumns(Arrays.asList("note"))
+                .columnNames(Collections.singletonMap("name", "user_name"))
+                .build();
+
+        assertThat(project(csv, mapping))
+                .isEqualTo("id,user_name\n1,a\n2,b\n");
+    }
+
+    @Test
+    public void read_固定値のカラム() throws IOException {
+
+        String csv = "id,name\r1,a\r";
+
+        Map<String, String> constantColumns = new LinkedHashMap<>();
+        constantColumns.put("source", "vendor \"A\"");
+        constantColumns.put("memo", "");
+
+        ColumnMapping mapping = ColumnMapping.builder()
+                .includeColumns(Arrays.asList("id"))
+                .constantColumns(constantColumns)
+                .build();
+
+        // 空文字の固定値はNULLとなるよう、クォートしない
+        assertThat(project(csv, mapping))
+                .isEqualTo("id,source,memo\n1,\"vendor \"\"A\"\"\",\n");
+    }
+
+    @Test
+    public void read_フィールド数が異なる() throws IOException {
+
+        String csv = "id,name\n1,a\n2\n";
+
+        ColumnMapping mapping = ColumnMapping.builder()
+                .includeColumns(Arrays.asList("name"))
+                .build();
+
+        assertThatThrownBy(() -> project(csv, mapping))
+                .isInstanceOf(IOException.class)
+                .hasMessage("The number of fields does not match the number of columns. (Record number: 3)");
+    }
+
+    @Test
+    public void read_存在しないフィールド() throws IOException {
+
+        ColumnMapping mapping = ColumnMapping.builder()
+                .includeColumns(Arrays.asList("unknown"))
+                .build();
+
+        assertThatThrownBy(() -> project("id\n1\n", mapping))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private String project(String csv, ColumnMapping mapping) throws IOException {
+
+        try (InputStream inputStream = new ColumnProjectingInputStream(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                mapping,
+                StandardCharsets.UTF_8)) {
+
+            return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+        }
+    }
+}
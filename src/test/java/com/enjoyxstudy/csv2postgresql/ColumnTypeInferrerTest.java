@@ -0,0 +1,62 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ColumnTypeInferrerTest {
+
+    @Test
+    public void typeOf() {
+
+        assertThat(ColumnTypeInferrer.typeOf("123")).isEqualTo(ColumnType.INTEGER);
+        assertThat(ColumnTypeInferrer.typeOf("-2147483649")).isEqualTo(ColumnType.BIGINT);
+        assertThat(ColumnTypeInferrer.typeOf("9223372036854775808")).isEqualTo(ColumnType.NUMERIC);
+        assertThat(ColumnTypeInferrer.typeOf("1.50")).isEqualTo(ColumnType.NUMERIC);
+        assertThat(ColumnTypeInferrer.typeOf("1.5e10")).isEqualTo(ColumnType.DOUBLE);
+        assertThat(ColumnTypeInferrer.typeOf("TRUE")).isEqualTo(ColumnType.BOOLEAN);
+        assertThat(ColumnTypeInferrer.typeOf("2019/1/2")).isEqualTo(ColumnType.DATE);
+        assertThat(ColumnTypeInferrer.typeOf("2019-01-02T03:04:05.123")).isEqualTo(ColumnType.TIMESTAMP);
+
+        // 0埋めされた値や、存在しない日付は文字列
+        assertThat(ColumnTypeInferrer.typeOf("0123")).isEqualTo(ColumnType.TEXT);
+        assertThat(ColumnTypeInferrer.typeOf("2019-02-30")).isEqualTo(ColumnType.TEXT);
+        assertThat(ColumnTypeInferrer.typeOf("abc")).isEqualTo(ColumnType.TEXT);
+    }
+
+    @Test
+    public void widen() {
+
+        assertThat(ColumnTypeInferrer.widen(null, ColumnType.INTEGER)).isEqualTo(ColumnType.INTEGER);
+        assertThat(ColumnTypeInferrer.widen(ColumnType.INTEGER, ColumnType.BIGINT)).isEqualTo(ColumnType.BIGINT);
+        assertThat(ColumnTypeInferrer.widen(ColumnType.NUMERIC, ColumnType.INTEGER)).isEqualTo(ColumnType.NUMERIC);
+        assertThat(ColumnTypeInferrer.widen(ColumnType.INTEGER, ColumnType.DOUBLE)).isEqualTo(ColumnType.DOUBLE);
+        assertThat(ColumnTypeInferrer.widen(ColumnType.DOUBLE, ColumnType.BIGINT)).isEqualTo(ColumnType.NUMERIC);
+        assertThat(ColumnTypeInferrer.widen(ColumnType.DATE, ColumnType.TIMESTAMP)).isEqualTo(ColumnType.TIMESTAMP);
+        assertThat(ColumnTypeInferrer.widen(ColumnType.DATE, ColumnType.INTEGER)).isEqualTo(ColumnType.TEXT);
+        assertThat(ColumnTypeInferrer.widen(ColumnType.BOOLEAN, ColumnType.INTEGER)).isEqualTo(ColumnType.TEXT);
+    }
+
+    @Test
+    public void accept_apply() {
+
+        List<Column> columns = Arrays.asList(Column.of("col1"), Column.of("col2"), Column.of("col3"));
+
+        ColumnTypeInferrer typeInferrer = new ColumnTypeInferrer(columns.size());
+        assertThat(typeInferrer.accept(new String[] { "1", "2019-01-01", "" })).isFalse();
+        assertThat(typeInferrer.accept(new String[] { "", "2019-01-01 10:00", "" })).isTrue();
+
+        assertThat(typeInferrer.apply(columns))
+                .extracting(Column::getType)
+                .containsExactly(ColumnType.INTEGER, ColumnType.TIMESTAMP, ColumnType.TEXT);
+
+        // 値が無くtextとして確定したカラムは、その後の値で型が変わらない
+        assertThat(typeInferrer.accept(new String[] { "3000000000", "", "1" })).isTrue();
+        assertThat(typeInferrer.apply(columns))
+                .extracting(Column::getType)
+                .containsExactly(ColumnType.BIGINT, ColumnType.TIMESTAMP, ColumnType.TEXT);
+    }
+}
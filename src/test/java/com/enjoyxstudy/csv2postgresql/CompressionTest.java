@@ -0,0 +1,220 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompressionTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void open_非圧縮() throws IOException {
+
+        byte[] csv = newCsv(10);
+        Path path = write("data.csv", csv);
+
+        assertThat(Compression.detect(path)).isEqualTo(Compression.NONE);
+        assertThat(read(Compression.open(path, 4))).isEqualTo(csv);
+    }
+
+    @Test
+    public void open_gzip() throws IOException {
+
+        byte[] csv = newCsv(1000);
+        Path path = write("data.csv.gz", gzipMembers(csv, 3, Deflater.DEFAULT_COMPRESSION));
+
+        assertThat(Compression.detect(path)).isEqualTo(Compression.GZIP);
+        assertThat(read(Compression.open(path, 1))).isEqualTo(csv);
+        assertThat(read(Compression.open(path, 4))).isEqualTo(csv);
+    }
+
+    @Test
+    public void open_ストリーム() throws IOException {
+
+        byte[] csv = newCsv(1000);
+
+        assertThat(read(Compression.open(new ByteArrayInputStream(csv), 1))).isEqualTo(csv);
+        assertThat(read(Compression.open(
+                new ByteArrayInputStream(gzipMembers(csv, 3, Deflater.DEFAULT_COMPRESSION)), 4))).isEqualTo(csv);
+
+        // 判定に必要なバイト数より短いもの
+        assertThat(read(Compression.open(new ByteArrayInputStream(new byte[] { 0x1f }), 1)))
+                .containsExactly(0x1f);
+    }
+
+    @Test
+    public void open_bzip2() throws IOException {
+
+        byte[] csv = newCsv(1000);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new BZip2CompressorOutputStream(compressed)) {
+            out.write(csv);
+        }
+        Path path = write("data.csv.bz2", compressed.toByteArray());
+
+        assertThat(Compression.detect(path)).isEqualTo(Compression.BZIP2);
+        assertThat(read(Compression.open(path, 4))).isEqualTo(csv);
+    }
+
+    @Test
+    public void open_zip() throws IOException {
+
+        byte[] csv = newCsv(1000);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(compressed)) {
+            // ディレクトリのエントリは読み飛ばす
+            out.putNextEntry(new ZipEntry("dir/"));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("dir/data.csv"));
+            out.write(csv);
+            out.closeEntry();
+        }
+        Path path = write("data.zip", compressed.toByteArray());
+
+        assertThat(Compression.detect(path)).isEqualTo(Compression.ZIP);
+        assertThat(read(Compression.open(path, 4))).isEqualTo(csv);
+    }
+
+    @Test
+    public void parallel_複数メンバー() throws IOException {
+
+        byte[] csv = newCsv(10000);
+        byte[] compressed = gzipMembers(csv, 50, Deflater.DEFAULT_COMPRESSION);
+
+        assertThat(readParallel(compressed, 1024, 1024 * 1024, 1024 * 1024)).isEqualTo(csv);
+    }
+
+    @Test
+    public void parallel_メンバーが1つ() throws IOException {
+
+        byte[] csv = newCsv(100);
+        byte[] compressed = gzipMembers(csv, 1, Deflater.DEFAULT_COMPRESSION);
+
+        assertThat(readParallel(compressed, 1024 * 1024, 4 * 1024 * 1024, 1024 * 1024)).isEqualTo(csv);
+    }
+
+    @Test
+    public void parallel_区切りの候補が誤っている() throws IOException {
+
+        // 無圧縮で格納されるため、データ中のマジックナンバーがそのまま圧縮データに現れる
+        byte[] csv = newCsv(10000, "\u001f\u008b\u0008\u0000");
+        byte[] compressed = gzipMembers(csv, 5, Deflater.NO_COMPRESSION);
+
+        assertThat(readParallel(compressed, 1024, 1024 * 1024, 1024 * 1024)).isEqualTo(csv);
+    }
+
+    @Test
+    public void parallel_区切りの候補が見つからない() throws IOException {
+
+        byte[] csv = newCsv(10000);
+        byte[] compressed = gzipMembers(csv, 1, Deflater.NO_COMPRESSION);
+
+        assertThat(readParallel(compressed, 1024, 4096, 1024 * 1024)).isEqualTo(csv);
+    }
+
+    @Test
+    public void parallel_展開後のサイズが上限を超える() throws IOException {
+
+        byte[] csv = newCsv(10000);
+        byte[] compressed = gzipMembers(csv, 10, Deflater.DEFAULT_COMPRESSION);
+
+        assertThat(readParallel(compressed, 1024, 1024 * 1024, 1024)).isEqualTo(csv);
+    }
+
+    @Test
+    public void parallel_メモリの上限() throws IOException {
+
+        byte[] csv = newCsv(10000);
+        byte[] compressed = gzipMembers(csv, 50, Deflater.DEFAULT_COMPRESSION);
+
+        // 上限に合わせてセグメントを小さくし、展開後に収まらないセグメントは逐次の展開に切り替わる
+        try (InputStream in = new ParallelDecompressingInputStream(
+                new ByteArrayInputStream(compressed), Compression.GZIP, 4, 64 * 1024)) {
+            assertThat(IOUtils.toByteArray(in)).isEqualTo(csv);
+        }
+        try (InputStream in = new ParallelDecompressingInputStream(
+                new ByteArrayInputStream(compressed), Compression.GZIP, 4, 100)) {
+            assertThat(IOUtils.toByteArray(in)).isEqualTo(csv);
+        }
+    }
+
+    private byte[] readParallel(byte[] compressed, int segmentSize, int maxSegmentSize, int maxDecompressedSize)
+            throws IOException {
+
+        return read(new ParallelDecompressingInputStream(
+                new ByteArrayInputStream(compressed), Compression.GZIP, 4,
+                segmentSize, maxSegmentSize, maxDecompressedSize));
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+
+        try (InputStream closeable = in) {
+            return IOUtils.toByteArray(closeable);
+        }
+    }
+
+    private Path write(String fileName, byte[] data) throws IOException {
+
+        Path path = temporaryFolder.getRoot().toPath().resolve(fileName);
+        Files.write(path, data);
+        return path;
+    }
+
+    private static byte[] newCsv(int recordCount) {
+        return newCsv(recordCount, "");
+    }
+
+    private static byte[] newCsv(int recordCount, String extra) {
+
+        StringBuilder csv = new StringBuilder("id,name,value\r\n");
+        for (int i = 1; i <= recordCount; i++) {
+            csv.append(i).append(",name").append(i).append(extra).append(',').append(i * 31 % 1000).append("\r\n");
+        }
+        return csv.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] gzipMembers(byte[] data, int memberCount, int level) throws IOException {
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        int memberSize = (data.length + memberCount - 1) / memberCount;
+
+        for (int offset = 0; offset < data.length; offset += memberSize) {
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed) {
+                {
+                    def.setLevel(level);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    // 元のストリームは閉じずに、メンバーを続けて書き込む
+                    finish();
+                }
+            }) {
+                out.write(data, offset, Math.min(memberSize, data.length - offset));
+            }
+        }
+
+        return compressed.toByteArray();
+    }
+}
@@ -0,0 +1,124 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ConnectionPoolTest {
+
+    private final AtomicInteger openedCount = new AtomicInteger();
+
+    private final AtomicInteger closedCount = new AtomicInteger();
+
+    @Test
+    public void getConnection_空きを使い回す() throws SQLException {
+
+        try (ConnectionPool pool = new ConnectionPool(this::newConnection, 1)) {
+
+            pool.getConnection().close();
+            pool.getConnection().close();
+
+            assertThat(openedCount.get()).isEqualTo(1);
+        }
+
+        assertThat(closedCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void getConnection_上限に達した場合は返却を待つ() throws Exception {
+
+        try (ConnectionPool pool = new ConnectionPool(this::newConnection, 0, 2, 10000)) {
+
+            Connection first = pool.getConnection();
+            Connection second = pool.getConnection();
+
+            CompletableFuture<Connection> third = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return pool.getConnection();
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            TimeUnit.MILLISECONDS.sleep(100);
+            assertThat(third).isNotDone();
+
+            // 空きとして保持しない場合も、切断した分の枠が空く
+            first.close();
+            third.get(10, TimeUnit.SECONDS).close();
+            second.close();
+
+            assertThat(openedCount.get()).isEqualTo(3);
+            assertThat(closedCount.get()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    public void getConnection_返却を待つ時間を超えた() throws SQLException {
+
+        try (ConnectionPool pool = new ConnectionPool(this::newConnection, 1, 1, 100)) {
+
+            try (Connection connection = pool.getConnection()) {
+                assertThat(connection).isNotNull();
+                assertThatThrownBy(pool::getConnection)
+                        .isInstanceOf(SQLException.class)
+                        .hasMessageContaining("Timed out");
+            }
+
+            // 返却後は取得できる
+            pool.getConnection().close();
+            assertThat(openedCount.get()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void getConnection_接続に失敗した分の枠は空く() throws SQLException {
+
+        AtomicInteger attemptCount = new AtomicInteger();
+        ConnectionFactory connectionFactory = () -> {
+            if (attemptCount.incrementAndGet() == 1) {
+                throw new SQLException("connection refused");
+            }
+            return newConnection();
+        };
+
+        try (ConnectionPool pool = new ConnectionPool(connectionFactory, 1, 1, 100)) {
+
+            assertThatThrownBy(pool::getConnection).hasMessage("connection refused");
+
+            pool.getConnection().close();
+            assertThat(openedCount.get()).isEqualTo(1);
+        }
+    }
+
+    private Connection newConnection() {
+
+        openedCount.incrementAndGet();
+
+        return (Connection) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            closedCount.incrementAndGet();
+                            return null;
+                        case "isClosed":
+                            return false;
+                        case "isValid":
+                        case "getAutoCommit":
+                            return true;
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,95 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+import org.junit.Test;
+
+public class ConnectionWorkersTest {
+
+    private static final String END = "";
+
+    @Test
+    public void finish_各ワーカーの件数を合計() throws IOException, SQLException {
+
+        RecordingConnection recordingConnection = new RecordingConnection();
+
+        try (ConnectionWorkers<String> workers = newWorkers(recordingConnection)) {
+
+            workers.start(connection -> {
+                long count = 0;
+                while (!workers.getQueue().take().equals(END)) {
+                    count++;
+                }
+                return count;
+            });
+
+            for (int i = 0; i < 100; i++) {
+                assertThat(workers.put(String.valueOf(i))).isTrue();
+            }
+
+            assertThat(workers.finish(null)).isEqualTo(100);
+        }
+    }
+
+    @Test
+    public void finish_ワーカーの実行時例外はそのまま() {
+
+        RecordingConnection recordingConnection = new RecordingConnection();
+
+        try (ConnectionWorkers<String> workers = newWorkers(recordingConnection)) {
+
+            workers.start(connection -> {
+                if (!workers.getQueue().take().equals(END)) {
+                    throw new IllegalArgumentException("Invalid value.");
+                }
+                return 0;
+            });
+
+            assertThatThrownBy(() -> {
+                for (int i = 0; i < 100 && workers.put(String.valueOf(i)); i++) {
+                    // 失敗するまで積む
+                }
+                workers.finish(null);
+            })
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Invalid value.");
+        }
+    }
+
+    @Test
+    public void finish_呼び出し元の例外() {
+
+        RecordingConnection recordingConnection = new RecordingConnection();
+
+        try (ConnectionWorkers<String> workers = newWorkers(recordingConnection)) {
+
+            workers.start(connection -> {
+                while (!workers.getQueue().take().equals(END)) {
+                    // 読み捨てる
+                }
+                return 0;
+            });
+
+            // 呼び出し元の失敗が、他のワーカーの中断よりも優先される
+            assertThatThrownBy(() -> workers.finish(new IOException("Read failed.")))
+                    .isInstanceOf(IOException.class)
+                    .hasMessage("Read failed.");
+        }
+    }
+
+    private static ConnectionWorkers<String> newWorkers(RecordingConnection recordingConnection) {
+
+        return new ConnectionWorkers<>(
+                recordingConnection::newConnection,
+                3,
+                2,
+                END,
+                CommitMode.ALL,
+                new LoadMetrics("test_table", null),
+                "csv2postgresql-test");
+    }
+}
@@ -0,0 +1,38 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class CopyBatchInserterTest {
+
+    @Test
+    public void insert() throws SQLException {
+
+        ByteArrayCopyIn copyIn = new ByteArrayCopyIn();
+        CopyBatchInserter inserter = new CopyBatchInserter(
+                copyIn,
+                Arrays.asList(Column.of("col1"), Column.of("col2", ColumnType.INTEGER)),
+                new LoadMetrics("test_table", null));
+
+        RecordBatch batch = new RecordBatch(4, 2);
+        batch.add(new String[] { "a", "1" }, 1);
+        batch.add(new String[] { "", "" }, 2);
+        batch.add(new String[] { "x,\"y\"\nz", "2" }, 3);
+        batch.add(new String[] { "\\.", "3" }, 4);
+
+        assertThat(inserter.insert(batch)).isEqualTo(4);
+        inserter.finish();
+
+        // text型の空文字はクォートして空文字、それ以外の型の空文字はNULL
+        assertThat(new String(copyIn.toByteArray(), StandardCharsets.UTF_8))
+                .isEqualTo("a,1\n"
+                        + "\"\",\n"
+                        + "\"x,\"\"y\"\"\nz\",2\n"
+                        + "\"\\.\",3\n");
+    }
+}
@@ -0,0 +1,114 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CsvChunkReaderTest {
+
+    @Test
+    public void readRecord_クォート内の改行() throws IOException {
+
+        String csv = "a,b\r\n\"1\r\n2\",\"\"\"\n\"\n3,4";
+
+        try (CsvChunkReader chunkReader = newChunkReader(csv, 4)) {
+
+            assertThat(toString(chunkReader.readRecord())).isEqualTo("a,b\r\n");
+            assertThat(toString(chunkReader.readRecord())).isEqualTo("\"1\r\n2\",\"\"\"\n\"\n");
+            assertThat(toString(chunkReader.readRecord())).isEqualTo("3,4");
+            assertThat(chunkReader.readRecord()).isNull();
+        }
+    }
+
+    @Test
+    public void readRecord_CRのみの改行() throws IOException {
+
+        String csv = "a\rb\r";
+
+        try (CsvChunkReader chunkReader = newChunkReader(csv, 1)) {
+
+            assertThat(toString(chunkReader.readRecord())).isEqualTo("a\r");
+            assertThat(toString(chunkReader.readRecord())).isEqualTo("b\r");
+            assertThat(chunkReader.readRecord()).isNull();
+        }
+    }
+
+    @Test
+    public void readChunk_レコード単位で分割() throws IOException {
+
+        String csv = "1,a\n2,\"b\nb\"\n3,c\n4,d\n";
+
+        List<String> chunks = new ArrayList<>();
+        try (CsvChunkReader chunkReader = newChunkReader(csv, 10)) {
+
+            byte[] chunk;
+            while ((chunk = chunkReader.readChunk()) != null) {
+                chunks.add(toString(chunk));
+            }
+        }
+
+        assertThat(chunks)
+                .containsExactly("1,a\n", "2,\"b\nb\"\n", "3,c\n4,d\n");
+    }
+
+    @Test
+    public void readChunk_チャンクサイズを超えるレコード() throws IOException {
+
+        String csv = "1234567890,\"abc\ndef\"\n1\n";
+
+        List<String> chunks = new ArrayList<>();
+        try (CsvChunkReader chunkReader = newChunkReader(csv, 4)) {
+
+            byte[] chunk;
+            while ((chunk = chunkReader.readChunk()) != null) {
+                chunks.add(toString(chunk));
+            }
+        }
+
+        // レコードの途中で分割されないこと
+        assertThat(chunks)
+                .containsExactly(csv);
+    }
+
+    @Test
+    public void readChunk_件数で分割() throws IOException {
+
+        String csv = "1,a\n2,\"b\nb\"\n3,c\n4,d\n5,e";
+
+        List<String> chunks = new ArrayList<>();
+        try (CsvChunkReader chunkReader = newChunkReader(csv, 1024)) {
+
+            byte[] chunk;
+            while ((chunk = chunkReader.readChunk(2)) != null) {
+                chunks.add(toString(chunk));
+            }
+        }
+
+        assertThat(chunks)
+                .containsExactly("1,a\n2,\"b\nb\"\n", "3,c\n4,d\n", "5,e");
+    }
+
+    @Test
+    public void supports() {
+
+        assertThat(CsvChunkReader.supports(StandardCharsets.UTF_8)).isTrue();
+        assertThat(CsvChunkReader.supports(Charset.forName("Windows-31j"))).isTrue();
+        assertThat(CsvChunkReader.supports(StandardCharsets.UTF_16)).isFalse();
+        assertThat(CsvChunkReader.supports(Charset.forName("ISO-2022-JP"))).isFalse();
+    }
+
+    private CsvChunkReader newChunkReader(String csv, int chunkSize) {
+        return new CsvChunkReader(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), chunkSize);
+    }
+
+    private String toString(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,87 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class CsvHeadTest {
+
+    @Test
+    public void read_Reader() throws IOException {
+
+        String csv = "id,\"name\"\r\n1,\"a\r\nb\"\r\n2,c\r\n3,d\r\n";
+
+        try (CsvHead<Reader> head = CsvHead.read(new StringReader(csv), 2)) {
+
+            assertThat(head.getColumns())
+                    .extracting(Column::getName)
+                    .containsExactly("id", "name");
+
+            assertThat(head.getSampleRecords())
+                    .containsExactly(new String[] { "1", "a\r\nb" }, new String[] { "2", "c" });
+
+            // 型の推測に使ったレコードも含めて、ヘッダより後ろを読み込める
+            assertThat(IOUtils.toString(head.getRemaining()))
+                    .isEqualTo("1,\"a\r\nb\"\r\n2,c\r\n3,d\r\n");
+        }
+    }
+
+    @Test
+    public void read_Reader_CRのみの改行() throws IOException {
+
+        String csv = "id,name\r1,a\r2,b";
+
+        try (CsvHead<Reader> head = CsvHead.read(new StringReader(csv), 0)) {
+
+            assertThat(head.getColumns())
+                    .extracting(Column::getName)
+                    .containsExactly("id", "name");
+            assertThat(head.getSampleRecords()).isEmpty();
+            assertThat(IOUtils.toString(head.getRemaining())).isEqualTo("1,a\r2,b");
+        }
+    }
+
+    @Test
+    public void read_InputStream() throws IOException {
+
+        Charset charset = Charset.forName("Shift_JIS");
+        String csv = "ID,Name\n1,\"あ\"\"\nい\"\n2,う\n";
+
+        try (CsvHead<InputStream> head = CsvHead.read(new ByteArrayInputStream(csv.getBytes(charset)), charset, 10)) {
+
+            assertThat(head.getColumns())
+                    .extracting(Column::getName)
+                    .containsExactly("id", "name");
+
+            assertThat(head.getSampleRecords())
+                    .containsExactly(new String[] { "1", "あ\"\nい" }, new String[] { "2", "う" });
+
+            assertThat(IOUtils.toString(head.getRemaining(), charset))
+                    .isEqualTo("1,\"あ\"\"\nい\"\n2,う\n");
+        }
+    }
+
+    @Test
+    public void read_InputStream_ヘッダのみ() throws IOException {
+
+        byte[] csv = "id,name".getBytes(StandardCharsets.UTF_8);
+
+        try (CsvHead<InputStream> head = CsvHead.read(new ByteArrayInputStream(csv), StandardCharsets.UTF_8, 10)) {
+
+            assertThat(head.getColumns())
+                    .extracting(Column::getName)
+                    .containsExactly("id", "name");
+            assertThat(head.getSampleRecords()).isEmpty();
+            assertThat(head.getRemaining().read()).isEqualTo(-1);
+        }
+    }
+}
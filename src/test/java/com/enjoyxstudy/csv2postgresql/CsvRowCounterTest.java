@@ -0,0 +1,53 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class CsvRowCounterTest {
+
+    @Test
+    public void count() {
+
+        CsvRowCounter counter = new CsvRowCounter(false);
+
+        byte[] bytes = bytesOf("a,\"b\r\nc\"\r\n\"d\"\"\n\",e\n1,2\r3,4");
+        assertThat(counter.count(bytes, 0, bytes.length)).isEqualTo(3);
+        assertThat(counter.getCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void count_ヘッダ() {
+
+        CsvRowCounter counter = new CsvRowCounter(true);
+
+        byte[] bytes = bytesOf("name,value\n");
+        assertThat(counter.count(bytes, 0, bytes.length)).isEqualTo(0);
+
+        bytes = bytesOf("a,1\nb,2\n");
+        assertThat(counter.count(bytes, 0, bytes.length)).isEqualTo(2);
+        assertThat(counter.getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void count_分割して渡す() {
+
+        CsvRowCounter counter = new CsvRowCounter(false);
+
+        // クォートの途中、CRLFの間で分割
+        byte[] bytes = bytesOf("12345678,\"abcdefgh\nijk\"\r\n2,\"x\"\r\n");
+        long total = 0;
+        for (int i = 0; i < bytes.length; i += 3) {
+            total += counter.count(bytes, i, Math.min(3, bytes.length - i));
+        }
+
+        assertThat(total).isEqualTo(2);
+        assertThat(counter.getCount()).isEqualTo(2);
+    }
+
+    private static byte[] bytesOf(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,58 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CsvSourceTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void open_ファイル() throws IOException {
+
+        Path path = temporaryFolder.newFile("data.csv").toPath();
+
+        CsvSource source = CsvSource.of(path);
+
+        assertThat(source.isReopenable()).isTrue();
+        assertThat(source.getName()).isEqualTo(path.toString());
+
+        // 何度でも開ける
+        source.open().close();
+        source.open().close();
+    }
+
+    @Test
+    public void open_ストリーム() throws IOException {
+
+        InputStream stream = new ByteArrayInputStream(new byte[0]);
+
+        CsvSource source = CsvSource.of(stream, Loader.STREAM_NAME);
+
+        assertThat(source.isReopenable()).isFalse();
+        assertThat(source.getPath()).isNull();
+        assertThat(source.open()).isSameAs(stream);
+
+        assertThatThrownBy(source::open)
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void open_ディレクトリ() throws IOException {
+
+        // 通常のファイル以外は開き直せないものとして扱う
+        Path path = temporaryFolder.newFolder("pipe").toPath();
+
+        assertThat(CsvSource.of(path).isReopenable()).isFalse();
+    }
+}
@@ -0,0 +1,130 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CsvTokenizerTest {
+
+    @Test
+    public void tokenize() {
+
+        byte[] bytes = bytesOf("a,\"b,\"\"c\"\"\",,d\r\n1,2\n");
+
+        CsvTokenizer tokenizer = new CsvTokenizer();
+
+        int next = tokenizer.tokenize(bytes, 0, bytes.length, false);
+        assertThat(next).isEqualTo(16);
+        assertThat(fieldsOf(tokenizer, bytes)).containsExactly("a", "\"b,\"\"c\"\"\"", "", "d");
+        assertThat(tokenizer.decodeField(bytes, 1, StandardCharsets.UTF_8)).isEqualTo("b,\"c\"");
+        assertThat(tokenizer.getRecordEnd()).isEqualTo(14);
+
+        next = tokenizer.tokenize(bytes, next, bytes.length, false);
+        assertThat(next).isEqualTo(bytes.length);
+        assertThat(fieldsOf(tokenizer, bytes)).containsExactly("1", "2");
+
+        assertThat(tokenizer.tokenize(bytes, next, bytes.length, true)).isEqualTo(-1);
+    }
+
+    @Test
+    public void tokenize_8バイトを超える位置の区切り() {
+
+        // 8バイト単位での検索の、境界前後と端数を確認
+        for (int length = 0; length < 40; length++) {
+            String value = repeat('x', length);
+            byte[] bytes = bytesOf(value + "," + value + "\n");
+
+            CsvTokenizer tokenizer = new CsvTokenizer();
+            assertThat(tokenizer.tokenize(bytes, 0, bytes.length, false)).isEqualTo(bytes.length);
+            assertThat(fieldsOf(tokenizer, bytes)).containsExactly(value, value);
+        }
+    }
+
+    @Test
+    public void tokenize_マルチバイト文字() {
+
+        byte[] bytes = bytesOf("あいうえお,\"かき\nくけこ\",さ\n");
+
+        CsvTokenizer tokenizer = new CsvTokenizer();
+        assertThat(tokenizer.tokenize(bytes, 0, bytes.length, false)).isEqualTo(bytes.length);
+        assertThat(fieldsOf(tokenizer, bytes)).containsExactly("あいうえお", "\"かき\nくけこ\"", "さ");
+    }
+
+    @Test
+    public void tokenize_レコードが完結していない() {
+
+        CsvTokenizer tokenizer = new CsvTokenizer();
+
+        byte[] bytes = bytesOf("1,\"2\n3");
+        assertThat(tokenizer.tokenize(bytes, 0, bytes.length, false)).isEqualTo(-1);
+
+        // 終端の場合は、改行が無くても1レコード
+        assertThat(tokenizer.tokenize(bytes, 0, bytes.length, true)).isEqualTo(bytes.length);
+        assertThat(fieldsOf(tokenizer, bytes)).containsExactly("1", "\"2\n3");
+        assertThat(tokenizer.getRecordEnd()).isEqualTo(bytes.length);
+
+        // CRLFかどうか判断できない
+        bytes = bytesOf("1,2\r");
+        assertThat(tokenizer.tokenize(bytes, 0, bytes.length, false)).isEqualTo(-1);
+        assertThat(tokenizer.tokenize(bytes, 0, bytes.length, true)).isEqualTo(bytes.length);
+        assertThat(fieldsOf(tokenizer, bytes)).containsExactly("1", "2");
+    }
+
+    @Test
+    public void tokenize_CRのみの改行() {
+
+        byte[] bytes = bytesOf("a\rb\r\n");
+
+        CsvTokenizer tokenizer = new CsvTokenizer();
+
+        assertThat(tokenizer.tokenize(bytes, 0, bytes.length, false)).isEqualTo(2);
+        assertThat(fieldsOf(tokenizer, bytes)).containsExactly("a");
+
+        assertThat(tokenizer.tokenize(bytes, 2, bytes.length, false)).isEqualTo(bytes.length);
+        assertThat(fieldsOf(tokenizer, bytes)).containsExactly("b");
+    }
+
+    @Test
+    public void tokenize_多数のフィールド() {
+
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            values.add(String.valueOf(i));
+        }
+        byte[] bytes = bytesOf(String.join(",", values) + "\n");
+
+        CsvTokenizer tokenizer = new CsvTokenizer();
+        assertThat(tokenizer.tokenize(bytes, 0, bytes.length, false)).isEqualTo(bytes.length);
+        assertThat(fieldsOf(tokenizer, bytes)).isEqualTo(values);
+    }
+
+    private static List<String> fieldsOf(CsvTokenizer tokenizer, byte[] bytes) {
+
+        List<String> fields = new ArrayList<>();
+        for (int i = 0; i < tokenizer.getFieldCount(); i++) {
+            fields.add(new String(
+                    bytes,
+                    tokenizer.getFieldStart(i),
+                    tokenizer.getFieldEnd(i) - tokenizer.getFieldStart(i),
+                    StandardCharsets.UTF_8));
+        }
+        return fields;
+    }
+
+    private static String repeat(char c, int count) {
+
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            value.append(c);
+        }
+        return value.toString();
+    }
+
+    private static byte[] bytesOf(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
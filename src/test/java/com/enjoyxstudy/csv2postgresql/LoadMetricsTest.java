@@ -0,0 +1,115 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class LoadMetricsTest {
+
+    @Test
+    public void snapshot() {
+
+        LoadMetrics metrics = new LoadMetrics("test_table", "test.csv");
+        metrics.addRows(10);
+        metrics.addRows(5);
+        metrics.addBytes(100);
+        metrics.addStageNanos(LoadStage.WRITE, TimeUnit.MILLISECONDS.toNanos(3));
+        metrics.addStageNanos(LoadStage.WRITE, TimeUnit.MILLISECONDS.toNanos(4));
+
+        LoadMetricsSnapshot snapshot = metrics.snapshot();
+
+        assertThat(snapshot.getTableName()).isEqualTo("test_table");
+        assertThat(snapshot.getSource()).isEqualTo("test.csv");
+        assertThat(snapshot.getRowCount()).isEqualTo(15);
+        assertThat(snapshot.getByteCount()).isEqualTo(100);
+        assertThat(snapshot.getStageMillis())
+                .containsEntry(LoadStage.WRITE, 7L)
+                .containsEntry(LoadStage.PARSE, 0L);
+        assertThat(snapshot.getPeakHeapBytes()).isPositive();
+    }
+
+    @Test
+    public void rollback() {
+
+        LoadMetrics metrics = new LoadMetrics("test_table", "test.csv");
+        metrics.addRows(10);
+        metrics.addBytes(100);
+        metrics.addStageNanos(LoadStage.PARSE, TimeUnit.MILLISECONDS.toNanos(3));
+
+        LoadMetrics.Mark mark = metrics.mark();
+
+        // やり直す前の失敗した分
+        metrics.addRows(5);
+        metrics.addBytes(50);
+        metrics.addStageNanos(LoadStage.PARSE, TimeUnit.MILLISECONDS.toNanos(4));
+        metrics.addStageNanos(LoadStage.ENCODE, TimeUnit.MILLISECONDS.toNanos(2));
+
+        metrics.rollback(mark);
+
+        LoadMetricsSnapshot snapshot = metrics.snapshot();
+        assertThat(snapshot.getRowCount()).isEqualTo(10);
+        assertThat(snapshot.getByteCount()).isEqualTo(100);
+        assertThat(snapshot.getStageMillis())
+                .containsEntry(LoadStage.PARSE, 3L)
+                .containsEntry(LoadStage.ENCODE, 0L);
+    }
+
+    @Test
+    public void recordBatchLatency() {
+
+        LoadMetrics metrics = new LoadMetrics("test_table", null);
+        metrics.recordBatchLatency(TimeUnit.MICROSECONDS.toNanos(500));
+        metrics.recordBatchLatency(TimeUnit.MILLISECONDS.toNanos(1));
+        metrics.recordBatchLatency(TimeUnit.MILLISECONDS.toNanos(3));
+        metrics.recordBatchLatency(TimeUnit.MINUTES.toNanos(1));
+
+        // 区切りの値は、その区切りのバケットに含まれる
+        long[] counts = metrics.snapshot().getBatchLatencyCounts();
+        assertThat(counts).hasSize(LoadMetrics.getBatchLatencyBoundsMillis().length + 1);
+        assertThat(counts[0]).isEqualTo(2);
+        assertThat(counts[2]).isEqualTo(1);
+        assertThat(counts[counts.length - 1]).isEqualTo(1);
+    }
+
+    @Test
+    public void toJson() {
+
+        LoadMetrics metrics = new LoadMetrics("test_table", "C:\\data\\\"test\".csv");
+        metrics.addRows(1);
+
+        String json = JsonLinesProgressLog.toJson("failed", metrics.snapshot(), new IllegalStateException("a\nb"));
+
+        assertThat(json)
+                .startsWith("{\"time\":")
+                .contains("\"event\":\"failed\"")
+                .contains("\"source\":\"C:\\\\data\\\\\\\"test\\\".csv\"")
+                .contains("\"rows\":1,")
+                .contains("\"stageMillis\":{\"parse\":0,\"encode\":0,\"write\":0,\"commit\":0}")
+                .contains("\"+Inf\":0}")
+                .endsWith("\"error\":\"java.lang.IllegalStateException: a\\nb\"}")
+                .doesNotContain("\n");
+    }
+
+    @Test
+    public void jmx() throws JMException {
+
+        LoadMetrics metrics = new LoadMetrics("test_jmx", null);
+        JmxLoadListener listener = new JmxLoadListener();
+        listener.onStarted(metrics.snapshot());
+
+        metrics.addRows(3);
+        listener.onCompleted(metrics.snapshot());
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = JmxLoadListener.objectName("test_jmx");
+        assertThat(server.getAttribute(name, "RowCount")).isEqualTo(3L);
+        assertThat(server.getAttribute(name, "State")).isEqualTo("completed");
+    }
+}
@@ -1,14 +1,29 @@
 package com.enjoyxstudy.csv2postgresql;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.Assertions.tuple;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.sql.Connection;
 import java.sql.SQLException;
-
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.ColumnListHandler;
+import org.apache.commons.dbutils.handlers.ScalarHandler;
 import org.junit.Test;
+import org.postgresql.ds.PGSimpleDataSource;
 
 /**
  * Loaderのテストです。 
@@ -152,6 +167,725 @@ public class LoaderTest {
                         tuple("2行目1", "2行目2"));
     }
 
+    @Test
+    public void loadByCopy_SJIS_エンコーディングの変換() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-sjis.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("sjis.csv", this.getClass());
+
+        // クライアント側で並列に変換する場合と、サーバ側で変換する場合
+        List<Config> configs = Arrays.asList(
+                Config.of(configFilePath).toBuilder().transcodeParallelSize(2).build(),
+                Config.of(configFilePath).toBuilder().copyServerTranscode(true).build());
+
+        for (Config config : configs) {
+
+            // 前回のテストで存在したままの可能性があるので、いったん削除
+            TestHelper.dropTableIfExists(config, tableName);
+
+            new Loader(config).loadByCopy(csvFilePath, tableName);
+
+            assertThat(TestHelper.selectAll(config, tableName))
+                    .hasSize(2)
+                    .extracting(x -> x.get("column1"), x -> x.get("column2"))
+                    .containsExactlyInAnyOrder(
+                            tuple("1行目1", "1行目2"),
+                            tuple("2行目1", "2行目2"));
+        }
+    }
+
+    @Test
+    public void loadByCopy_先読み() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("複数カラム複数レコード.csv", this.getClass());
+
+        // 1レコードより小さなバッファで先読み
+        Config config = Config.of(configFilePath).toBuilder()
+                .copyBufferSize(8)
+                .copyBufferCount(2)
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        long loadedCount = new Loader(config).loadByCopy(csvFilePath, tableName);
+
+        assertThat(loadedCount).isEqualTo(2);
+        assertThat(TestHelper.selectAll(config, tableName))
+                .extracting(x -> x.get("column1"), x -> x.get("column2"), x -> x.get("column3"))
+                .containsExactlyInAnyOrder(
+                        tuple("value1-1", "value1-2", "value1-3"),
+                        tuple("value2-1", "value2-2", "value2-3"));
+    }
+
+    @Test
+    public void loadByCopy_並列_複数カラム_複数レコード() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-parallel.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("複数カラム複数レコード.csv", this.getClass());
+
+        Config config = Config.of(configFilePath);
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        new Loader(config).loadByCopy(csvFilePath, tableName);
+
+        assertThat(TestHelper.selectAll(config, tableName))
+                .hasSize(2)
+                .extracting(x -> x.get("column1"), x -> x.get("column2"), x -> x.get("column3"))
+                .containsExactlyInAnyOrder(
+                        tuple("value1-1", "value1-2", "value1-3"),
+                        tuple("value2-1", "value2-2", "value2-3"));
+    }
+
+    @Test
+    public void loadByCopy_並列_コミット方法EACH() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-parallel.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("空のカラム.csv", this.getClass());
+
+        Config config = Config.of(configFilePath).toBuilder()
+                .copyCommitMode(CommitMode.EACH)
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        new Loader(config).loadByCopy(csvFilePath, tableName);
+
+        assertThat(TestHelper.selectAll(config, tableName))
+                .hasSize(2)
+                .extracting(x -> x.get("column1"), x -> x.get("column2"))
+                .containsExactlyInAnyOrder(
+                        tuple(null, "A"),
+                        tuple(",", ""));
+    }
+
+    @Test
+    public void loadByCopy_バイナリ形式() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("型付きカラム.csv", this.getClass());
+
+        Config config = Config.of(configFilePath).toBuilder()
+                .copyFormat(CopyFormat.BINARY)
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        // 型を指定したテーブルを事前に作成
+        try (Connection connection = TestHelper.getConnection(config)) {
+            Table.builder()
+                    .name(tableName)
+                    .column(Column.of("id", ColumnType.INTEGER))
+                    .column(Column.of("amount", ColumnType.NUMERIC))
+                    .column(Column.of("created_at", ColumnType.TIMESTAMP))
+                    .column(Column.of("flag", ColumnType.BOOLEAN))
+                    .build()
+                    .create(connection);
+        }
+
+        new Loader(config).loadByCopy(csvFilePath, tableName);
+
+        assertThat(TestHelper.selectAll(config, tableName))
+                .hasSize(2)
+                .extracting(x -> x.get("id"), x -> x.get("amount"), x -> x.get("created_at"), x -> x.get("flag"))
+                .containsExactlyInAnyOrder(
+                        tuple(1, new BigDecimal("123.45"), Timestamp.valueOf("2019-01-02 03:04:05"), true),
+                        tuple(2, null, Timestamp.valueOf("2019-01-03 00:00:00"), false));
+    }
+
+    @Test
+    public void loadByCopy_型の推測() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("型付きカラム.csv", this.getClass());
+
+        Config config = Config.of(configFilePath).toBuilder()
+                .typeInference(TypeInference.HEAD)
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        new Loader(config).loadByCopy(csvFilePath, tableName);
+
+        assertThat(TestHelper.selectAll(config, tableName))
+                .hasSize(2)
+                .extracting(x -> x.get("id"), x -> x.get("amount"), x -> x.get("created_at"), x -> x.get("flag"))
+                .containsExactlyInAnyOrder(
+                        tuple(1, new BigDecimal("123.45"), Timestamp.valueOf("2019-01-02 03:04:05"), true),
+                        tuple(2, null, Timestamp.valueOf("2019-01-03 00:00:00"), false));
+    }
+
+    @Test
+    public void loadByCopy_型の推測_推測した型に合わない値() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("型の拡張.csv", this.getClass());
+
+        Config config = Config.of(configFilePath).toBuilder()
+                .typeInference(TypeInference.HEAD)
+                .typeInferenceSampleSize(1)
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        new Loader(config).loadByCopy(csvFilePath, tableName);
+
+        // ファイル全体から推測し直してbigintになること
+        assertThat(TestHelper.selectAll(config, tableName))
+                .extracting(x -> x.get("col1"))
+                .containsExactlyInAnyOrder(1L, 3000000000L);
+    }
+
+    @Test
+    public void loadByCopy_並列_推測した型に合わない値() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("型の拡張.csv", this.getClass());
+
+        Config config = Config.of(configFilePath).toBuilder()
+                .typeInference(TypeInference.HEAD)
+                .typeInferenceSampleSize(1)
+                .copyParallelSize(2)
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        new Loader(config).loadByCopy(csvFilePath, tableName);
+
+        // 並列でない場合と同様に、ファイル全体から推測し直してbigintになること
+        assertThat(TestHelper.selectAll(config, tableName))
+                .extracting(x -> x.get("col1"))
+                .containsExactlyInAnyOrder(1L, 3000000000L);
+    }
+
+    @Test
+    public void loadByCopy_並列_ストリームで推測した型に合わない値() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("型の拡張.csv", this.getClass());
+
+        Config config = Config.of(configFilePath).toBuilder()
+                .typeInference(TypeInference.HEAD)
+                .typeInferenceSampleSize(1)
+                .copyParallelSize(2)
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        // 開き直せないため、推測し直せずに失敗する
+        try (InputStream csvStream = Files.newInputStream(csvFilePath)) {
+            assertThatThrownBy(() -> new Loader(config).loadByCopy(csvStream, tableName))
+                    .isInstanceOf(SQLException.class);
+        }
+
+        // 推測した型で作成したテーブルは残らないこと
+        try (Connection connection = TestHelper.getConnection(config)) {
+            assertThat(new QueryRunner().query(
+                    connection,
+                    "SELECT count(*) FROM pg_class WHERE relname = ?",
+                    new ScalarHandler<Long>(),
+                    tableName))
+                            .isZero();
+        }
+    }
+
+    @Test
+    public void loadByCopy_ストリーム() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("型付きカラム.csv", this.getClass());
+
+        // 開き直せないため、reservoirでも先頭のレコードから推測
+        Config config = Config.of(configFilePath).toBuilder()
+                .typeInference(TypeInference.RESERVOIR)
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        try (InputStream csvStream = Files.newInputStream(csvFilePath)) {
+            new Loader(config).loadByCopy(csvStream, tableName);
+        }
+
+        assertThat(TestHelper.selectAll(config, tableName))
+                .hasSize(2)
+                .extracting(x -> x.get("id"), x -> x.get("amount"), x -> x.get("created_at"), x -> x.get("flag"))
+                .containsExactlyInAnyOrder(
+                        tuple(1, new BigDecimal("123.45"), Timestamp.valueOf("2019-01-02 03:04:05"), true),
+                        tuple(2, null, Timestamp.valueOf("2019-01-03 00:00:00"), false));
+    }
+
+    @Test
+    public void loadByCopy_テーブルの入れ替え() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("複数カラム複数レコード.csv", this.getClass());
+
+        Config config = Config.of(configFilePath).toBuilder()
+                .loadMode(LoadMode.REPLACE)
+                .loadIndexParallelSize(2)
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        try (Connection connection = TestHelper.getConnection(config)) {
+            new QueryRunner().update(
+                    connection,
+                    "CREATE TABLE test_table (column1 text PRIMARY KEY, column2 text, column3 text)");
+            new QueryRunner().update(connection, "CREATE INDEX test_table_column2 ON test_table (column2)");
+            new QueryRunner().update(connection, "INSERT INTO test_table VALUES ('old', 'old', 'old')");
+        }
+
+        new Loader(config).loadByCopy(csvFilePath, tableName);
+
+        // 既存のレコードは置き換わる
+        assertThat(TestHelper.selectAll(config, tableName))
+                .hasSize(2)
+                .extracting(x -> x.get("column1"), x -> x.get("column2"), x -> x.get("column3"))
+                .containsExactlyInAnyOrder(
+                        tuple("value1-1", "value1-2", "value1-3"),
+                        tuple("value2-1", "value2-2", "value2-3"));
+
+        // インデックスは元の名前で作成され、ステージングテーブルは残らない
+        try (Connection connection = TestHelper.getConnection(config)) {
+            assertThat(new QueryRunner().query(
+                    connection,
+                    "SELECT indexname FROM pg_indexes WHERE tablename = ? ORDER BY indexname",
+                    new ColumnListHandler<String>(),
+                    tableName))
+                            .containsExactly("test_table_column2", "test_table_pkey");
+
+            assertThat(new QueryRunner().query(
+                    connection,
+                    "SELECT relpersistence FROM pg_class WHERE relname = ?",
+                    new ScalarHandler<String>(),
+                    tableName))
+                            .isEqualTo("p");
+
+            assertThat(new QueryRunner().query(
+                    connection,
+                    "SELECT count(*) FROM pg_class WHERE relname = ?",
+                    new ScalarHandler<Long>(),
+                    StagingTableLoader.stagingName(tableName)))
+                            .isZero();
+        }
+    }
+
+    @Test
+    public void loadByCopy_upsert() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("複数カラム複数レコード.csv", this.getClass());
+
+        Config config = Config.of(configFilePath).toBuilder()
+                .loadMode(LoadMode.UPSERT)
+                .loadUpsertKeys(Arrays.asList("column1"))
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        try (Connection connection = TestHelper.getConnection(config)) {
+            new QueryRunner().update(
+                    connection,
+                    "CREATE TABLE test_table (column1 text PRIMARY KEY, column2 text, column3 text)");
+            new QueryRunner().update(
+                    connection,
+                    "INSERT INTO test_table VALUES ('value1-1', 'old', 'old'), ('other', 'other', 'other')");
+        }
+
+        long loadedCount = new Loader(config).loadByCopy(csvFilePath, tableName);
+
+        // キーが一致するものは更新され、それ以外は残る
+        assertThat(loadedCount).isEqualTo(2);
+        assertThat(TestHelper.selectAll(config, tableName))
+                .hasSize(3)
+                .extracting(x -> x.get("column1"), x -> x.get("column2"), x -> x.get("column3"))
+                .containsExactlyInAnyOrder(
+                        tuple("value1-1", "value1-2", "value1-3"),
+                        tuple("value2-1", "value2-2", "value2-3"),
+                        tuple("other", "other", "other"));
+    }
+
+    @Test
+    public void loadByCopy_upsert_キーがヘッダに無い() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("複数カラム複数レコード.csv", this.getClass());
+
+        Config config = Config.of(configFilePath).toBuilder()
+                .loadMode(LoadMode.UPSERT)
+                .loadUpsertKeys(Arrays.asList("id"))
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        try (Connection connection = TestHelper.getConnection(config)) {
+            new QueryRunner().update(
+                    connection,
+                    "CREATE TABLE test_table (id serial PRIMARY KEY, column1 text, column2 text, column3 text)");
+        }
+
+        assertThatThrownBy(() -> new Loader(config).loadByCopy(csvFilePath, tableName))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Key column id is not found in table test_table.");
+
+        assertThat(TestHelper.selectAll(config, tableName))
+                .isEmpty();
+    }
+
+    @Test
+    public void load_upsert() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("複数カラム複数レコード.csv", this.getClass());
+
+        Config config = Config.of(configFilePath).toBuilder()
+                .loadMode(LoadMode.UPSERT)
+                .loadUpsertKeys(Arrays.asList("column1"))
+                .insertQueueSize(2)
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        try (Connection connection = TestHelper.getConnection(config)) {
+            new QueryRunner().update(
+                    connection,
+                    "CREATE TABLE test_table (column1 text PRIMARY KEY, column2 text, column3 text)");
+            new QueryRunner().update(
+                    connection,
+                    "INSERT INTO test_table VALUES ('value1-1', 'old', 'old'), ('other', 'other', 'other')");
+        }
+
+        // INSERTでも一時テーブルを経由して、キーが一致するものは更新され、それ以外は残る
+        long loadedCount = new Loader(config).load(csvFilePath, tableName);
+
+        assertThat(loadedCount).isEqualTo(2);
+        assertThat(TestHelper.selectAll(config, tableName))
+                .hasSize(3)
+                .extracting(x -> x.get("column1"), x -> x.get("column2"), x -> x.get("column3"))
+                .containsExactlyInAnyOrder(
+                        tuple("value1-1", "value1-2", "value1-3"),
+                        tuple("value2-1", "value2-2", "value2-3"),
+                        tuple("other", "other", "other"));
+    }
+
+    @Test
+    public void load_チェックポイントはCOPYのみ() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("複数カラム複数レコード.csv", this.getClass());
+
+        Config config = Config.of(configFilePath).toBuilder()
+                .loadCheckpointRows(1)
+                .build();
+
+        assertThatThrownBy(() -> new Loader(config).load(csvFilePath, tableName))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Checkpoint is supported only by COPY.");
+    }
+
+    @Test
+    public void loadByCopy_チェックポイントから再開() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("複数カラム複数レコード.csv", this.getClass());
+
+        Config config = Config.of(configFilePath).toBuilder()
+                .loadCheckpointRows(1)
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+        TestHelper.dropTableIfExists(config, config.getLoadCheckpointTable());
+
+        // 1レコード目までロードした状態を作成
+        try (Connection connection = TestHelper.getConnection(config)) {
+            new QueryRunner().update(
+                    connection,
+                    "CREATE TABLE test_table (column1 text, column2 text, column3 text)");
+            new QueryRunner().update(
+                    connection,
+                    "INSERT INTO test_table VALUES ('value1-1', 'value1-2', 'value1-3')");
+            new QueryRunner().update(
+                    connection,
+                    "CREATE TABLE csv2postgresql_checkpoint ("
+                            + "table_name text, fingerprint text, byte_offset bigint, row_number bigint,"
+                            + " updated_at timestamp with time zone, PRIMARY KEY (table_name, fingerprint))");
+            new QueryRunner().update(
+                    connection,
+                    "INSERT INTO csv2postgresql_checkpoint VALUES (?, ?, ?, ?, now())",
+                    tableName,
+                    CheckpointCopyLoader.fingerprint(csvFilePath),
+                    // ヘッダと1レコード目のバイト数
+                    "column1,column2,column3\r\nvalue1-1,value1-2,value1-3\r\n".length(),
+                    1);
+        }
+
+        long loadedCount = new Loader(config).loadByCopy(csvFilePath, tableName);
+
+        // 2レコード目から再開し、完了後はチェックポイントが削除される
+        assertThat(loadedCount).isEqualTo(2);
+        assertThat(TestHelper.selectAll(config, tableName))
+                .hasSize(2)
+                .extracting(x -> x.get("column1"), x -> x.get("column2"), x -> x.get("column3"))
+                .containsExactlyInAnyOrder(
+                        tuple("value1-1", "value1-2", "value1-3"),
+                        tuple("value2-1", "value2-2", "value2-3"));
+        assertThat(TestHelper.selectAll(config, config.getLoadCheckpointTable()))
+                .isEmpty();
+    }
+
+    @Test
+    public void loadByCopy_不正なレコードを除外() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("不正な値を含む.csv", this.getClass());
+        Path rejectFilePath = Files.createTempFile("reject", ".csv");
+        Files.delete(rejectFilePath);
+
+        Config config = Config.of(configFilePath).toBuilder()
+                .loadRejectFile(rejectFilePath.toString())
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        try (Connection connection = TestHelper.getConnection(config)) {
+            new QueryRunner().update(connection, "CREATE TABLE test_table (id integer, value integer)");
+        }
+
+        long loadedCount = new Loader(config).loadByCopy(csvFilePath, tableName);
+
+        // 型に合わないレコードのみ除外され、残りはロードされる
+        assertThat(loadedCount).isEqualTo(3);
+        assertThat(TestHelper.selectAll(config, tableName))
+                .extracting(x -> x.get("id"))
+                .containsExactlyInAnyOrder(1, 3, 4);
+
+        List<String> rejectedLines = Files.readAllLines(rejectFilePath);
+        assertThat(rejectedLines).hasSize(2);
+        assertThat(rejectedLines.get(0)).startsWith(csvFilePath.toString() + ",2,22P02,").endsWith(",\"2,abc\"");
+        assertThat(rejectedLines.get(1)).startsWith(csvFilePath.toString() + ",5,22P02,").endsWith(",\"5,xyz\"");
+    }
+
+    @Test
+    public void loadByCopy_除外の上限を超過() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("不正な値を含む.csv", this.getClass());
+        Path rejectFilePath = Files.createTempFile("reject", ".csv");
+
+        Config config = Config.of(configFilePath).toBuilder()
+                .loadRejectFile(rejectFilePath.toString())
+                .loadRejectLimit(1)
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        try (Connection connection = TestHelper.getConnection(config)) {
+            new QueryRunner().update(connection, "CREATE TABLE test_table (id integer, value integer)");
+        }
+
+        assertThatThrownBy(() -> new Loader(config).loadByCopy(csvFilePath, tableName))
+                .isInstanceOf(SQLException.class)
+                .hasMessageStartingWith("Reject limit exceeded: 1");
+
+        // 全体がロールバックされること
+        assertThat(TestHelper.selectAll(config, tableName))
+                .isEmpty();
+    }
+
+    @Test
+    public void loadByCopy_コネクションとテーブル情報を使い回す() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("複数カラム複数レコード.csv", this.getClass());
+
+        Config config = Config.of(configFilePath).toBuilder()
+                .databasePoolSize(1)
+                .databaseMetadataCacheMillis(60 * 1000)
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        try (Loader loader = new Loader(config)) {
+
+            loader.loadByCopy(csvFilePath, tableName);
+            loader.loadByCopy(csvFilePath, tableName);
+
+            assertThat(TestHelper.selectAll(config, tableName))
+                    .hasSize(4);
+
+            // ロード以外でテーブルを削除した場合、キャッシュを破棄すれば作成からやり直される
+            TestHelper.dropTableIfExists(config, tableName);
+            loader.invalidateTableMetadata(tableName);
+
+            loader.loadByCopy(csvFilePath, tableName);
+        }
+
+        assertThat(TestHelper.selectAll(config, tableName))
+                .hasSize(2);
+    }
+
+    @Test
+    public void loadByCopy_DataSource() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("複数カラム複数レコード.csv", this.getClass());
+
+        Config config = Config.of(configFilePath);
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        PGSimpleDataSource dataSource = new PGSimpleDataSource();
+        dataSource.setUrl(config.getDatabaseUrl());
+        dataSource.setUser(config.getDatabaseUser());
+        dataSource.setPassword(config.getDatabasePassword());
+
+        try (Loader loader = new Loader(config, dataSource)) {
+            assertThat(loader.loadByCopy(csvFilePath, tableName)).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void loadByCopy_カラムの対応() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("複数カラム複数レコード.csv", this.getClass());
+
+        Config config = Config.of(configFilePath).toBuilder()
+                .csvIncludeColumns(Arrays.asList("column3", "column1"))
+                .csvColumnMapping(Collections.singletonMap("column3", "c3"))
+                .csvConstantColumns(Collections.singletonMap("source", "test"))
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        new Loader(config).loadByCopy(csvFilePath, tableName);
+
+        assertThat(TestHelper.selectAll(config, tableName))
+                .hasSize(2)
+                .extracting(x -> x.get("c3"), x -> x.get("column1"), x -> x.get("source"), x -> x.get("column2"))
+                .containsExactlyInAnyOrder(
+                        tuple("value1-3", "value1-1", "test", null),
+                        tuple("value2-3", "value2-1", "test", null));
+    }
+
+    @Test
+    public void loadByCopy_パーティションへの振り分け() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("パーティション.csv", this.getClass());
+
+        Config config = Config.of(configFilePath).toBuilder()
+                .loadPartitionRouting(true)
+                .loadPartitionInterval("month")
+                .copyParallelSize(2)
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        try (Connection connection = TestHelper.getConnection(config)) {
+            new QueryRunner().update(
+                    connection,
+                    "CREATE TABLE test_table (id integer, created_on date) PARTITION BY RANGE (created_on)");
+            new QueryRunner().update(
+                    connection,
+                    "CREATE TABLE test_table_p202401 PARTITION OF test_table"
+                            + " FOR VALUES FROM ('2024-01-01') TO ('2024-02-01')");
+        }
+
+        long loadedCount = new Loader(config).loadByCopy(csvFilePath, tableName);
+
+        // 存在しないパーティションは作成されること
+        assertThat(loadedCount).isEqualTo(4);
+        assertThat(TestHelper.selectAll(config, "test_table_p202401"))
+                .extracting(x -> x.get("id"))
+                .containsExactlyInAnyOrder(1, 3);
+        assertThat(TestHelper.selectAll(config, "test_table_p202402"))
+                .extracting(x -> x.get("id"))
+                .containsExactlyInAnyOrder(2);
+        assertThat(TestHelper.selectAll(config, "test_table_p202403"))
+                .extracting(x -> x.get("id"))
+                .containsExactlyInAnyOrder(4);
+    }
+
+    @Test
+    public void loadByCopy_パーティションテーブルの入れ替え() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("パーティション.csv", this.getClass());
+
+        Config config = Config.of(configFilePath).toBuilder()
+                .loadMode(LoadMode.REPLACE)
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        try (Connection connection = TestHelper.getConnection(config)) {
+            new QueryRunner().update(
+                    connection,
+                    "CREATE TABLE test_table (id integer, created_on date) PARTITION BY RANGE (created_on)");
+            new QueryRunner().update(
+                    connection,
+                    "CREATE TABLE test_table_p202401 PARTITION OF test_table"
+                            + " FOR VALUES FROM ('2024-01-01') TO ('2024-02-01')");
+            new QueryRunner().update(
+                    connection,
+                    "INSERT INTO test_table VALUES (100, '2024-01-15')");
+        }
+
+        assertThatThrownBy(() -> new Loader(config).loadByCopy(csvFilePath, tableName))
+                .isInstanceOf(SQLFeatureNotSupportedException.class);
+
+        // パーティションもデータもそのまま残ること
+        assertThat(TestHelper.selectAll(config, "test_table_p202401"))
+                .extracting(x -> x.get("id"))
+                .containsExactly(100);
+    }
+
     @Test
     public void load_1カラム_1レコード() throws SQLException, IOException, URISyntaxException {
 
@@ -287,4 +1021,195 @@ public class LoaderTest {
                         tuple("1行目1", "1行目2"),
                         tuple("2行目1", "2行目2"));
     }
+
+    @Test
+    public void load_型の推測_推測した型に合わない値() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("型の拡張.csv", this.getClass());
+
+        Config config = Config.of(configFilePath).toBuilder()
+                .typeInference(TypeInference.HEAD)
+                .typeInferenceSampleSize(1)
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        new Loader(config).load(csvFilePath, tableName);
+
+        // ロード中にbigintに広げられること
+        assertThat(TestHelper.selectAll(config, tableName))
+                .extracting(x -> x.get("col1"))
+                .containsExactlyInAnyOrder(1L, 3000000000L);
+    }
+
+    @Test
+    public void load_ストリーム() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("複数カラム複数レコード.csv", this.getClass());
+
+        Config config = Config.of(configFilePath).toBuilder()
+                .batchInsertSize(1)
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        List<Long> notifiedCounts = new ArrayList<>();
+        try (InputStream csvStream = Files.newInputStream(csvFilePath)) {
+            new Loader(config).load(csvStream, tableName, notifiedCounts::add);
+        }
+
+        // 登録の途中でも件数が通知されること
+        assertThat(notifiedCounts).containsExactly(1L, 2L);
+
+        assertThat(TestHelper.selectAll(config, tableName))
+                .hasSize(2)
+                .extracting(x -> x.get("column1"), x -> x.get("column2"), x -> x.get("column3"))
+                .containsExactlyInAnyOrder(
+                        tuple("value1-1", "value1-2", "value1-3"),
+                        tuple("value2-1", "value2-2", "value2-3"));
+    }
+
+    @Test
+    public void load_登録方法() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("複数カラム複数レコード.csv", this.getClass());
+
+        for (InsertStrategy strategy : InsertStrategy.values()) {
+
+            // 端数の行が出るように、一括で登録する件数を調整
+            Config config = Config.of(configFilePath).toBuilder()
+                    .insertStrategy(strategy)
+                    .batchInsertSize(3)
+                    .build();
+
+            // 前回のテストで存在したままの可能性があるので、いったん削除
+            TestHelper.dropTableIfExists(config, tableName);
+
+            new Loader(config).load(csvFilePath, tableName);
+
+            assertThat(TestHelper.selectAll(config, tableName))
+                    .as(strategy.name())
+                    .hasSize(2)
+                    .extracting(x -> x.get("column1"), x -> x.get("column2"), x -> x.get("column3"))
+                    .containsExactlyInAnyOrder(
+                            tuple("value1-1", "value1-2", "value1-3"),
+                            tuple("value2-1", "value2-2", "value2-3"));
+        }
+    }
+
+    @Test
+    public void load_解析と登録を並行() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("複数カラム複数レコード.csv", this.getClass());
+
+        Config config = Config.of(configFilePath).toBuilder()
+                .insertQueueSize(2)
+                .insertWriterSize(2)
+                .batchInsertSize(1)
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        long insertedCount = new Loader(config).load(csvFilePath, tableName);
+
+        assertThat(insertedCount).isEqualTo(2);
+        assertThat(TestHelper.selectAll(config, tableName))
+                .extracting(x -> x.get("column1"), x -> x.get("column2"), x -> x.get("column3"))
+                .containsExactlyInAnyOrder(
+                        tuple("value1-1", "value1-2", "value1-3"),
+                        tuple("value2-1", "value2-2", "value2-3"));
+    }
+
+    @Test
+    public void load_メモリの上限() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("複数カラム複数レコード.csv", this.getClass());
+
+        // 1レコードでバッチの上限に達するよう、小さな上限とする
+        Config config = Config.of(configFilePath).toBuilder()
+                .loadMemoryBudget(10)
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        List<Long> notifiedCounts = new ArrayList<>();
+        long insertedCount = new Loader(config).load(csvFilePath, tableName, notifiedCounts::add);
+
+        assertThat(insertedCount).isEqualTo(2);
+        assertThat(notifiedCounts).containsExactly(1L, 2L);
+        assertThat(TestHelper.selectAll(config, tableName))
+                .extracting(x -> x.get("column1"), x -> x.get("column2"), x -> x.get("column3"))
+                .containsExactlyInAnyOrder(
+                        tuple("value1-1", "value1-2", "value1-3"),
+                        tuple("value2-1", "value2-2", "value2-3"));
+    }
+
+    @Test
+    public void loadByCopy_メモリの上限が小さすぎる() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("複数カラム複数レコード.csv", this.getClass());
+
+        // チャンクの下限(64KB)を並列数分保持できない上限
+        Config config = Config.of(configFilePath).toBuilder()
+                .copyParallelSize(2)
+                .loadMemoryBudget(1024)
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        assertThatThrownBy(() -> new Loader(config).loadByCopy(csvFilePath, tableName))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("load.memory-budget is too small");
+    }
+
+    @Test
+    public void loadByCopy_集計値() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+        Path csvFilePath = TestHelper.getResourcePath("複数カラム複数レコード.csv", this.getClass());
+
+        Config config = Config.of(configFilePath);
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        List<LoadMetricsSnapshot> completedSnapshots = new ArrayList<>();
+
+        Loader loader = new Loader(config);
+        loader.addListener(new LoadListener() {
+            @Override
+            public void onCompleted(LoadMetricsSnapshot snapshot) {
+                completedSnapshots.add(snapshot);
+            }
+        });
+        loader.loadByCopy(csvFilePath, tableName);
+
+        long fileSize = Files.size(csvFilePath);
+        assertThat(completedSnapshots)
+                .hasSize(1)
+                .first()
+                .satisfies(snapshot -> {
+                    assertThat(snapshot.getTableName()).isEqualTo(tableName);
+                    assertThat(snapshot.getRowCount()).isEqualTo(2);
+                    assertThat(snapshot.getByteCount()).isEqualTo(fileSize);
+                });
+    }
 }
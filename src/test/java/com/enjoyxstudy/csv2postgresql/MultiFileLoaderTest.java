@@ -0,0 +1,139 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * MultiFileLoaderのテストです。
+ * <p>loadのテストは、Vagrantで事前にDBを起動しておく必要があります。</p>
+ */
+public class MultiFileLoaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void resolveCsvFiles_ディレクトリ() throws IOException {
+
+        Path directory = temporaryFolder.getRoot().toPath();
+        Files.createFile(directory.resolve("b.csv"));
+        Files.createFile(directory.resolve("a.CSV"));
+        Files.createFile(directory.resolve("c.txt"));
+        Files.createDirectory(directory.resolve("d.csv"));
+        Files.createFile(directory.resolve("e.csv.gz"));
+        Files.createFile(directory.resolve("f.zip"));
+        Files.createFile(directory.resolve("g.txt.gz"));
+
+        assertThat(MultiFileLoader.resolveCsvFiles(directory.toString()))
+                .containsExactly(
+                        directory.resolve("a.CSV"), directory.resolve("b.csv"),
+                        directory.resolve("e.csv.gz"), directory.resolve("f.zip"));
+    }
+
+    @Test
+    public void resolveCsvFiles_ワイルドカード() throws IOException {
+
+        Path directory = temporaryFolder.getRoot().toPath();
+        Files.createFile(directory.resolve("sales_20190102.csv"));
+        Files.createFile(directory.resolve("sales_20190101.csv"));
+        Files.createFile(directory.resolve("users_20190101.csv"));
+
+        assertThat(MultiFileLoader.resolveCsvFiles(directory.toString() + "/sales_*.csv"))
+                .containsExactly(directory.resolve("sales_20190101.csv"), directory.resolve("sales_20190102.csv"));
+    }
+
+    @Test
+    public void resolveCsvFiles_ファイル() throws IOException {
+
+        assertThat(MultiFileLoader.resolveCsvFiles("data.csv"))
+                .containsExactly(Paths.get("data.csv"));
+    }
+
+    @Test
+    public void tableNameOf() {
+
+        assertThat(MultiFileLoader.tableNameOf("table1", Paths.get("dir/Sales-2019.csv")))
+                .isEqualTo("table1");
+        assertThat(MultiFileLoader.tableNameOf("stg_{file}", Paths.get("dir/Sales-2019.csv.gz")))
+                .isEqualTo("stg_sales_2019");
+    }
+
+    @Test
+    public void tableNameOf_拡張子以外のドット() {
+
+        // 拡張子として除くのは、CSVと圧縮形式のもののみ
+        assertThat(MultiFileLoader.tableNameOf("{file}", Paths.get("dir/sales.2019.01.csv")))
+                .isEqualTo("sales_2019_01");
+        assertThat(MultiFileLoader.tableNameOf("{file}", Paths.get("dir/sales.v2.CSV.ZST")))
+                .isEqualTo("sales_v2");
+        assertThat(MultiFileLoader.tableNameOf("{file}", Paths.get("dir/sales.2019.zip")))
+                .isEqualTo("sales_2019");
+        assertThat(MultiFileLoader.tableNameOf("{file}", Paths.get("dir/sales.txt")))
+                .isEqualTo("sales_txt");
+    }
+
+    @Test
+    public void load_同じテーブルに複数ファイル() throws SQLException, IOException, URISyntaxException {
+
+        String tableName = "test_table";
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+
+        Config config = Config.of(configFilePath).toBuilder()
+                .loadWorkerSize(2)
+                .build();
+
+        // 前回のテストで存在したままの可能性があるので、いったん削除
+        TestHelper.dropTableIfExists(config, tableName);
+
+        List<Path> csvFilePaths = Arrays.asList(
+                TestHelper.getResourcePath("複数カラム複数レコード.csv", this.getClass()),
+                TestHelper.getResourcePath("複数カラム複数レコード.csv", this.getClass()),
+                TestHelper.getResourcePath("複数カラム複数レコード.csv", this.getClass()));
+
+        List<LoadResult> notifiedResults = new ArrayList<>();
+        List<LoadResult> results = new MultiFileLoader(config).load(csvFilePaths, tableName, notifiedResults::add);
+
+        assertThat(results)
+                .extracting(LoadResult::isSucceeded, LoadResult::getLoadedCount)
+                .containsExactly(tuple(true, 2L), tuple(true, 2L), tuple(true, 2L));
+        assertThat(notifiedResults).hasSize(3);
+
+        assertThat(TestHelper.selectAll(config, tableName))
+                .hasSize(6);
+    }
+
+    @Test
+    public void load_プールの上限が足りない() throws IOException, URISyntaxException {
+
+        Path configFilePath = TestHelper.getResourcePath("config-utf8.properties", this.getClass());
+
+        // ワーカー毎に、並列のCOPYの分のコネクションが必要
+        Config config = Config.of(configFilePath).toBuilder()
+                .loadWorkerSize(2)
+                .copyParallelSize(2)
+                .databasePoolMaxSize(3)
+                .build();
+
+        List<Path> csvFilePaths = Arrays.asList(
+                TestHelper.getResourcePath("複数カラム複数レコード.csv", this.getClass()));
+
+        assertThatThrownBy(() -> new MultiFileLoader(config).load(csvFilePaths, "test_table", x -> {}))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("database.pool-max-size is too small: 4 connections are required for 2 workers.");
+    }
+}
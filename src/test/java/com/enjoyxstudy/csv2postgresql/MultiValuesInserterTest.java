@@ -0,0 +1,83 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MultiValuesInserterTest {
+
+    private final Table table = Table.builder()
+            .name("test_table")
+            .column(Column.of("id"))
+            .column(Column.of("name"))
+            .build();
+
+    private final List<String> preparedSqls = new ArrayList<>();
+
+    @Test
+    public void insert_バッチの件数の変更() throws SQLException {
+
+        try (MultiValuesInserter inserter = new MultiValuesInserter(
+                newConnection(), table, 4, new LoadMetrics("test_table", null))) {
+
+            inserter.insert(newBatch(4, 4));
+            assertThat(preparedSqls).containsExactly(table.multiValuesInsertSql(4));
+
+            // 件数が小さくなった場合は、端数の文ではなく変更後の件数の文を準備し直す
+            preparedSqls.clear();
+            inserter.insert(newBatch(2, 2));
+            inserter.insert(newBatch(2, 2));
+            assertThat(preparedSqls).containsExactly(table.multiValuesInsertSql(2));
+            assertThat(inserter.getRowsPerStatement()).isEqualTo(2);
+
+            // 最後の端数のバッチのみ、その件数の文で登録する
+            preparedSqls.clear();
+            inserter.insert(newBatch(2, 1));
+            assertThat(preparedSqls).containsExactly(table.multiValuesInsertSql(1));
+        }
+    }
+
+    private RecordBatch newBatch(int capacity, int size) throws SQLException {
+
+        RecordBatch batch = new RecordBatch(capacity, 2);
+        for (int i = 0; i < size; i++) {
+            batch.add(new String[] { String.valueOf(i), "name" + i }, i + 1);
+        }
+        return batch;
+    }
+
+    private Connection newConnection() {
+
+        PreparedStatement statement = (PreparedStatement) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "executeBatch":
+                            return new int[0];
+                        case "executeUpdate":
+                            return 0;
+                        default:
+                            return null;
+                    }
+                });
+
+        return (Connection) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("prepareStatement")) {
+                        preparedSqls.add((String) args[0]);
+                        return statement;
+                    }
+                    return null;
+                });
+    }
+}
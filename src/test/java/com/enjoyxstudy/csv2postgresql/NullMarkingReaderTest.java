@@ -0,0 +1,78 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class NullMarkingReaderTest {
+
+    private static final String N = NullMarkingReader.NULL_MARKER;
+
+    @Test
+    public void read_クォートされていない空のフィールド() throws IOException {
+
+        assertThat(read(",a,\r\n\"\",,\"\"\"\"\n,\n"))
+                .isEqualTo(N + ",a," + N + "\r\n\"\"," + N + ",\"\"\"\"\n" + N + "," + N + "\n");
+    }
+
+    @Test
+    public void read_終端が区切り文字() throws IOException {
+
+        assertThat(read("a,")).isEqualTo("a," + N);
+        assertThat(read("a,b")).isEqualTo("a,b");
+    }
+
+    @Test
+    public void read_クォート内の区切り文字と改行() throws IOException {
+
+        assertThat(read("\"a,\r\n,\",\"b\"\"\r\n\",\r\n"))
+                .isEqualTo("\"a,\r\n,\",\"b\"\"\r\n\"," + N + "\r\n");
+    }
+
+    @Test
+    public void read_解析結果() throws IOException {
+
+        List<List<String>> records = parse("1,,\"\"\r\n,x,\r\n");
+
+        assertThat(records.get(0)).containsExactly("1", N, "");
+        assertThat(records.get(1)).containsExactly(N, "x", N);
+    }
+
+    @Test
+    public void read_1文字ずつ() throws IOException {
+
+        try (Reader reader = new NullMarkingReader(new StringReader(",a,"))) {
+            StringBuilder marked = new StringBuilder();
+            int c;
+            while ((c = reader.read()) != -1) {
+                marked.append((char) c);
+            }
+            assertThat(marked.toString()).isEqualTo(N + ",a," + N);
+        }
+    }
+
+    private static String read(String csv) throws IOException {
+
+        try (Reader reader = new NullMarkingReader(new StringReader(csv))) {
+            return IOUtils.toString(reader);
+        }
+    }
+
+    private static List<List<String>> parse(String csv) throws IOException {
+
+        Iterable<CSVRecord> records = CSVFormat.EXCEL.parse(new NullMarkingReader(new StringReader(csv)));
+        return StreamSupport.stream(records.spliterator(), false)
+                .map(record -> StreamSupport.stream(record.spliterator(), false).collect(Collectors.toList()))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,110 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class ParallelTranscodingInputStreamTest {
+
+    private static final Charset SJIS = Charset.forName("Windows-31J");
+
+    @Test
+    public void read_改行の位置で分割して変換() throws IOException {
+
+        StringBuilder csv = new StringBuilder("名前,住所\r\n");
+        for (int i = 0; i < 1000; i++) {
+            csv.append("\"表示").append(i).append("\",\"ソ\n能\"\r\n");
+        }
+
+        // 小さなセグメントに分割して、多数のスレッドで変換
+        assertThat(transcode(csv.toString().getBytes(SJIS), SJIS, 16))
+                .isEqualTo(csv.toString());
+    }
+
+    @Test
+    public void read_セグメントより長い行() throws IOException {
+
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            csv.append("あいうえお");
+        }
+        csv.append("\n最後");
+
+        assertThat(transcode(csv.toString().getBytes(SJIS), SJIS, 16))
+                .isEqualTo(csv.toString());
+    }
+
+    @Test
+    public void read_CRのみの改行で分割() throws IOException {
+
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            csv.append("表示").append(i).append(",ソ能\r");
+        }
+        byte[] bytes = csv.toString().getBytes(SJIS);
+
+        AtomicLong readSize = new AtomicLong();
+        InputStream source = new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int size = super.read(b, off, len);
+                if (size > 0) {
+                    readSize.addAndGet(size);
+                }
+                return size;
+            }
+        };
+
+        try (InputStream in = new ParallelTranscodingInputStream(source, SJIS, 4, 16)) {
+
+            // 1つのセグメントにまとめられていなければ、全て読み込む前に先頭を返せる
+            byte[] head = new byte[1];
+            assertThat(in.read(head)).isEqualTo(1);
+            assertThat(readSize.get()).isLessThan(bytes.length);
+
+            ByteArrayOutputStream transcoded = new ByteArrayOutputStream();
+            transcoded.write(head);
+            IOUtils.copy(in, transcoded);
+            assertThat(new String(transcoded.toByteArray(), StandardCharsets.UTF_8))
+                    .isEqualTo(csv.toString());
+        }
+    }
+
+    @Test
+    public void read_不正なバイト列() throws IOException {
+
+        // 末尾が2バイト文字の1バイト目で終わっているものは、InputStreamReaderと同様に置換文字とする
+        byte[] bytes = { 'a', '\n', (byte) 0x82 };
+
+        assertThat(transcode(bytes, SJIS, 16))
+                .isEqualTo(IOUtils.toString(new InputStreamReader(new ByteArrayInputStream(bytes), SJIS)));
+    }
+
+    @Test
+    public void new_対応していないエンコーディング() {
+
+        assertThatThrownBy(() -> new ParallelTranscodingInputStream(
+                new ByteArrayInputStream(new byte[0]), StandardCharsets.UTF_16, 2))
+                        .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String transcode(byte[] bytes, Charset charset, int segmentSize) throws IOException {
+
+        try (InputStream in = new ParallelTranscodingInputStream(
+                new ByteArrayInputStream(bytes), charset, 4, segmentSize)) {
+            return new String(IOUtils.toByteArray(in), StandardCharsets.UTF_8);
+        }
+    }
+}
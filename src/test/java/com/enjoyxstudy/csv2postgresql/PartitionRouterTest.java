@@ -0,0 +1,89 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.junit.Test;
+
+import com.enjoyxstudy.csv2postgresql.PartitionRouter.Partition;
+import com.enjoyxstudy.csv2postgresql.PartitionRouter.PartitionInterval;
+
+public class PartitionRouterTest {
+
+    private static final Table TABLE = Table.builder().name("events_p202401").build();
+
+    @Test
+    public void parseBound_レンジ() throws SQLException {
+
+        Partition partition = PartitionRouter.parseBound(
+                TABLE, "FOR VALUES FROM ('2024-01-01') TO ('2024-02-01')", "date");
+
+        assertThat(partition.contains(PartitionRouter.parseKey("2024-01-01", "date"))).isTrue();
+        assertThat(partition.contains(PartitionRouter.parseKey("2024/01/31", "date"))).isTrue();
+        assertThat(partition.contains(PartitionRouter.parseKey("2024-02-01", "date"))).isFalse();
+        assertThat(partition.contains(null)).isFalse();
+    }
+
+    @Test
+    public void parseBound_上限下限なし() throws SQLException {
+
+        Partition partition = PartitionRouter.parseBound(
+                TABLE, "FOR VALUES FROM (MINVALUE) TO (100)", "int4");
+
+        assertThat(partition.contains(PartitionRouter.parseKey("-1000", "int4"))).isTrue();
+        assertThat(partition.contains(PartitionRouter.parseKey("100", "int4"))).isFalse();
+    }
+
+    @Test
+    public void parseBound_リスト() throws SQLException {
+
+        Partition partition = PartitionRouter.parseBound(
+                TABLE, "FOR VALUES IN ('tokyo', 'o''saka', NULL)", "text");
+
+        assertThat(partition.contains(PartitionRouter.parseKey("o'saka", "text"))).isTrue();
+        assertThat(partition.contains(PartitionRouter.parseKey("nagoya", "text"))).isFalse();
+        assertThat(partition.contains(null)).isTrue();
+    }
+
+    @Test
+    public void parseBound_デフォルト() throws SQLException {
+
+        assertThat(PartitionRouter.parseBound(TABLE, "DEFAULT", "date").isDefaultPartition()).isTrue();
+    }
+
+    @Test
+    public void parseBound_ハッシュ() {
+
+        assertThatThrownBy(() -> PartitionRouter.parseBound(
+                TABLE, "FOR VALUES WITH (modulus 4, remainder 0)", "int4"))
+                        .isInstanceOf(SQLFeatureNotSupportedException.class);
+    }
+
+    @Test
+    public void parseKey_解釈できない値() {
+
+        assertThat(PartitionRouter.parseKey("2024-13-01", "date")).isNull();
+        assertThat(PartitionRouter.parseKey("1.5", "int8")).isNull();
+    }
+
+    @Test
+    public void partitionInterval() {
+
+        PartitionInterval month = PartitionInterval.of("month");
+        Object lower = month.lowerOf(LocalDateTime.of(2024, 3, 15, 10, 0));
+
+        assertThat(lower).isEqualTo(LocalDate.of(2024, 3, 1));
+        assertThat(month.upperOf(lower)).isEqualTo(LocalDate.of(2024, 4, 1));
+        assertThat(month.suffixOf(lower)).isEqualTo("202403");
+
+        PartitionInterval width = PartitionInterval.of("1000");
+        assertThat(width.lowerOf(-1L)).isEqualTo(-1000L);
+        assertThat(width.suffixOf(-1000L)).isEqualTo("m1000");
+        assertThat(width.supports("date")).isFalse();
+    }
+}
@@ -0,0 +1,77 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.junit.Test;
+
+public class PipelinedInserterTest {
+
+    private static final Table TABLE = Table.builder()
+            .name("test_table")
+            .column(Column.of("col1"))
+            .column(Column.of("col2"))
+            .build();
+
+    @Test
+    public void load() throws IOException, SQLException {
+
+        RecordingConnection recordingConnection = new RecordingConnection();
+        List<Long> notifiedCounts = new ArrayList<>();
+        LoadMetrics metrics = new LoadMetrics(TABLE.getName(), null);
+
+        long insertedCount = new PipelinedInserter(
+                recordingConnection::newConnection, 3, 2, 10, 0, InsertStrategy.BATCH, CommitMode.ALL, metrics)
+                        .load(TABLE, parse(1005), notifiedCounts::add);
+
+        assertThat(insertedCount).isEqualTo(1005);
+        assertThat(recordingConnection.getCommittedRecords())
+                .hasSize(1005)
+                .extracting(x -> x[0])
+                .containsAll(Arrays.asList("1", "500", "1005"));
+
+        // 件数は増えていく順に通知される
+        assertThat(notifiedCounts).isSorted().endsWith(1005L);
+
+        // 書き込みスレッド毎の件数、バッチ数が集計される
+        LoadMetricsSnapshot snapshot = metrics.snapshot();
+        assertThat(snapshot.getRowCount()).isEqualTo(1005);
+        assertThat(Arrays.stream(snapshot.getBatchLatencyCounts()).sum()).isEqualTo(101);
+    }
+
+    @Test
+    public void load_失敗() throws IOException {
+
+        // 一部の書き込みスレッドが失敗した場合、全てロールバックされる
+        RecordingConnection recordingConnection = new RecordingConnection(x -> x[0].equals("777"));
+
+        assertThatThrownBy(() -> new PipelinedInserter(
+                recordingConnection::newConnection, 3, 2, 10, 0, InsertStrategy.BATCH, CommitMode.ALL,
+                new LoadMetrics(TABLE.getName(), null))
+                        .load(TABLE, parse(1005), x -> {
+                        }))
+                                .isInstanceOf(SQLException.class)
+                                .hasMessage("Failed.");
+
+        assertThat(recordingConnection.getCommittedRecords()).isEmpty();
+    }
+
+    private CSVParser parse(int recordCount) throws IOException {
+
+        StringBuilder csv = new StringBuilder();
+        for (int i = 1; i <= recordCount; i++) {
+            csv.append(i).append(",value").append(i).append("\r\n");
+        }
+
+        return CSVFormat.EXCEL.parse(new StringReader(csv.toString()));
+    }
+}
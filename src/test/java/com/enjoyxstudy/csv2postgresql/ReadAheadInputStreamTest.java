@@ -0,0 +1,80 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class ReadAheadInputStreamTest {
+
+    @Test
+    public void read() throws IOException {
+
+        byte[] bytes = new byte[10000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+
+        // バッファのサイズで割り切れない長さを、少ないバッファで使い回して読み込む
+        try (InputStream in = new ReadAheadInputStream(new ByteArrayInputStream(bytes), 64, 2)) {
+            assertThat(IOUtils.toByteArray(in)).isEqualTo(bytes);
+            assertThat(in.read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    public void read_空() throws IOException {
+
+        try (InputStream in = new ReadAheadInputStream(new ByteArrayInputStream(new byte[0]), 64, 2)) {
+            assertThat(in.read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    public void read_読み込み元の例外() throws IOException {
+
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Failed.");
+            }
+        };
+
+        // 読み込めた分を読み込んだ後に、例外となる
+        try (InputStream in = new ReadAheadInputStream(
+                new SequenceInputStream(new ByteArrayInputStream(new byte[] { 1, 2 }), failing), 1, 2)) {
+
+            assertThat(in.read()).isEqualTo(1);
+            assertThat(in.read()).isEqualTo(2);
+            assertThatThrownBy(in::read)
+                    .isInstanceOf(IOException.class)
+                    .hasMessage("Failed.");
+        }
+    }
+
+    @Test
+    public void close() throws IOException {
+
+        AtomicBoolean closed = new AtomicBoolean();
+        InputStream source = new ByteArrayInputStream(new byte[1000]) {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+
+        // 途中まで読み込んで閉じた場合も、読み込み元を閉じる
+        InputStream in = new ReadAheadInputStream(source, 10, 2);
+        assertThat(in.read()).isEqualTo(0);
+        in.close();
+
+        assertThat(closed).isTrue();
+    }
+}
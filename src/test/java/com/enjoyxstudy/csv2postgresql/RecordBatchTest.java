@@ -0,0 +1,97 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.SQLDataException;
+import java.util.Iterator;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Test;
+
+public class RecordBatchTest {
+
+    @Test
+    public void add() throws IOException, SQLDataException {
+
+        Iterator<CSVRecord> records = CSVFormat.EXCEL.parse(new StringReader("a,b\r\nc,d\r\n")).iterator();
+
+        RecordBatch batch = new RecordBatch(2, 2);
+        batch.add(records.next());
+        assertThat(batch.isFull()).isFalse();
+        batch.add(records.next());
+
+        assertThat(batch.isFull()).isTrue();
+        assertThat(batch.size()).isEqualTo(2);
+        assertThat(batch.get(0)).containsExactly("a", "b");
+        assertThat(batch.get(1)).containsExactly("c", "d");
+    }
+
+    @Test
+    public void clear() throws SQLDataException {
+
+        RecordBatch batch = new RecordBatch(1, 2);
+        batch.add(new String[] { "a", "b" }, 1);
+        String[] buffer = batch.get(0);
+
+        batch.clear();
+
+        assertThat(batch.isEmpty()).isTrue();
+        assertThat(buffer).containsOnlyNulls();
+
+        // 配列は使い回される
+        batch.add(new String[] { "c", "d" }, 2);
+        assertThat(batch.get(0)).isSameAs(buffer).containsExactly("c", "d");
+    }
+
+    @Test
+    public void add_fieldCountMismatch() {
+
+        RecordBatch batch = new RecordBatch(1, 2);
+
+        assertThatThrownBy(() -> batch.add(new String[] { "a" }, 123))
+                .isInstanceOf(SQLDataException.class)
+                .hasMessageContaining("Record number: 123");
+        assertThat(batch.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void resize() throws SQLDataException {
+
+        RecordBatch batch = new RecordBatch(1, 2);
+        batch.add(new String[] { "a", "bc" }, 1);
+        // 1文字2バイトと、値毎の文字列のオブジェクトの分
+        assertThat(batch.estimateBytes()).isEqualTo(2 * 3 + 40 * 2);
+
+        assertThatThrownBy(() -> batch.resize(2))
+                .isInstanceOf(IllegalStateException.class);
+
+        batch.clear();
+        batch.resize(2);
+        batch.add(new String[] { "a", "b" }, 2);
+        batch.add(new String[] { "c", "d" }, 3);
+
+        assertThat(batch.isFull()).isTrue();
+        assertThat(batch.capacity()).isEqualTo(2);
+    }
+
+    @Test
+    public void isFull_バイト数の上限() throws SQLDataException {
+
+        RecordBatch batch = new RecordBatch(10, 2, 150);
+        batch.add(new String[] { "a", "bc" }, 1);
+        assertThat(batch.isFull()).isFalse();
+
+        // 件数に満たなくても、上限に達した時点で一杯
+        batch.add(new String[] { "de", "f" }, 2);
+        assertThat(batch.isFull()).isTrue();
+        assertThat(batch.estimateBytes()).isEqualTo(172);
+
+        batch.clear();
+        assertThat(batch.isFull()).isFalse();
+        assertThat(batch.estimateBytes()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,98 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * 1レコードずつのINSERTで登録された値を、DBに接続せずに記録するコネクションです。
+ */
+public class RecordingConnection {
+
+    private final List<String[]> committedRecords = Collections.synchronizedList(new ArrayList<>());
+
+    private final Predicate<String[]> failure;
+
+    public RecordingConnection() {
+        this(x -> false);
+    }
+
+    /**
+     * @param failure 登録時に失敗させるレコードの条件
+     */
+    public RecordingConnection(Predicate<String[]> failure) {
+        this.failure = failure;
+    }
+
+    public List<String[]> getCommittedRecords() {
+        return committedRecords;
+    }
+
+    public Connection newConnection() {
+
+        List<String[]> transactionRecords = new ArrayList<>();
+
+        PreparedStatement statement = (PreparedStatement) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                new InvocationHandler() {
+
+                    private final List<String> values = new ArrayList<>();
+
+                    private final List<String[]> batch = new ArrayList<>();
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                            throws SQLException {
+
+                        switch (method.getName()) {
+                            case "setString":
+                                values.add((String) args[1]);
+                                return null;
+                            case "addBatch":
+                                batch.add(values.toArray(new String[values.size()]));
+                                values.clear();
+                                return null;
+                            case "executeBatch":
+                                for (String[] record : batch) {
+                                    if (failure.test(record)) {
+                                        throw new SQLException("Failed.", "22P02");
+                                    }
+                                }
+                                transactionRecords.addAll(batch);
+                                int[] counts = new int[batch.size()];
+                                batch.clear();
+                                return counts;
+                            default:
+                                return null;
+                        }
+                    }
+                });
+
+        return (Connection) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "prepareStatement":
+                            return statement;
+                        case "commit":
+                            committedRecords.addAll(transactionRecords);
+                            transactionRecords.clear();
+                            return null;
+                        case "rollback":
+                            transactionRecords.clear();
+                            return null;
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
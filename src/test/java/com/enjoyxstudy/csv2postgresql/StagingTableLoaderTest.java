@@ -0,0 +1,62 @@
+package com.enjoyxstudy.csv2postgresql;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class StagingTableLoaderTest {
+
+    @Test
+    public void toStagingIndexSql() {
+
+        assertThat(StagingTableLoader.toStagingIndexSql(
+                "CREATE UNIQUE INDEX test_table_pkey ON public.test_table USING btree (id)",
+                "test_table_pkey_csv2pg_staging",
+                "test_table_csv2pg_staging"))
+                        .isEqualTo("CREATE UNIQUE INDEX \"test_table_pkey_csv2pg_staging\""
+                                + " ON test_table_csv2pg_staging USING btree (id)");
+
+        assertThat(StagingTableLoader.toStagingIndexSql(
+                "CREATE INDEX \"Name Index\" ON public.test_table USING btree (lower(name)) WHERE (id > 0)",
+                "Name Index_csv2pg_staging",
+                "test_table_csv2pg_staging"))
+                        .isEqualTo("CREATE INDEX \"Name Index_csv2pg_staging\""
+                                + " ON test_table_csv2pg_staging USING btree (lower(name)) WHERE (id > 0)");
+    }
+
+    @Test
+    public void toStagingIndexSql_解析できない定義() {
+
+        assertThatThrownBy(() -> StagingTableLoader.toStagingIndexSql("ALTER TABLE x", "a", "b"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void stagingName() {
+
+        assertThat(StagingTableLoader.stagingName("test_table")).isEqualTo("test_table_csv2pg_staging");
+
+        // 識別子の最大長(63バイト)に収まるよう短くし、ハッシュ値で区別する
+        String longName = String.join("", Collections.nCopies(60, "a"));
+        assertThat(StagingTableLoader.stagingName(longName))
+                .hasSize(63)
+                .endsWith(String.format("_%08x_csv2pg_staging", longName.hashCode()));
+        assertThat(StagingTableLoader.stagingName(longName + "1"))
+                .isNotEqualTo(StagingTableLoader.stagingName(longName + "2"));
+
+        // マルチバイト文字の途中では切らない
+        String multiByteName = String.join("", Collections.nCopies(30, "あ"));
+        assertThat(StagingTableLoader.stagingName(multiByteName).getBytes(StandardCharsets.UTF_8))
+                .hasSize(63);
+    }
+
+    @Test
+    public void quoteIdentifier() {
+
+        assertThat(StagingTableLoader.quoteIdentifier("a\"b")).isEqualTo("\"a\"\"b\"");
+    }
+}
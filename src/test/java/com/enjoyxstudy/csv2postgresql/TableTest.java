@@ -1,8 +1,11 @@
 package com.enjoyxstudy.csv2postgresql;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.Assertions.tuple;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
@@ -119,4 +122,126 @@ public class TableTest {
                             tuple("value4-1", "value4-2", "value4-3"));
         }
     }
+
+    @Test
+    public void copy_失敗した場合は送信中に数えた件数を戻す() {
+
+        LoadMetrics metrics = new LoadMetrics("test_table", null);
+
+        ByteArrayCopyIn copyIn = new ByteArrayCopyIn();
+        copyIn.failEndCopy(new SQLException("invalid input syntax", "22P02"));
+
+        byte[] csv = "a,1\r\nb,2\r\n".getBytes(StandardCharsets.UTF_8);
+
+        assertThatThrownBy(() -> Table.copy(copyIn, new ByteArrayInputStream(csv), false, metrics))
+                .isInstanceOf(SQLException.class);
+
+        assertThat(copyIn.toByteArray()).isEqualTo(csv);
+        assertThat(metrics.snapshot().getRowCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void multiValuesInsertSql() {
+
+        Table table = Table.builder()
+                .name("test_table")
+                .column(Column.of("col1"))
+                .column(Column.of("col2", ColumnType.INTEGER))
+                .build();
+
+        assertThat(table.multiValuesInsertSql(2))
+                .isEqualTo("INSERT INTO test_table (col1, col2) VALUES"
+                        + " (?, CAST(NULLIF(?, '') AS integer)),(?, CAST(NULLIF(?, '') AS integer))");
+    }
+
+    @Test
+    public void unnestInsertSql() {
+
+        Table table = Table.builder()
+                .name("test_table")
+                .column(Column.of("col1"))
+                .column(Column.of("col2", ColumnType.INTEGER))
+                .build();
+
+        assertThat(table.unnestInsertSql())
+                .isEqualTo("INSERT INTO test_table (col1, col2)"
+                        + " SELECT col1, CAST(NULLIF(col2, '') AS integer)"
+                        + " FROM unnest(?::text[], ?::text[]) AS u(col1, col2)");
+    }
+
+    @Test
+    public void upsertSql() {
+
+        Table table = Table.builder()
+                .name("test_table")
+                .column(Column.of("id"))
+                .column(Column.of("col1"))
+                .column(Column.of("col2"))
+                .build();
+
+        assertThat(table.upsertSql("tmp", Arrays.asList("id")))
+                .isEqualTo("INSERT INTO test_table (id, col1, col2)"
+                        + " SELECT DISTINCT ON (id) id, col1, col2 FROM tmp ORDER BY id, csv2pg_row_order DESC"
+                        + " ON CONFLICT (id) DO UPDATE SET col1 = EXCLUDED.col1, col2 = EXCLUDED.col2");
+
+        // 全てのカラムがキーの場合は更新しない
+        assertThat(table.upsertSql("tmp", Arrays.asList("id", "col1", "col2")))
+                .endsWith(" ON CONFLICT (id, col1, col2) DO NOTHING");
+
+        assertThatThrownBy(() -> table.upsertSql("tmp", Arrays.asList("col3")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void mergeSql() {
+
+        Table table = Table.builder()
+                .name("test_table")
+                .column(Column.of("id1"))
+                .column(Column.of("id2"))
+                .column(Column.of("col1"))
+                .build();
+
+        assertThat(table.mergeSql("tmp", Arrays.asList("id1", "id2")))
+                .isEqualTo("MERGE INTO test_table AS t"
+                        + " USING (SELECT DISTINCT ON (id1, id2) id1, id2, col1 FROM tmp ORDER BY id1, id2, csv2pg_row_order DESC) AS s"
+                        + " ON t.id1 = s.id1 AND t.id2 = s.id2"
+                        + " WHEN MATCHED THEN UPDATE SET col1 = s.col1"
+                        + " WHEN NOT MATCHED THEN INSERT (id1, id2, col1) VALUES (s.id1, s.id2, s.col1)");
+    }
+
+    @Test
+    public void insert_登録方法() throws SQLException {
+
+        Table table = Table.builder()
+                .name("test_table")
+                .column(Column.of("col1"))
+                .column(Column.of("col2", ColumnType.INTEGER))
+                .build();
+
+        List<String[]> records = Arrays.asList(
+                new String[] { "value1", "1" },
+                new String[] { "value2", "" },
+                new String[] { "value3", "3" });
+
+        for (InsertStrategy strategy : InsertStrategy.values()) {
+
+            try (Connection connection = TestHelper.getConnection(CONFIG)) {
+
+                // 前回のテストで存在したままの可能性があるので、いったん削除
+                TestHelper.dropTableIfExists(connection, table.getName());
+
+                table.create(connection);
+                table.insert(connection, records, strategy);
+
+                assertThat(TestHelper.selectAll(connection, table.getName()))
+                        .as(strategy.name())
+                        .extracting(x -> x.get("col1"), x -> x.get("col2"))
+                        .containsExactlyInAnyOrder(
+                                tuple("value1", 1),
+                                tuple("value2", null),
+                                tuple("value3", 3));
+            }
+        }
+    }
 }